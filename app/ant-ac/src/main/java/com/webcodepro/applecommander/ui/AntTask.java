@@ -45,6 +45,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
@@ -57,6 +59,55 @@ public class AntTask extends Task
 {
 	public void execute() throws BuildException
 	{
+		if (_commands.isEmpty())
+			executeCommand();
+		else
+			executeBatch();
+	}
+
+	/**
+	 * Run the nested commands as one batch.  Each image is opened once and
+	 * is only saved if every command succeeds.  Nested commands without an
+	 * image name use the image name of this task.  Within a batch, a failing
+	 * command always fails the task, whatever its failonerror setting.
+	 */
+	protected void executeBatch() throws BuildException
+	{
+		BatchSession session;
+		try
+		{
+			session = BatchSession.begin();
+		}
+		catch (IOException io)
+		{
+			throw new BuildException(io);
+		}
+		try
+		{
+			for (AntTask command : _commands)
+			{
+				if (command._imageName == null)
+					command._imageName = _imageName;
+				command.executeCommand();
+			}
+			session.commit();
+		}
+		catch (IOException io)
+		{
+			throw new BuildException(io);
+		}
+		finally
+		{
+			session.rollback();
+		}
+	}
+
+	protected void executeCommand() throws BuildException
+	{
+		if (_command == null)
+		{
+			throw new BuildException("No command specified.");
+		}
 		/*
 		 * Commands: 
 		 * dos: <imagename> <filename> <type>
@@ -83,7 +134,7 @@ public class AntTask extends Task
 			}
 			catch (Exception ex)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(ex);
 				else
 					System.out.println(ex.getMessage());
@@ -102,7 +153,7 @@ public class AntTask extends Task
 			}
 			catch (Exception ex)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(ex);
 				else
 					System.out.println(ex.getMessage());
@@ -132,7 +183,7 @@ public class AntTask extends Task
 			}
 			catch (Exception ex)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(ex);
 				else
 					System.out.println(ex.getMessage());
@@ -146,7 +197,7 @@ public class AntTask extends Task
 			}
 			catch (IOException|DiskException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -160,7 +211,7 @@ public class AntTask extends Task
 			}
 			catch (IOException|DiskException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -177,7 +228,7 @@ public class AntTask extends Task
 			}
 			catch (IOException|DiskException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -197,7 +248,7 @@ public class AntTask extends Task
 			}
 			catch (IOException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -211,7 +262,7 @@ public class AntTask extends Task
 			}
 			catch (IOException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -228,7 +279,7 @@ public class AntTask extends Task
 			}
 			catch (IOException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -245,7 +296,7 @@ public class AntTask extends Task
 			}
 			catch (IOException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -259,7 +310,7 @@ public class AntTask extends Task
 			}
 			catch (IOException|DiskException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -273,7 +324,7 @@ public class AntTask extends Task
 			}
 			catch (IOException io)
 			{
-				if (_failonerror)
+				if (isFailOnError())
 					throw new BuildException(io);
 				else
 					System.out.println(io.getMessage());
@@ -285,6 +336,16 @@ public class AntTask extends Task
 		}
 	}
 
+	/**
+	 * Add a nested &lt;ac&gt; command; all nested commands are run as one batch.
+	 */
+	public AntTask createAc()
+	{
+		AntTask command = new AntTask();
+		_commands.add(command);
+		return command;
+	}
+
 	public void setCommand(String command)
 	{
 		_command = command;
@@ -335,6 +396,15 @@ public class AntTask extends Task
 		_sizeBlocks = sizeBlocks;
 	}
 
+	/**
+	 * Answer whether an error fails the task.  It always does within a
+	 * batch, as the batch would otherwise save a partial set of changes.
+	 */
+	protected boolean isFailOnError()
+	{
+		return _failonerror || BatchSession.current() != null;
+	}
+
 	public void setFailOnError(String failonerror)
 	{
 		if (failonerror.equalsIgnoreCase("true"))
@@ -345,6 +415,8 @@ public class AntTask extends Task
 
 	boolean _failonerror = true;
 
+	List<AntTask> _commands = new ArrayList<>();
+
 	String _input = null;
 
 	String _output = null;
@@ -0,0 +1,227 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskUnrecognizedException;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.util.TextBundle;
+
+/**
+ * Holds the disk images used by a batch of ac commands.  Each image is read
+ * once, every change is made in memory, and the images are only written
+ * when the whole batch has succeeded.  If any command fails, the batch is
+ * rolled back and no image is touched.
+ * <p>
+ * A session belongs to the thread that began it, from begin until commit
+ * or rollback.  The ac commands use the current session when there is one.
+ */
+public class BatchSession {
+	private static final ThreadLocal<BatchSession> CURRENT = new ThreadLocal<>();
+	private static TextBundle textBundle = UiBundle.getInstance();
+
+	private Map<String,Disk> disks = new LinkedHashMap<>();
+	private Map<Disk,FormattedDisk[]> formattedDisks = new IdentityHashMap<>();
+	private Set<Disk> changed = new LinkedHashSet<>();
+
+	/**
+	 * Hide constructor from other classes.
+	 */
+	private BatchSession() {
+		// empty
+	}
+
+	/**
+	 * Begin a batch on the current thread.  Batches do not nest.
+	 */
+	public static BatchSession begin() throws IOException {
+		if (CURRENT.get() != null) {
+			throw new IOException(textBundle.get("CommandLineBatchNested")); //$NON-NLS-1$
+		}
+		BatchSession session = new BatchSession();
+		CURRENT.set(session);
+		return session;
+	}
+
+	/**
+	 * Answer with the batch in progress on the current thread, or null.
+	 */
+	public static BatchSession current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Open the disk image named imageName, or answer the copy this batch
+	 * already has open.
+	 */
+	public Disk open(String imageName) throws IOException {
+		String key = key(imageName);
+		Disk disk = disks.get(key);
+		if (disk == null) {
+			disk = new Disk(imageName);
+			disks.put(key, disk);
+		}
+		return disk;
+	}
+
+	/**
+	 * Answer with the formatted disks of an image.  These are kept for the
+	 * life of the batch, so what they have learned about the image (such as
+	 * the file index) is reused by later commands.
+	 */
+	public FormattedDisk[] getFormattedDisks(Disk disk) throws DiskUnrecognizedException {
+		FormattedDisk[] result = formattedDisks.get(disk);
+		if (result == null) {
+			result = disk.getFormattedDisks();
+			formattedDisks.put(disk, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Add a newly created image to the batch.  It is written on commit.
+	 */
+	public void add(Disk disk) {
+		disks.put(key(disk.getFilename()), disk);
+		formattedDisks.remove(disk);
+		changed.add(disk);
+	}
+
+	/**
+	 * Add a newly created and formatted image to the batch.  It is written
+	 * on commit.
+	 */
+	public void add(FormattedDisk[] disks) {
+		add(disks[0]);
+		formattedDisks.put(disks[0], disks);
+	}
+
+	/**
+	 * Note that an image has been changed.  It is written on commit.
+	 */
+	public void changed(Disk disk) {
+		changed.add(disk);
+	}
+
+	/**
+	 * Write every changed image and end the batch.  Each image is first 
+	 * written alongside the original, and the originals are only replaced
+	 * once all of them have been written successfully.  If replacing any
+	 * of them fails, the images already replaced are put back.
+	 */
+	public void commit() throws IOException {
+		Map<File,File> written = new LinkedHashMap<>();
+		Map<File,File> replaced = new LinkedHashMap<>();
+		try {
+			for (Disk disk : changed) {
+				String filename = disk.getFilename();
+				File target = new File(filename).getAbsoluteFile();
+				// The name must end the same way, as that selects compression
+				File temporary = File.createTempFile(".ac-batch-", "-" + target.getName(), //$NON-NLS-1$ //$NON-NLS-2$
+						target.getParentFile());
+				written.put(temporary, target);
+				disk.saveAs(temporary.getPath());
+				disk.setFilename(filename);
+			}
+			for (Map.Entry<File,File> entry : written.entrySet()) {
+				File target = entry.getValue();
+				File backup = null;
+				if (target.exists()) {
+					backup = File.createTempFile(".ac-backup-", "-" + target.getName(), //$NON-NLS-1$ //$NON-NLS-2$
+							target.getParentFile());
+					Files.move(target.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				replaced.put(target, backup);
+				Files.move(entry.getKey().toPath(), target.toPath(), 
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException | RuntimeException ex) {
+			restore(replaced, ex);
+			throw ex;
+		} finally {
+			for (File temporary : written.keySet()) {
+				temporary.delete();
+			}
+			end();
+		}
+		for (File backup : replaced.values()) {
+			if (backup != null) {
+				backup.delete();
+			}
+		}
+	}
+
+	/**
+	 * Put back the originals of the images that were replaced before a
+	 * commit failed, newest first.  Images that did not exist before are
+	 * removed.  A backup that cannot be put back is left in place, so the
+	 * original is not lost.
+	 */
+	protected static void restore(Map<File,File> replaced, Exception cause) {
+		List<Map.Entry<File,File>> entries = new ArrayList<>(replaced.entrySet());
+		Collections.reverse(entries);
+		for (Map.Entry<File,File> entry : entries) {
+			File target = entry.getKey();
+			File backup = entry.getValue();
+			try {
+				if (backup == null) {
+					Files.deleteIfExists(target.toPath());
+				} else {
+					Files.move(backup.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			} catch (IOException | RuntimeException ex) {
+				cause.addSuppressed(ex);
+			}
+		}
+	}
+
+	/**
+	 * Discard every change and end the batch.  No image is written.
+	 */
+	public void rollback() {
+		end();
+	}
+
+	protected void end() {
+		disks.clear();
+		formattedDisks.clear();
+		changed.clear();
+		if (CURRENT.get() == this) {
+			CURRENT.remove();
+		}
+	}
+
+	protected static String key(String imageName) {
+		return new File(imageName).getAbsoluteFile().toPath().normalize().toString();
+	}
+}
@@ -21,6 +21,7 @@
  */
 package com.webcodepro.applecommander.ui;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -28,15 +29,22 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import com.webcodepro.applecommander.storage.DirectoryEntry;
 import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.DiskUnrecognizedException;
 import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FileFilter;
 import com.webcodepro.applecommander.storage.FormattedDisk;
@@ -102,6 +110,8 @@ import io.github.applecommander.bastools.api.model.Token;
  *           or convert a DiskCopy 4.2 image into a ProDOS disk image.
  * -bas    &lt;imagename&gt; &lt;filename&gt; import an AppleSoft basic file from text
  *        back to it's tokenized format.
+ * -batch  [&lt;scriptfile&gt;] run the commands in a script (or stdin) as one batch,
+ *        opening each image once and saving only if every command succeeds.
  * </pre>
  * 
  * @author John B. Matthews
@@ -111,81 +121,17 @@ import io.github.applecommander.bastools.api.model.Token;
  */
 public class ac {
 	private static TextBundle textBundle = UiBundle.getInstance();
+	/**
+	 * The commands that may appear in a batch script; see execute.
+	 */
+	private static final Set<String> BATCH_COMMANDS = Set.of("-i", "-ls", "-l", "-ll", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"-lsv", "-lv", "-llv", "-lsj", "-lj", "-llj", "-e", "-x", "-g", "-p", "-pt", "-ptx", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$ //$NON-NLS-12$
+			"-d", "-k", "-u", "-n", "-cc65", "-dos", "-as", "-geos", "-dos140", "-pas140", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+			"-pas800", "-pro140", "-pro800", "-convert", "-bas"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
 
 	public static void main(String[] args) {
 		try {
-			if (args.length == 0) {
-				help();
-			} else if ("-i".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				getDiskInfo(args);
-			} else if ("-ls".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.text(FormattedDisk.FILE_DISPLAY_STANDARD), args);
-			} else if ("-l".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.text(FormattedDisk.FILE_DISPLAY_NATIVE), args);
-			} else if ("-ll".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.text(FormattedDisk.FILE_DISPLAY_DETAIL), args);
-			} else if ("-lsv".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.csv(FormattedDisk.FILE_DISPLAY_STANDARD), args);
-			} else if ("-lv".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.csv(FormattedDisk.FILE_DISPLAY_NATIVE), args);
-			} else if ("-llv".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.csv(FormattedDisk.FILE_DISPLAY_DETAIL), args);
-			} else if ("-lsj".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.json(FormattedDisk.FILE_DISPLAY_STANDARD), args);
-			} else if ("-lj".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.json(FormattedDisk.FILE_DISPLAY_NATIVE), args);
-			} else if ("-llj".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				showDirectory(DirectoryLister.json(FormattedDisk.FILE_DISPLAY_DETAIL), args);
-			} else if ("-e".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				getFile(args[1], args[2], true,
-					(args.length > 3 ? new PrintStream(new FileOutputStream(args[3])) : System.out));
-			} else if ("-x".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				getFiles(args[1], (args.length > 2 ? args[2] : ""));
-			} else if ("-g".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				getFile(args[1], args[2], false,
-					(args.length > 3 ? new PrintStream(new FileOutputStream(args[3])) : System.out));
-			} else if ("-p".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				putFile(args[1], new Name(args[2]), args[3],
-					(args.length > 4 ? args[4] : "0x2000"));
-			} else if ("-pt".equalsIgnoreCase(args[0])) {
-			    putTxtFileSetHighBit(args[1], new Name(args[2]));
-            } else if ("-ptx".equalsIgnoreCase(args[0])) {
-                putTxtFileClearHighBit(args[1], new Name(args[2]));
-			} else if ("-d".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				deleteFile(args[1], args[2]);
-			} else if ("-k".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				setFileLocked(args[1], args[2], true);
-			} else if ("-u".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				setFileLocked(args[1], args[2], false);
-			} else if ("-n".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				setDiskName(args[1], args[2]);
-			} else if ("-cc65".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				System.err.println("Note: -cc65 is deprecated.  Please use -as or -dos as appropriate."); 
-				putDOS(args[1], new Name(args[2]), args[3]);
-			} else if ("-dos".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				putDOS(args[1], new Name(args[2]), args[3]);
-			} else if ("-as".equalsIgnoreCase(args[0])) {
-				putAppleSingle(args[1], args.length >= 3 ? args[2] : null);
-			} else if ("-geos".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				putGEOS(args[1]);
-			} else if ("-dos140".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				createDosDisk(args[1], Disk.APPLE_140KB_DISK);
-			} else if ("-pas140".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				createPasDisk(args[1], args[2], Disk.APPLE_140KB_DISK);
-			} else if ("-pas800".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				createPasDisk(args[1], args[2], Disk.APPLE_800KB_DISK);
-			} else if ("-pro140".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				createProDisk(args[1], args[2], Disk.APPLE_140KB_DISK);
-			} else if ("-pro800".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				createProDisk(args[1], args[2], Disk.APPLE_800KB_DISK);
-			} else if ("-convert".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
-				if (args.length > 3)
-					convert(args[1], args[2], Integer.parseInt(args[3]));
-				else
-					convert(args[1], args[2]);
-			} else if ("-bas".equalsIgnoreCase(args[0])) {
-				putAppleSoft(args[1], args[2]);
-			} else {
+			if (!execute(args, System.in)) {
 				help();
 			}
 		} catch (Exception ex) {
@@ -195,6 +141,90 @@ public class ac {
 			System.exit(1);
 		}
 	}
+
+	/**
+	 * Run a single command, answering false if the command is not known.
+	 * Commands that read &lt;stdin&gt; read the given stream instead.
+	 */
+	static boolean execute(String[] args, InputStream stdin) throws IOException, DiskException {
+		if (args.length == 0) {
+			return false;
+		} else if ("-i".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			getDiskInfo(args);
+		} else if ("-ls".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.text(FormattedDisk.FILE_DISPLAY_STANDARD), args);
+		} else if ("-l".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.text(FormattedDisk.FILE_DISPLAY_NATIVE), args);
+		} else if ("-ll".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.text(FormattedDisk.FILE_DISPLAY_DETAIL), args);
+		} else if ("-lsv".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.csv(FormattedDisk.FILE_DISPLAY_STANDARD), args);
+		} else if ("-lv".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.csv(FormattedDisk.FILE_DISPLAY_NATIVE), args);
+		} else if ("-llv".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.csv(FormattedDisk.FILE_DISPLAY_DETAIL), args);
+		} else if ("-lsj".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.json(FormattedDisk.FILE_DISPLAY_STANDARD), args);
+		} else if ("-lj".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.json(FormattedDisk.FILE_DISPLAY_NATIVE), args);
+		} else if ("-llj".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			showDirectory(DirectoryLister.json(FormattedDisk.FILE_DISPLAY_DETAIL), args);
+		} else if ("-e".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			getFile(args[1], args[2], true,
+				(args.length > 3 ? new PrintStream(new FileOutputStream(args[3])) : System.out));
+		} else if ("-x".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			getFiles(args[1], (args.length > 2 ? args[2] : ""));
+		} else if ("-g".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			getFile(args[1], args[2], false,
+				(args.length > 3 ? new PrintStream(new FileOutputStream(args[3])) : System.out));
+		} else if ("-p".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			putFile(args[1], new Name(args[2]), args[3],
+				(args.length > 4 ? args[4] : "0x2000"), stdin);
+		} else if ("-pt".equalsIgnoreCase(args[0])) {
+		    putTxtFileSetHighBit(args[1], new Name(args[2]), stdin);
+		} else if ("-ptx".equalsIgnoreCase(args[0])) {
+		    putTxtFileClearHighBit(args[1], new Name(args[2]), stdin);
+		} else if ("-d".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			deleteFile(args[1], args[2]);
+		} else if ("-k".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			setFileLocked(args[1], args[2], true);
+		} else if ("-u".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			setFileLocked(args[1], args[2], false);
+		} else if ("-n".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			setDiskName(args[1], args[2]);
+		} else if ("-cc65".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			System.err.println("Note: -cc65 is deprecated.  Please use -as or -dos as appropriate."); 
+			putDOS(args[1], new Name(args[2]), args[3], stdin);
+		} else if ("-dos".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			putDOS(args[1], new Name(args[2]), args[3], stdin);
+		} else if ("-as".equalsIgnoreCase(args[0])) {
+			putAppleSingle(args[1], args.length >= 3 ? args[2] : null, stdin);
+		} else if ("-geos".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			putGEOS(args[1], stdin);
+		} else if ("-dos140".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			createDosDisk(args[1], Disk.APPLE_140KB_DISK);
+		} else if ("-pas140".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			createPasDisk(args[1], args[2], Disk.APPLE_140KB_DISK);
+		} else if ("-pas800".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			createPasDisk(args[1], args[2], Disk.APPLE_800KB_DISK);
+		} else if ("-pro140".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			createProDisk(args[1], args[2], Disk.APPLE_140KB_DISK);
+		} else if ("-pro800".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			createProDisk(args[1], args[2], Disk.APPLE_800KB_DISK);
+		} else if ("-convert".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			if (args.length > 3)
+				convert(args[1], args[2], Integer.parseInt(args[3]));
+			else
+				convert(args[1], args[2]);
+		} else if ("-bas".equalsIgnoreCase(args[0])) {
+			putAppleSoft(args[1], args[2], stdin);
+		} else if ("-batch".equalsIgnoreCase(args[0])) { //$NON-NLS-1$
+			batch(args.length > 1 ? args[1] : null);
+		} else {
+			return false;
+		}
+		return true;
+	}
 	
 	/**
 	 * Convert the AppleSoft BASIC program from text into it's "native" tokenized format.
@@ -202,22 +232,30 @@ public class ac {
 	 * to 0x801.
 	 */
 	public static void putAppleSoft(String imageName, String fileName) throws IOException, DiskException {
+		putAppleSoft(imageName, fileName, System.in);
+	}
+
+	/**
+	 * Convert the AppleSoft BASIC program read from inputStream; see putAppleSoft.
+	 */
+	public static void putAppleSoft(String imageName, String fileName, InputStream inputStream) 
+			throws IOException, DiskException {
 	    File fakeTempSource = File.createTempFile("ac-", "bas");
 	    fakeTempSource.deleteOnExit();
 		Configuration config = Configuration.builder().sourceFile(fakeTempSource).build();
-		Queue<Token> tokens = TokenReader.tokenize(System.in);
+		Queue<Token> tokens = TokenReader.tokenize(inputStream);
 		Parser parser = new Parser(tokens);
 		Program program = parser.parse();
 		byte[] data = Visitors.byteVisitor(config).dump(program);
 		
 		Name name = new Name(fileName);
 		File file = new File(imageName);
-		if (!file.canRead()){
+		if (BatchSession.current() == null && !file.canRead()){
 			throw new IOException("Unable to read input file named "+imageName+".");
 		}
 		
-		Disk disk = new Disk(imageName);
-		FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+		Disk disk = openDisk(imageName);
+		FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 		FormattedDisk formattedDisk = formattedDisks[0];
 		// Look through the supplied types and try to pick AppleSoft.  Otherwise, let's try "A".
 		String fileType = Arrays.asList(formattedDisk.getFiletypes()).stream()
@@ -232,7 +270,7 @@ public class ac {
 			if (entry.needsAddress()) {
 				entry.setAddress(config.startAddress);
 			}
-			formattedDisk.save();
+			saveDisk(disk);
 		}
 	}
 
@@ -254,8 +292,8 @@ public class ac {
 			while ((byteCount = is.read(inb)) > 0) {
 				buf.write(inb, 0, byteCount);
 			}
-			Disk disk = new Disk(imageName);
-			FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+			Disk disk = openDisk(imageName);
+			FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 			FormattedDisk formattedDisk = formattedDisks[0];
 			FileEntry entry = name.createEntry(formattedDisk);
 			if (entry != null) {
@@ -265,7 +303,7 @@ public class ac {
 				if (entry.needsAddress()) {
 					entry.setAddress(stringToInt(address));
 				}
-				formattedDisk.save();
+				saveDisk(disk);
 			}
 		}
 	}
@@ -284,18 +322,18 @@ public class ac {
      * Put &lt;stdin&gt. as an Apple text file into the file named 
      * fileName on the disk named imageName.
      */
-    static void putTxtFileSetHighBit(String imageName, Name name) throws IOException, DiskException {
+    static void putTxtFileSetHighBit(String imageName, Name name, InputStream inputStream) throws IOException, DiskException {
         // Order on the stream is important to ensure the translated newlines have the high bit done appropriately
-        putFile(imageName, name, "TXT", "0", TranslatorStream.builder(System.in).lfToCr().setHighBit().get());
+        putFile(imageName, name, "TXT", "0", TranslatorStream.builder(inputStream).lfToCr().setHighBit().get());
     }
 
     /**
      * Put &lt;stdin&gt. as an Apple text file into the file named 
      * fileName on the disk named imageName.
      */
-    static void putTxtFileClearHighBit(String imageName, Name name) throws IOException, DiskException {
+    static void putTxtFileClearHighBit(String imageName, Name name, InputStream inputStream) throws IOException, DiskException {
         // Order on the stream is important to ensure the translated newlines have the high bit done appropriately
-        putFile(imageName, name, "TXT", "0", TranslatorStream.builder(System.in).lfToCr().clearHighBit().get());
+        putFile(imageName, name, "TXT", "0", TranslatorStream.builder(inputStream).lfToCr().clearHighBit().get());
     }
 
 	/**
@@ -307,8 +345,8 @@ public class ac {
 
 		ByteArrayOutputStream buf = new ByteArrayOutputStream();
 		StreamUtil.copy(inputStream, buf);
-		Disk disk = new Disk(imageName);
-		FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+		Disk disk = openDisk(imageName);
+		FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 		if (formattedDisks == null)
 			System.out.println("Dude, formattedDisks is null!");
 		FormattedDisk formattedDisk = formattedDisks[0];
@@ -321,7 +359,7 @@ public class ac {
 				if (entry.needsAddress()) {
 					entry.setAddress(stringToInt(address));
 				}
-				formattedDisk.save();
+				saveDisk(disk);
 			} else {
 				throw new IOException("Unable to create entry...");
 			}
@@ -349,13 +387,13 @@ public class ac {
 	 * Put &lt;stdin> into the file named fileName on the disk named imageName;
 	 * Assume an DOS 3.x style four-byte header with start address in bytes 0-1.
 	 */
-	static void putDOS(String imageName, Name name, String fileType)
+	static void putDOS(String imageName, Name name, String fileType, InputStream inputStream)
 		throws IOException, DiskException {
 
 		byte[] header = new byte[4];
-		if (System.in.read(header, 0, 4) == 4) {
+		if (inputStream.read(header, 0, 4) == 4) {
 			int address = AppleUtil.getWordValue(header, 0);
-			putFile(imageName, name, fileType, Integer.toString(address));
+			putFile(imageName, name, fileType, Integer.toString(address), inputStream);
 		}
 	}
 	
@@ -395,9 +433,9 @@ public class ac {
 	 * Interpret &lt;stdin> as a GEOS file and place it on the disk named imageName.
 	 * This would only make sense for a ProDOS-formatted disk.
 	 */
-	static void putGEOS(String imageName)
+	static void putGEOS(String imageName, InputStream inputStream)
 		throws IOException, DiskException {
-		putFile(imageName, new Name("GEOS-Should Be ProDOS"), "GEO", "0"); //$NON-NLS-2$ $NON-NLS-3$
+		putFile(imageName, new Name("GEOS-Should Be ProDOS"), "GEO", "0", inputStream); //$NON-NLS-2$ $NON-NLS-3$
 	}
 
 	/**
@@ -405,16 +443,16 @@ public class ac {
 	 */
 	static void deleteFile(String imageName, String fileName)
 		throws IOException, DiskException {
-		Disk disk = new Disk(imageName);
+		Disk disk = openDisk(imageName);
 		Name name = new Name(fileName);
 		if (!disk.isSDK() && !disk.isDC42()) {
-			FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+			FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 			for (int i = 0; i < formattedDisks.length; i++) {
 				FormattedDisk formattedDisk = formattedDisks[i];
 				FileEntry entry = name.getEntry(formattedDisk);
 				if (entry != null) {
 					entry.delete();
-					disk.save();
+					saveDisk(disk);
 				} else {
 					System.err.println(textBundle.format(
 							"CommandLineNoMatchMessage", name.fullName)); //$NON-NLS-1$
@@ -431,9 +469,9 @@ public class ac {
 	 */
 	static void getFile(String imageName, String fileName, boolean filter, PrintStream out)
 		throws IOException, DiskException {
-		Disk disk = new Disk(imageName);
+		Disk disk = openDisk(imageName);
 		Name name = new Name(fileName);
-		FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+		FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 		if (out == null)
 			out = System.out;
 		for (int i = 0; i < formattedDisks.length; i++) {
@@ -444,11 +482,11 @@ public class ac {
 					FileFilter ff = entry.getSuggestedFilter();
 					if (ff instanceof BinaryFileFilter)
 						ff = new HexDumpFileFilter();
-					byte[] buf = ff.filter(entry);
-					out.write(buf, 0, buf.length);
+					ff.filter(entry, out);
 				} else {
-					byte[] buf = entry.getFileData();
-					out.write(buf, 0, buf.length);
+					try (InputStream in = entry.getFileDataStream()) {
+						in.transferTo(out);
+					}
 				}
 			} else {
 				System.err.println(textBundle.format(
@@ -461,7 +499,7 @@ public class ac {
 	 * Extract all files in the image according to their respective filetype.
 	 */
 	static void getFiles(String imageName, String directory) throws IOException, DiskException {
-		Disk disk = new Disk(imageName);
+		Disk disk = openDisk(imageName);
 		if ((directory != null) && (directory.length() > 0)) {
 			// Add a final directory separator if the user didn't supply one
 			if (!directory.endsWith(File.separator))
@@ -469,7 +507,7 @@ public class ac {
 		} else {
 			directory = "."+File.separator;
 		}
-		FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+		FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 		for (int i = 0; i < formattedDisks.length; i++) { 
 			FormattedDisk formattedDisk = formattedDisks[i];
 			writeFiles(formattedDisk.getFiles(), directory);
@@ -529,7 +567,7 @@ public class ac {
 	static void showDirectory(DirectoryLister dl, String[] args) throws IOException {
 		for (String filename : Arrays.copyOfRange(args, 1, args.length)) {
 			try {
-				dl.list(filename);
+				dl.list(openDisk(filename));
 			} catch (DiskException e) {
 				throw new IOException(e);
 			} catch (RuntimeException e) {
@@ -544,8 +582,8 @@ public class ac {
 	 */
 	static void getDiskInfo(String[] args) throws IOException, DiskException {
 		for (int d = 1; d < args.length; d++) {
-			Disk disk = new Disk(args[d]);
-			FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+			Disk disk = openDisk(args[d]);
+			FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 			for (int i = 0; i < formattedDisks.length; i++) {
 				FormattedDisk formattedDisk = formattedDisks[i];
 				for (DiskInformation diskinfo : formattedDisk.getDiskInformation()) {
@@ -570,15 +608,15 @@ public class ac {
 	 */
 	static void setFileLocked(String imageName, Name name,
 		boolean lockState) throws IOException, DiskException {
-		Disk disk = new Disk(imageName);
+		Disk disk = openDisk(imageName);
 		if (!disk.isSDK() && !disk.isDC42()) {
-			FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+			FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 			for (int i = 0; i < formattedDisks.length; i++) {
 				FormattedDisk formattedDisk = formattedDisks[i];
 				FileEntry entry = name.getEntry(formattedDisk);
 				if (entry != null) {
 					entry.setLocked(lockState);
-					disk.save();
+					saveDisk(disk);
 				} else {
 					System.err.println(textBundle.format(
 						"CommandLineNoMatchMessage", name.fullName)); //$NON-NLS-1$
@@ -595,12 +633,12 @@ public class ac {
 	 */
 	public static void setDiskName(String imageName, String volName)
 		throws IOException, DiskException {
-		Disk disk = new Disk(imageName);
+		Disk disk = openDisk(imageName);
 		if (!disk.isSDK() && !disk.isDC42()) {
-			FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+			FormattedDisk[] formattedDisks = getFormattedDisks(disk);
 			FormattedDisk formattedDisk = formattedDisks[0];
 			formattedDisk.setDiskName(volName);
-			formattedDisks[0].save();
+			saveDisk(disk);
 		}
 		else
 			throw new IOException(textBundle.get("CommandLineSDKReadOnly"));
@@ -614,7 +652,7 @@ public class ac {
 		ByteArrayImageLayout layout = new ByteArrayImageLayout(imageSize);
 		ImageOrder imageOrder = new DosOrder(layout);
 		FormattedDisk[] disks = DosFormatDisk.create(fileName, imageOrder);
-		disks[0].save();
+		saveNewDisk(disks);
 	}
 
 	/**
@@ -625,7 +663,7 @@ public class ac {
 		ByteArrayImageLayout layout = new ByteArrayImageLayout(imageSize);
 		ImageOrder imageOrder = new ProdosOrder(layout);
 		FormattedDisk[] disks = PascalFormatDisk.create(fileName, volName, imageOrder);
-		disks[0].save();
+		saveNewDisk(disks);
 	}
 
 	/**
@@ -636,7 +674,7 @@ public class ac {
 		ByteArrayImageLayout layout = new ByteArrayImageLayout(imageSize);
 		ImageOrder imageOrder = new ProdosOrder(layout);
 		FormattedDisk[] disks = ProdosFormatDisk.create(fileName, volName, imageOrder);
-		disks[0].save();
+		saveNewDisk(disks);
 	}
 
 	/**
@@ -662,7 +700,93 @@ public class ac {
 		throws IOException {
 		Disk disk = new Disk(shrinkName, imageSize);
 		disk.setFilename(imageName);
-		disk.save();
+		BatchSession session = BatchSession.current();
+		if (session == null) {
+			disk.save();
+		} else {
+			session.add(disk);
+		}
+	}
+
+	/**
+	 * Run the ac commands in a script as one batch.  Each image is opened
+	 * once and only written after every command has succeeded; if any
+	 * command fails, no image is changed.  The script is read from the named
+	 * file, or from &lt;stdin&gt; if scriptName is null or "-".
+	 * <p>
+	 * Each line is one command, written as it would be on the command line.
+	 * Arguments containing spaces may be quoted, blank lines and lines
+	 * starting with '#' are ignored, and "&lt; file" supplies the input of
+	 * commands that would otherwise read &lt;stdin&gt;.
+	 */
+	static void batch(String scriptName) throws IOException, DiskException {
+		List<String> lines;
+		if (scriptName == null || "-".equals(scriptName)) { //$NON-NLS-1$
+			BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+			lines = reader.lines().collect(Collectors.toList());
+		} else {
+			lines = Files.readAllLines(Paths.get(scriptName));
+		}
+		// Check the whole script before anything is done
+		List<BatchCommand> commands = new ArrayList<>();
+		for (int i = 0; i < lines.size(); i++) {
+			BatchCommand command = BatchCommand.parse(i + 1, lines.get(i));
+			if (command != null) {
+				commands.add(command);
+			}
+		}
+		BatchSession session = BatchSession.begin();
+		try {
+			for (BatchCommand command : commands) {
+				command.execute();
+			}
+			session.commit();
+		} finally {
+			session.rollback();
+		}
+	}
+
+	/**
+	 * Open the disk image named imageName.  Within a batch, the image is
+	 * only opened once.
+	 */
+	static Disk openDisk(String imageName) throws IOException {
+		BatchSession session = BatchSession.current();
+		return (session == null) ? new Disk(imageName) : session.open(imageName);
+	}
+
+	/**
+	 * Get the formatted disks of an image.
+	 */
+	static FormattedDisk[] getFormattedDisks(Disk disk) throws DiskUnrecognizedException {
+		BatchSession session = BatchSession.current();
+		return (session == null) ? disk.getFormattedDisks() : session.getFormattedDisks(disk);
+	}
+
+	/**
+	 * Save a changed disk image.  Within a batch, the image is saved when
+	 * the batch completes.
+	 */
+	static void saveDisk(Disk disk) throws IOException {
+		BatchSession session = BatchSession.current();
+		if (session == null) {
+			disk.save();
+		} else {
+			session.changed(disk);
+		}
+	}
+
+	/**
+	 * Save a newly created disk image.  Within a batch, the image is saved
+	 * when the batch completes.
+	 */
+	static void saveNewDisk(FormattedDisk[] disks) throws IOException {
+		BatchSession session = BatchSession.current();
+		if (session == null) {
+			disks[0].save();
+		} else {
+			session.add(disks);
+		}
 	}
 
 	static int stringToInt(String s) {
@@ -697,63 +821,30 @@ public class ac {
 			if (s.startsWith("/")) {
 				fullName = s.substring(1, s.length());
 			}
-			this.path = s.split("/");
+			this.path = fullName.split("/");
 			this.name = path[path.length - 1];
 		}
 		
 		public FileEntry getEntry(FormattedDisk formattedDisk) throws DiskException {
-			List<FileEntry> files = formattedDisk.getFiles();
-			FileEntry entry = null;
-			for (int i = 0; i < path.length - 1; i++) {
-				String dirName = path[i];
-				for (int j = 0; j < files.size(); j++) {
-					entry = (FileEntry) files.get(j);
-					String entryName = entry.getFilename();
-					if (entry.isDirectory() && dirName.equalsIgnoreCase(entryName)) {
-						files = ((DirectoryEntry) entry).getFiles();
-					}
-				}
-			}
-			for (int i = 0; i < files.size(); i++) {
-				entry = (FileEntry) files.get(i);
-				String entryName = entry.getFilename();
-				if (!entry.isDeleted() && name.equalsIgnoreCase(entryName)) {
-					return entry;
-				}
-			}
-			return null;
+			return formattedDisk.getFileByPath(fullName);
 		}
 		
 		public FileEntry createEntry(FormattedDisk formattedDisk) throws DiskException {
 			if (path.length == 1) {
 				return formattedDisk.createFile();
 			}
-			List<FileEntry> files = formattedDisk.getFiles();
-			DirectoryEntry dir = null, parentDir = null;
+			DirectoryEntry dir = null, parentDir = formattedDisk;
 			for (int i = 0; i < path.length - 1; i++) {
 				String dirName = path[i];
-				dir = null;
-				for (int j = 0; j < files.size(); j++) {
-					FileEntry entry = (FileEntry) files.get(j);
-					String entryName = entry.getFilename();
-					if (!entry.isDeleted() && entry.isDirectory() && dirName.equalsIgnoreCase(entryName)) {
-						dir = (DirectoryEntry) entry;
-						parentDir = dir;
-						files = dir.getFiles();
-					}
-				}
-				if (dir == null) {
-					if (parentDir != null) {
-						// If there's a parent directory in the mix, add
-						// the new child directory to that.
-						dir = parentDir.createDirectory(dirName);
-						parentDir = dir;
-					} else {
-						// Add the directory to the root of the filesystem
-						dir = formattedDisk.createDirectory(dirName);
-						parentDir = dir;
-					}
+				FileEntry entry = formattedDisk.getFile(parentDir, dirName);
+				if (entry != null && entry.isDirectory()) {
+					dir = (DirectoryEntry) entry;
+				} else {
+					// Add the new directory to the parent directory, which
+					// is the root of the filesystem to begin with
+					dir = parentDir.createDirectory(dirName);
 				}
+				parentDir = dir;
 			}
 			if (dir != null) {
 				return dir.createFile();
@@ -764,4 +855,100 @@ public class ac {
 			}
 		}
 	}
+
+	/**
+	 * A single line of a batch script.
+	 */
+	static class BatchCommand {
+		private int lineNumber;
+		private String[] args;
+		private String input;
+
+		private BatchCommand(int lineNumber, String[] args, String input) {
+			this.lineNumber = lineNumber;
+			this.args = args;
+			this.input = input;
+		}
+
+		/**
+		 * Parse a line of a batch script, answering null for blank lines
+		 * and comments.  Unknown commands are reported here, so a script
+		 * with a mistake in it is rejected before any command has run.
+		 */
+		static BatchCommand parse(int lineNumber, String line) throws IOException {
+			List<String> words = new ArrayList<>();
+			String input = null;
+			StringBuilder word = null;
+			boolean quoted = false;
+			boolean redirect = false;
+			for (int i = 0; i <= line.length(); i++) {
+				char ch = (i < line.length()) ? line.charAt(i) : ' ';
+				if (ch == '"' && (quoted || word == null)) {
+					quoted = !quoted;
+					if (word == null) word = new StringBuilder();
+				} else if (quoted) {
+					word.append(ch);
+				} else if (Character.isWhitespace(ch)) {
+					if (word != null) {
+						if (redirect) {
+							input = word.toString();
+							redirect = false;
+						} else {
+							words.add(word.toString());
+						}
+						word = null;
+					}
+				} else if (ch == '<' && word == null && !redirect) {
+					redirect = true;
+				} else if (ch == '#' && word == null && words.isEmpty() && !redirect) {
+					break;
+				} else {
+					if (word == null) word = new StringBuilder();
+					word.append(ch);
+				}
+			}
+			if (quoted || redirect) {
+				throw new IOException(textBundle.format("CommandLineBatchSyntax", //$NON-NLS-1$
+						lineNumber, line));
+			}
+			if (words.isEmpty()) {
+				return null;
+			}
+			String command = words.get(0).toLowerCase();
+			if ("-batch".equals(command)) { //$NON-NLS-1$
+				throw new IOException(textBundle.format("CommandLineBatchFailed", //$NON-NLS-1$
+						lineNumber, textBundle.get("CommandLineBatchNested"))); //$NON-NLS-1$
+			}
+			if (!BATCH_COMMANDS.contains(command)) {
+				throw new IOException(textBundle.format("CommandLineBatchUnknown", //$NON-NLS-1$
+						lineNumber, words.get(0)));
+			}
+			return new BatchCommand(lineNumber, words.toArray(new String[0]), input);
+		}
+
+		/**
+		 * Run this command within the current batch.
+		 */
+		void execute() throws IOException, DiskException {
+			boolean known;
+			InputStream stdin = System.in;
+			try {
+				if (input != null) {
+					stdin = new FileInputStream(input);
+				}
+				known = ac.execute(args, stdin);
+			} catch (IOException | DiskException | RuntimeException ex) {
+				throw new IOException(textBundle.format("CommandLineBatchFailed", //$NON-NLS-1$
+						lineNumber, ex.getLocalizedMessage()), ex);
+			} finally {
+				if (stdin != System.in) {
+					stdin.close();
+				}
+			}
+			if (!known) {
+				throw new IOException(textBundle.format("CommandLineBatchUnknown", //$NON-NLS-1$
+						lineNumber, args[0]));
+			}
+		}
+	}
 }
@@ -0,0 +1,151 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it 
+ * under the terms of the GNU General Public License as published by the 
+ * Free Software Foundation; either version 2 of the License, or (at your 
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License 
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along 
+ * with this program; if not, write to the Free Software Foundation, Inc., 
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.ui;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+
+public class BatchSessionTest {
+	@Test
+	public void testBatchSavesOnce() throws IOException, DiskException {
+		File image = tempFile(".po");
+		File input = tempFile(".bin");
+		Files.write(input.toPath(), new byte[] { 1, 2, 3, 4, 5 });
+		File script = script(
+				"# create the image and put two files on it",
+				"-pro140 " + image + " BATCH",
+				"-p " + image + " FIRST BIN 0x0800 < " + input,
+				"-p \"" + image + "\" SECOND BIN 0x0900 <" + input,
+				"-k " + image + " FIRST",
+				"",
+				"-d " + image + " SECOND");
+		ac.batch(script.getPath());
+
+		FormattedDisk disk = new Disk(image.getPath()).getFormattedDisks()[0];
+		FileEntry first = disk.getFile("FIRST");
+		assertTrue(first.isLocked());
+		assertEquals(0x0800, first.getAddress());
+		assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, first.getFileData());
+		assertNull(disk.getFile("SECOND"));
+		assertNull(BatchSession.current());
+	}
+
+	@Test
+	public void testBatchIsAllOrNothing() throws IOException, DiskException {
+		File image = tempFile(".po");
+		ac.createProDisk(image.getPath(), "BATCH", Disk.APPLE_140KB_DISK);
+		byte[] original = Files.readAllBytes(image.toPath());
+		File input = tempFile(".bin");
+		Files.write(input.toPath(), new byte[100]);
+		File script = script(
+				"-p " + image + " FIRST BIN < " + input,
+				"-n " + image + " RENAMED",
+				"-p " + image + " SECOND BIN < " + input + ".missing");
+		try {
+			ac.batch(script.getPath());
+			fail("The batch should fail on line 3");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().startsWith("Line 3:"));
+		}
+		assertArrayEquals(original, Files.readAllBytes(image.toPath()));
+		assertNull(BatchSession.current());
+	}
+
+	@Test
+	public void testUnknownCommand() throws IOException, DiskException {
+		File script = script("-nonsense image.po");
+		try {
+			ac.batch(script.getPath());
+			fail("The batch should not accept an unknown command");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().contains("-nonsense"));
+		}
+	}
+
+	@Test
+	public void testUnknownCommandIsFoundFirst() throws IOException, DiskException {
+		File image = tempFile(".po");
+		ac.createProDisk(image.getPath(), "BATCH", Disk.APPLE_140KB_DISK);
+		File directory = Files.createTempDirectory("deleteme-").toFile();
+		directory.deleteOnExit();
+		File output = new File(directory, "listing.txt");
+		File script = script(
+				"-e " + image + " NOFILE " + output,
+				"-nonsense " + image);
+		try {
+			ac.batch(script.getPath());
+			fail("The batch should not accept an unknown command");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().startsWith("Line 2:"));
+		}
+		assertFalse(output.exists());
+		assertNull(BatchSession.current());
+	}
+
+	@Test
+	public void testRestore() throws IOException {
+		File replaced = tempFile(".po");
+		File backup = tempFile(".po");
+		File created = tempFile(".po");
+		Files.write(replaced.toPath(), new byte[] { 2 });
+		Files.write(backup.toPath(), new byte[] { 1 });
+		Map<File,File> images = new LinkedHashMap<>();
+		images.put(replaced, backup);
+		images.put(created, null);
+		IOException cause = new IOException("failed");
+
+		BatchSession.restore(images, cause);
+
+		assertArrayEquals(new byte[] { 1 }, Files.readAllBytes(replaced.toPath()));
+		assertFalse(backup.exists());
+		assertFalse(created.exists());
+		assertEquals(0, cause.getSuppressed().length);
+	}
+
+	protected File script(String... lines) throws IOException {
+		File script = tempFile(".txt");
+		Files.write(script.toPath(), Arrays.asList(lines));
+		return script;
+	}
+
+	protected File tempFile(String suffix) throws IOException {
+		File file = File.createTempFile("deleteme-", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+}
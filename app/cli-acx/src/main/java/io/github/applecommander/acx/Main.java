@@ -19,6 +19,9 @@
  */
 package io.github.applecommander.acx;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
@@ -31,9 +34,11 @@ import io.github.applecommander.acx.command.CreateDiskCommand;
 import io.github.applecommander.acx.command.DeleteCommand;
 import io.github.applecommander.acx.command.DiskMapCommand;
 import io.github.applecommander.acx.command.DumpCommand;
+import io.github.applecommander.acx.command.ExportAllCommand;
 import io.github.applecommander.acx.command.ExportCommand;
 import io.github.applecommander.acx.command.FindDuplicateFilesCommand;
 import io.github.applecommander.acx.command.ImportCommand;
+import io.github.applecommander.acx.command.IndexCommand;
 import io.github.applecommander.acx.command.InfoCommand;
 import io.github.applecommander.acx.command.ListCommand;
 import io.github.applecommander.acx.command.LockCommand;
@@ -42,8 +47,11 @@ import io.github.applecommander.acx.command.ReadCommand;
 import io.github.applecommander.acx.command.RenameDiskCommand;
 import io.github.applecommander.acx.command.RenameFileCommand;
 import io.github.applecommander.acx.command.RmdirCommand;
+import io.github.applecommander.acx.command.ServeCommand;
 import io.github.applecommander.acx.command.UnlockCommand;
 import io.github.applecommander.acx.command.WriteCommand;
+import io.github.applecommander.acx.serve.DiskClient;
+import io.github.applecommander.acx.serve.DiskServer;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.HelpCommand;
@@ -65,10 +73,12 @@ import picocli.CommandLine.Option;
     		DeleteCommand.class,
     		DiskMapCommand.class,
     		DumpCommand.class,
+            ExportAllCommand.class,
             ExportCommand.class,
             FindDuplicateFilesCommand.class,
             HelpCommand.class,
             ImportCommand.class,
+            IndexCommand.class,
             InfoCommand.class,
             ListCommand.class,
             LockCommand.class,
@@ -77,6 +87,7 @@ import picocli.CommandLine.Option;
             RenameFileCommand.class,
             RenameDiskCommand.class,
             RmdirCommand.class,
+            ServeCommand.class,
             UnlockCommand.class,
             WriteCommand.class
     })
@@ -115,17 +126,44 @@ public class Main {
     }
 
     public static void main(String[] args) {
-        CommandLine cmd = new CommandLine(new Main());
-        cmd.setExecutionExceptionHandler(new PrintExceptionMessageHandler());
-        cmd.setCaseInsensitiveEnumValuesAllowed(true);
-        if (args.length == 0) {
-            cmd.usage(System.out);
-            System.exit(1);
+        if (DiskClient.isEnabled() && args.length > 0 && !"serve".equals(args[0])) {
+            OptionalInt exitCode = DiskClient.forward(DiskServer.getDefaultStateFile(), args);
+            if (exitCode.isPresent()) {
+                System.exit(exitCode.getAsInt());
+            }
         }
-        
-        LOG.info(() -> String.format("Log level set to %s.", Logger.getGlobal().getLevel()));
-        int exitCode = cmd.execute(args);
+        int exitCode = execute(args);
         LOG.fine("Exiting with code " + exitCode);
         System.exit(exitCode);
     }
+
+    /** Run one command line and answer the exit code; also used for each request to 'acx serve'. */
+    public static int execute(String... args) {
+        // Options are static or global, so reset them in case of a previous command; the
+        // log levels in effect (such as those of 'acx serve' itself) are restored afterwards
+        enableStackTrace = false;
+        Logger rootLogger = LogManager.getLogManager().getLogger("");
+        Level rootLevel = rootLogger.getLevel();
+        Map<Handler,Level> handlerLevels = new HashMap<>();
+        for (Handler handler : rootLogger.getHandlers()) {
+            handlerLevels.put(handler, handler.getLevel());
+        }
+        try {
+            setAllLogLevels(Level.WARNING);
+
+            CommandLine cmd = new CommandLine(new Main());
+            cmd.setExecutionExceptionHandler(new PrintExceptionMessageHandler());
+            cmd.setCaseInsensitiveEnumValuesAllowed(true);
+            if (args.length == 0) {
+                cmd.usage(System.out);
+                return 1;
+            }
+            
+            LOG.info(() -> String.format("Log level set to %s.", Logger.getGlobal().getLevel()));
+            return cmd.execute(args);
+        } finally {
+            rootLogger.setLevel(rootLevel);
+            handlerLevels.forEach(Handler::setLevel);
+        }
+    }
 }
@@ -19,6 +19,8 @@
  */
 package io.github.applecommander.acx.base;
 
+import io.github.applecommander.acx.serve.DiskCache;
+
 public abstract class ReadWriteDiskCommandOptions extends ReadOnlyDiskImageCommandOptions {
     @Override
     public Integer call() throws Exception {
@@ -27,6 +29,10 @@ public abstract class ReadWriteDiskCommandOptions extends ReadOnlyDiskImageComma
         if (returnCode == 0) {
             saveDisk(disk);
         }
+        DiskCache cache = DiskCache.getActive();
+        if (cache != null) {
+            cache.update(disk);
+        }
         
         return returnCode;
     }
@@ -24,6 +24,8 @@ import java.util.function.Consumer;
 
 import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.compare.ComparisonResult;
+import com.webcodepro.applecommander.storage.compare.ContentHashCache;
+import com.webcodepro.applecommander.storage.compare.ContentHasher;
 import com.webcodepro.applecommander.storage.compare.DiskDiff;
 
 import io.github.applecommander.acx.base.ReadOnlyDiskImageCommandOptions;
@@ -44,11 +46,23 @@ public class CompareCommand extends ReadOnlyDiskImageCommandOptions {
     @Option(names = { "-l", "--limit" }, description = "Set limit to messages displayed.")
     private Optional<Integer> limit = Optional.empty();
 
+    @Option(names = "--cache", negatable = true, description = "Remember file content hashes between runs (default = true).")
+    private boolean cacheFlag = true;
+
+    @Option(names = "--parallel", negatable = true, description = "Compare blocks or sectors using all processors (default = true).")
+    private boolean parallelFlag = true;
+
     @Override
     public int handleCommand() throws Exception {
-        DiskDiff.Builder builder = DiskDiff.create(disk, disk2);
+        ContentHashCache cache = cacheFlag ? ContentHashCache.load() : null;
+        DiskDiff.Builder builder = DiskDiff.create(disk, disk2)
+                .withContentHasher(new ContentHasher().cache(cache))
+                .parallel(parallelFlag);
         strategySelection.strategy.accept(builder);
         ComparisonResult result = builder.compare();
+        if (cache != null) {
+            cache.save();
+        }
         
         if (result.getDifferenceCount() == 0) {
             System.out.println("The disks match.");
@@ -20,17 +20,23 @@
 package io.github.applecommander.acx.command;
 
 import java.io.File;
+import java.util.Optional;
 
 import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.physical.ImageOrder;
 
+import io.github.applecommander.acx.OrderType;
 import io.github.applecommander.acx.base.ReusableCommandOptions;
+import picocli.CommandLine.ArgGroup;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 @Command(name = "convert", description = 
             "Uncompress a ShrinkIt or Binary II file; "
-            + "or convert a DiskCopy 4.2 image into a ProDOS disk image.")
+            + "or convert a DiskCopy 4.2 image into a ProDOS disk image; "
+            + "or copy a disk image into another sector ordering.")
 public class ConvertCommand extends ReusableCommandOptions {
     @Option(names = { "-d", "--disk" }, description = "Image to create [$ACX_DISK_NAME].", required = true,
             defaultValue = "${ACX_DISK_NAME}")
@@ -39,6 +45,9 @@ public class ConvertCommand extends ReusableCommandOptions {
     @Option(names = { "-f", "--force" }, description = "Allow existing disk image to be replaced.")
     private boolean overwriteFlag;
 
+    @ArgGroup(heading = "%nDisk Sector Ordering Selection:%n")
+    private OrderSelection orderSelection = new OrderSelection();
+
     @Parameters(description = "Archive to convert.", arity = "1")
     private String archiveName;
 
@@ -50,9 +59,46 @@ public class ConvertCommand extends ReusableCommandOptions {
         }
         
         Disk disk = new Disk(archiveName);
+        if (orderSelection.get().isPresent()) {
+            FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+            if (formattedDisks == null) {
+                throw new RuntimeException("Unable to identify the disk format; cannot change sector ordering.");
+            }
+            // Every volume shares the same image, so converting the first converts them all.
+            FormattedDisk formattedDisk = formattedDisks[0];
+            OrderType orderType = orderSelection.get().get();
+            // Size by blocks since a nibble image is larger than the data it holds.
+            int size = formattedDisk.getImageOrder().getBlocksOnDevice() * Disk.BLOCK_SIZE;
+            ImageOrder order = orderType.createImageOrder(size);
+            // A nibble image needs its address and data fields laid down before sectors can be written.
+            order.format();
+            formattedDisk.changeImageOrder(order);
+            disk = formattedDisk;
+        }
         disk.setFilename(diskName);
         saveDisk(disk);
                     
         return 0;
     }
+    
+    private static class OrderSelection {
+        private Optional<OrderType> orderType = Optional.empty();
+        
+        public Optional<OrderType> get() {
+            return orderType;
+        }
+
+        @Option(names = { "--dos-order" }, description = "DOS ordered sectors.")
+        public void selectDosOrder(boolean flag) {
+            orderType = Optional.of(OrderType.DOS);
+        }
+        @Option(names = { "--nibble-order" }, description = "DOS ordered, nibble encoded sectors.")
+        public void selectNibbleOrder(boolean flag) {
+            orderType = Optional.of(OrderType.NIBBLE);
+        }
+        @Option(names = { "--prodos-order" }, description = "ProDOS ordered sectors/blocks.")
+        public void selectProdosOrder(boolean flag) {
+            orderType = Optional.of(OrderType.PRODOS);
+        }
+    }
 }
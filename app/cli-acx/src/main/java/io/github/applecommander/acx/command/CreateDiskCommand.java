@@ -100,8 +100,9 @@ public class CreateDiskCommand extends ReusableCommandOptions {
     	}
     	
     	if (formatSource != null) {
-    		Disk systemSource = new Disk(formatSource);
-    		systemType.copySystem(disks[0], systemSource.getFormattedDisks()[0]);
+    		try (Disk systemSource = new Disk(formatSource)) {
+    			systemType.copySystem(disks[0], systemSource.getFormattedDisks()[0]);
+    		}
     	}
     	
     	saveDisk(disks[0]);
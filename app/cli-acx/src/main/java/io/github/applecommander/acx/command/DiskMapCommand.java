@@ -23,7 +23,7 @@ import java.util.Arrays;
 import java.util.function.Function;
 
 import com.webcodepro.applecommander.storage.FormattedDisk;
-import com.webcodepro.applecommander.storage.FormattedDisk.DiskUsage;
+import com.webcodepro.applecommander.storage.UsageBitmap;
 
 import io.github.applecommander.acx.base.ReadOnlyDiskImageCommandOptions;
 import picocli.CommandLine.Command;
@@ -61,17 +61,21 @@ public class DiskMapCommand extends ReadOnlyDiskImageCommandOptions {
         header2(width); // 1's position
         header3(width); // divider
         
-        DiskUsage diskUsage = formattedDisk.getDiskUsage();
+        // Lay out the whole map in one pass over the runs of free and used units
+        char[] map = new char[width * height];
+        Arrays.fill(map, ' ');
+        UsageBitmap bitmap = formattedDisk.getUsageBitmap();
+        if (bitmap != null) {
+            bitmap.forEachExtent((start, count, free) -> {
+                int end = Math.min(start + count, map.length);
+                if (start < end) {
+                    Arrays.fill(map, start, end, free ? '.' : '*');
+                }
+            });
+        }
         for (int y=0; y<height; y++) {
             System.out.printf("%5d|", leftNumFn.apply(y));
-            for (int x=0; x<width; x++) {
-                if (diskUsage.hasNext()) {
-                    diskUsage.next();
-                    System.out.print(diskUsage.isUsed() ? '*' : '.');
-                } else {
-                    System.out.print(" ");
-                }
-            }
+            System.out.print(new String(map, y * width, width));
             System.out.printf("|%d", rightNumFn.apply(y));
             System.out.println();
         }
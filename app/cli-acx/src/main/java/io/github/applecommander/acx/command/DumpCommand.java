@@ -19,13 +19,15 @@
  */
 package io.github.applecommander.acx.command;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.Optional;
-import java.util.function.BiFunction;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
-import com.webcodepro.applecommander.util.AppleUtil;
+import com.webcodepro.applecommander.util.HexDumpWriter;
 
 import io.github.applecommander.acx.arggroup.CoordinateSelection;
 import io.github.applecommander.acx.base.ReadOnlyDiskImageCommandOptions;
@@ -49,28 +51,37 @@ public class DumpCommand extends ReadOnlyDiskImageCommandOptions {
     @Override
     public int handleCommand() throws Exception {
         byte[] data = options.coordinate.read(disk);
-        System.out.println(output.format(options, data));
+        output.write(options, data);
+        System.out.println();
         return 0;
     }
     
     public static class OutputSelection {
-        private BiFunction<Options,byte[],String> fn = this::formatHexDump;
-        public String format(Options options, byte[] data) {
-            return fn.apply(options, data);
+        private BiConsumer<Options,byte[]> fn = this::writeHexDump;
+        public void write(Options options, byte[] data) {
+            fn.accept(options, data);
         }
         
         @Option(names = "--hex", description = "Hex dump.")
         public void selectHexDump(boolean flag) {
-            fn = this::formatHexDump;
+            fn = this::writeHexDump;
         }
         
         @Option(names = "--disassembly", description = "Disassembly.")
         public void selectDisassembly(boolean flag) {
-            fn = this::formatDisassembly;
+            fn = this::writeDisassembly;
         }
         
-        public String formatHexDump(Options options, byte[] data) {
-            return AppleUtil.getHexDump(options.address, data);
+        public void writeHexDump(Options options, byte[] data) {
+            try {
+                new HexDumpWriter(System.out).dump(options.address, data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        public void writeDisassembly(Options options, byte[] data) {
+            System.out.print(formatDisassembly(options, data));
         }
         
         public String formatDisassembly(Options options, byte[] data) {
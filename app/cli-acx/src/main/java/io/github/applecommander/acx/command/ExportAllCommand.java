@@ -0,0 +1,195 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.command;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.FileFilter;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.util.OutputFileNames;
+import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
+import com.webcodepro.applecommander.util.filestreamer.FileTuple;
+import com.webcodepro.applecommander.util.filestreamer.TypeOfFile;
+
+import io.github.applecommander.acx.base.ReusableCommandOptions;
+import io.github.applecommander.acx.command.ExportCommand.FileExtractMethods;
+import io.github.applecommander.acx.fileutil.DiskImageWorkers;
+import io.github.applecommander.acx.fileutil.DiskImageWorkers.ImageTask;
+import picocli.CommandLine.ArgGroup;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+@Command(name = "export-all", description = {
+            "Export files from a collection of disk images.",
+            "Each image is written to its own directory under the output directory, named after "
+                + "the image's path (with a numbered suffix when two images share a path); "
+                + "images holding more than one volume get a directory per volume." })
+public class ExportAllCommand extends ReusableCommandOptions {
+    private static Logger LOG = Logger.getLogger(ExportAllCommand.class.getName());
+
+    @Parameters(arity = "1..*", description = "Disk image(s) or directories of disk images to export.")
+    private List<Path> paths = new ArrayList<>();
+
+    @ArgGroup(exclusive = true, heading = "%nFile extract methods:%n")
+    private FileExtractMethods extraction = new FileExtractMethods();
+
+    @Option(names = { "-o", "--output" }, required = true, description = "Directory to extract to.")
+    private File outputDirectory;
+
+    @Option(names = { "--deleted" }, description = "Include deleted files (use at your own risk!)")
+    private boolean deletedFlag;
+
+    @Option(names = "--globs", defaultValue = "*", split = ",", description = "File glob(s) to extract.")
+    private List<String> globs = new ArrayList<String>();
+
+    @Option(names = { "-t", "--threads" }, description = "Number of disk images to export at once (default = processors).")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--queue", description = "Number of files that may wait to be written (default = ${DEFAULT-VALUE}).")
+    private int queueSize = 256;
+
+    private Set<String> directoriesUsed = new HashSet<>();
+    private AtomicInteger imageCount = new AtomicInteger();
+    private AtomicInteger fileCount = new AtomicInteger();
+    private AtomicInteger failureCount = new AtomicInteger();
+
+    @Override
+    public int handleCommand() throws Exception {
+        // Files are written on this thread only, in the order each image produces them
+        DiskImageWorkers<ExportedFile> workers = new DiskImageWorkers<>(threads, queueSize);
+        workers.run(paths, this::plan, this::write);
+        failureCount.addAndGet(workers.getFailureCount());
+
+        System.err.printf("Exported %,d file(s) from %,d disk image(s); %,d failure(s).\n",
+                fileCount.get(), imageCount.get(), failureCount.get());
+        return failureCount.get() == 0 ? 0 : 1;
+    }
+
+    /**
+     * Choose the directory an image is exported to, named after the image's path under
+     * the argument it was found in.  Different images can map to the same directory
+     * (such as 'a/x.dsk' and 'b/x.dsk'); images are planned one at a time in a fixed
+     * order, so the later ones get a numbered suffix ('x.dsk-2') the same way every run.
+     */
+    private ImageTask<ExportedFile> plan(Path root, Path image) {
+        String name = root.relativize(image.toAbsolutePath()).toString();
+        File directory = new File(outputDirectory, name);
+        // Compare without case, since the output may be on a case-insensitive file system
+        int n = 1;
+        while (!directoriesUsed.add(directory.getPath().toLowerCase(Locale.ROOT))) {
+            n += 1;
+            directory = new File(outputDirectory, name + "-" + n);
+        }
+        if (n > 1) {
+            File renamed = directory;
+            LOG.warning(() -> String.format("Exporting '%s' to '%s' as another image uses the same name.",
+                    image, renamed));
+        }
+        File target = directory;
+        return sink -> export(image, target, sink);
+    }
+
+    /**
+     * Decode the files of a single disk image and queue them for the writer.
+     * Any failure is reported and does not stop the other images from being exported.
+     */
+    private void export(Path image, File directory, Consumer<ExportedFile> sink) {
+        try (Disk disk = new Disk(image.toString())) {
+            FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+            OutputFileNames names = new OutputFileNames();
+            for (int i=0; i<formattedDisks.length; i++) {
+                File volumeDirectory = formattedDisks.length == 1 
+                        ? directory : new File(directory, Integer.toString(i+1));
+                FileStreamer.forFormattedDisks(formattedDisks[i])
+                            .ignoreErrors(true)
+                            .includeDeleted(deletedFlag)
+                            .includeTypeOfFile(TypeOfFile.FILE)
+                            .matchGlobs(globs)
+                            .stream()
+                            .forEach(tuple -> decode(tuple, volumeDirectory, names, sink));
+            }
+            imageCount.incrementAndGet();
+        } catch (Exception ex) {
+            failureCount.incrementAndGet();
+            LOG.warning(() -> String.format("Unable to export '%s': %s", image, ex.getMessage()));
+        }
+    }
+
+    /**
+     * Decode a file and queue it for the writer.  Names from the disk are cleaned so the
+     * file stays in the image's directory; files that would replace one another (such as
+     * deleted files of the same name) get a numbered suffix.
+     */
+    private void decode(FileTuple tuple, File directory, OutputFileNames names, Consumer<ExportedFile> sink) {
+        try {
+            FileFilter ff = extraction.create(tuple.fileEntry);
+            directory = OutputFileNames.toDirectory(directory, tuple.paths);
+            String name = ff.getSuggestedFileName(tuple.fileEntry);
+            File file = names.getFile(directory, name);
+            if (!file.getName().equals(name)) {
+                LOG.warning(() -> String.format("Exporting '%s' as '%s'.", tuple.fullPath(), file));
+            }
+            sink.accept(new ExportedFile(file, ff.filter(tuple.fileEntry)));
+        } catch (Exception ex) {
+            failureCount.incrementAndGet();
+            LOG.warning(() -> String.format("Unable to export '%s': %s", tuple.fullPath(), ex.getMessage()));
+        }
+    }
+
+    private void write(ExportedFile exportedFile) {
+        File file = exportedFile.file;
+        try {
+            Path directory = file.toPath().getParent();
+            if (!Files.isDirectory(directory)) {
+                Files.createDirectories(directory);
+                LOG.info(String.format("Directory created: %s", directory));
+            }
+            LOG.info(String.format("Writing to '%s'", file.getPath()));
+            Files.write(file.toPath(), exportedFile.data);
+            fileCount.incrementAndGet();
+        } catch (IOException ex) {
+            failureCount.incrementAndGet();
+            LOG.warning(() -> String.format("Unable to write '%s': %s", file, ex.getMessage()));
+        }
+    }
+
+    private static class ExportedFile {
+        private final File file;
+        private final byte[] data;
+
+        private ExportedFile(File file, byte[] data) {
+            this.file = file;
+            this.data = data;
+        }
+    }
+}
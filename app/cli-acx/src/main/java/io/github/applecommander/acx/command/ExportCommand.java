@@ -117,7 +117,7 @@ public class ExportCommand extends ReadOnlyDiskImageCommandOptions {
     public void writeToStdout(FileTuple tuple) {
         try {
             FileFilter ff = extraction.extractFunction.apply(tuple.fileEntry);
-            System.out.write(ff.filter(tuple.fileEntry));
+            ff.filter(tuple.fileEntry, System.out);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -135,15 +135,19 @@ public class ExportCommand extends ReadOnlyDiskImageCommandOptions {
         }
         LOG.info(String.format("Writing to '%s'", file.getPath()));
         try (OutputStream out = new FileOutputStream(file)) {
-            out.write(ff.filter(tuple.fileEntry));
+            ff.filter(tuple.fileEntry, out);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    private static class FileExtractMethods {
+    public static class FileExtractMethods {
         private Function<FileEntry,FileFilter> extractFunction = this::asSuggestedFile; 
 
+        public FileFilter create(FileEntry entry) {
+            return extractFunction.apply(entry);
+        }
+
         @Option(names = { "--method" }, converter = ExportMethodConverter.class,
                 completionCandidates = ExportMethodCandidates.class,
                 description = "Select a specific export method type (${COMPLETION-CANDIDATES}).")
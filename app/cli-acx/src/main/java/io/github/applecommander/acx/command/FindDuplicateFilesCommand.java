@@ -19,87 +19,97 @@
  */
 package io.github.applecommander.acx.command;
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
+import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.compare.ContentHashCache;
+import com.webcodepro.applecommander.storage.compare.ContentHasher;
 import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
 import com.webcodepro.applecommander.util.filestreamer.FileTuple;
 import com.webcodepro.applecommander.util.filestreamer.TypeOfFile;
 
 import io.github.applecommander.acx.base.ReadOnlyDiskImageCommandOptions;
+import io.github.applecommander.acx.converter.DiskConverter;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
 
 @Command(name = "dups", description = "Find duplicate files.")
 public class FindDuplicateFilesCommand extends ReadOnlyDiskImageCommandOptions {
     @Option(names = { "-a", "--all" }, description = "Compare all files across all volumes; useful for formats like UniDOS.")
     private boolean compareAcrossVolumes;
     
+    @Option(names = "--cache", negatable = true, description = "Remember file content hashes between runs (default = true).")
+    private boolean cacheFlag = true;
+    
+    @Parameters(arity = "*", converter = DiskConverter.class, description = "Additional image(s) to search for duplicates.")
+    private List<Disk> additionalDisks = new ArrayList<>();
+    
     @Override
     public int handleCommand() throws Exception {
-        Map<String,List<FileTuple>> content = new HashMap<>();
-        Supplier<Map<String,List<FileTuple>>> supplier = () -> content;
+        ContentHashCache cache = cacheFlag ? ContentHashCache.load() : null;
+        ContentHasher contentHasher = new ContentHasher().cache(cache);
+        List<FileTuple> files = new ArrayList<>();
         int dupsFound = 0;
         
-        for (FormattedDisk formattedDisk : disk.getFormattedDisks()) {
-            FileStreamer.forDisk(formattedDisk)
-                    .includeTypeOfFile(TypeOfFile.FILE)
-                    .recursive(true)
-                    .stream()
-                    .collect(Collectors.groupingBy(this::contentHash, supplier, Collectors.toList()));
-            if (compareAcrossVolumes && !content.isEmpty()) {
-                System.out.printf("Differences in: %s\n", formattedDisk.getDiskName());
-                dupsFound += report(content);
-                content.clear();
+        List<Disk> disks = new ArrayList<>();
+        disks.add(disk);
+        disks.addAll(additionalDisks);
+        for (Disk d : disks) {
+            for (FormattedDisk formattedDisk : d.getFormattedDisks()) {
+                FileStreamer.forDisk(formattedDisk)
+                        .includeTypeOfFile(TypeOfFile.FILE)
+                        .recursive(true)
+                        .stream()
+                        .forEach(files::add);
+                if (compareAcrossVolumes && !files.isEmpty()) {
+                    System.out.printf("Differences in: %s\n", formattedDisk.getDiskName());
+                    dupsFound += report(contentHasher.findDuplicates(files));
+                    files.clear();
+                }
             }
         }
         
-        if (!content.isEmpty()) {
+        if (!files.isEmpty()) {
             System.out.println("Differences:");
-            dupsFound += report(content);
+            dupsFound += report(contentHasher.findDuplicates(files));
         }
         
         if (dupsFound == 0) {
             System.out.println("There are no duplicate files.");
         }
         
+        if (cache != null) {
+            cache.save();
+        }
         return 0;
     }
 
-    private String contentHash(FileTuple tuple) {
-        try {
-            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
-            byte[] digest = messageDigest.digest(tuple.fileEntry.getFileData());
-            return String.format("%032X", new BigInteger(1, digest));
-        } catch (NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
-        }
-    }
-    
     private int report(Map<String,List<FileTuple>> content) {
         int dups = 0;
         for (Map.Entry<String,List<FileTuple>> entry : content.entrySet()) {
-            if (entry.getValue().size() > 1) {
-                dups++;
-                boolean first = true;
-                for (FileTuple tuple : entry.getValue()) {
-                    if (first) {
-                        System.out.printf("%s has the following duplicates:\n", tuple.fullPath());
-                        first= false;
-                    }
-                    else {
-                        System.out.printf("    - %s\n", tuple.fullPath());
-                    }
+            dups++;
+            boolean first = true;
+            for (FileTuple tuple : entry.getValue()) {
+                if (first) {
+                    System.out.printf("%s has the following duplicates:\n", describe(tuple));
+                    first= false;
+                }
+                else {
+                    System.out.printf("    - %s\n", describe(tuple));
                 }
             }
         }
         return dups;
     }
+    
+    private String describe(FileTuple tuple) {
+        if (additionalDisks.isEmpty()) {
+            return tuple.fullPath();
+        }
+        return String.format("%s:%s", tuple.formattedDisk.getFilename(), tuple.fullPath());
+    }
 }
@@ -90,9 +90,8 @@ public class ImportCommand extends ReadWriteDiskCommandOptions {
         if (directoryName.isPresent()) {
             String[] dirs = directoryName.get().split("/");
             for (String dir : dirs) {
-                Optional<FileEntry> fileEntry = directory.getFiles().stream()
-                        .filter(f -> dir.equalsIgnoreCase(f.getFilename()))
-                        .findFirst();
+                Optional<FileEntry> fileEntry = Optional.ofNullable(
+                        directory.getFormattedDisk().getFile(directory, dir));
                 Optional<DirectoryEntry> dirEntry = fileEntry
                         .filter(FileEntry::isDirectory)
                         .map(DirectoryEntry.class::cast);
@@ -0,0 +1,158 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.command;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.ui.DirectoryLister.CsvRecordListingStrategy;
+import com.webcodepro.applecommander.ui.DirectoryLister.JsonRecordListingStrategy;
+import com.webcodepro.applecommander.ui.DirectoryLister.ListingStrategy;
+import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
+
+import io.github.applecommander.acx.base.ReusableCommandOptions;
+import io.github.applecommander.acx.command.ListCommand.FileDisplay;
+import io.github.applecommander.acx.command.ListCommand.TypeOfFileSelection;
+import io.github.applecommander.acx.fileutil.DiskImageWorkers;
+import picocli.CommandLine.ArgGroup;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+@Command(name = "index", description = {
+            "Index the files on a collection of disk images.",
+            "Writes one record per file; images that cannot be read are reported and skipped." })
+public class IndexCommand extends ReusableCommandOptions {
+    private static Logger LOG = Logger.getLogger(IndexCommand.class.getName());
+
+    @Parameters(arity = "1..*", description = "Disk image(s) or directories of disk images to index.")
+    private List<Path> paths = new ArrayList<>();
+
+    @ArgGroup(exclusive = true, multiplicity = "0..1", heading = "%nFile display formatting:%n")
+    private FileDisplay fileDisplay = new FileDisplay();
+
+    @Option(names = { "-r", "--recursive"}, description = "Index directories on disk images recursively.", negatable = true, defaultValue = "true")
+    private boolean recursiveFlag;
+
+    @Option(names = { "--deleted" }, description = "Include deleted files.")
+    private boolean deletedFlag;
+
+    @ArgGroup(exclusive = true, multiplicity = "0..1")
+    private TypeOfFileSelection typeOfFile = new TypeOfFileSelection();
+
+    @ArgGroup(exclusive = true, multiplicity = "0..1", heading = "%nOutput format:%n")
+    private OutputType outputType = new OutputType();
+
+    @Option(names = "--globs", defaultValue = "*", split = ",", description = "File glob(s) to match.")
+    private List<String> globs = new ArrayList<String>();
+
+    @Option(names = { "-t", "--threads" }, description = "Number of disk images to index at once (default = processors).")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--queue", description = "Number of records that may wait to be written (default = ${DEFAULT-VALUE}).")
+    private int queueSize = 4096;
+
+    private AtomicInteger imageCount = new AtomicInteger();
+    private AtomicInteger failureCount = new AtomicInteger();
+
+    @Override
+    public int handleCommand() throws Exception {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        String header = outputType.header(fileDisplay.format());
+        if (header != null) {
+            out.println(header);
+        }
+        DiskImageWorkers<String> workers = new DiskImageWorkers<>(threads, queueSize);
+        workers.run(paths, (root, image) -> sink -> index(image, sink), out::println);
+        out.flush();
+        failureCount.addAndGet(workers.getFailureCount());
+
+        System.err.printf("Indexed %,d disk image(s); %,d could not be read.\n",
+                imageCount.get(), failureCount.get());
+        return failureCount.get() == 0 ? 0 : 1;
+    }
+
+    /**
+     * Index a single disk image.  Any failure is reported and does not
+     * stop the other images from being indexed.
+     */
+    private void index(Path image, Consumer<String> sink) {
+        try (Disk disk = new Disk(image.toString())) {
+            ListingStrategy listingStrategy = outputType.create(fileDisplay.format(), sink);
+            FileStreamer.forDisk(disk)
+                        .ignoreErrors(true)
+                        .includeDeleted(deletedFlag)
+                        .recursive(recursiveFlag)
+                        .includeTypeOfFile(typeOfFile.typeOfFile())
+                        .matchGlobs(globs)
+                        .stream()
+                        .forEach(listingStrategy::forEach);
+            imageCount.incrementAndGet();
+        } catch (Exception ex) {
+            failureCount.incrementAndGet();
+            LOG.warning(() -> String.format("Unable to index '%s': %s", image, ex.getMessage()));
+        }
+    }
+
+    public static class OutputType {
+        private OutputStrategy outputStrategy = OutputStrategy.CSV;
+        public ListingStrategy create(int display, Consumer<String> sink) {
+            return outputStrategy.create(display, sink);
+        }
+        /** The header row written before any records, if the format has one. */
+        public String header(int display) {
+            return outputStrategy == OutputStrategy.CSV ? CsvRecordListingStrategy.getHeader(display) : null;
+        }
+
+        private enum OutputStrategy {
+            CSV(CsvRecordListingStrategy::new),
+            JSON(JsonRecordListingStrategy::new);
+
+            private BiFunction<Integer,Consumer<String>,ListingStrategy> constructorFn;
+
+            private OutputStrategy(BiFunction<Integer,Consumer<String>,ListingStrategy> constructorFn) {
+                this.constructorFn = constructorFn;
+            }
+
+            public ListingStrategy create(int display, Consumer<String> sink) {
+                return constructorFn.apply(display, sink);
+            }
+        };
+
+        @Option(names = "--csv", description = "One CSV record per file, after a header row (default).")
+        public void selectCsvOutput(boolean flag) {
+            this.outputStrategy = OutputStrategy.CSV;
+        }
+
+        @Option(names = "--json", description = "One JSON object per line per file.")
+        public void selectJsonOutput(boolean flag) {
+            this.outputStrategy = OutputStrategy.JSON;
+        }
+    }
+}
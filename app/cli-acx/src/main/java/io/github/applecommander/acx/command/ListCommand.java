@@ -21,7 +21,7 @@ package io.github.applecommander.acx.command;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.storage.FormattedDisk.FileColumnHeader;
@@ -64,13 +64,16 @@ public class ListCommand extends ReadOnlyDiskImageCommandOptions {
     @Option(names = "--footer", negatable = true, description = "Show footer.")
     private boolean footerFlag = true;
 
+    @Option(names = "--raw", description = "Use typed raw values (numbers, ISO dates) in CSV and JSON output.")
+    private boolean rawFlag;
+
     @Option(names = "--globs", defaultValue = "*", split = ",", description = "File glob(s) to match.")
     private List<String> globs = new ArrayList<String>();
 
     @Override
     public int handleCommand() throws Exception {
         int display = fileDisplay.format();
-        ListingStrategy listingStrategy = outputType.create(display);
+        ListingStrategy listingStrategy = outputType.create(display, rawFlag);
         
         listingStrategy.first(disk);
         
@@ -113,23 +116,23 @@ public class ListCommand extends ReadOnlyDiskImageCommandOptions {
     
     public static class OutputType {
         private OutputStrategy outputStrategy = OutputStrategy.TEXT;
-        public ListingStrategy create(int display) {
-            return outputStrategy.create(display);
+        public ListingStrategy create(int display, boolean raw) {
+            return outputStrategy.create(display, raw);
         }
 
         private enum OutputStrategy { 
-            TEXT(FormattedTextListingStrategy::new), 
+            TEXT((display, raw) -> new FormattedTextListingStrategy(display)), 
             CSV(CsvListingStrategy::new),
             JSON(JsonListingStrategy::new);
             
-            private Function<Integer,ListingStrategy> constructorFn;
+            private BiFunction<Integer,Boolean,ListingStrategy> constructorFn;
             
-            private OutputStrategy(Function<Integer,ListingStrategy> constructorFn) {
+            private OutputStrategy(BiFunction<Integer,Boolean,ListingStrategy> constructorFn) {
                 this.constructorFn = constructorFn;
             }
             
-            public ListingStrategy create(int display) {
-                return constructorFn.apply(display);
+            public ListingStrategy create(int display, boolean raw) {
+                return constructorFn.apply(display, raw);
             }
 
         };
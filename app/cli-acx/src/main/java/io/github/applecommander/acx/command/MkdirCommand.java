@@ -47,9 +47,8 @@ public class MkdirCommand extends ReadWriteDiskCommandOptions {
         String[] paths = fullPath.split("/");
         for (int i=0; i<paths.length; i++) {
             final String pathName = formattedDisk.getSuggestedFilename(paths[i]);
-            Optional<FileEntry> optEntry = directory.getFiles().stream()
-                    .filter(entry -> entry.getFilename().equalsIgnoreCase(pathName))
-                    .findFirst();
+            Optional<FileEntry> optEntry = Optional.ofNullable(
+                    formattedDisk.getFile(directory, pathName));
             
             if (optEntry.isPresent()) {
                 FileEntry fileEntry = optEntry.get();
@@ -0,0 +1,81 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.command;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+import io.github.applecommander.acx.Main;
+import io.github.applecommander.acx.base.ReusableCommandOptions;
+import io.github.applecommander.acx.converter.DataSizeConverter;
+import io.github.applecommander.acx.serve.DiskCache;
+import io.github.applecommander.acx.serve.DiskServer;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(name = "serve", description = {
+            "Run a resident service that keeps disk images open between commands.",
+            "Set $ACX_CLIENT=true in the same directory to send 'acx' commands to it; "
+                + "commands run locally when the service is not available." })
+public class ServeCommand extends ReusableCommandOptions {
+    private static Logger LOG = Logger.getLogger(ServeCommand.class.getName());
+
+    @Option(names = { "--port" }, description = "Localhost port to listen on (default: any free port).")
+    private int port;
+
+    @Option(names = { "--cache-size" }, converter = DataSizeConverter.class, defaultValue = "64MB",
+            description = "Maximum total size of cached disk images (default: ${DEFAULT-VALUE}).")
+    private int cacheSize;
+
+    @Option(names = { "--state-file" }, description = "File publishing the port and access token "
+            + "(default: $ACX_SERVE_STATE or ~/.acx-serve).")
+    private Path stateFile = DiskServer.getDefaultStateFile();
+
+    @Override
+    public int handleCommand() throws Exception {
+        if (DiskCache.getActive() != null) {
+            LOG.warning("The service is already running.");
+            return 1;
+        }
+        DiskCache cache = new DiskCache(cacheSize);
+        DiskServer server = new DiskServer(port, stateFile, Main::execute);
+        Thread shutdown = new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        DiskCache.setActive(cache);
+        try (server) {
+            LOG.info(() -> String.format("Caching up to %s of disk images; state in '%s'.",
+                    DataSizeConverter.format(cacheSize), stateFile));
+            System.out.printf("Listening on port %d.\n", server.getPort());
+            System.out.flush();
+            server.run();
+        } finally {
+            DiskCache.setActive(null);
+        }
+        return 0;
+    }
+}
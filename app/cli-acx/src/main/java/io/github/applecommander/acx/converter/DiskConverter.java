@@ -24,6 +24,7 @@ import java.nio.file.Path;
 
 import com.webcodepro.applecommander.storage.Disk;
 
+import io.github.applecommander.acx.serve.DiskCache;
 import picocli.CommandLine.ITypeConverter;
 import picocli.CommandLine.TypeConversionException;
 
@@ -31,7 +32,8 @@ public class DiskConverter implements ITypeConverter<Disk> {
     @Override
     public Disk convert(String filename) throws Exception {
         if (Files.exists(Path.of(filename))) {
-            return new Disk(filename);
+            DiskCache cache = DiskCache.getActive();
+            return cache != null ? cache.get(filename) : new Disk(filename);
         }
         throw new TypeConversionException(String.format("Disk '%s' not found", filename));
     }
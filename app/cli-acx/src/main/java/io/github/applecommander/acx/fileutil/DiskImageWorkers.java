@@ -0,0 +1,201 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.fileutil;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.webcodepro.applecommander.storage.Disk;
+
+/**
+ * Runs a task for each disk image in a collection on a pool of workers. The tasks hand
+ * their results to the calling thread through a bounded queue, so results are consumed
+ * by a single thread and a large collection is never held in memory.
+ */
+public class DiskImageWorkers<T> {
+    private static Logger LOG = Logger.getLogger(DiskImageWorkers.class.getName());
+    private final int threads;
+    private final int queueSize;
+    private final AtomicInteger failureCount = new AtomicInteger();
+    /** The results waiting for the consumer; an empty result marks the end. */
+    private BlockingQueue<Optional<T>> results;
+
+    /** Plans the work for a single disk image, found under root. */
+    @FunctionalInterface
+    public interface Planner<T> {
+        /** Called on one thread, for each image in the order they are found. */
+        ImageTask<T> plan(Path root, Path image);
+    }
+
+    /** The work for a single disk image; runs on a worker thread. */
+    @FunctionalInterface
+    public interface ImageTask<T> {
+        void run(Consumer<T> sink);
+    }
+
+    public DiskImageWorkers(int threads, int queueSize) {
+        this.threads = Math.max(1, threads);
+        this.queueSize = queueSize;
+    }
+
+    /** The number of files or directories that could not be searched. */
+    public int getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Find the disk images at or under each path and run the planned task for each one,
+     * handing every result to the consumer on the calling thread. Answers once every
+     * image has been processed. A file named directly is taken to be a disk image
+     * whatever its name; its root is the directory holding it.
+     */
+    public void run(List<Path> paths, Planner<T> planner, Consumer<T> consumer) throws InterruptedException {
+        results = new ArrayBlockingQueue<>(queueSize);
+        Thread feeder = new Thread(() -> feedWorkers(paths, planner), "acx-image-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+
+        Optional<T> result = results.take();
+        while (result.isPresent()) {
+            consumer.accept(result.get());
+            result = results.take();
+        }
+    }
+
+    /**
+     * Locate disk images and hand them to the worker pool.  At most two
+     * images per worker are waiting at any time, so a large collection is
+     * never queued up in memory.
+     */
+    private void feedWorkers(List<Path> paths, Planner<T> planner) {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Semaphore pending = new Semaphore(threads * 2);
+        try {
+            for (Path path : paths) {
+                Path root = (Files.isDirectory(path) ? path : path.toAbsolutePath().getParent()).toAbsolutePath();
+                for (Path image : findDiskImages(path)) {
+                    ImageTask<T> task = planner.plan(root, image);
+                    pending.acquireUninterruptibly();
+                    workers.execute(() -> {
+                        try {
+                            task.run(result -> put(Optional.of(result)));
+                        } finally {
+                            pending.release();
+                        }
+                    });
+                }
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException ex) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            put(Optional.empty());
+        }
+    }
+
+    /**
+     * Queue a result for the consumer, waiting if the consumer has fallen behind.
+     */
+    private void put(Optional<T> result) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                results.put(result);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Find the disk images at or under path, in sorted order.  Each file or directory
+     * that cannot be read is reported and counted as a failure, and the search carries on.
+     */
+    private List<Path> findDiskImages(Path path) {
+        List<Path> images = new ArrayList<>();
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if ((file.equals(path) || isDiskImage(file)) && Files.isRegularFile(file)) {
+                        images.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    searchFailed(file, ex);
+                    return FileVisitResult.CONTINUE;
+                }
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException ex) {
+                    if (ex != null) {
+                        searchFailed(dir, ex);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            // Only thrown by the visitor, which reports failures itself
+            searchFailed(path, ex);
+        }
+        Collections.sort(images);
+        return images;
+    }
+
+    private void searchFailed(Path file, IOException ex) {
+        failureCount.incrementAndGet();
+        LOG.warning(() -> String.format("Unable to search '%s': %s", file, ex.getMessage()));
+    }
+
+    public static boolean isDiskImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : Disk.getAllExtensions()) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -53,10 +53,8 @@ public class FileUtils {
 	}
 	
 	void copyDirectory(DirectoryEntry targetParent, DirectoryEntry sourceDir, String name) throws DiskException {
-	    Optional<FileEntry> targetFile = targetParent.getFiles()
-	            .stream()
-	            .filter(fileEntry -> name.equals(fileEntry.getFilename()))
-	            .findFirst();
+	    Optional<FileEntry> targetFile = Optional.ofNullable(
+	            targetParent.getFormattedDisk().getFile(targetParent, name));
 	    Optional<DirectoryEntry> targetDir = targetFile
 	            .filter(FileEntry::isDirectory)
 	            .map(DirectoryEntry.class::cast);
@@ -87,9 +85,8 @@ public class FileUtils {
 	public void copyFile(DirectoryEntry directory, FileEntryReader source) throws DiskException {
 	    String sourceName = source.getFilename().get();
 	    String sanitizedName = directory.getFormattedDisk().getSuggestedFilename(sourceName);
-	    final Optional<FileEntry> fileEntry = directory.getFiles().stream()
-	        .filter(entry -> entry.getFilename().equals(sanitizedName))
-	        .findFirst();
+	    final Optional<FileEntry> fileEntry = Optional.ofNullable(
+	        directory.getFormattedDisk().getFile(directory, sanitizedName));
 
         final FileEntry targetFile;
         if (fileEntry.isPresent()) {
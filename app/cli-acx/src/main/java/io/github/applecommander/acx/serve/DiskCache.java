@@ -0,0 +1,163 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.serve;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.webcodepro.applecommander.storage.Disk;
+
+/**
+ * Keeps opened disk images in memory between commands run by the resident service.
+ * <p>
+ * Entries are keyed by the filename as given and are only reused while the file on
+ * disk still has the same modification time and size, and the in-memory copy has no
+ * unsaved changes. The cache is bounded by the total physical size of the images it
+ * holds; the least recently used images are dropped first.
+ */
+public class DiskCache {
+    private static Logger LOG = Logger.getLogger(DiskCache.class.getName());
+    private static volatile DiskCache active;
+
+    private final long maximumBytes;
+    private final Map<String,Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    private long hits;
+    private long misses;
+
+    /** The cache used by the running service, or null when running a single command. */
+    public static DiskCache getActive() {
+        return active;
+    }
+    public static void setActive(DiskCache cache) {
+        active = cache;
+    }
+
+    public DiskCache(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+    }
+
+    /** Answer the cached disk image for this file, opening it if it is not cached or out of date. */
+    public synchronized Disk get(String filename) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(Path.of(filename), BasicFileAttributes.class);
+        Entry entry = entries.get(filename);
+        if (entry != null) {
+            if (entry.isCurrent(attributes)) {
+                hits++;
+                LOG.fine(() -> String.format("Using cached disk '%s'", filename));
+                return entry.disk;
+            }
+            remove(filename);
+        }
+        misses++;
+        Disk disk = new Disk(filename);
+        put(filename, new Entry(disk, attributes));
+        return disk;
+    }
+
+    /**
+     * Refresh the entry for a disk that a command may have changed. A saved disk is kept with
+     * the new file attributes; a disk with unsaved changes is dropped.
+     */
+    public synchronized void update(Disk disk) {
+        String filename = disk.getFilename();
+        Entry entry = entries.get(filename);
+        if (entry == null || entry.disk != disk) {
+            return;
+        }
+        remove(filename);
+        if (!disk.hasChanged()) {
+            try {
+                put(filename, new Entry(disk, Files.readAttributes(Path.of(filename), BasicFileAttributes.class)));
+            } catch (IOException e) {
+                LOG.fine(() -> String.format("Dropping disk '%s': %s", filename, e.getMessage()));
+            }
+        }
+    }
+
+    public synchronized void invalidate(String filename) {
+        remove(filename);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+    public synchronized long getHits() {
+        return hits;
+    }
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void put(String filename, Entry entry) {
+        if (entry.bytes > maximumBytes) {
+            return;
+        }
+        Iterator<Map.Entry<String,Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes + entry.bytes > maximumBytes && iterator.hasNext()) {
+            Map.Entry<String,Entry> eldest = iterator.next();
+            LOG.fine(() -> String.format("Evicting disk '%s'", eldest.getKey()));
+            currentBytes -= eldest.getValue().bytes;
+            iterator.remove();
+        }
+        entries.put(filename, entry);
+        currentBytes += entry.bytes;
+    }
+
+    private void remove(String filename) {
+        Entry entry = entries.remove(filename);
+        if (entry != null) {
+            currentBytes -= entry.bytes;
+        }
+    }
+
+    private static class Entry {
+        private final Disk disk;
+        private final FileTime lastModified;
+        private final long fileSize;
+        private final long bytes;
+
+        private Entry(Disk disk, BasicFileAttributes attributes) {
+            this.disk = disk;
+            this.lastModified = attributes.lastModifiedTime();
+            this.fileSize = attributes.size();
+            this.bytes = disk.getPhysicalSize();
+        }
+
+        private boolean isCurrent(BasicFileAttributes attributes) {
+            return lastModified.equals(attributes.lastModifiedTime())
+                && fileSize == attributes.size()
+                && !disk.hasChanged();
+        }
+    }
+}
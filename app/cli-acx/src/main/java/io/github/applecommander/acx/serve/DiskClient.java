@@ -0,0 +1,177 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.serve;
+
+import static io.github.applecommander.acx.serve.DiskServer.ACCEPTED;
+import static io.github.applecommander.acx.serve.DiskServer.DECLINED;
+import static io.github.applecommander.acx.serve.DiskServer.DISK_NAME_VARIABLE;
+import static io.github.applecommander.acx.serve.DiskServer.EXIT;
+import static io.github.applecommander.acx.serve.DiskServer.HANDSHAKE_TIMEOUT;
+import static io.github.applecommander.acx.serve.DiskServer.PORT_PROPERTY;
+import static io.github.applecommander.acx.serve.DiskServer.PROTOCOL_VERSION;
+import static io.github.applecommander.acx.serve.DiskServer.STDERR;
+import static io.github.applecommander.acx.serve.DiskServer.STDIN;
+import static io.github.applecommander.acx.serve.DiskServer.STDOUT;
+import static io.github.applecommander.acx.serve.DiskServer.TOKEN_PROPERTY;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * The thin client side of {@link DiskServer}: forwards the command line to a running
+ * service and relays its output.
+ */
+public class DiskClient {
+    private static Logger LOG = Logger.getLogger(DiskClient.class.getName());
+    public static final String CLIENT_VARIABLE = "ACX_CLIENT";
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    /** Indicates if $ACX_CLIENT asks for commands to be forwarded to the resident service. */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getenv(CLIENT_VARIABLE));
+    }
+
+    /**
+     * Run the command in the service described by the state file. Answers the exit code, or
+     * empty when no service is available or it declined the request and the command should
+     * be run locally. The service is only considered available once it acknowledges the
+     * request; a stale state file (whose port may now belong to another program) or a
+     * token that no longer matches leaves the command to be run locally.
+     */
+    public static OptionalInt forward(Path stateFile, String[] args) {
+        if (!Files.isReadable(stateFile)) {
+            return OptionalInt.empty();
+        }
+        Properties properties = new Properties();
+        int port;
+        try (Reader reader = Files.newBufferedReader(stateFile)) {
+            properties.load(reader);
+            port = Integer.parseInt(properties.getProperty(PORT_PROPERTY));
+        } catch (IOException | NumberFormatException e) {
+            LOG.fine(() -> String.format("Unable to read '%s': %s", stateFile, e.getMessage()));
+            return OptionalInt.empty();
+        }
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+        } catch (IOException e) {
+            LOG.fine(() -> String.format("No service on port %d: %s", port, e.getMessage()));
+            closeQuietly(socket);
+            return OptionalInt.empty();
+        }
+
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(PROTOCOL_VERSION);
+            out.writeUTF(Objects.toString(properties.getProperty(TOKEN_PROPERTY), ""));
+            out.writeUTF(DiskServer.currentDirectory());
+            out.writeUTF(Objects.toString(System.getenv(DISK_NAME_VARIABLE), ""));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            if (!isAccepted(socket, in, port)) {
+                return OptionalInt.empty();
+            }
+            return relay(in, out);
+        } catch (IOException e) {
+            System.err.printf("Lost connection to acx service: %s%n", e.getMessage());
+            return OptionalInt.of(1);
+        }
+    }
+
+    /** Wait (briefly) for the service to acknowledge the request. */
+    private static boolean isAccepted(Socket socket, DataInputStream in, int port) throws IOException {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+        try {
+            byte type = in.readByte();
+            if (type != ACCEPTED) {
+                LOG.fine(() -> String.format("Unexpected response %d from port %d", type, port));
+                return false;
+            }
+        } catch (IOException e) {
+            LOG.fine(() -> String.format("Request not accepted on port %d: %s", port, e.getMessage()));
+            return false;
+        }
+        socket.setSoTimeout(0);
+        return true;
+    }
+
+    private static OptionalInt relay(DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            switch (type) {
+            case EXIT:
+                System.out.flush();
+                System.err.flush();
+                return OptionalInt.of(in.readInt());
+            case STDOUT:
+                copy(in, System.out);
+                break;
+            case STDERR:
+                copy(in, System.err);
+                break;
+            case STDIN:
+                byte[] data = System.in.readAllBytes();
+                out.writeInt(data.length);
+                out.write(data);
+                out.flush();
+                break;
+            case DECLINED:
+                String reason = in.readUTF();
+                LOG.fine(() -> String.format("Service declined request: %s", reason));
+                return OptionalInt.empty();
+            default:
+                throw new IOException(String.format("Unexpected response type %d", type));
+            }
+        }
+    }
+
+    private static void copy(DataInputStream in, PrintStream stream) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        stream.write(data);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.serve;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.ToIntFunction;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * A resident service that runs 'acx' commands on behalf of {@link DiskClient}.
+ * <p>
+ * The service listens on a localhost port and publishes the port and a random token
+ * in a state file readable only by the current user. Requests are run one at a time:
+ * standard output, standard error and logging are sent back to the client, and
+ * standard input is requested from the client the first time a command reads it.
+ * Requests from a different working directory are declined so that relative paths
+ * keep their meaning; the client then runs the command itself. A request that the
+ * service accepts (the token matches) is acknowledged before anything else is sent,
+ * so a client that gets no acknowledgement knows the command was not run.
+ */
+public class DiskServer implements Closeable {
+    private static Logger LOG = Logger.getLogger(DiskServer.class.getName());
+
+    public static final String STATE_FILE_VARIABLE = "ACX_SERVE_STATE";
+    public static final String DISK_NAME_VARIABLE = "ACX_DISK_NAME";
+
+    static final int PROTOCOL_VERSION = 2;
+    static final byte EXIT = 0;
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte STDIN = 3;
+    static final byte DECLINED = 4;
+    /** The first byte of every response; anything else means the client should run the command itself. */
+    static final byte ACCEPTED = 5;
+
+    static final String PORT_PROPERTY = "port";
+    static final String TOKEN_PROPERTY = "token";
+    /** How long a client may take to send its request, in milliseconds. */
+    static final int HANDSHAKE_TIMEOUT = 5000;
+
+    private final ServerSocket serverSocket;
+    private final Path stateFile;
+    private final String token;
+    private final String workingDirectory;
+    private final ToIntFunction<String[]> command;
+    private int handshakeTimeout = HANDSHAKE_TIMEOUT;
+
+    /** The state file named by $ACX_SERVE_STATE, or '.acx-serve' in the home directory. */
+    public static Path getDefaultStateFile() {
+        String name = System.getenv(STATE_FILE_VARIABLE);
+        if (name != null && !name.isEmpty()) {
+            return Path.of(name);
+        }
+        return Path.of(System.getProperty("user.home"), ".acx-serve");
+    }
+
+    public DiskServer(int port, Path stateFile, ToIntFunction<String[]> command) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.stateFile = stateFile;
+        this.token = newToken();
+        this.workingDirectory = currentDirectory();
+        this.command = command;
+        writeStateFile();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Change how long a client may take to send its request; used by tests. */
+    void setHandshakeTimeout(int handshakeTimeout) {
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /** Accept and run requests until the service is closed. */
+    public void run() throws IOException {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                handle(socket);
+            } catch (SocketException e) {
+                if (!serverSocket.isClosed()) {
+                    LOG.warning(e.getMessage());
+                }
+            } catch (IOException e) {
+                LOG.warning(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        Files.deleteIfExists(stateFile);
+    }
+
+    private void handle(Socket socket) throws IOException {
+        // A client that connects and stalls must not hold up the service for everyone
+        socket.setSoTimeout(handshakeTimeout);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        int version = in.readInt();
+        byte[] requestToken = in.readUTF().getBytes(StandardCharsets.UTF_8);
+        // Compare in constant time so the token cannot be guessed a character at a time
+        if (version != PROTOCOL_VERSION
+                || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), requestToken)) {
+            LOG.warning("Ignoring request with an unknown version or token.");
+            return;
+        }
+        String directory = in.readUTF();
+        String diskName = in.readUTF();
+        String[] args = new String[in.readInt()];
+        for (int i=0; i<args.length; i++) {
+            args[i] = in.readUTF();
+        }
+        // The command may wait on the client for standard input
+        socket.setSoTimeout(0);
+        out.writeByte(ACCEPTED);
+        out.flush();
+
+        String declined = null;
+        if (!workingDirectory.equals(directory)) {
+            declined = String.format("Service is running in '%s'.", workingDirectory);
+        } else if (diskName.isEmpty() && System.getenv(DISK_NAME_VARIABLE) != null) {
+            declined = String.format("Service has $%s set.", DISK_NAME_VARIABLE);
+        }
+        if (declined != null) {
+            out.writeByte(DECLINED);
+            out.writeUTF(declined);
+            out.flush();
+            return;
+        }
+
+        int exitCode = execute(in, out, args, diskName);
+        out.writeByte(EXIT);
+        out.writeInt(exitCode);
+        out.flush();
+    }
+
+    private int execute(DataInputStream in, DataOutputStream out, String[] args, String diskName) {
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        InputStream stdin = System.in;
+        String previousDiskName = System.getProperty(DISK_NAME_VARIABLE);
+        PrintStream requestOut = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, STDOUT)), true);
+        PrintStream requestErr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, STDERR)), true);
+        Logger rootLogger = LogManager.getLogManager().getLogger("");
+        List<Handler> consoleHandlers = new ArrayList<>();
+        StreamHandler requestHandler = new StreamHandler(requestErr, new SimpleFormatter());
+        requestHandler.setLevel(rootLogger.getLevel());
+        try {
+            System.setOut(requestOut);
+            System.setErr(requestErr);
+            System.setIn(new RequestedInputStream(in, out));
+            if (diskName.isEmpty()) {
+                System.clearProperty(DISK_NAME_VARIABLE);
+            } else {
+                System.setProperty(DISK_NAME_VARIABLE, diskName);
+            }
+            for (Handler handler : rootLogger.getHandlers()) {
+                if (handler instanceof ConsoleHandler) {
+                    consoleHandlers.add(handler);
+                    rootLogger.removeHandler(handler);
+                }
+            }
+            rootLogger.addHandler(requestHandler);
+            return command.applyAsInt(args);
+        } finally {
+            requestHandler.flush();
+            rootLogger.removeHandler(requestHandler);
+            consoleHandlers.forEach(rootLogger::addHandler);
+            requestOut.flush();
+            requestErr.flush();
+            System.setOut(stdout);
+            System.setErr(stderr);
+            System.setIn(stdin);
+            if (previousDiskName == null) {
+                System.clearProperty(DISK_NAME_VARIABLE);
+            } else {
+                System.setProperty(DISK_NAME_VARIABLE, previousDiskName);
+            }
+        }
+    }
+
+    private void writeStateFile() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(PORT_PROPERTY, Integer.toString(getPort()));
+        properties.setProperty(TOKEN_PROPERTY, token);
+        Path directory = Objects.requireNonNullElse(stateFile.toAbsolutePath().getParent(), Path.of("."));
+        Path temporary = Files.createTempFile(directory, ".acx-serve", ".tmp");
+        try {
+            Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            LOG.fine("File permissions not supported; state file is not protected.");
+        }
+        try (Writer writer = Files.newBufferedWriter(temporary)) {
+            properties.store(writer, "acx serve");
+        }
+        Files.move(temporary, stateFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static String currentDirectory() {
+        return Path.of("").toAbsolutePath().normalize().toString();
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /** Sends everything written as frames of the given type. */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        private FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+                out.flush();
+            }
+        }
+    }
+
+    /** Fetches the client's standard input the first time it is read. */
+    private static class RequestedInputStream extends InputStream {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private InputStream data;
+
+        private RequestedInputStream(DataInputStream in, DataOutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        private InputStream data() throws IOException {
+            if (data == null) {
+                synchronized (out) {
+                    out.writeByte(STDIN);
+                    out.flush();
+                }
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                data = new ByteArrayInputStream(bytes);
+            }
+            return data;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return data().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return data().read(b, off, len);
+        }
+    }
+}
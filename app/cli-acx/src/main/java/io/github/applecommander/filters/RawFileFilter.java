@@ -19,6 +19,10 @@
  */
 package io.github.applecommander.filters;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FileFilter;
 
@@ -36,6 +40,13 @@ public class RawFileFilter implements FileFilter {
         return fileEntry.getFileData();
     }
 
+    @Override
+    public void filter(FileEntry fileEntry, OutputStream outputStream) throws IOException {
+        try (InputStream inputStream = fileEntry.getFileDataStream()) {
+            inputStream.transferTo(outputStream);
+        }
+    }
+
     @Override
     public String getSuggestedFileName(FileEntry fileEntry) {
         return fileEntry.getFilename();
@@ -0,0 +1,146 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.os.dos33.DosFormatDisk;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.DosOrder;
+
+import io.github.applecommander.acx.Main;
+
+public class ExportAllCommandTest {
+    private static final Path MERLIN = Path.of("src/test/resources/disks/MERLIN8PRO1.DSK");
+    private static final Path UNIDOS = Path.of("src/test/resources/disks/UniDOS_3.3.dsk");
+
+    private Path directory;
+    private Path output;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("acx-export-all");
+        output = directory.resolve("out");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testDirectoryLayout() throws IOException {
+        Path input = directory.resolve("in");
+        copy(MERLIN, input.resolve("sub/merlin.dsk"));
+        copy(UNIDOS, input.resolve("unidos.dsk"));
+        Files.writeString(input.resolve("notes.txt"), "not a disk image");
+
+        assertEquals(0, Main.execute("export-all", "--raw", "-o", output.toString(), input.toString()));
+        assertEquals(List.of("sub", "unidos.dsk"), list(output));
+        assertEquals(List.of("merlin.dsk"), list(output.resolve("sub")));
+        // Each volume of a multi-volume image gets its own directory
+        assertEquals(List.of("1", "2"), list(output.resolve("unidos.dsk")));
+    }
+
+    @Test
+    public void testImagesWithTheSameName() throws IOException {
+        Path a = copy(MERLIN, directory.resolve("a/x.dsk"));
+        Path b = copy(MERLIN, directory.resolve("b/x.dsk"));
+
+        for (int run=0; run<2; run++) {
+            assertEquals(0, Main.execute("export-all", "--raw", "-o", output.toString(), 
+                    a.toString(), b.toString()));
+            assertEquals(List.of("x.dsk", "x.dsk-2"), list(output));
+            assertEquals(count(output.resolve("x.dsk")), count(output.resolve("x.dsk-2")));
+            assertTrue(count(output.resolve("x.dsk")) > 0);
+        }
+    }
+
+    @Test
+    public void testUnreadableImageIsReported() throws IOException {
+        Path input = directory.resolve("in");
+        copy(MERLIN, input.resolve("merlin.dsk"));
+        Files.createDirectories(input);
+        Files.write(input.resolve("broken.dsk"), new byte[1000]);
+
+        assertEquals(1, Main.execute("export-all", "--raw", "-o", output.toString(), input.toString()));
+        assertTrue(count(output.resolve("merlin.dsk")) > 0);
+    }
+
+    @Test
+    public void testUnsafeAndDuplicateNames() throws IOException, DiskException {
+        Path image = directory.resolve("in/names.dsk");
+        Files.createDirectories(image.getParent());
+        FormattedDisk[] disks = DosFormatDisk.create(image.toString(),
+                new DosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)));
+        for (String name : List.of("../../ESCAPE", "SAME", "SAME")) {
+            FileEntry entry = disks[0].createFile();
+            entry.setFilename(name);
+            entry.setFiletype("B");
+            entry.setFileData(new byte[10]);
+        }
+        disks[0].save();
+
+        // A '*' glob does not match a name holding a '/'
+        assertEquals(0, Main.execute("export-all", "--raw", "--globs", "**", "-o", output.toString(), 
+                image.toString()));
+        assertEquals(List.of("in", "out"), list(directory));
+        assertEquals(List.of(".._.._ESCAPE.dump", "SAME-2.dump", "SAME.dump"), list(output.resolve("names.dsk")));
+    }
+
+    private Path copy(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.copy(source, target);
+        return target;
+    }
+
+    private List<String> list(Path path) throws IOException {
+        try (Stream<Path> files = Files.list(path)) {
+            return files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private long count(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
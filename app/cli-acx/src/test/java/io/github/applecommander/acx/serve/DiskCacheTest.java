@@ -0,0 +1,121 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.serve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+
+public class DiskCacheTest {
+    private static final Path SOURCE = Path.of("src/test/resources/disks/MERLIN8PRO1.DSK");
+    private static final int DISK_SIZE = 143360;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("acx-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>)files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        String filename = copyDisk("a.dsk");
+        DiskCache cache = new DiskCache(DISK_SIZE);
+        Disk disk = cache.get(filename);
+        assertSame(disk, cache.get(filename));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(DISK_SIZE, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void testModifiedFileIsReloaded() throws IOException {
+        String filename = copyDisk("a.dsk");
+        DiskCache cache = new DiskCache(DISK_SIZE);
+        Disk disk = cache.get(filename);
+        Path path = Path.of(filename);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() - 10000));
+        assertNotSame(disk, cache.get(filename));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testUnsavedChangesAreDropped() throws IOException {
+        String filename = copyDisk("a.dsk");
+        DiskCache cache = new DiskCache(DISK_SIZE);
+        Disk disk = cache.get(filename);
+        disk.writeBlock(7, new byte[512]);
+        assertNotSame(disk, cache.get(filename));
+    }
+
+    @Test
+    public void testSavedChangesAreKept() throws IOException {
+        String filename = copyDisk("a.dsk");
+        DiskCache cache = new DiskCache(DISK_SIZE);
+        Disk disk = cache.get(filename);
+        disk.writeBlock(7, new byte[512]);
+        disk.save();
+        cache.update(disk);
+        assertSame(disk, cache.get(filename));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws IOException {
+        String a = copyDisk("a.dsk");
+        String b = copyDisk("b.dsk");
+        String c = copyDisk("c.dsk");
+        DiskCache cache = new DiskCache(2 * DISK_SIZE);
+        Disk diskA = cache.get(a);
+        Disk diskB = cache.get(b);
+        cache.get(a);
+        cache.get(c);
+        assertEquals(2, cache.size());
+        assertEquals(2 * DISK_SIZE, cache.getCurrentBytes());
+        assertSame(diskA, cache.get(a));
+        assertNotSame(diskB, cache.get(b));
+    }
+
+    private String copyDisk(String name) throws IOException {
+        Path path = directory.resolve(name);
+        Files.copy(SOURCE, path);
+        return path.toString();
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2019-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package io.github.applecommander.acx.serve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.applecommander.acx.Main;
+
+public class DiskServerTest {
+    private Path directory;
+    private Path stateFile;
+    private DiskServer server;
+    private Thread thread;
+    private List<String> commands = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("acx-serve");
+        stateFile = directory.resolve("state");
+        server = new DiskServer(0, stateFile, this::command);
+        server.setHandshakeTimeout(500);
+        thread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        server.close();
+        thread.join(10000);
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>)files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /** The command run by the service: "print" writes to stdout and stderr, "exit n" answers n. */
+    private int command(String[] args) {
+        commands.add(String.join(" ", args));
+        switch (args[0]) {
+        case "print":
+            System.out.print("to stdout");
+            System.err.print("to stderr");
+            return 3;
+        case "echo":
+            try {
+                System.out.write(System.in.readAllBytes());
+            } catch (IOException e) {
+                return 1;
+            }
+            return 0;
+        default:
+            return Integer.parseInt(args[1]);
+        }
+    }
+
+    @Test
+    public void testExitCodeFromClient() {
+        assertEquals(OptionalInt.of(7), DiskClient.forward(stateFile, new String[] { "exit", "7" }));
+        assertEquals(List.of("exit 7"), commands);
+    }
+
+    @Test
+    public void testWrongTokenIsRejected() throws IOException {
+        Properties properties = readStateFile();
+        properties.setProperty(DiskServer.TOKEN_PROPERTY, "wrong");
+        try (Writer writer = Files.newBufferedWriter(stateFile)) {
+            properties.store(writer, null);
+        }
+        // The service hangs up without accepting the request, so the client runs it locally
+        assertEquals(OptionalInt.empty(), DiskClient.forward(stateFile, new String[] { "exit", "7" }));
+        assertTrue(commands.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testStalePortRunsLocally() throws IOException {
+        // Another program now owns the port: it answers, but not with the protocol
+        try (ServerSocket other = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Properties properties = readStateFile();
+            properties.setProperty(DiskServer.PORT_PROPERTY, Integer.toString(other.getLocalPort()));
+            try (Writer writer = Files.newBufferedWriter(stateFile)) {
+                properties.store(writer, null);
+            }
+            Thread answer = new Thread(() -> {
+                try (Socket socket = other.accept()) {
+                    socket.getOutputStream().write("HTTP/1.0 400\r\n".getBytes(StandardCharsets.US_ASCII));
+                } catch (IOException e) {
+                    // the test fails on its own
+                }
+            });
+            answer.start();
+            assertEquals(OptionalInt.empty(), DiskClient.forward(stateFile, new String[] { "exit", "7" }));
+        }
+        assertTrue(commands.isEmpty());
+    }
+
+    @Test
+    public void testOutputFrames() throws IOException {
+        try (Socket socket = connect()) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            sendRequest(in, out, DiskServer.currentDirectory(), "print");
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            int exitCode = readResponse(in, stdout, stderr);
+            assertEquals(3, exitCode);
+            assertEquals("to stdout", stdout.toString(StandardCharsets.UTF_8));
+            assertEquals("to stderr", stderr.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testStandardInput() throws IOException {
+        try (Socket socket = connect()) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            sendRequest(in, out, DiskServer.currentDirectory(), "echo");
+            assertEquals(DiskServer.STDIN, in.readByte());
+            byte[] data = "from stdin".getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+            out.flush();
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            assertEquals(0, readResponse(in, stdout, new ByteArrayOutputStream()));
+            assertEquals("from stdin", stdout.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testOtherDirectoryIsDeclined() throws IOException {
+        try (Socket socket = connect()) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            sendRequest(in, out, directory.toString(), "exit", "7");
+            assertEquals(DiskServer.DECLINED, in.readByte());
+            assertTrue(in.readUTF().contains(DiskServer.currentDirectory()));
+        }
+        assertTrue(commands.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testStalledClientDoesNotBlockService() throws IOException {
+        try (Socket stalled = connect()) {
+            // Send nothing; the service gives up on this client after the handshake timeout
+            assertEquals(OptionalInt.of(5), DiskClient.forward(stateFile, new String[] { "exit", "5" }));
+            try {
+                assertEquals(-1, stalled.getInputStream().read());
+            } catch (IOException e) {
+                // a reset connection is just as good
+            }
+        }
+    }
+
+    @Test
+    public void testRequestKeepsServiceLogLevel() {
+        Logger rootLogger = LogManager.getLogManager().getLogger("");
+        Level previous = rootLogger.getLevel();
+        // Main sets its default levels when first loaded, as 'acx serve' does before any request
+        Main.execute("help");
+        try {
+            rootLogger.setLevel(Level.FINE);
+            Main.execute("--quiet", "help");
+            assertEquals(Level.FINE, rootLogger.getLevel());
+        } finally {
+            rootLogger.setLevel(previous);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        int port = Integer.parseInt(readStateFile().getProperty(DiskServer.PORT_PROPERTY));
+        return new Socket(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private Properties readStateFile() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(stateFile)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /** Send a request, checking that the service accepts it. */
+    private void sendRequest(DataInputStream in, DataOutputStream out, String workingDirectory, String... args)
+            throws IOException {
+        out.writeInt(DiskServer.PROTOCOL_VERSION);
+        out.writeUTF(readStateFile().getProperty(DiskServer.TOKEN_PROPERTY));
+        out.writeUTF(workingDirectory);
+        out.writeUTF("");
+        out.writeInt(args.length);
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+        assertEquals(DiskServer.ACCEPTED, in.readByte());
+    }
+
+    /** Collect the output frames, answering the exit code. */
+    private int readResponse(DataInputStream in, ByteArrayOutputStream stdout, ByteArrayOutputStream stderr)
+            throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            if (type == DiskServer.EXIT) {
+                return in.readInt();
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            if (type == DiskServer.STDOUT) {
+                stdout.write(data);
+            } else if (type == DiskServer.STDERR) {
+                stderr.write(data);
+            } else {
+                throw new EOFException("Unexpected frame " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.webcodepro.applecommander.storage.DirectoryEntry;
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.DiskFullException;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.os.prodos.ProdosFormatDisk;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.ProdosOrder;
+
+/**
+ * Locates the disk images used by the benchmarks.  These are the images
+ * used by the ac-api unit tests, plus a synthetic 32MB ProDOS volume that
+ * is built on first use.
+ */
+public class BenchImages {
+	/** Name of the synthetic 32MB ProDOS volume. */
+	public static final String SYNTHETIC_32MB = "synthetic-32mb.po"; //$NON-NLS-1$
+	/** System property naming the directory of test disk images. */
+	public static final String DISKS_PROPERTY = "applecommander.bench.disks"; //$NON-NLS-1$
+	private static final String DEFAULT_DISKS = "../ac-api/src/test/resources/disks"; //$NON-NLS-1$
+	private static final int DIRECTORIES = 16;
+	private static final int FILES_PER_DIRECTORY = 48;
+
+	private static File synthetic;
+
+	/**
+	 * Hide constructor from other classes.
+	 */
+	private BenchImages() {
+		// empty
+	}
+
+	/**
+	 * Answer with the full path of a disk image.
+	 */
+	public static synchronized String path(String imageName) throws IOException, DiskException {
+		if (SYNTHETIC_32MB.equals(imageName)) {
+			if (synthetic == null) {
+				synthetic = File.createTempFile("synthetic-32mb", ".po"); //$NON-NLS-1$ //$NON-NLS-2$
+				synthetic.deleteOnExit();
+				Files.write(synthetic.toPath(), createSyntheticVolume());
+			}
+			return synthetic.getPath();
+		}
+		String dir = System.getProperty(DISKS_PROPERTY, DEFAULT_DISKS);
+		return new File(dir, imageName).getPath();
+	}
+
+	/**
+	 * Open a disk image.
+	 */
+	public static Disk open(String imageName) throws IOException, DiskException {
+		return new Disk(path(imageName));
+	}
+
+	/**
+	 * Build a 32MB ProDOS volume holding a few directories of files of
+	 * assorted sizes, so seedling, sapling and tree files are all present.
+	 * The content is random but repeatable.
+	 */
+	public static byte[] createSyntheticVolume() throws DiskException {
+		ByteArrayImageLayout layout = new ByteArrayImageLayout(Disk.APPLE_32MB_HARDDISK);
+		ProdosFormatDisk disk = ProdosFormatDisk.create(SYNTHETIC_32MB, "SYNTHETIC", //$NON-NLS-1$
+				new ProdosOrder(layout))[0];
+		Random random = new Random(0x4143);
+		for (int d=0; d<DIRECTORIES; d++) {
+			DirectoryEntry directory = disk.createDirectory("DIR" + d); //$NON-NLS-1$
+			for (int f=0; f<FILES_PER_DIRECTORY; f++) {
+				byte[] data = new byte[(f % 8 == 7) ? 131072 + random.nextInt(65536) : random.nextInt(16384) + 1];
+				random.nextBytes(data);
+				createFile(directory, "FILE" + f, data); //$NON-NLS-1$
+			}
+		}
+		return layout.getDiskImage();
+	}
+
+	protected static void createFile(DirectoryEntry directory, String filename, byte[] data)
+			throws DiskException, DiskFullException {
+		FileEntry fileEntry = directory.createFile();
+		fileEntry.setFilename(filename);
+		fileEntry.setFiletype("BIN"); //$NON-NLS-1$
+		fileEntry.setFileData(data);
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.webcodepro.applecommander.storage.DirectoryEntry;
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
+import com.webcodepro.applecommander.util.filestreamer.TypeOfFile;
+
+/**
+ * Benchmarks opening disk images and walking their catalogs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiskBenchmark {
+	@Param({ "MASTER.DSK", "UniDOS_3.3.dsk", "Prodos.dsk", "galatt.dsk", 
+		"Marble Madness (1985)(Electronic Arts).2mg", BenchImages.SYNTHETIC_32MB })
+	public String image;
+
+	private String filename;
+	private FormattedDisk[] formattedDisks;
+
+	@Setup
+	public void setup() throws IOException, DiskException {
+		filename = BenchImages.path(image);
+		formattedDisks = new Disk(filename).getFormattedDisks();
+	}
+
+	/**
+	 * Read the image and detect its format(s).
+	 */
+	@Benchmark
+	public FormattedDisk[] openAndDetect() throws IOException, DiskException {
+		return new Disk(filename).getFormattedDisks();
+	}
+
+	/**
+	 * Read every catalog on an open image, through FormattedDisk.getFiles.
+	 */
+	@Benchmark
+	public void getFiles(Blackhole blackhole) throws DiskException {
+		for (FormattedDisk formattedDisk : formattedDisks) {
+			getFiles(formattedDisk, blackhole);
+		}
+	}
+
+	/**
+	 * Walk every file and directory on an open image with FileStreamer.
+	 */
+	@Benchmark
+	public long fileStreamer() {
+		return FileStreamer.forFormattedDisks(formattedDisks)
+				.recursive(true)
+				.includeTypeOfFile(TypeOfFile.BOTH)
+				.stream()
+				.count();
+	}
+
+	protected void getFiles(DirectoryEntry directory, Blackhole blackhole) throws DiskException {
+		List<FileEntry> files = directory.getFiles();
+		blackhole.consume(files);
+		for (FileEntry fileEntry : files) {
+			if (fileEntry.isDirectory()) {
+				getFiles((DirectoryEntry) fileEntry, blackhole);
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.bench;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.compare.ComparisonResult;
+import com.webcodepro.applecommander.storage.compare.ContentHasher;
+import com.webcodepro.applecommander.storage.compare.DiskDiff;
+
+/**
+ * Benchmarks comparing a disk image to a copy with one block changed near
+ * the end of the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiskDiffBenchmark {
+	@Param({ "MASTER.DSK", "Prodos.dsk", BenchImages.SYNTHETIC_32MB })
+	public String image;
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	private Disk diskA;
+	private Disk diskB;
+
+	@Setup
+	public void setup() throws IOException, DiskException {
+		diskA = BenchImages.open(image);
+		diskB = BenchImages.open(image);
+		byte[] block = new byte[Disk.BLOCK_SIZE];
+		Arrays.fill(block, (byte) 0xa5);
+		diskB.writeBlock(diskB.getImageOrder().getBlocksOnDevice() - 1, block);
+	}
+
+	/**
+	 * Compare by the native geometry of the disks.
+	 */
+	@Benchmark
+	public ComparisonResult compareByNativeGeometry() {
+		return DiskDiff.create(diskA, diskB)
+				.selectCompareByNativeGeometry()
+				.parallel(parallel)
+				.compare();
+	}
+
+	/**
+	 * Compare by file content, hashing every file.
+	 */
+	@Benchmark
+	public ComparisonResult compareByFileContent() {
+		return DiskDiff.create(diskA, diskB)
+				.selectCompareByFileContent()
+				.withContentHasher(new ContentHasher().parallel(parallel))
+				.compare();
+	}
+}
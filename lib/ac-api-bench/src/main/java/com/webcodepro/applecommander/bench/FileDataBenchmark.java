@@ -0,0 +1,143 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.os.dos33.DosFormatDisk;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.ImageOrder;
+import com.webcodepro.applecommander.storage.physical.NibbleOrder;
+
+/**
+ * Benchmarks reading file data and sectors.  Deleted files are skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileDataBenchmark {
+	@Param({ "original332sysmas.do", "CavernsOfFreitag.dsk" })
+	public String image;
+
+	private DosFormatDisk dosDisk;
+	private List<FileEntry> dosFiles;
+
+	@Setup
+	public void setup() throws IOException, DiskException {
+		Disk disk = BenchImages.open(image);
+		dosDisk = (DosFormatDisk) disk.getFormattedDisks()[0];
+		dosFiles = dosDisk.getFiles().stream()
+				.filter(fileEntry -> !fileEntry.isDeleted())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Read every file on a DOS 3.3 disk with DosFormatDisk.getFileData.
+	 */
+	@Benchmark
+	public long dosGetFileData() {
+		long total = 0;
+		for (FileEntry fileEntry : dosFiles) {
+			total += dosDisk.getFileData(fileEntry).length;
+		}
+		return total;
+	}
+
+	/**
+	 * Read every file on a DOS 3.3 disk through its file data stream.
+	 */
+	@Benchmark
+	public long dosGetFileDataStream() throws IOException {
+		byte[] buffer = new byte[Disk.BLOCK_SIZE];
+		long total = 0;
+		for (FileEntry fileEntry : dosFiles) {
+			try (InputStream inputStream = dosDisk.getFileDataStream(fileEntry)) {
+				int length = inputStream.read(buffer);
+				while (length >= 0) {
+					total += length;
+					length = inputStream.read(buffer);
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Read every sector of a nibble image.
+	 */
+	@Benchmark
+	public long nibbleReadSector(NibbleState state) {
+		NibbleOrder nibbleOrder = state.nibbleOrder;
+		long total = 0;
+		for (int track=0; track<nibbleOrder.getTracksPerDisk(); track++) {
+			for (int sector=0; sector<nibbleOrder.getSectorsPerTrack(); sector++) {
+				total += nibbleOrder.readSector(track, sector)[0];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * A nibble image holding a copy of the disk image, read with and 
+	 * without the decoded track cache.
+	 */
+	@State(Scope.Benchmark)
+	public static class NibbleState {
+		@Param({ "true", "false" })
+		public boolean trackCache;
+
+		private NibbleOrder nibbleOrder;
+
+		@Setup
+		public void setup(FileDataBenchmark benchmark) {
+			ImageOrder dosOrder = benchmark.dosDisk.getImageOrder();
+			nibbleOrder = new NibbleOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_NIBBLE_DISK));
+			nibbleOrder.format();
+			for (int track=0; track<dosOrder.getTracksPerDisk(); track++) {
+				for (int sector=0; sector<dosOrder.getSectorsPerTrack(); sector++) {
+					nibbleOrder.writeSector(track, sector, dosOrder.readSector(track, sector));
+				}
+			}
+			nibbleOrder.setTrackCacheEnabled(trackCache);
+		}
+	}
+}
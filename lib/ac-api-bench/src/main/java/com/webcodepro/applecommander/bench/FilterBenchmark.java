@@ -0,0 +1,105 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.filters.ApplesoftFileFilter;
+import com.webcodepro.applecommander.storage.filters.GraphicsFileFilter;
+
+/**
+ * Benchmarks the file filters used to export and display files.  The 
+ * files are from the Phantasie II disk used by the unit tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+	private FileEntry graphicsFile;
+	private FileEntry applesoftFile;
+	private ApplesoftFileFilter applesoftFileFilter = new ApplesoftFileFilter();
+
+	@Setup
+	public void setup() throws IOException, DiskException {
+		FormattedDisk disk = BenchImages.open("phan2d1.dsk").getFormattedDisks()[0]; //$NON-NLS-1$
+		graphicsFile = disk.getFile("ICE DRAGON"); //$NON-NLS-1$
+		applesoftFile = disk.getFile("PHANTASIE II"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Render a hi-res picture and encode it as an image file.
+	 */
+	@Benchmark
+	public byte[] graphicsFilter(GraphicsState state) {
+		return state.graphicsFileFilter.filter(graphicsFile);
+	}
+
+	/**
+	 * Detokenize an Applesoft program.
+	 */
+	@Benchmark
+	public byte[] applesoftFilter() {
+		return applesoftFileFilter.filter(applesoftFile);
+	}
+
+	/**
+	 * The graphics filter, for each rendering mode, image format and
+	 * color decoder.
+	 */
+	@State(Scope.Benchmark)
+	public static class GraphicsState {
+		@Param({ "png", "bmp" })
+		public String extension;
+
+		@Param({ "" + GraphicsFileFilter.MODE_HGR_COLOR, "" + GraphicsFileFilter.MODE_HGR_BLACK_AND_WHITE })
+		public int mode;
+
+		@Param({ "true", "false" })
+		public boolean lookupTables;
+
+		private GraphicsFileFilter graphicsFileFilter = new GraphicsFileFilter();
+
+		@Setup
+		public void setup() {
+			graphicsFileFilter.setExtension(extension);
+			graphicsFileFilter.setMode(mode);
+			graphicsFileFilter.setLookupTables(lookupTables);
+		}
+	}
+}
@@ -19,17 +19,25 @@
  */
 package com.webcodepro.applecommander.storage;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
-import com.webcodepro.applecommander.storage.os.cpm.CpmFileEntry;
+import com.webcodepro.applecommander.storage.FormatProbe.Format;
 import com.webcodepro.applecommander.storage.os.cpm.CpmFormatDisk;
 import com.webcodepro.applecommander.storage.os.dos33.DosFormatDisk;
 import com.webcodepro.applecommander.storage.os.dos33.OzDosFormatDisk;
@@ -40,13 +48,16 @@ import com.webcodepro.applecommander.storage.os.pascal.PascalFormatDisk;
 import com.webcodepro.applecommander.storage.os.prodos.ProdosFormatDisk;
 import com.webcodepro.applecommander.storage.os.rdos.RdosFormatDisk;
 import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout.Range;
 import com.webcodepro.applecommander.storage.physical.DosOrder;
 import com.webcodepro.applecommander.storage.physical.ImageOrder;
+import com.webcodepro.applecommander.storage.physical.ImageOrderConverter;
 import com.webcodepro.applecommander.storage.physical.NibbleOrder;
+import com.webcodepro.applecommander.storage.physical.PagedImageLayout;
+import com.webcodepro.applecommander.storage.physical.PagedImageLayout.PageSource;
 import com.webcodepro.applecommander.storage.physical.ProdosOrder;
 import com.webcodepro.applecommander.storage.physical.UniversalDiskImageLayout;
 import com.webcodepro.applecommander.util.AppleUtil;
-import com.webcodepro.applecommander.util.StreamUtil;
 import com.webcodepro.applecommander.util.TextBundle;
 
 /**
@@ -55,7 +66,7 @@ import com.webcodepro.applecommander.util.TextBundle;
  * Date created: Oct 3, 2002 10:59:47 PM
  * @author Rob Greene
  */
-public class Disk {
+public class Disk implements Closeable {
 	/**
 	 * Specifies a filter to be used in determining filetypes which are supported.
 	 * This works from a file extension, so it may or may not apply to the Macintosh.
@@ -92,14 +103,24 @@ public class Disk {
 	public static final int APPLE_20MB_HARDDISK = 20971520;
 	public static final int APPLE_32MB_HARDDISK = 33553920;	// short one block!
 
+	/**
+	 * The DiskCopy 4.2 header size; the disk data immediately follows it.
+	 */
+	private static final int DC42_HEADER_SIZE = 84;
+
 	private static FilenameFilter[] filenameFilters;
 	private static String[] allFileExtensions = null;
 	private TextBundle textBundle = StorageBundle.getInstance();
 	private String filename;
 	private boolean newImage = false;
 	private boolean isDC42 = false;
+	/**
+	 * The raw image file this image was read from, which may be updated in place.
+	 */
+	private File imageFile;
 	private ByteArrayImageLayout diskImageManager;
 	private ImageOrder imageOrder = null;
+	private Map<ImageOrder,FormatProbe> formatProbes = new IdentityHashMap<>();
 
 	/**
 	 * Get the supported file filters supported by the Disk interface.
@@ -206,58 +227,62 @@ public class Disk {
 	public Disk(String filename, int startBlocks, boolean knownProDOSOrder) throws IOException {
 		this.filename = filename;
 		int diskSize = 0;
-		byte[] diskImage = null;
-		byte[] diskImageDC42 = null;
+		PageSource diskImage = null;
 
 		if (isSDK() || isSHK() || isBXY()) {
 			// If we have an SDK, unpack it and send along the byte array
 			// If we have a SHK, build a new disk and unpack the contents on to it
-			diskImage = com.webcodepro.applecommander.util.ShrinkItUtilities.unpackSHKFile(filename, startBlocks);
-			diskSize = diskImage.length;
+			diskImage = PagedImageLayout.wrap(com.webcodepro.applecommander.util.ShrinkItUtilities.unpackSHKFile(filename, startBlocks));
+			diskSize = (int) diskImage.getSize();
 			// Since we don't want to overwrite their shrinkit with a raw ProDOS image,
 			// add a .po extension to it
 			this.filename += ".po"; //$NON-NLS-1$
 		} else {
 			File file = new File(filename);
-			diskSize = (int) file.length();
-			InputStream input = new FileInputStream(file);
 			if (isCompressed()) {
-				input = new GZIPInputStream(input);
+				diskSize = (int) file.length();
+				diskImage = PagedImageLayout.inflate(new GZIPInputStream(new FileInputStream(file)));
+			} else {
+				// Finish any save that was interrupted before reading the image
+				ImageJournal.recover(file);
+				diskSize = (int) file.length();
+				// Pages are only read from the file as they are referenced
+				diskImage = PagedImageLayout.open(file);
+				imageFile = file.getAbsoluteFile();
 			}
-			ByteArrayOutputStream diskImageByteArray = new ByteArrayOutputStream(diskSize);
-			StreamUtil.copy(input, diskImageByteArray);
-			diskImage = diskImageByteArray.toByteArray();
 		}
+		int imageSize = (int) Math.min(diskImage.getSize(), Integer.MAX_VALUE);
+		byte[] header = new byte[Math.min(imageSize, DC42_HEADER_SIZE)];
+		diskImage.read(0, header, 0, header.length);
 		boolean is2img = false;
 		/* Does it have the 2IMG header? */
-		if ((diskImage[0] == 0x32) && (diskImage[1] == 0x49) && (diskImage[2] == 0x4D) && (diskImage[3]) == 0x47) {
+		if (header.length >= 4 && (header[0] == 0x32) && (header[1] == 0x49) && (header[2] == 0x4D) && (header[3]) == 0x47) {
 			is2img = true;
 		}
 		/* Does it have the DiskCopy 4.2 header? */
-		else if (Disk.isDC42(diskImage)) {
+		else if (header.length == DC42_HEADER_SIZE && Disk.isDC42(header)) {
 			isDC42 = true;
-			long end = AppleUtil.getLongValue(diskImage,0x40);
-			if (end < diskImage.length - 83) {
-				diskImageDC42 = new byte[(int)end];
-				System.arraycopy(diskImage, 84, diskImageDC42, 0, (int)end); // 84 bytes into the DC42 stream is where the real data starts
-				diskImageManager = new ByteArrayImageLayout(diskImageDC42);
+			long end = AppleUtil.getLongValue(header,0x40);
+			if (end < imageSize - 83) {
+				// 84 bytes into the DC42 stream is where the real data starts
+				diskImageManager = new PagedImageLayout(diskImage, DC42_HEADER_SIZE, (int)end, 0);
 				// Since we don't want to overwrite their dmg or dc42 with a raw ProDOS image,
 				// add a .po extension to it
 				this.filename += ".po"; //$NON-NLS-1$
 			}
-			else
+			else {
+				diskImage.close();
 				throw new IllegalArgumentException(textBundle.get("CommandLineDC42Bad")); //$NON-NLS-1$
+			}
 		}
-		if (is2img == true || diskImage.length == APPLE_800KB_DISK + UniversalDiskImageLayout.OFFSET 
-				|| diskImage.length == APPLE_5MB_HARDDISK + UniversalDiskImageLayout.OFFSET 
-				|| diskImage.length == APPLE_10MB_HARDDISK + UniversalDiskImageLayout.OFFSET 
-				|| diskImage.length == APPLE_20MB_HARDDISK + UniversalDiskImageLayout.OFFSET 
-				|| diskImage.length == APPLE_32MB_HARDDISK + UniversalDiskImageLayout.OFFSET) {
-			diskImageManager = new UniversalDiskImageLayout(diskImage);
-		} else if (isDC42) {
-			diskImageManager = new ByteArrayImageLayout(diskImageDC42);
-		} else {
-			diskImageManager = new ByteArrayImageLayout(diskImage);
+		if (is2img == true || imageSize == APPLE_800KB_DISK + UniversalDiskImageLayout.OFFSET 
+				|| imageSize == APPLE_5MB_HARDDISK + UniversalDiskImageLayout.OFFSET 
+				|| imageSize == APPLE_10MB_HARDDISK + UniversalDiskImageLayout.OFFSET 
+				|| imageSize == APPLE_20MB_HARDDISK + UniversalDiskImageLayout.OFFSET 
+				|| imageSize == APPLE_32MB_HARDDISK + UniversalDiskImageLayout.OFFSET) {
+			diskImageManager = new PagedImageLayout(diskImage, 0, imageSize, UniversalDiskImageLayout.OFFSET);
+		} else if (!isDC42) {
+			diskImageManager = new PagedImageLayout(diskImage);
 		}
 
 		ImageOrder dosOrder = new DosOrder(diskImageManager);
@@ -327,6 +352,15 @@ public class Disk {
 				}
 			}
 		}
+		/*
+		 * Only the verdicts for the chosen order are of further use; they
+		 * are reused when getFormattedDisks runs the same tests.
+		 */
+		FormatProbe probe = formatProbes.get(imageOrder);
+		formatProbes.clear();
+		if (probe != null) {
+			formatProbes.put(imageOrder, probe);
+		}
 	}
 	
 	/**
@@ -335,30 +369,155 @@ public class Disk {
 	 */
 	public int testImageOrder()
 	{
-		int rc = (true == isProdosFormat() ? 1 : 0) + (true == isDosFormat() ? 2 : 0) + (true == isCpmFormat() ? 4 : 0) + (true == isUniDosFormat() ? 8 : 0) + (true == isPascalFormat() ? 16 : 0) + (true == isOzDosFormat() ? 32 : 0);
+		return testImageOrder(false);
+	}
+
+	/**
+	 * Test the image order to see if we can recognize a file system, with
+	 * the format tests evaluated concurrently when parallel is set.  This
+	 * mostly benefits images whose sectors are expensive to read, such as
+	 * nibble images.
+	 * @see #testImageOrder()
+	 */
+	public int testImageOrder(boolean parallel)
+	{
+		Set<Format> formats = getFormatProbe().probe(parallel,
+				Format.PRODOS, Format.DOS, Format.CPM, Format.UNIDOS, Format.PASCAL, Format.OZDOS);
+		int rc = (formats.contains(Format.PRODOS) ? 1 : 0) + (formats.contains(Format.DOS) ? 2 : 0) + (formats.contains(Format.CPM) ? 4 : 0) + (formats.contains(Format.UNIDOS) ? 8 : 0) + (formats.contains(Format.PASCAL) ? 16 : 0) + (formats.contains(Format.OZDOS) ? 32 : 0);
 		if (rc == 0)
 			rc = -1;
 		return rc;
 	}
 
 	/**
-	 * Save a Disk image to its file.
+	 * Save a Disk image to its file.  When the image was read from that
+	 * same raw file, only the ranges that changed are written.
 	 */
 	public void save() throws IOException {
-		File file = new File(getFilename());
-		if (!file.exists()) {
-			file.createNewFile();
-		}
-		OutputStream output = new FileOutputStream(file);
-		if (isCompressed()) {
-			output = new GZIPOutputStream(output);
+		File file = new File(getFilename()).getAbsoluteFile();
+		ByteArrayImageLayout layout = getDiskImageManager();
+		List<Range> ranges = layout.getChangedRanges();
+		if (ranges != null && canSaveInPlace(file)) {
+			ImageJournal.save(file, layout, ranges);
+			if (layout instanceof PagedImageLayout) {
+				// Pages not yet read are unchanged by the save
+				((PagedImageLayout) layout).refresh();
+			}
+		} else {
+			saveImage(file, layout.getDiskImage());
+			imageFile = isCompressed() ? null : file;
 		}
-		output.write(getDiskImageManager().getDiskImage());
-		output.close();
-		getDiskImageManager().setChanged(false);
+		layout.setChanged(false);
 		newImage = false;
 	}
 
+	/**
+	 * Indicates if only the changed ranges of the image need to be written.
+	 * This is only possible when saving to the same raw image file that the
+	 * image was read from; compressed, DiskCopy, ShrinkIt and new images are
+	 * written in full.
+	 */
+	protected boolean canSaveInPlace(File file) {
+		return !newImage && !isCompressed() && file.equals(imageFile)
+				&& file.length() == getDiskImageManager().getPhysicalSize();
+	}
+
+	/**
+	 * Write the entire image.  The image is written to a new file which then
+	 * replaces the original, so an interrupted save never leaves a partially 
+	 * written image behind.  A symbolic link is followed, so the file it
+	 * points to is replaced.  An original with other hard links, or one that
+	 * cannot be replaced (Windows does not allow this while the file is
+	 * open), is rewritten in place.
+	 */
+	protected void saveImage(File file, byte[] diskImage) throws IOException {
+		Path target = file.toPath();
+		if (Files.exists(target)) {
+			target = target.toRealPath();
+			if (!isCompressed() && getLinkCount(target) > 1) {
+				rewriteImage(target.toFile(), diskImage);
+				return;
+			}
+		}
+		// Unlike Files.createTempFile, this honors the default permissions (umask)
+		Path temporary = File.createTempFile(".ac-", ".tmp", target.toAbsolutePath().getParent().toFile()).toPath(); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			try (FileOutputStream output = new FileOutputStream(temporary.toFile())) {
+				if (isCompressed()) {
+					GZIPOutputStream gzip = new GZIPOutputStream(output);
+					gzip.write(diskImage);
+					gzip.finish();
+				} else {
+					output.write(diskImage);
+				}
+				output.getFD().sync();
+			}
+			copyPermissions(target, temporary);
+			try {
+				try {
+					Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException ex) {
+					Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} catch (FileSystemException ex) {
+				if (isCompressed() || !Files.exists(target)) throw ex;
+				rewriteImage(target.toFile(), diskImage);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Overwrite the contents of an existing image file.
+	 */
+	protected void rewriteImage(File file, byte[] diskImage) throws IOException {
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw")) { //$NON-NLS-1$
+			output.write(diskImage);
+			if (output.length() != diskImage.length) {
+				output.setLength(diskImage.length);
+			}
+			output.getFD().sync();
+		}
+	}
+
+	/**
+	 * Answer the number of hard links to a file; 1 where the file system
+	 * does not say.
+	 */
+	protected int getLinkCount(Path path) throws IOException {
+		try {
+			return (Integer) Files.getAttribute(path, "unix:nlink"); //$NON-NLS-1$
+		} catch (UnsupportedOperationException | IllegalArgumentException ex) {
+			return 1;
+		}
+	}
+
+	/**
+	 * Give a replacement file the permissions of the original, where the
+	 * file system has them.
+	 */
+	protected void copyPermissions(Path original, Path replacement) throws IOException {
+		if (!Files.exists(original)) return;
+		try {
+			Files.setPosixFilePermissions(replacement, Files.getPosixFilePermissions(original));
+		} catch (UnsupportedOperationException ex) {
+			// Not a POSIX file system
+		}
+	}
+
+	/**
+	 * Release the image file.  Parts of the image not yet read can no longer
+	 * be read, so close the Disk once it (and every FormattedDisk obtained 
+	 * from it) is no longer in use.
+	 */
+	public void close() throws IOException {
+		if (getDiskImageManager() instanceof PagedImageLayout) {
+			((PagedImageLayout) getDiskImageManager()).close();
+		}
+	}
+
 	/**
 	 * Save a Disk image as a new/different file.
 	 */
@@ -550,6 +709,13 @@ public class Disk {
 		return imageOrder.readBlock(block);
 	}
 	
+	/**
+	 * Read the block from the disk image into the given buffer at offset.
+	 */
+	public void readBlock(int block, byte[] buffer, int offset) {
+		imageOrder.readBlock(block, buffer, offset);
+	}
+	
 	/**
 	 * Write the block to the disk image.
 	 */
@@ -564,6 +730,14 @@ public class Disk {
 		return imageOrder.readSector(track, sector);
 	}
 	
+	/**
+	 * Retrieve the specified sector into the given buffer at offset.
+	 */
+	public void readSector(int track, int sector, byte[] buffer, int offset) 
+			throws IllegalArgumentException {
+		imageOrder.readSector(track, sector, buffer, offset);
+	}
+	
 	/**
 	 * Write the specified sector.
 	 */
@@ -572,19 +746,26 @@ public class Disk {
 		imageOrder.writeSector(track, sector, bytes);
 	}
 	
+	/**
+	 * Answer with the FormatProbe for the current image order.  Blocks and
+	 * sectors examined by the format tests are read once per image order
+	 * and each verdict is remembered until the disk image changes.
+	 */
+	public FormatProbe getFormatProbe() {
+		FormatProbe probe = formatProbes.get(imageOrder);
+		if (probe == null || !probe.isCurrent(imageOrder)) {
+			probe = new FormatProbe(imageOrder);
+			formatProbes.put(imageOrder, probe);
+		}
+		return probe;
+	}
+
 	/**
 	 * Test the disk format to see if this is a ProDOS formatted
 	 * disk.
 	 */
 	public boolean isProdosFormat() {
-		byte[] prodosVolumeDirectory = readBlock(2);
-		int volDirEntryLength = prodosVolumeDirectory[0x23];
-		int volDirEntriesPerBlock = prodosVolumeDirectory[0x24];
-
-		return prodosVolumeDirectory[0] == 0 &&
-			prodosVolumeDirectory[1] == 0 &&
-			(prodosVolumeDirectory[4]&0xf0) == 0xf0 &&
-			(volDirEntryLength * volDirEntriesPerBlock <= BLOCK_SIZE);
+		return getFormatProbe().is(Format.PRODOS);
 	}
 	
 	/**
@@ -593,44 +774,7 @@ public class Disk {
 	 * different characteristics.  This just tests 140KB images.
 	 */
 	public boolean isDosFormat() {
-		boolean good = false;
-		if (!is140KbDisk()) {
-			return false;
-		}
-		try {
-			byte[] vtoc = readSector(17, 0);
-			good = (imageOrder.isSizeApprox(APPLE_140KB_DISK)
-					 || imageOrder.isSizeApprox(APPLE_140KB_NIBBLE_DISK))						 
-						&& vtoc[0x01] == 17		// expect catalog to start on track 17
-			// can vary	&& vtoc[0x02] == 15		// expect catalog to start on sector 15 (140KB disk only!)
-						&& vtoc[0x27] == 122	// expect 122 track/sector pairs per sector
-						&& (vtoc[0x34] == 35 || vtoc[0x34] == 40) // expect 35 or 40 tracks per disk (140KB disk only!)
-						&& vtoc[0x35] == 16		// expect 16 sectors per disk (140KB disk only!)
-						;
-			if (good) {
-				int catTrack = vtoc[0x01]; // Pull out the first catalog track/sector
-				int catSect = vtoc[0x02];
-				byte[] cat = readSector(catTrack, catSect);
-				if (catTrack == cat[1] && catSect == cat[2] + 1) {
-					// Still good... let's follow one more
-					catTrack = cat[1];
-					catSect = cat[2];
-					cat = readSector(catTrack, catSect);
-					if (catTrack == cat[1] && catSect == cat[2] + 1) {
-						good = true;
-					} else {
-						good = false;
-					}
-				}
-			}
-		} catch (Exception ex) {
-			/*
-			 *  If we get various exceptions from reading tracks and sectors, then we
-			 *  definitely don't have a valid DOS image. 
-			 */
-			good = false;
-		}
-		return good;
+		return getFormatProbe().is(Format.DOS);
 	}
 
 	/**
@@ -640,28 +784,9 @@ public class Disk {
 	 * logical disk takes up the second 400KB.
 	 */
 	public boolean isUniDosFormat() {
-		if (!is800KbDisk()) return false;
-		byte[] vtoc1 = readSector(17, 0);	// logical disk #1
-		byte[] vtoc2 = readSector(67, 0);	// logical disk #2
-		return
-			// LOGICAL DISK #1
-			vtoc1[0x01] == 17		// expect catalog to start on track 17
-			&& vtoc1[0x02] == 31	// expect catalog to start on sector 31
-			&& vtoc1[0x27] == 122	// expect 122 tract/sector pairs per sector
-			&& vtoc1[0x34] == 50	// expect 50 tracks per disk
-			&& vtoc1[0x35] == 32	// expect 32 sectors per disk
-			&& vtoc1[0x36] == 0		// bytes per sector (low byte)
-			&& vtoc1[0x37] == 1		// bytes per sector (high byte)
-			// LOGICAL DISK #2
-			&& vtoc2[0x01] == 17	// expect catalog to start on track 17
-			&& vtoc2[0x02] == 31	// expect catalog to start on sector 31
-			&& vtoc2[0x27] == 122	// expect 122 tract/sector pairs per sector
-			&& vtoc2[0x34] == 50	// expect 50 tracks per disk
-			&& vtoc2[0x35] == 32	// expect 32 sectors per disk
-			&& vtoc2[0x36] == 0		// bytes per sector (low byte)
-			&& vtoc2[0x37] == 1;	// bytes per sector (high byte)
+		return getFormatProbe().is(Format.UNIDOS);
 	}
-
+	
 	/**
 	 * Test the disk format to see if this is a OzDOS formatted
 	 * disk.  OzDOS creates two logical disks on an 800KB physical disk.
@@ -669,63 +794,23 @@ public class Disk {
 	 * the second logical disk takes the second half of each block.
 	 */
 	public boolean isOzDosFormat() {
-		if (!is800KbDisk()) return false;
-		byte[] vtoc = readBlock(544);	// contains BOTH VTOCs!
-		return
-			// LOGICAL DISK #1
-			vtoc[0x001] == 17		// expect catalog to start on track 17
-			&& vtoc[0x002] == 31	// expect catalog to start on sector 31
-			&& vtoc[0x027] == 122	// expect 122 tract/sector pairs per sector
-			&& vtoc[0x034] == 50	// expect 50 tracks per disk
-			&& vtoc[0x035] == 32	// expect 32 sectors per disk
-			&& vtoc[0x036] == 0		// bytes per sector (low byte)
-			&& vtoc[0x037] == 1		// bytes per sector (high byte)
-			// LOGICAL DISK #2
-			&& vtoc[0x137] == 1		// bytes per sector (high byte)
-			&& vtoc[0x101] == 17	// expect catalog to start on track 17
-			&& vtoc[0x102] == 31	// expect catalog to start on sector 31
-			&& vtoc[0x127] == 122	// expect 122 tract/sector pairs per sector
-			&& vtoc[0x134] == 50	// expect 50 tracks per disk
-			&& vtoc[0x135] == 32	// expect 32 sectors per disk
-			&& vtoc[0x136] == 0		// bytes per sector (low byte)
-			&& vtoc[0x137] == 1;	// bytes per sector (high byte)
+		return getFormatProbe().is(Format.OZDOS);
 	}
 	
 	/**
 	 * Test the disk format to see if this is a NakedOS formatted
-	 * disk.  
+	 * disk.
 	 */
 	public boolean isNakedosFormat() {
-		if (!is140KbDisk()) return false;
-		byte[] vtoc = readSector(0, 3); // VTOC starts on sector 9 (mapped to 3)
-		return (imageOrder.isSizeApprox(APPLE_140KB_DISK)
-				 || imageOrder.isSizeApprox(APPLE_140KB_NIBBLE_DISK))						 
-			&& vtoc[0xd0] == -2		// expect DOS as reserved
-			&& vtoc[0xd1] == -2		// expect DOS as reserved
-			&& vtoc[0xd2] == -2		// expect DOS as reserved
-			&& vtoc[0xd3] == -2		// expect DOS as reserved
-			&& vtoc[0xd4] == -2		// expect DOS as reserved
-			&& vtoc[0xd5] == -2		// expect DOS as reserved
-			&& vtoc[0xd6] == -2		// expect DOS as reserved
-			&& vtoc[0xd7] == -2		// expect DOS as reserved
-			&& vtoc[0xd8] == -2		// expect DOS as reserved
-			&& vtoc[0xd9] == -2		// expect DOS as reserved
-			&& vtoc[0xda] == -2		// expect DOS as reserved
-			&& vtoc[0xdb] == -2		// expect DOS as reserved
-			&& vtoc[0xdc] != -2		// expect something besides DOS next
-			;
+		return getFormatProbe().is(Format.NAKEDOS);
 	}
-
+	
 	/**
 	 * Test the disk format to see if this is a Pascal formatted
 	 * disk. Pascal disks may be either 140K or 800K.
 	 */
 	public boolean isPascalFormat() {
-		if (!(is140KbDisk() || is800KbDisk())) return false;
-		byte[] directory = readBlock(2);
-		return directory[0] == 0 && directory[1] == 0
-			&& directory[2] == 6 && directory[3] == 0
-			&& directory[4] == 0 && directory[5] == 0;
+		return getFormatProbe().is(Format.PASCAL);
 	}
 	
 	/**
@@ -733,35 +818,7 @@ public class Disk {
 	 * Check the first 256 bytes of the CP/M directory for validity.
 	 */
 	public boolean isCpmFormat() {
-		if (!is140KbDisk()) return false;
-		byte[] directory = readSector(3, 0);
-		int bytes[] = new int[256];
-		for (int i=0; i<directory.length; i++) {
-			bytes[i] = AppleUtil.getUnsignedByte(directory[i]);
-		}
-		int offset = 0;
-		while (offset < directory.length) {
-			// Check if this is an empty directory entry (and ignore it)
-			int e5count = 0;
-			for (int i=0; i<CpmFileEntry.ENTRY_LENGTH; i++) {
-				e5count+= bytes[offset+i] == 0xe5 ? 1 : 0;
-			}
-			if (e5count != CpmFileEntry.ENTRY_LENGTH) {	// Not all bytes were 0xE5
-				// Check user number. Should be 0-15 or 0xE5
-				if (bytes[offset] > 15 && bytes[offset] != 0xe5) return false;
-				// Validate filename has highbit off
-				for (int i=0; i<8; i++) {
-					if (bytes[offset+1+i] > 127) return false; 
-				}
-				// Extent should be 0-31 (low = 0-31 and high = 0)
-				if (bytes[offset+0xc] > 31 || bytes[offset+0xe] > 0) return false;
-				// Number of used records cannot exceed 0x80
-				if (bytes[offset+0xf] > 0x80) return false;
-			}
-			// Next entry
-			offset+= CpmFileEntry.ENTRY_LENGTH;
-		}
-		return true;
+		return getFormatProbe().is(Format.CPM);
 	}
 	
 	/**
@@ -788,10 +845,7 @@ public class Disk {
 	 * disk.
 	 */
 	public boolean isRdosFormat() {
-		if (!is140KbDisk()) return false;
-		byte[] block = readSector(0, 0x0d);
-		String id = AppleUtil.getString(block, 0xe0, 4);
-		return "RDOS".equals(id); //$NON-NLS-1$
+		return getFormatProbe().is(Format.RDOS);
 	}
 	
 	/**
@@ -799,13 +853,7 @@ public class Disk {
 	 * disk.
 	 */
 	public boolean isWPFormat() {
-		if (!is140KbDisk()) return false;
-		byte[] vtoc = readSector(17, 7);
-		return (imageOrder.isSizeApprox(APPLE_140KB_DISK)
-				 || imageOrder.isSizeApprox(APPLE_140KB_NIBBLE_DISK))						 
-			&& vtoc[0x00] == 17		// expect catalog to start on track 17
-			&& vtoc[0x01] == 7		// expect catalog to start on sector 7
-			&& vtoc[0x0f] == -115;		// expect 0x8d's every 16 bytes
+		return getFormatProbe().is(Format.WP);
 	}
 
 	/**
@@ -900,35 +948,25 @@ public class Disk {
 	}
 
 	/**
-	 * Change ImageOrder from source order to target order by copying sector by
-	 * sector.
+	 * Change ImageOrder from source order to target order by track and sector.
 	 */
 	private void changeImageOrderByTrackAndSector(ImageOrder sourceOrder, ImageOrder targetOrder)
 	{
 		if (!sameSectorsPerDisk(sourceOrder, targetOrder)) {
 			throw new IllegalArgumentException(textBundle.get("Disk.ResizeDiskError"));
 		}
-		for (int track = 0; track < sourceOrder.getTracksPerDisk(); track++) {
-			for (int sector = 0; sector < sourceOrder.getSectorsPerTrack(); sector++) {
-				byte[] data = sourceOrder.readSector(track, sector);
-				targetOrder.writeSector(track, sector, data);
-			}
-		}
+		ImageOrderConverter.convertByTrackAndSector(sourceOrder, targetOrder);
 	}
 
 	/**
-	 * Change ImageOrder from source order to target order by copying block by
-	 * block.
+	 * Change ImageOrder from source order to target order by block.
 	 */
 	private void changeImageOrderByBlock(ImageOrder sourceOrder, ImageOrder targetOrder)
 	{
 		if (!sameBlocksPerDisk(sourceOrder, targetOrder)) {
 			throw new IllegalArgumentException(textBundle.get("Disk.ResizeDiskError"));
 		}
-		for (int block = 0; block < sourceOrder.getBlocksOnDevice(); block++) {
-			byte[] blockData = sourceOrder.readBlock(block);
-			targetOrder.writeBlock(block, blockData);
-		}
+		ImageOrderConverter.convertByBlock(sourceOrder, targetOrder);
 	}
 
 	/**
@@ -0,0 +1,48 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import java.util.Date;
+
+/**
+ * Receives the column data of a file as typed values, one call per column
+ * in the order of FormattedDisk.getFileColumnHeaders.  The key is the
+ * column header key.
+ * 
+ * @see FileEntry#writeFileColumnValues(int, FileColumnWriter)
+ */
+public interface FileColumnWriter {
+	/**
+	 * A text value, or a value that is only available pre-formatted.
+	 */
+	void writeString(String key, String value);
+	/**
+	 * A count, size, address or other whole number.
+	 */
+	void writeNumber(String key, long value);
+	/**
+	 * A flag, such as locked or deleted.
+	 */
+	void writeBoolean(String key, boolean value);
+	/**
+	 * A date; null when the file has no date.
+	 */
+	void writeDate(String key, Date value);
+}
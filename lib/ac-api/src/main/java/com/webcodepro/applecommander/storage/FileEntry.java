@@ -19,8 +19,14 @@
  */
 package com.webcodepro.applecommander.storage;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
 
+import com.webcodepro.applecommander.storage.FormattedDisk.FileColumnHeader;
+
 /**
  * Represents a file entry on disk - not the data.
  * <p>
@@ -85,6 +91,19 @@ public interface FileEntry {
 	 * displayMode is specified in FormattedDisk.
 	 */
 	public List<String> getFileColumnData(int displayMode);
+
+	/**
+	 * Write the column data for the given display mode as typed values:
+	 * numbers, dates and flags are not formatted.  The default writes the
+	 * formatted column data as strings.
+	 */
+	public default void writeFileColumnValues(int displayMode, FileColumnWriter writer) {
+		List<FileColumnHeader> headers = getFormattedDisk().getFileColumnHeaders(displayMode);
+		List<String> data = getFileColumnData(displayMode);
+		for (int i=0; i<headers.size(); i++) {
+			writer.writeString(headers.get(i).getKey(), data.get(i));
+		}
+	}
 	
 	/**
 	 * Get file data.  This handles any operating-system specific issues.
@@ -92,6 +111,23 @@ public interface FileEntry {
 	 * and length into Applesoft files.
 	 */
 	public byte[] getFileData();
+
+	/**
+	 * Get file data as a stream.  This answers the same bytes as getFileData,
+	 * but operating systems that know their file layout read the data as it
+	 * is consumed rather than assembling the entire file first.
+	 */
+	public default InputStream getFileDataStream() {
+		return new ByteArrayInputStream(getFileData());
+	}
+
+	/**
+	 * Get file data as a channel.
+	 * @see #getFileDataStream()
+	 */
+	public default ReadableByteChannel getFileDataChannel() {
+		return Channels.newChannel(getFileDataStream());
+	}
 	
 	/**
 	 * Set file data.  This, essentially, is saving data to disk using this
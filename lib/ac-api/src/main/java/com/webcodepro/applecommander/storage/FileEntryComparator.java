@@ -20,6 +20,8 @@
 package com.webcodepro.applecommander.storage;
 
 import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * Sort FileEntry objects by the columnIndex.  Mostly useful to the interface.
@@ -31,14 +33,22 @@ import java.util.Comparator;
  */
 public class FileEntryComparator implements Comparator<FileEntry> {
 	private int columnIndex;
-	private int displayMode;
+	private Function<FileEntry,List<String>> columnData;
 	
 	/**
 	 * Construct a FileEntryComparator for the given columnIndex.
 	 */
 	public FileEntryComparator(int columnIndex, int displayMode) {
+		this(columnIndex, entry -> entry.getFileColumnData(displayMode));
+	}
+
+	/**
+	 * Construct a FileEntryComparator for the given columnIndex, taking the
+	 * column data from the given function (which may cache it).
+	 */
+	public FileEntryComparator(int columnIndex, Function<FileEntry,List<String>> columnData) {
 		this.columnIndex = columnIndex;
-		this.displayMode = displayMode;
+		this.columnData = columnData;
 	}
 
 	/**
@@ -50,8 +60,8 @@ public class FileEntryComparator implements Comparator<FileEntry> {
 			return ((entry1 == null) ? -1 : 0) + ((entry2 == null) ? 1 : 0);
 		}
 		
-		String column1 = entry1.getFileColumnData(displayMode).get(columnIndex);
-		String column2 = entry2.getFileColumnData(displayMode).get(columnIndex);
+		String column1 = columnData.apply(entry1).get(columnIndex);
+		String column2 = columnData.apply(entry2).get(columnIndex);
 		
 		if (isAllDigits(column1) && isAllDigits(column2)) {
 			int int1 = toInt(column1);
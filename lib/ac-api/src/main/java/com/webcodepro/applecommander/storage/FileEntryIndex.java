@@ -0,0 +1,180 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A case-insensitive index of the files on a FormattedDisk, by full path
+ * (such as "DIR/SUBDIR/FILE") and by filename.  The index is built on first
+ * use and then kept up to date as files are created, renamed and deleted.
+ * Deleted files are not indexed.  Entries are matched with equals, so an
+ * entry read again from the disk matches where the operating system allows.
+ * <p>
+ * The maintenance methods answer false when a change cannot be applied, in
+ * which case the index must be discarded and rebuilt.
+ *
+ * @see FormattedDisk#getFileIndex()
+ */
+public class FileEntryIndex {
+	/** Separates the directory names in a path. */
+	public static final String SEPARATOR = "/"; //$NON-NLS-1$
+
+	private Map<String,FileEntry> entriesByPath = new HashMap<>();
+	private Map<String,List<FileEntry>> entriesByName = new HashMap<>();
+	private Map<FileEntry,String> parentPaths = new HashMap<>();
+
+	/**
+	 * Construct a FileEntryIndex of all files on the given disk.
+	 */
+	public FileEntryIndex(FormattedDisk disk) throws DiskException {
+		addAll(disk.getFiles(), ""); //$NON-NLS-1$
+	}
+
+	/**
+	 * Index the files in a directory.  The files within a directory are 
+	 * indexed ahead of the directory itself, which matches the search order
+	 * FormattedDisk.getFile has always used for filenames.
+	 */
+	protected void addAll(List<FileEntry> files, String parentPath) throws DiskException {
+		if (files == null) return;
+		for (FileEntry fileEntry : files) {
+			if (fileEntry.isDeleted()) continue;
+			if (fileEntry.isDirectory()) {
+				addAll(((DirectoryEntry) fileEntry).getFiles(), join(parentPath, fileEntry.getFilename()));
+			}
+			add(parentPath, fileEntry);
+		}
+	}
+
+	/**
+	 * Get the file with the given full path, or null if there is none.
+	 */
+	public FileEntry getFile(String path) {
+		return entriesByPath.get(key(path));
+	}
+
+	/**
+	 * Get a file by filename within the given directory, or null if there is none.
+	 */
+	public FileEntry getFile(DirectoryEntry directory, String filename) {
+		String parentPath = getPath(directory);
+		return (parentPath == null) ? null : getFile(join(parentPath, filename));
+	}
+
+	/**
+	 * Get the first file with the given filename in any directory, or null
+	 * if there is none.
+	 */
+	public FileEntry getFirstFile(String filename) {
+		List<FileEntry> fileEntries = entriesByName.get(key(filename));
+		return (fileEntries == null) ? null : fileEntries.get(0);
+	}
+
+	/**
+	 * Get the full path of a directory, or null if the directory is not
+	 * known to this index.  The disk itself is the root directory, with an
+	 * empty path.
+	 */
+	public String getPath(DirectoryEntry directory) {
+		if (directory instanceof FormattedDisk) {
+			return ""; //$NON-NLS-1$
+		}
+		if (directory instanceof FileEntry) {
+			FileEntry fileEntry = (FileEntry) directory;
+			String parentPath = parentPaths.get(fileEntry);
+			return (parentPath == null) ? null : join(parentPath, fileEntry.getFilename());
+		}
+		return null;
+	}
+
+	/**
+	 * A file or directory has been created in the given directory.  A new
+	 * file may not have a filename yet; it is indexed when it is named.
+	 */
+	public boolean added(DirectoryEntry directory, FileEntry fileEntry) {
+		String parentPath = getPath(directory);
+		if (parentPath == null) return false;
+		add(parentPath, fileEntry);
+		return true;
+	}
+
+	/**
+	 * A file has been renamed.  Renaming a directory changes the path of
+	 * every file within it, so that is not applied.  Naming a new entry
+	 * that is not known to the index is ignored; it is indexed when it is
+	 * added.
+	 */
+	public boolean renamed(FileEntry fileEntry, String oldFilename) {
+		String parentPath = parentPaths.get(fileEntry);
+		if (parentPath == null) {
+			return oldFilename == null || oldFilename.trim().isEmpty();
+		}
+		if (fileEntry.isDirectory()) return false;
+		remove(parentPath, oldFilename, fileEntry);
+		add(parentPath, fileEntry);
+		return true;
+	}
+
+	/**
+	 * A file is being deleted.  Deleting a directory is not applied.
+	 */
+	public boolean deleted(FileEntry fileEntry) {
+		String parentPath = parentPaths.remove(fileEntry);
+		if (parentPath == null || fileEntry.isDirectory()) return false;
+		remove(parentPath, fileEntry.getFilename(), fileEntry);
+		return true;
+	}
+
+	protected void add(String parentPath, FileEntry fileEntry) {
+		parentPaths.put(fileEntry, parentPath);
+		String filename = fileEntry.getFilename();
+		if (filename == null || filename.trim().isEmpty()) return;
+		entriesByPath.putIfAbsent(key(join(parentPath, filename)), fileEntry);
+		entriesByName.computeIfAbsent(key(filename), k -> new ArrayList<>()).add(fileEntry);
+	}
+
+	protected void remove(String parentPath, String filename, FileEntry fileEntry) {
+		if (filename == null) return;
+		entriesByPath.remove(key(join(parentPath, filename)), fileEntry);
+		List<FileEntry> fileEntries = entriesByName.get(key(filename));
+		if (fileEntries != null) {
+			fileEntries.remove(fileEntry);
+			if (fileEntries.isEmpty()) entriesByName.remove(key(filename));
+		}
+	}
+
+	protected static String join(String parentPath, String filename) {
+		String name = (filename == null) ? "" : filename.trim(); //$NON-NLS-1$
+		return parentPath.isEmpty() ? name : parentPath + SEPARATOR + name;
+	}
+
+	protected static String key(String path) {
+		String key = path.trim().toUpperCase(Locale.ROOT);
+		while (key.startsWith(SEPARATOR)) {
+			key = key.substring(1);
+		}
+		return key;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * Streams the data of a file one block or sector at a time, so that only
+ * the block or sector currently being read is held in memory.
+ * <p>
+ * The stream answers exactly length bytes.  If the blocks run out first,
+ * the remainder is zero filled; this matches the byte arrays built by
+ * FormattedDisk.getFileData, which are sized up front.  A limit set past
+ * the end of those length bytes (a corrupt length recorded within the file)
+ * fails with an ArrayIndexOutOfBoundsException once the data runs out, just
+ * as copying from the getFileData array does.
+ *
+ * @see FileEntry#getFileDataStream()
+ */
+public class FileEntryInputStream extends InputStream {
+	private static final byte[] ZEROS = new byte[Disk.BLOCK_SIZE];
+
+	private Supplier<byte[]> blocks;
+	private long remaining;
+	private long available;
+	private byte[] current;
+	private int position;
+
+	/**
+	 * Construct a FileEntryInputStream.
+	 * @param blocks supplies each block or sector in turn, and null at the end
+	 * @param length the number of bytes in the file
+	 */
+	public FileEntryInputStream(Supplier<byte[]> blocks, long length) {
+		this.blocks = blocks;
+		this.remaining = Math.max(0, length);
+		this.available = this.remaining;
+	}
+
+	/**
+	 * Limit the stream to the given number of bytes beyond the current
+	 * position.  Used where the file length is recorded within the file
+	 * data itself, such as DOS 3.3 binary files.  Reading past the end of
+	 * the file data fails.
+	 */
+	public FileEntryInputStream limit(long length) {
+		this.remaining = Math.max(0, length);
+		return this;
+	}
+
+	/**
+	 * Read a 16-bit little endian value, such as a DOS 3.3 address or
+	 * length, answering -1 at the end of the stream.
+	 */
+	public int readWord() {
+		int low = read();
+		int high = read();
+		return (low < 0 || high < 0) ? -1 : low + high * 256;
+	}
+
+	@Override
+	public int read() {
+		if (!fill()) return -1;
+		remaining--;
+		available--;
+		return current[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) {
+		if (length == 0) return 0;
+		if (!fill()) return -1;
+		int count = (int) Math.min(Math.min(length, current.length - position), 
+				Math.min(remaining, available));
+		System.arraycopy(current, position, buffer, offset, count);
+		position += count;
+		remaining -= count;
+		available -= count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return (current == null) ? 0 
+				: (int) Math.min(current.length - position, Math.min(remaining, available));
+	}
+
+	@Override
+	public void close() {
+		remaining = 0;
+		current = null;
+		blocks = null;
+	}
+
+	/**
+	 * Ensure there is data available at position, answering false at the
+	 * end of the stream.
+	 */
+	protected boolean fill() {
+		if (remaining <= 0) return false;
+		if (available <= 0) {
+			throw new ArrayIndexOutOfBoundsException(String.format(
+					"File data ends %d bytes short of its recorded length", remaining)); //$NON-NLS-1$
+		}
+		while (current == null || position >= current.length) {
+			byte[] block = (blocks == null) ? null : blocks.get();
+			if (block == null) {
+				blocks = null;
+				block = ZEROS;
+			}
+			current = block;
+			position = 0;
+		}
+		return true;
+	}
+}
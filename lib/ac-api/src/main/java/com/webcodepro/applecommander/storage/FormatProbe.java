@@ -0,0 +1,392 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.webcodepro.applecommander.storage.os.cpm.CpmFileEntry;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.ImageOrder;
+import com.webcodepro.applecommander.util.AppleUtil;
+
+/**
+ * Recognizes the operating system formats on a disk image for one particular
+ * image order.  Each block or sector examined is read from the image order
+ * only once and each format signature is only evaluated once; the results
+ * remain valid until the disk image is modified.
+ * <p>
+ * The signatures themselves were originally part of Disk.
+ *
+ * @see Disk#isProdosFormat()
+ */
+public class FormatProbe {
+	private static final Logger LOG = Logger.getLogger(FormatProbe.class.getName());
+	/**
+	 * The operating system formats that can be recognized.
+	 */
+	public enum Format {
+		PRODOS, DOS, CPM, UNIDOS, PASCAL, OZDOS, NAKEDOS, RDOS, WP
+	}
+
+	private ImageOrder imageOrder;
+	/**
+	 * The disk image and its modification count when probing started.
+	 */
+	private ByteArrayImageLayout layout;
+	private long modificationCount;
+	/**
+	 * Snapshot of everything that has been read, keyed by block number or
+	 * by track and sector.
+	 */
+	private Map<Integer,byte[]> blocks = new ConcurrentHashMap<>();
+	private Map<Integer,byte[]> sectors = new ConcurrentHashMap<>();
+	/**
+	 * The result of each signature evaluated so far.
+	 */
+	private Map<Format,Boolean> verdicts = new ConcurrentHashMap<>();
+
+	/**
+	 * Construct a FormatProbe for the given image order.
+	 */
+	public FormatProbe(ImageOrder imageOrder) {
+		this.imageOrder = imageOrder;
+		this.layout = imageOrder.getDiskImageManager();
+		this.modificationCount = layout.getModificationCount();
+	}
+
+	/**
+	 * Indicates if this probe was built for the image order and the disk
+	 * image has not been modified since.
+	 */
+	public boolean isCurrent(ImageOrder imageOrder) {
+		return this.imageOrder == imageOrder
+			&& layout == imageOrder.getDiskImageManager()
+			&& modificationCount == layout.getModificationCount();
+	}
+
+	/**
+	 * Test a single format.  The verdict is remembered.
+	 */
+	public boolean is(Format format) {
+		Boolean verdict = verdicts.get(format);
+		if (verdict == null) {
+			verdict = evaluate(format);
+			verdicts.put(format, verdict);
+		}
+		return verdict;
+	}
+
+	/**
+	 * Test several formats, answering with those that were recognized.
+	 * When parallel is set, the signatures are evaluated concurrently; each
+	 * still reads only the blocks and sectors it examines.
+	 */
+	public Set<Format> probe(boolean parallel, Format... formats) {
+		Stream<Format> stream = Arrays.stream(formats);
+		if (parallel) {
+			stream = stream.parallel();
+		}
+		Set<Format> found = stream.filter(this::is).collect(Collectors.toSet());
+		return found.isEmpty() ? EnumSet.noneOf(Format.class) : EnumSet.copyOf(found);
+	}
+
+	/**
+	 * Evaluate the signature for a format.  A block or sector that cannot
+	 * be read (such as a damaged sector in a nibble image) only means this
+	 * format is not recognized; the other formats are still tested.
+	 */
+	protected boolean evaluate(Format format) {
+		try {
+			switch (format) {
+			case PRODOS:	return isProdosFormat();
+			case DOS:		return isDosFormat();
+			case CPM:		return isCpmFormat();
+			case UNIDOS:	return isUniDosFormat();
+			case PASCAL:	return isPascalFormat();
+			case OZDOS:		return isOzDosFormat();
+			case NAKEDOS:	return isNakedosFormat();
+			case RDOS:		return isRdosFormat();
+			case WP:		return isWPFormat();
+			default:		return false;
+			}
+		} catch (RuntimeException ex) {
+			LOG.fine(String.format("Unable to test for %s: %s", format, ex.getMessage())); //$NON-NLS-1$
+			return false;
+		}
+	}
+
+	/**
+	 * Read a block, from the snapshot if it has already been read.
+	 */
+	protected byte[] block(int block) {
+		return blocks.computeIfAbsent(block, imageOrder::readBlock);
+	}
+
+	/**
+	 * Read a sector, from the snapshot if it has already been read.
+	 */
+	protected byte[] sector(int track, int sector) {
+		return sectors.computeIfAbsent(track * 256 + sector,
+				key -> imageOrder.readSector(track, sector));
+	}
+
+	/**
+	 * Test the disk format to see if this is a ProDOS formatted
+	 * disk.
+	 */
+	protected boolean isProdosFormat() {
+		byte[] prodosVolumeDirectory = block(2);
+		int volDirEntryLength = prodosVolumeDirectory[0x23];
+		int volDirEntriesPerBlock = prodosVolumeDirectory[0x24];
+
+		return prodosVolumeDirectory[0] == 0 &&
+			prodosVolumeDirectory[1] == 0 &&
+			(prodosVolumeDirectory[4]&0xf0) == 0xf0 &&
+			(volDirEntryLength * volDirEntriesPerBlock <= Disk.BLOCK_SIZE);
+	}
+
+	/**
+	 * Test the disk format to see if this is a DOS 3.3 formatted
+	 * disk.  This is a little nasty - since 800KB and 140KB images have
+	 * different characteristics.  This just tests 140KB images.
+	 */
+	protected boolean isDosFormat() {
+		boolean good = false;
+		if (!is140KbDisk()) {
+			return false;
+		}
+		try {
+			byte[] vtoc = sector(17, 0);
+			good = (imageOrder.isSizeApprox(Disk.APPLE_140KB_DISK)
+					 || imageOrder.isSizeApprox(Disk.APPLE_140KB_NIBBLE_DISK))
+						&& vtoc[0x01] == 17		// expect catalog to start on track 17
+			// can vary	&& vtoc[0x02] == 15		// expect catalog to start on sector 15 (140KB disk only!)
+						&& vtoc[0x27] == 122	// expect 122 track/sector pairs per sector
+						&& (vtoc[0x34] == 35 || vtoc[0x34] == 40) // expect 35 or 40 tracks per disk (140KB disk only!)
+						&& vtoc[0x35] == 16		// expect 16 sectors per disk (140KB disk only!)
+						;
+			if (good) {
+				int catTrack = vtoc[0x01]; // Pull out the first catalog track/sector
+				int catSect = vtoc[0x02];
+				byte[] cat = sector(catTrack, catSect);
+				if (catTrack == cat[1] && catSect == cat[2] + 1) {
+					// Still good... let's follow one more
+					catTrack = cat[1];
+					catSect = cat[2];
+					cat = sector(catTrack, catSect);
+					if (catTrack == cat[1] && catSect == cat[2] + 1) {
+						good = true;
+					} else {
+						good = false;
+					}
+				}
+			}
+		} catch (Exception ex) {
+			/*
+			 *  If we get various exceptions from reading tracks and sectors, then we
+			 *  definitely don't have a valid DOS image.
+			 */
+			good = false;
+		}
+		return good;
+	}
+
+	/**
+	 * Test the disk format to see if this is a UniDOS formatted
+	 * disk.  UniDOS creates two logical disks on an 800KB physical disk.
+	 * The first logical disk takes up the first 400KB and the second
+	 * logical disk takes up the second 400KB.
+	 */
+	protected boolean isUniDosFormat() {
+		if (!is800KbDisk()) return false;
+		byte[] vtoc1 = sector(17, 0);	// logical disk #1
+		byte[] vtoc2 = sector(67, 0);	// logical disk #2
+		return
+			// LOGICAL DISK #1
+			vtoc1[0x01] == 17		// expect catalog to start on track 17
+			&& vtoc1[0x02] == 31	// expect catalog to start on sector 31
+			&& vtoc1[0x27] == 122	// expect 122 tract/sector pairs per sector
+			&& vtoc1[0x34] == 50	// expect 50 tracks per disk
+			&& vtoc1[0x35] == 32	// expect 32 sectors per disk
+			&& vtoc1[0x36] == 0		// bytes per sector (low byte)
+			&& vtoc1[0x37] == 1		// bytes per sector (high byte)
+			// LOGICAL DISK #2
+			&& vtoc2[0x01] == 17	// expect catalog to start on track 17
+			&& vtoc2[0x02] == 31	// expect catalog to start on sector 31
+			&& vtoc2[0x27] == 122	// expect 122 tract/sector pairs per sector
+			&& vtoc2[0x34] == 50	// expect 50 tracks per disk
+			&& vtoc2[0x35] == 32	// expect 32 sectors per disk
+			&& vtoc2[0x36] == 0		// bytes per sector (low byte)
+			&& vtoc2[0x37] == 1;	// bytes per sector (high byte)
+	}
+
+	/**
+	 * Test the disk format to see if this is a OzDOS formatted
+	 * disk.  OzDOS creates two logical disks on an 800KB physical disk.
+	 * The first logical disk takes the first half of each block and
+	 * the second logical disk takes the second half of each block.
+	 */
+	protected boolean isOzDosFormat() {
+		if (!is800KbDisk()) return false;
+		byte[] vtoc = block(544);	// contains BOTH VTOCs!
+		return
+			// LOGICAL DISK #1
+			vtoc[0x001] == 17		// expect catalog to start on track 17
+			&& vtoc[0x002] == 31	// expect catalog to start on sector 31
+			&& vtoc[0x027] == 122	// expect 122 tract/sector pairs per sector
+			&& vtoc[0x034] == 50	// expect 50 tracks per disk
+			&& vtoc[0x035] == 32	// expect 32 sectors per disk
+			&& vtoc[0x036] == 0		// bytes per sector (low byte)
+			&& vtoc[0x037] == 1		// bytes per sector (high byte)
+			// LOGICAL DISK #2
+			&& vtoc[0x137] == 1		// bytes per sector (high byte)
+			&& vtoc[0x101] == 17	// expect catalog to start on track 17
+			&& vtoc[0x102] == 31	// expect catalog to start on sector 31
+			&& vtoc[0x127] == 122	// expect 122 tract/sector pairs per sector
+			&& vtoc[0x134] == 50	// expect 50 tracks per disk
+			&& vtoc[0x135] == 32	// expect 32 sectors per disk
+			&& vtoc[0x136] == 0		// bytes per sector (low byte)
+			&& vtoc[0x137] == 1;	// bytes per sector (high byte)
+	}
+
+	/**
+	 * Test the disk format to see if this is a NakedOS formatted
+	 * disk.
+	 */
+	protected boolean isNakedosFormat() {
+		if (!is140KbDisk()) return false;
+		byte[] vtoc = sector(0, 3); // VTOC starts on sector 9 (mapped to 3)
+		return (imageOrder.isSizeApprox(Disk.APPLE_140KB_DISK)
+				 || imageOrder.isSizeApprox(Disk.APPLE_140KB_NIBBLE_DISK))
+			&& vtoc[0xd0] == -2		// expect DOS as reserved
+			&& vtoc[0xd1] == -2		// expect DOS as reserved
+			&& vtoc[0xd2] == -2		// expect DOS as reserved
+			&& vtoc[0xd3] == -2		// expect DOS as reserved
+			&& vtoc[0xd4] == -2		// expect DOS as reserved
+			&& vtoc[0xd5] == -2		// expect DOS as reserved
+			&& vtoc[0xd6] == -2		// expect DOS as reserved
+			&& vtoc[0xd7] == -2		// expect DOS as reserved
+			&& vtoc[0xd8] == -2		// expect DOS as reserved
+			&& vtoc[0xd9] == -2		// expect DOS as reserved
+			&& vtoc[0xda] == -2		// expect DOS as reserved
+			&& vtoc[0xdb] == -2		// expect DOS as reserved
+			&& vtoc[0xdc] != -2		// expect something besides DOS next
+			;
+	}
+
+	/**
+	 * Test the disk format to see if this is a Pascal formatted
+	 * disk. Pascal disks may be either 140K or 800K.
+	 */
+	protected boolean isPascalFormat() {
+		if (!(is140KbDisk() || is800KbDisk())) return false;
+		byte[] directory = block(2);
+		return directory[0] == 0 && directory[1] == 0
+			&& directory[2] == 6 && directory[3] == 0
+			&& directory[4] == 0 && directory[5] == 0;
+	}
+
+	/**
+	 * Test the disk format to see if this is a CP/M formatted disk.
+	 * Check the first 256 bytes of the CP/M directory for validity.
+	 */
+	protected boolean isCpmFormat() {
+		if (!is140KbDisk()) return false;
+		byte[] directory = sector(3, 0);
+		int bytes[] = new int[256];
+		for (int i=0; i<directory.length; i++) {
+			bytes[i] = AppleUtil.getUnsignedByte(directory[i]);
+		}
+		int offset = 0;
+		while (offset < directory.length) {
+			// Check if this is an empty directory entry (and ignore it)
+			int e5count = 0;
+			for (int i=0; i<CpmFileEntry.ENTRY_LENGTH; i++) {
+				e5count+= bytes[offset+i] == 0xe5 ? 1 : 0;
+			}
+			if (e5count != CpmFileEntry.ENTRY_LENGTH) {	// Not all bytes were 0xE5
+				// Check user number. Should be 0-15 or 0xE5
+				if (bytes[offset] > 15 && bytes[offset] != 0xe5) return false;
+				// Validate filename has highbit off
+				for (int i=0; i<8; i++) {
+					if (bytes[offset+1+i] > 127) return false;
+				}
+				// Extent should be 0-31 (low = 0-31 and high = 0)
+				if (bytes[offset+0xc] > 31 || bytes[offset+0xe] > 0) return false;
+				// Number of used records cannot exceed 0x80
+				if (bytes[offset+0xf] > 0x80) return false;
+			}
+			// Next entry
+			offset+= CpmFileEntry.ENTRY_LENGTH;
+		}
+		return true;
+	}
+
+	/**
+	 * Test the disk format to see if this is a RDOS formatted
+	 * disk.
+	 */
+	protected boolean isRdosFormat() {
+		if (!is140KbDisk()) return false;
+		byte[] block = sector(0, 0x0d);
+		String id = AppleUtil.getString(block, 0xe0, 4);
+		return "RDOS".equals(id); //$NON-NLS-1$
+	}
+
+	/**
+	 * Test the disk format to see if this is a WP formatted
+	 * disk.
+	 */
+	protected boolean isWPFormat() {
+		if (!is140KbDisk()) return false;
+		byte[] vtoc = sector(17, 7);
+		return (imageOrder.isSizeApprox(Disk.APPLE_140KB_DISK)
+				 || imageOrder.isSizeApprox(Disk.APPLE_140KB_NIBBLE_DISK))
+			&& vtoc[0x00] == 17		// expect catalog to start on track 17
+			&& vtoc[0x01] == 7		// expect catalog to start on sector 7
+			&& vtoc[0x0f] == -115;		// expect 0x8d's every 16 bytes
+	}
+
+	/**
+	 * Answers true if this disk image is within the expected 140K
+	 * disk size.  Can vary if a header has been applied or if this is
+	 * a nibblized disk image.
+	 */
+	protected boolean is140KbDisk() {
+		int size = layout.getPhysicalSize();
+		return size >= Disk.APPLE_140KB_DISK && size <= Disk.APPLE_140KB_NIBBLE_DISK;
+	}
+
+	/**
+	 * Answers true if this disk image is within the expected 800K
+	 * disk size.  Can vary if a 2IMG header has been applied.
+	 */
+	protected boolean is800KbDisk() {
+		int size = layout.getPhysicalSize();
+		return size >= Disk.APPLE_800KB_DISK && size <= Disk.APPLE_800KB_2IMG_DISK;
+	}
+}
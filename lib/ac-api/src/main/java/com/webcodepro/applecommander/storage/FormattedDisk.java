@@ -19,6 +19,7 @@
  */
 package com.webcodepro.applecommander.storage;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.SimpleDateFormat;
@@ -36,6 +37,7 @@ import com.webcodepro.applecommander.util.TextBundle;
  */
 public abstract class FormattedDisk extends Disk implements DirectoryEntry {
 	private TextBundle textBundle = StorageBundle.getInstance();
+	private FileEntryIndex fileIndex;
 	/**
 	 * Use this inner class for label/value mappings in the disk info page.
 	 */
@@ -177,7 +179,25 @@ public abstract class FormattedDisk extends Disk implements DirectoryEntry {
 	 * Get the disk usage iterator.
 	 */
 	public abstract DiskUsage getDiskUsage();
-	
+
+	/**
+	 * Get the disk usage as a UsageBitmap, or null if there is no bitmap.
+	 * This default implementation walks the disk usage iterator once; formats
+	 * with a stored bitmap build it directly.
+	 */
+	public UsageBitmap getUsageBitmap() {
+		DiskUsage usage = getDiskUsage();
+		if (usage == null) {
+			return null;
+		}
+		UsageBitmap bitmap = new UsageBitmap(getBitmapLength());
+		for (int unit=0; unit<bitmap.getLength() && usage.hasNext(); unit++) {
+			usage.next();
+			if (usage.isFree()) bitmap.setFree(unit);
+		}
+		return bitmap;
+	}
+
 	/**
 	 * Get the labels to use in the bitmap.
 	 * Note that this should, at a minimum, return an array of
@@ -267,14 +287,129 @@ public abstract class FormattedDisk extends Disk implements DirectoryEntry {
 	 * @see FileEntry#getFileData()
 	 */
 	public abstract byte[] getFileData(FileEntry fileEntry);
+
+	/**
+	 * Get the raw data associated with the specified FileEntry as a stream.
+	 * Operating systems that can read a file incrementally override this.
+	 * @see #getFileData(FileEntry)
+	 * @see FileEntry#getFileDataStream()
+	 */
+	public InputStream getFileDataStream(FileEntry fileEntry) {
+		return new ByteArrayInputStream(getFileData(fileEntry));
+	}
 	
 	/**
 	 * Locate a specific file by filename.
 	 * Returns a null if specific filename is not located.
+	 * Note that in the instance of a system with directories (ie, ProDOS),
+	 * this really returns the first file with the given filename.
 	 */
 	public FileEntry getFile(String filename) throws DiskException {
-		List<FileEntry> files = getFiles();
-		return getFile(files, filename.trim());
+		String name = filename.trim();
+		FileEntry fileEntry = getFileIndex().getFirstFile(name);
+		if (fileEntry != null && !isIndexCurrent(fileEntry, name)) {
+			fileEntry = getFileIndex().getFirstFile(name);
+		}
+		return fileEntry;
+	}
+
+	/**
+	 * Locate a specific file by its full path, such as "DIR/SUBDIR/FILE".
+	 * Returns a null if the file is not located.
+	 */
+	public FileEntry getFileByPath(String path) throws DiskException {
+		FileEntry fileEntry = getFileIndex().getFile(path);
+		if (fileEntry != null && !isIndexCurrent(fileEntry, path)) {
+			fileEntry = getFileIndex().getFile(path);
+		}
+		return fileEntry;
+	}
+
+	/**
+	 * Locate a specific file by filename within a directory on this disk.
+	 * Returns a null if the file is not located.
+	 */
+	public FileEntry getFile(DirectoryEntry directory, String filename) throws DiskException {
+		String name = filename.trim();
+		if (getFileIndex().getPath(directory) == null) {
+			// Not a directory the index knows about, so just look
+			for (FileEntry entry : directory.getFiles()) {
+				String entryName = entry.getFilename();
+				if (!entry.isDeleted() && entryName != null && name.equalsIgnoreCase(entryName.trim())) {
+					return entry;
+				}
+			}
+			return null;
+		}
+		FileEntry fileEntry = getFileIndex().getFile(directory, name);
+		if (fileEntry != null && !isIndexCurrent(fileEntry, name)) {
+			fileEntry = getFile(directory, name);
+		}
+		return fileEntry;
+	}
+
+	/**
+	 * Get the index of files on this disk by path and filename.  The index is
+	 * built on first use and kept up to date as files are created, renamed
+	 * and deleted.  Changes made some other way, such as writing the catalog
+	 * directly, should be followed by invalidateFileIndex.
+	 */
+	public synchronized FileEntryIndex getFileIndex() throws DiskException {
+		if (fileIndex == null) {
+			fileIndex = new FileEntryIndex(this);
+		}
+		return fileIndex;
+	}
+
+	/**
+	 * Discard the file index; it is rebuilt when next used.
+	 */
+	public synchronized void invalidateFileIndex() {
+		fileIndex = null;
+	}
+
+	/**
+	 * Note that a file or directory has been created in the given directory.
+	 * Called by the operating system implementations.
+	 */
+	public synchronized void fileEntryAdded(DirectoryEntry directory, FileEntry fileEntry) {
+		if (fileIndex != null && !fileIndex.added(directory, fileEntry)) {
+			fileIndex = null;
+		}
+	}
+
+	/**
+	 * Note that a file has been renamed.
+	 * Called by the operating system implementations.
+	 */
+	public synchronized void fileEntryRenamed(FileEntry fileEntry, String oldFilename) {
+		if (fileIndex != null && !fileIndex.renamed(fileEntry, oldFilename)) {
+			fileIndex = null;
+		}
+	}
+
+	/**
+	 * Note that a file is about to be deleted.
+	 * Called by the operating system implementations.
+	 */
+	public synchronized void fileEntryDeleted(FileEntry fileEntry) {
+		if (fileIndex != null && !fileIndex.deleted(fileEntry)) {
+			fileIndex = null;
+		}
+	}
+
+	/**
+	 * Check a file found through the index against the disk.  If it no longer 
+	 * matches, the index is out of date and is discarded.
+	 */
+	protected boolean isIndexCurrent(FileEntry fileEntry, String path) {
+		String filename = fileEntry.getFilename();
+		String name = path.substring(path.lastIndexOf(FileEntryIndex.SEPARATOR) + 1).trim();
+		if (!fileEntry.isDeleted() && filename != null && name.equalsIgnoreCase(filename.trim())) {
+			return true;
+		}
+		invalidateFileIndex();
+		return false;
 	}
 	
 	/**
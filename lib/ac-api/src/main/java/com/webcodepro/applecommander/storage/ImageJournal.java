@@ -0,0 +1,192 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout.Range;
+
+/**
+ * Writes the changed ranges of a disk image into the image file in place,
+ * so that a small change to a large image does not rewrite the whole file.
+ * <p>
+ * Before the image is touched, the original bytes of every range are saved
+ * to a journal file alongside the image and flushed to the device, along
+ * with the directory entry of the journal.  The journal is removed (and the
+ * directory flushed again) once the image itself has been flushed.  If a save is
+ * interrupted, the journal is found when the image is next opened and the
+ * original bytes are restored, so the image holds either all of the changes
+ * or none of them.
+ */
+public class ImageJournal {
+	/** Appended to the image filename to name its journal. */
+	public static final String SUFFIX = ".acjournal"; //$NON-NLS-1$
+	private static final int MAGIC = 0x41434A31;	// "ACJ1"
+
+	/**
+	 * Hide constructor from other classes.
+	 */
+	private ImageJournal() {
+		// empty
+	}
+
+	/**
+	 * Answer with the journal file for an image file.
+	 */
+	public static File getJournalFile(File imageFile) {
+		return new File(imageFile.getPath() + SUFFIX);
+	}
+
+	/**
+	 * Write the given physical ranges of the layout into the image file.
+	 */
+	public static void save(File imageFile, ByteArrayImageLayout layout, List<Range> ranges) 
+			throws IOException {
+		if (ranges.isEmpty()) return;
+		File journalFile = getJournalFile(imageFile);
+		writeJournal(imageFile, journalFile, ranges);
+		try (RandomAccessFile image = new RandomAccessFile(imageFile, "rw"); //$NON-NLS-1$
+			 FileChannel channel = image.getChannel()) {
+			for (Range range : ranges) {
+				byte[] data = new byte[range.getLength()];
+				layout.readPhysicalBytes(range.getPosition(), data, 0, data.length);
+				write(channel, range.getPosition(), data);
+			}
+			channel.force(true);
+		}
+		deleteJournal(journalFile);
+	}
+
+	/**
+	 * Restore an image whose last save was interrupted.  Answers true if 
+	 * the image was restored.  A journal that was not completely written
+	 * means the image itself was never touched, so it is simply removed.
+	 */
+	public static boolean recover(File imageFile) throws IOException {
+		File journalFile = getJournalFile(imageFile);
+		if (!journalFile.exists()) return false;
+		long[] positions = null;
+		byte[][] originals = null;
+		try (DataInputStream journal = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(journalFile)))) {
+			if (journal.readInt() == MAGIC && journal.readLong() == imageFile.length()) {
+				int count = journal.readInt();
+				positions = new long[count];
+				originals = new byte[count][];
+				for (int i=0; i<count; i++) {
+					positions[i] = journal.readLong();
+					originals[i] = new byte[journal.readInt()];
+					journal.readFully(originals[i]);
+				}
+				if (journal.readInt() != MAGIC) {
+					positions = null;
+				}
+			}
+		} catch (EOFException ex) {
+			// An incomplete journal; the image was not changed
+			positions = null;
+		}
+		// The image is only opened for writing when there is something to restore
+		if (positions != null) {
+			try (RandomAccessFile image = new RandomAccessFile(imageFile, "rw"); //$NON-NLS-1$
+				 FileChannel channel = image.getChannel()) {
+				for (int i=0; i<positions.length; i++) {
+					write(channel, positions[i], originals[i]);
+				}
+				channel.force(true);
+			}
+		}
+		deleteJournal(journalFile);
+		return positions != null;
+	}
+
+	/**
+	 * Remove the journal.  A journal that remains would be replayed when
+	 * the image is next opened, undoing the save, so failing to remove it
+	 * is an error.
+	 */
+	protected static void deleteJournal(File journalFile) throws IOException {
+		if (!journalFile.delete() && journalFile.exists()) {
+			throw new IOException(String.format("Unable to remove journal '%s'", journalFile)); //$NON-NLS-1$
+		}
+		syncDirectory(journalFile);
+	}
+
+	/**
+	 * Flush the directory holding a file, so that creating or removing the
+	 * file survives a crash.
+	 */
+	protected static void syncDirectory(File file) {
+		File directory = file.getAbsoluteFile().getParentFile();
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException ex) {
+			// Some platforms (Windows) cannot open a directory; there is nothing more to do
+		}
+	}
+
+	/**
+	 * Save the original bytes of each range.  The journal ends with a second
+	 * copy of the magic number, which marks it as complete.
+	 */
+	protected static void writeJournal(File imageFile, File journalFile, List<Range> ranges)
+			throws IOException {
+		try (RandomAccessFile image = new RandomAccessFile(imageFile, "r"); //$NON-NLS-1$
+			 FileOutputStream output = new FileOutputStream(journalFile);
+			 DataOutputStream journal = new DataOutputStream(new BufferedOutputStream(output))) {
+			journal.writeInt(MAGIC);
+			journal.writeLong(image.length());
+			journal.writeInt(ranges.size());
+			for (Range range : ranges) {
+				byte[] original = new byte[range.getLength()];
+				image.seek(range.getPosition());
+				image.readFully(original);
+				journal.writeLong(range.getPosition());
+				journal.writeInt(original.length);
+				journal.write(original);
+			}
+			journal.writeInt(MAGIC);
+			journal.flush();
+			output.getFD().sync();
+		}
+		syncDirectory(journalFile);
+	}
+
+	protected static void write(FileChannel channel, long position, byte[] data) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import java.util.Arrays;
+
+import com.webcodepro.applecommander.storage.FormattedDisk.DiskUsage;
+
+/**
+ * A map of the free and used units (sectors or blocks) of a disk.  The map
+ * is held 64 units to a word, so it can be counted, searched, changed and
+ * rendered a word at a time instead of a bit at a time.  A set bit is a free
+ * unit, just as in the DOS VTOC and the ProDOS Volume Bitmap.
+ * <p>
+ * Each disk format knows how to build this from its own structures; see
+ * FormattedDisk#getUsageBitmap().
+ */
+public class UsageBitmap {
+	/**
+	 * Receives the runs of free and used units, in order.
+	 */
+	public interface ExtentConsumer {
+		public void accept(int start, int length, boolean free);
+	}
+
+	private int length;
+	private long[] words;
+
+	/**
+	 * Construct a UsageBitmap of the given number of units, all used.
+	 */
+	public UsageBitmap(int length) {
+		this.length = length;
+		this.words = new long[(length + 63) / 64];
+	}
+
+	/**
+	 * Construct a UsageBitmap from a bitmap stored with the first unit in the
+	 * high bit of the first byte, as the ProDOS Volume Bitmap is.  Bytes past
+	 * the end of the data are taken as used.
+	 */
+	public static UsageBitmap fromBytes(byte[] data, int offset, int length) {
+		UsageBitmap bitmap = new UsageBitmap(length);
+		int bytes = Math.min(data.length - offset, (length + 7) / 8);
+		for (int i=0; i<bytes; i++) {
+			long bits = Integer.reverse(data[offset+i] & 0xff) >>> 24;
+			bitmap.words[i / 8] |= bits << ((i % 8) * 8);
+		}
+		bitmap.trim();
+		return bitmap;
+	}
+
+	/**
+	 * Answer with a copy of this UsageBitmap.
+	 */
+	public UsageBitmap copy() {
+		UsageBitmap bitmap = new UsageBitmap(length);
+		System.arraycopy(words, 0, bitmap.words, 0, words.length);
+		return bitmap;
+	}
+
+	/**
+	 * Answer with the number of units in this map.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Determine if the specified unit is free.
+	 */
+	public boolean isFree(int unit) {
+		checkRange(unit, unit+1);
+		return (words[unit / 64] & (1L << (unit % 64))) != 0;
+	}
+
+	/**
+	 * Determine if the specified unit is used.
+	 */
+	public boolean isUsed(int unit) {
+		return !isFree(unit);
+	}
+
+	/**
+	 * Mark the specified unit as free.
+	 */
+	public void setFree(int unit) {
+		checkRange(unit, unit+1);
+		words[unit / 64] |= 1L << (unit % 64);
+	}
+
+	/**
+	 * Mark the specified unit as used.
+	 */
+	public void setUsed(int unit) {
+		checkRange(unit, unit+1);
+		words[unit / 64] &= ~(1L << (unit % 64));
+	}
+
+	/**
+	 * Mark the units from..to (exclusive) as free.
+	 */
+	public void setFree(int from, int to) {
+		setRange(from, to, true);
+	}
+
+	/**
+	 * Mark the units from..to (exclusive) as used.
+	 */
+	public void setUsed(int from, int to) {
+		setRange(from, to, false);
+	}
+
+	/**
+	 * Set count (up to 64) units starting at unit from the low bits of the
+	 * given value; bit 0 describes the first unit.
+	 */
+	public void setBits(int unit, long bits, int count) {
+		if (count == 0) return;
+		checkRange(unit, unit+count);
+		long mask = (count == 64) ? -1L : (1L << count) - 1;
+		bits &= mask;
+		int word = unit / 64;
+		int shift = unit % 64;
+		words[word] = (words[word] & ~(mask << shift)) | (bits << shift);
+		if (shift + count > 64) {
+			words[word+1] = (words[word+1] & ~(mask >>> (64 - shift))) | (bits >>> (64 - shift));
+		}
+	}
+
+	/**
+	 * Answer with the number of free units.
+	 */
+	public int getFreeCount() {
+		int count = 0;
+		for (long word : words) {
+			count+= Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Answer with the number of used units.
+	 */
+	public int getUsedCount() {
+		return length - getFreeCount();
+	}
+
+	/**
+	 * Locate the first free unit at or after from, answering -1 if there is none.
+	 */
+	public int nextFree(int from) {
+		return nextBit(from, 0L);
+	}
+
+	/**
+	 * Locate the first used unit at or after from, answering -1 if there is none.
+	 */
+	public int nextUsed(int from) {
+		return nextBit(from, -1L);
+	}
+
+	/**
+	 * Walk the map as runs of free and used units.
+	 */
+	public void forEachExtent(ExtentConsumer consumer) {
+		int start = 0;
+		while (start < length) {
+			boolean free = isFree(start);
+			int end = free ? nextUsed(start) : nextFree(start);
+			if (end < 0) end = length;
+			consumer.accept(start, end - start, free);
+			start = end;
+		}
+	}
+
+	/**
+	 * Answer with a DiskUsage iterator over this map.
+	 */
+	public DiskUsage getDiskUsage() {
+		return new DiskUsage() {
+			private int location = -1;
+			public boolean hasNext() {
+				return location < length - 1;
+			}
+			public void next() {
+				location++;
+			}
+			public boolean isFree() {
+				return UsageBitmap.this.isFree(location);
+			}
+			public boolean isUsed() {
+				return !isFree();
+			}
+		};
+	}
+
+	/**
+	 * Set or clear a range of units a word at a time.
+	 */
+	protected void setRange(int from, int to, boolean free) {
+		checkRange(from, to);
+		if (from == to) return;
+		int first = from / 64;
+		int last = (to - 1) / 64;
+		long firstMask = -1L << (from % 64);
+		long lastMask = -1L >>> (63 - ((to - 1) % 64));
+		if (first == last) {
+			apply(first, firstMask & lastMask, free);
+		} else {
+			apply(first, firstMask, free);
+			Arrays.fill(words, first + 1, last, free ? -1L : 0L);
+			apply(last, lastMask, free);
+		}
+	}
+
+	private void apply(int word, long mask, boolean free) {
+		if (free) {
+			words[word] |= mask;
+		} else {
+			words[word] &= ~mask;
+		}
+	}
+
+	/**
+	 * Scan a word at a time; flip selects free (0) or used (-1) units.
+	 */
+	private int nextBit(int from, long flip) {
+		if (from < 0) from = 0;
+		for (int word = from / 64; word < words.length; word++) {
+			long bits = words[word] ^ flip;
+			if (word == from / 64) bits &= -1L << (from % 64);
+			if (bits != 0) {
+				int unit = word * 64 + Long.numberOfTrailingZeros(bits);
+				return (unit < length) ? unit : -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Clear any bits past the end of the map.
+	 */
+	private void trim() {
+		if (length % 64 != 0) {
+			words[words.length-1] &= (1L << (length % 64)) - 1;
+		}
+	}
+
+	private void checkRange(int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException(from + ".." + to + " of " + length); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.compare;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.util.Host;
+import com.webcodepro.applecommander.util.filestreamer.FileTuple;
+
+/**
+ * Remembers content hashes between runs.  Each hash is keyed by the disk
+ * image path, the logical disk, and the path of the file within the disk;
+ * it is only used while the disk image has the same modification time it
+ * had when the hash was computed.
+ * <p>
+ * Several runs may share the same cache file.  Each save merges in what
+ * other runs have saved since this cache was loaded and then replaces the
+ * file as a whole, so a run never reads a partially written cache.
+ */
+public class ContentHashCache {
+	private static final String FILENAME = "AppleCommander.hashes"; //$NON-NLS-1$
+	private static final String SEPARATOR = "\t"; //$NON-NLS-1$
+	private File file;
+	private Properties properties = new Properties();
+	private volatile boolean changed;
+
+	/**
+	 * Construct a ContentHashCache stored in the given file.
+	 */
+	public ContentHashCache(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Load the cache from the host specific preferences directory.
+	 */
+	public static ContentHashCache load() throws IOException {
+		return load(new File(Host.getPrefDir() + FILENAME));
+	}
+
+	/**
+	 * Load the cache from the given file.  A missing file is an empty cache.
+	 */
+	public static ContentHashCache load(File file) throws IOException {
+		ContentHashCache cache = new ContentHashCache(file);
+		cache.properties = read(file);
+		return cache;
+	}
+
+	/**
+	 * Save the cache, if anything has changed.  Hashes saved by other runs
+	 * are kept, and hashes for disk images that no longer exist or have
+	 * changed since are dropped.  The cache is written to a new file which
+	 * then replaces the old one.
+	 */
+	public synchronized void save() throws IOException {
+		if (!changed) return;
+		read(file).forEach(properties::putIfAbsent);
+		removeStaleHashes();
+		Path target = file.getAbsoluteFile().toPath();
+		Path temporary = Files.createTempFile(target.getParent(), ".ac-", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+				properties.store(outputStream, "AppleCommander content hashes"); //$NON-NLS-1$
+			}
+			try {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, 
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		changed = false;
+	}
+
+	protected static Properties read(File file) throws IOException {
+		Properties properties = new Properties();
+		if (file.exists()) {
+			try (InputStream inputStream = new FileInputStream(file)) {
+				properties.load(inputStream);
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * Drop the hashes of disk images that are gone or have been modified
+	 * since the hash was computed; they can never be used again.
+	 */
+	protected void removeStaleHashes() {
+		Map<String,String> modificationTimes = new HashMap<>();
+		properties.entrySet().removeIf(entry -> {
+			String key = entry.getKey().toString();
+			String value = entry.getValue().toString();
+			int separator = key.indexOf(SEPARATOR);
+			String imageName = (separator < 0) ? key : key.substring(0, separator);
+			String lastModified = modificationTimes.computeIfAbsent(imageName, 
+					name -> Long.toString(new File(name).lastModified()));
+			return !value.startsWith(lastModified + ":"); //$NON-NLS-1$
+		});
+	}
+
+	/**
+	 * Answer with the number of hashes held.
+	 */
+	public int size() {
+		return properties.size();
+	}
+
+	/**
+	 * Get the remembered hash for a file, or null if it is not known or
+	 * the disk image has changed since.
+	 */
+	public String get(FileTuple tuple) {
+		long lastModified = lastModified(tuple.formattedDisk);
+		if (lastModified == 0) return null;
+		String key = key(tuple);
+		String value = properties.getProperty(key);
+		if (value == null) return null;
+		int separator = value.indexOf(':');
+		if (separator > 0 && value.substring(0, separator).equals(Long.toString(lastModified))) {
+			return value.substring(separator+1);
+		}
+		properties.remove(key);
+		changed = true;
+		return null;
+	}
+
+	/**
+	 * Remember the hash for a file.  Files on images that have unsaved
+	 * changes are not remembered.
+	 */
+	public void put(FileTuple tuple, String hash) {
+		long lastModified = lastModified(tuple.formattedDisk);
+		if (lastModified == 0) return;
+		properties.setProperty(key(tuple), lastModified + ":" + hash); //$NON-NLS-1$
+		changed = true;
+	}
+
+	protected String key(FileTuple tuple) {
+		return new File(tuple.formattedDisk.getFilename()).getAbsolutePath()
+				+ SEPARATOR + tuple.formattedDisk.getLogicalDiskNumber()
+				+ SEPARATOR + tuple.fullPath();
+	}
+
+	protected long lastModified(FormattedDisk formattedDisk) {
+		if (formattedDisk.getFilename() == null
+				|| formattedDisk.getDiskImageManager().hasChanged()) {
+			return 0;
+		}
+		return new File(formattedDisk.getFilename()).lastModified();
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.compare;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.util.filestreamer.FileTuple;
+
+/**
+ * Computes content hashes of files, as used to find duplicate files and to
+ * compare disks by content.  Files are hashed in parallel (when selected)
+ * and hashes are remembered in an optional ContentHashCache.
+ */
+public class ContentHasher {
+	private static final String ALGORITHM = "MD5"; //$NON-NLS-1$
+	private boolean parallel = true;
+	private ContentHashCache cache;
+
+	/**
+	 * Hash files concurrently.  The default is true.
+	 */
+	public ContentHasher parallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+
+	/**
+	 * Use the given cache for previously computed hashes.
+	 */
+	public ContentHasher cache(ContentHashCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	/**
+	 * Compute the content hash of a file.  The file data is streamed
+	 * through the digest rather than read in full.
+	 */
+	public String hash(FileTuple tuple) {
+		String hash = (cache == null) ? null : cache.get(tuple);
+		if (hash == null) {
+			MessageDigest messageDigest = newMessageDigest();
+			byte[] buffer = new byte[Disk.BLOCK_SIZE];
+			try (InputStream inputStream = tuple.fileEntry.getFileDataStream()) {
+				int length = inputStream.read(buffer);
+				while (length >= 0) {
+					messageDigest.update(buffer, 0, length);
+					length = inputStream.read(buffer);
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			hash = String.format("%032X", new BigInteger(1, messageDigest.digest())); //$NON-NLS-1$
+			if (cache != null) {
+				cache.put(tuple, hash);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Hash every file, grouping the files by content.
+	 */
+	public Map<String,List<FileTuple>> groupByContent(Collection<FileTuple> tuples) {
+		Stream<FileTuple> stream = parallel ? tuples.parallelStream() : tuples.stream();
+		return stream.collect(Collectors.groupingBy(this::hash, LinkedHashMap::new, Collectors.toList()));
+	}
+
+	/**
+	 * Find files with identical content.  Files are first bucketed by size,
+	 * so only files that share a size with another file are hashed.  Only
+	 * groups of two or more files are answered.
+	 */
+	public Map<String,List<FileTuple>> findDuplicates(Collection<FileTuple> tuples) {
+		List<FileTuple> candidates = tuples.stream()
+				.collect(Collectors.groupingBy(tuple -> tuple.fileEntry.getSize()))
+				.values().stream()
+				.filter(list -> list.size() > 1)
+				.flatMap(List::stream)
+				.collect(Collectors.toList());
+		Map<String,List<FileTuple>> content = groupByContent(candidates);
+		content.values().removeIf(list -> list.size() < 2);
+		return content;
+	}
+
+	protected MessageDigest newMessageDigest() {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+}
@@ -19,25 +19,27 @@
  */
 package com.webcodepro.applecommander.storage.compare;
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.DiskException;
 import com.webcodepro.applecommander.storage.DiskGeometry;
 import com.webcodepro.applecommander.storage.DiskUnrecognizedException;
 import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.physical.DosOrder;
 import com.webcodepro.applecommander.storage.physical.ImageOrder;
+import com.webcodepro.applecommander.storage.physical.ProdosOrder;
 import com.webcodepro.applecommander.util.Range;
 import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
 import com.webcodepro.applecommander.util.filestreamer.FileTuple;
@@ -48,6 +50,9 @@ import com.webcodepro.applecommander.util.readerwriter.FileEntryReader;
  * Perform a disk comparison based on selected strategy.
  */
 public class DiskDiff {
+    /** Number of bytes compared at once when comparing raw disk images. */
+    public static final int CHUNK_SIZE = 65536;
+    
     public static ComparisonResult compare(Disk diskA, Disk diskB) {
         return new DiskDiff(diskA, diskB).compare();
     }
@@ -58,6 +63,8 @@ public class DiskDiff {
     private Disk diskA;
     private Disk diskB;
     private ComparisonResult results = new ComparisonResult();
+    private ContentHasher contentHasher = new ContentHasher();
+    private boolean parallel;
     
     private BiConsumer<FormattedDisk,FormattedDisk> diskComparisonStrategy = this::compareByNativeGeometry;
     
@@ -137,14 +144,8 @@ public class DiskDiff {
             return;
         }
 
-        List<Integer> unequalBlocks = new ArrayList<>();
-        for (int block=0; block<orderA.getBlocksOnDevice(); block++) {
-            byte[] blockA = orderA.readBlock(block);
-            byte[] blockB = orderB.readBlock(block);
-            if (!Arrays.equals(blockA, blockB)) {
-                unequalBlocks.add(block);
-            }
-        }
+        List<Integer> unequalBlocks = findUnequalUnits(orderA, orderB, orderA.getBlocksOnDevice(),
+                Disk.BLOCK_SIZE, (order, block, buffer) -> order.readBlock(block, buffer, 0));
         for (Range r : Range.from(unequalBlocks)) {
             if (r.size() == 1) {
                 results.addError("Block #%s does not match.", r);
@@ -166,23 +167,96 @@ public class DiskDiff {
             return;
         }
         
-        for (int track=0; track<orderA.getTracksPerDisk(); track++) {
-            List<Integer> unequalSectors = new ArrayList<>();
-            for (int sector=0; sector<orderA.getSectorsPerTrack(); sector++) {
-                byte[] sectorA = orderA.readSector(track, sector);
-                byte[] sectorB = orderB.readSector(track, sector);
-                if (!Arrays.equals(sectorA, sectorB)) {
-                    unequalSectors.add(sector);
-                }
-            }
-            if (!unequalSectors.isEmpty()) {
-                results.addError("Track %d does not match on sectors %s", track,
-                        Range.from(unequalSectors)
-                             .stream()
-                             .map(Range::toString)
-                             .collect(Collectors.joining(",")));
-            }
+        int sectorsPerTrack = orderA.getSectorsPerTrack();
+        List<Integer> unequalUnits = findUnequalUnits(orderA, orderB, orderA.getSectorsPerDisk(),
+                Disk.SECTOR_SIZE, (order, unit, buffer) -> 
+                    order.readSector(unit / sectorsPerTrack, unit % sectorsPerTrack, buffer, 0));
+        Map<Integer,List<Integer>> unequalSectorsByTrack = unequalUnits.stream()
+                .collect(Collectors.groupingBy(unit -> unit / sectorsPerTrack, TreeMap::new,
+                        Collectors.mapping(unit -> unit % sectorsPerTrack, Collectors.toList())));
+        unequalSectorsByTrack.forEach((track, unequalSectors) -> {
+            results.addError("Track %d does not match on sectors %s", track,
+                    Range.from(unequalSectors)
+                         .stream()
+                         .map(Range::toString)
+                         .collect(Collectors.joining(",")));
+        });
+    }
+
+    /**
+     * Answer with the blocks or sectors (numbered from 0) that differ.  When
+     * the images store blocks and sectors in the same places, the images are
+     * first compared in large chunks and only chunks that differ are read
+     * by block or sector.  Chunks are compared on the fork/join pool if
+     * parallel comparison has been selected.
+     */
+    protected List<Integer> findUnequalUnits(ImageOrder orderA, ImageOrder orderB, int units, 
+            int unitSize, UnitReader reader) {
+        int unitsPerChunk = CHUNK_SIZE / unitSize;
+        boolean raw = canCompareRaw(orderA, orderB, unitSize);
+        IntStream chunks = IntStream.range(0, (units + unitsPerChunk - 1) / unitsPerChunk);
+        if (parallel) {
+            chunks = chunks.parallel();
+        }
+        return chunks.mapToObj(chunk -> {
+                    int first = chunk * unitsPerChunk;
+                    int last = Math.min(units, first + unitsPerChunk);
+                    if (raw && isRawEqual(orderA, orderB, first * unitSize, (last - first) * unitSize)) {
+                        return Collections.<Integer>emptyList();
+                    }
+                    List<Integer> unequal = new ArrayList<>();
+                    byte[] bufferA = new byte[unitSize];
+                    byte[] bufferB = new byte[unitSize];
+                    for (int unit=first; unit<last; unit++) {
+                        if (!isUnitEqual(orderA, orderB, unit, reader, bufferA, bufferB)) {
+                            unequal.add(unit);
+                        }
+                    }
+                    return unequal;
+                })
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Indicates if a block or sector is the same on both disk images.  A unit
+     * that cannot be read from either image (such as a nibble sector that
+     * fails its checksum) is reported as unequal rather than ending the
+     * comparison.
+     */
+    protected boolean isUnitEqual(ImageOrder orderA, ImageOrder orderB, int unit, UnitReader reader,
+            byte[] bufferA, byte[] bufferB) {
+        try {
+            reader.read(orderA, unit, bufferA);
+            reader.read(orderB, unit, bufferB);
+        } catch (IllegalArgumentException ex) {
+            return false;
         }
+        return Arrays.equals(bufferA, bufferB);
+    }
+
+    /**
+     * Indicates if a run of blocks or sectors occupies the same bytes of
+     * both disk images.  This is true when the images share an ordering
+     * whose tracks are laid out linearly.
+     */
+    protected boolean canCompareRaw(ImageOrder orderA, ImageOrder orderB, int unitSize) {
+        if (orderA.getClass() != orderB.getClass() || orderA.getPhysicalSize() != orderB.getPhysicalSize()) {
+            return false;
+        }
+        if (orderA.getClass() == ProdosOrder.class && unitSize == Disk.BLOCK_SIZE) {
+            return true;
+        }
+        return (orderA.getClass() == ProdosOrder.class || orderA.getClass() == DosOrder.class)
+                && orderA.getSectorsPerTrack() == 16;
+    }
+
+    protected boolean isRawEqual(ImageOrder orderA, ImageOrder orderB, int start, int length) {
+        byte[] chunkA = new byte[length];
+        byte[] chunkB = new byte[length];
+        orderA.readBytes(start, chunkA, 0, length);
+        orderB.readBytes(start, chunkB, 0, length);
+        return Arrays.equals(chunkA, chunkB);
     }
     
     /** Compare by filename. This accounts for names only in disk A, only in disk B, or different but same-named. */
@@ -243,16 +317,18 @@ public class DiskDiff {
     /** Compare by file content. Accounts for content differences that are "only" in disk A or "only" in disk B. */
     public void compareByFileContent(FormattedDisk formattedDiskA, FormattedDisk formattedDiskB) {
         try {
-            Map<String,List<FileTuple>> contentA = FileStreamer.forDisk(formattedDiskA)
-                    .includeTypeOfFile(TypeOfFile.FILE)
-                    .recursive(true)
-                    .stream()
-                    .collect(Collectors.groupingBy(this::contentHash));
-            Map<String,List<FileTuple>> contentB = FileStreamer.forDisk(formattedDiskB)
-                    .includeTypeOfFile(TypeOfFile.FILE)
-                    .recursive(true)
-                    .stream()
-                    .collect(Collectors.groupingBy(this::contentHash));
+            Map<String,List<FileTuple>> contentA = contentHasher.groupByContent(
+                    FileStreamer.forDisk(formattedDiskA)
+                        .includeTypeOfFile(TypeOfFile.FILE)
+                        .recursive(true)
+                        .stream()
+                        .collect(Collectors.toList()));
+            Map<String,List<FileTuple>> contentB = contentHasher.groupByContent(
+                    FileStreamer.forDisk(formattedDiskB)
+                        .includeTypeOfFile(TypeOfFile.FILE)
+                        .recursive(true)
+                        .stream()
+                        .collect(Collectors.toList()));
             
             Set<String> contentOnlyA = new HashSet<>(contentA.keySet());
             contentOnlyA.removeAll(contentB.keySet());
@@ -309,16 +385,6 @@ public class DiskDiff {
             results.addError(ex);
         }
     }
-    private String contentHash(FileTuple tuple) {
-        try {
-            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
-            byte[] digest = messageDigest.digest(tuple.fileEntry.getFileData());
-            return String.format("%032X", new BigInteger(1, digest));
-        } catch (NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
-        }
-    }
-
     private List<String> compare(FileEntryReader readerA, FileEntryReader readerB) {
         List<String> differences = new ArrayList<>();
         if (!readerA.getFilename().equals(readerB.getFilename())) {
@@ -354,6 +420,11 @@ public class DiskDiff {
         return differences;
     }
 
+    /** Reads one block or sector into a buffer. */
+    protected interface UnitReader {
+        void read(ImageOrder order, int unit, byte[] buffer);
+    }
+
     public static class Builder {
         private DiskDiff diff;
         
@@ -385,6 +456,18 @@ public class DiskDiff {
             diff.diskComparisonStrategy = diff::compareByFileContent;
             return this;
         }
+        /** Use the given hasher (and its cache) when comparing by file content. */
+        public Builder withContentHasher(ContentHasher contentHasher) {
+            Objects.requireNonNull(contentHasher);
+            diff.contentHasher = contentHasher;
+            return this;
+        }
+        
+        /** Compare blocks or sectors on the fork/join pool. */
+        public Builder parallel(boolean parallel) {
+            diff.parallel = parallel;
+            return this;
+        }
         
         public ComparisonResult compare() {
             return diff.compare();
@@ -19,6 +19,10 @@
  */
 package com.webcodepro.applecommander.storage.filters;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FileFilter;
 
@@ -44,6 +48,16 @@ public class BinaryFileFilter implements FileFilter {
 		return fileEntry.getFileData();	// should be nothing to do
 	}
 
+	/**
+	 * Copy the file data to the stream without reading it all first.
+	 * @see com.webcodepro.applecommander.storage.FileFilter#filter(FileEntry, OutputStream)
+	 */
+	public void filter(FileEntry fileEntry, OutputStream outputStream) throws IOException {
+		try (InputStream inputStream = fileEntry.getFileDataStream()) {
+			inputStream.transferTo(outputStream);
+		}
+	}
+
 	/**
 	 * Give suggested file name.
 	 */
@@ -0,0 +1,219 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.filters;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FileFilter;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.filters.imagehandlers.AppleImage;
+import com.webcodepro.applecommander.util.OutputFileNames;
+import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
+import com.webcodepro.applecommander.util.filestreamer.FileTuple;
+import com.webcodepro.applecommander.util.filestreamer.TypeOfFile;
+
+/**
+ * Converts every graphics file on one or more disks to images.  A file is
+ * a graphics file when its suggested filter is a GraphicsFileFilter, which
+ * also supplies the graphics mode.  Files are rendered in parallel (when
+ * selected).
+ * <p>
+ * Sample usage:
+ * <pre>
+ * List&lt;File&gt; images = new GraphicsExporter()
+ *         .export(outputDirectory, disk.getFormattedDisks());
+ * </pre>
+ */
+public class GraphicsExporter {
+	private static final Logger LOG = Logger.getLogger(GraphicsExporter.class.getName());
+	private boolean parallel = true;
+	private boolean ignoreErrors = true;
+	private String format = "PNG"; //$NON-NLS-1$
+
+	/**
+	 * Receives each rendered image.  Called concurrently when rendering
+	 * in parallel.
+	 */
+	public interface ImageConsumer {
+		void accept(FileTuple tuple, AppleImage image) throws IOException;
+	}
+
+	/**
+	 * Render files concurrently.  The default is true.
+	 */
+	public GraphicsExporter parallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+
+	/**
+	 * Skip (and log) files that cannot be rendered.  The default is true;
+	 * otherwise the first failure stops the export.
+	 */
+	public GraphicsExporter ignoreErrors(boolean ignoreErrors) {
+		this.ignoreErrors = ignoreErrors;
+		return this;
+	}
+
+	/**
+	 * The image format to write, such as "PNG" (the default) or "JPEG".
+	 */
+	public GraphicsExporter format(String format) {
+		this.format = format;
+		return this;
+	}
+
+	/**
+	 * Find the graphics files on the given disks, including subdirectories.
+	 */
+	public List<FileTuple> findGraphicsFiles(FormattedDisk... disks) {
+		return FileStreamer.forFormattedDisks(disks)
+				.ignoreErrors(ignoreErrors)
+				.includeTypeOfFile(TypeOfFile.FILE)
+				.stream()
+				.filter(tuple -> getGraphicsFilter(tuple.fileEntry) != null)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Get the graphics filter suggested for the file; null if the file is
+	 * not a graphics file.
+	 */
+	public static GraphicsFileFilter getGraphicsFilter(FileEntry fileEntry) {
+		FileFilter fileFilter = fileEntry.getSuggestedFilter();
+		return (fileFilter instanceof GraphicsFileFilter) ? (GraphicsFileFilter) fileFilter : null;
+	}
+
+	/**
+	 * Render each file and hand the image to the consumer.  Returns the
+	 * number of images rendered.
+	 */
+	public int render(Collection<FileTuple> tuples, ImageConsumer consumer) {
+		Stream<FileTuple> stream = parallel ? tuples.parallelStream() : tuples.stream();
+		return (int) stream.filter(tuple -> render(tuple, consumer)).count();
+	}
+
+	/**
+	 * Write an image of every graphics file on the disks into the directory.
+	 * Images are placed in a folder named after the disk image file,
+	 * followed by the directories of the file.  Output files are assigned
+	 * before rendering; a file whose name collides with an earlier one gets
+	 * a "-2", "-3", ... suffix.  Returns the images written, in the order
+	 * the files appear on the disks.
+	 */
+	public List<File> export(File directory, FormattedDisk... disks) {
+		List<FileTuple> tuples = findGraphicsFiles(disks);
+		List<File> files = getImageFiles(directory, tuples);
+		IntStream indexes = IntStream.range(0, tuples.size());
+		return (parallel ? indexes.parallel() : indexes)
+				.mapToObj(i -> {
+					File file = files.get(i);
+					return render(tuples.get(i), (t, image) -> write(image, file)) ? file : null;
+				})
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Export the graphics files of many disks.
+	 */
+	public List<File> export(File directory, Collection<FormattedDisk> disks) {
+		return export(directory, disks.toArray(new FormattedDisk[0]));
+	}
+
+	/**
+	 * Answer the image file written for a graphics file.  Every path
+	 * component is made safe (see {@link OutputFileNames}), so the file
+	 * always lands inside the directory.
+	 */
+	public File getImageFile(File directory, FileTuple tuple) {
+		String diskName = new File(tuple.formattedDisk.getFilename()).getName();
+		File folder = OutputFileNames.toDirectory(directory, Collections.singletonList(diskName));
+		folder = OutputFileNames.toDirectory(folder, tuple.paths);
+		String name = OutputFileNames.toPathComponent(tuple.fileEntry.getFilename());
+		return new File(folder, name + "." + format.toLowerCase()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Answer the image file for each graphics file, in order.  A file
+	 * already taken gets a numeric suffix (see {@link OutputFileNames}).
+	 */
+	public List<File> getImageFiles(File directory, List<FileTuple> tuples) {
+		OutputFileNames names = new OutputFileNames();
+		List<File> files = new ArrayList<>();
+		for (FileTuple tuple : tuples) {
+			File file = getImageFile(directory, tuple);
+			File unique = names.unique(file);
+			if (!unique.equals(file)) {
+				LOG.warning(String.format("'%s' is written as '%s'", tuple.fullPath(), unique)); //$NON-NLS-1$
+			}
+			files.add(unique);
+		}
+		return files;
+	}
+
+	protected boolean render(FileTuple tuple, ImageConsumer consumer) {
+		try {
+			GraphicsFileFilter filter = getGraphicsFilter(tuple.fileEntry);
+			AppleImage image = filter.render(tuple.fileEntry);
+			if (image == null) {
+				return false;
+			}
+			image.setFileExtension(format);
+			consumer.accept(tuple, image);
+			return true;
+		} catch (IOException ex) {
+			return failed(tuple, new UncheckedIOException(ex));
+		} catch (RuntimeException ex) {
+			return failed(tuple, ex);
+		}
+	}
+
+	protected boolean failed(FileTuple tuple, RuntimeException ex) {
+		if (!ignoreErrors) {
+			throw ex;
+		}
+		LOG.log(Level.WARNING, String.format("Unable to render '%s'", tuple.fullPath()), ex); //$NON-NLS-1$
+		return false;
+	}
+
+	protected void write(AppleImage image, File file) throws IOException {
+		file.getParentFile().mkdirs();
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+			image.save(outputStream);
+		}
+	}
+}
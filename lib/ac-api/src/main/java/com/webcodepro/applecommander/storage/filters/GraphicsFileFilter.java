@@ -64,8 +64,82 @@ public class GraphicsFileFilter implements FileFilter {
 	public static final int MODE_QUICKDRAW2_ICON = 7;
 	
 	private int mode = MODE_HGR_COLOR;
+	private boolean lookupTables = true;
 	
 	private static AppleImage referenceImage = AppleImage.create(1,1);
+
+	/**
+	 * Offset of each of the 192 hires scanlines within the 8K page.
+	 */
+	private static final int[] HIRES_LINE_ADDRESS = new int[192];
+	static {
+		for (int y=0; y<192; y++) {
+			HIRES_LINE_ADDRESS[y] = (	// odd notation - bit value shifted right * hex value
+				((y & 0x7) << 10)			// 00000111 * 0x0400
+				| (y & 0x8) << 4			// 00001000 * 0x0080
+				| (y & 0x30) << 4			// 00110000 * 0x0100
+				| ((y & 0xc0) >> 6) * 0x028	// 11000000 * 0x0028
+				) & 0x1fff;
+		}
+	}
+
+	/**
+	 * The 16 double hires colors, by repeated binary pattern.
+	 */
+	private static final int[] DOUBLE_HIRES_COLORS = {
+			0x000000, 0xff0000, 0x800000, 0xff8000,	// black, magenta, brown, orange
+			0x008000, 0x808080, 0x00ff00, 0xffff00,	// dark green, grey1, green, yellow
+			0x000080, 0xff00ff, 0x808080, 0xff80c0,	// dark blue, violet, grey2, pink
+			0x0000a0, 0x0000ff, 0x00c080, 0xffffff	// medium blue, light blue, aqua, white
+	};
+
+	/**
+	 * Hires color decoding works on pairs of bytes (14 pixels, or 7 color
+	 * pairs).  The first 6 pixels depend only on the even byte, the last 6
+	 * only on the odd byte and the middle pair on bit 6 and the high bit of
+	 * the even byte with bit 0 and the high bit of the odd byte.
+	 */
+	private static final int[] HIRES_EVEN_PIXELS = new int[256*6];
+	private static final int[] HIRES_ODD_PIXELS = new int[256*6];
+	private static final int[] HIRES_MIDDLE_PIXELS = new int[16*2];
+	static {
+		for (int byt=0; byt<256; byt++) {
+			boolean highbit = (byt & 0x80) != 0;
+			for (int pair=0; pair<3; pair++) {
+				int bit = pair*2;
+				boolean pixel0 = (byt & (1 << bit)) != 0;
+				boolean pixel1 = (byt & (2 << bit)) != 0;
+				int color = getHiresColor(pixel0, pixel1, highbit);
+				HIRES_EVEN_PIXELS[byt*6 + bit] = pixel0 ? color : 0;
+				HIRES_EVEN_PIXELS[byt*6 + bit + 1] = pixel1 ? color : 0;
+				pixel0 = (byt & (2 << bit)) != 0;
+				pixel1 = (byt & (4 << bit)) != 0;
+				color = getHiresColor(pixel0, pixel1, highbit);
+				HIRES_ODD_PIXELS[byt*6 + bit] = pixel0 ? color : 0;
+				HIRES_ODD_PIXELS[byt*6 + bit + 1] = pixel1 ? color : 0;
+			}
+		}
+		for (int index=0; index<16; index++) {
+			boolean pixel0 = (index & 0x1) != 0;	// even byte, bit 6
+			boolean pixel1 = (index & 0x4) != 0;	// odd byte, bit 0
+			boolean highbit = pixel0 ? (index & 0x2) != 0 : (index & 0x8) != 0;
+			int color = getHiresColor(pixel0, pixel1, highbit);
+			HIRES_MIDDLE_PIXELS[index*2] = pixel0 ? color : 0;
+			HIRES_MIDDLE_PIXELS[index*2 + 1] = pixel1 ? color : 0;
+		}
+	}
+
+	/**
+	 * Double hires colors indexed by 4 pixels, with the left-most pixel
+	 * in the low bit (the pattern reversed).
+	 */
+	private static final int[] DOUBLE_HIRES_NIBBLE_COLORS = new int[16];
+	static {
+		for (int nibble=0; nibble<16; nibble++) {
+			int pattern = (nibble & 1) << 3 | (nibble & 2) << 1 | (nibble & 4) >> 1 | (nibble & 8) >> 3;
+			DOUBLE_HIRES_NIBBLE_COLORS[nibble] = DOUBLE_HIRES_COLORS[pattern];
+		}
+	}
 	
 	/**
 	 * Constructor for GraphicsFileFilter.
@@ -86,85 +160,10 @@ public class GraphicsFileFilter implements FileFilter {
 	 * @see com.webcodepro.applecommander.storage.FileFilter#filter(FileEntry)
 	 */
 	public byte[] filter(FileEntry fileEntry) {
-		byte[] fileData = fileEntry.getFileData();
-		AppleImage image = null;
-		if (isHiresColorMode()) {
-			image = AppleImage.create(280, 192);
-		} else if (isDoubleHiresMode()) {
-			image = AppleImage.create(560, 192*2);
-		} else if (isSuperHiresMode()) {
-			image = AppleImage.create(640, 400);
-		} else if (isQuickDraw2Icon()) {
-			// Build later...
-		} else {
+		AppleImage image = render(fileEntry);
+		if (image == null) {
 			return new byte[0];
 		}
-		if (isQuickDraw2Icon()) {
-			AppleImage[] icons = buildQuickDraw2Icons(fileEntry);
-			int width = 0;
-			for (int i=0; i<icons.length; i+=2) {
-				width+= icons[i].getWidth();
-			}
-			int height = icons[0].getHeight() + icons[1].getHeight();
-			image = AppleImage.create(width, height);
-			int x = 0;
-			for (int i=0; i<icons.length; i++) {
-				if (i % 2 == 0) {		// the actual icon
-					copyImage(image, icons[i], x, 0);
-				} else {				// the mask - note that height and width is 
-										// assumed to be same between icon and its mask
-					copyImage(image, icons[i], x, icons[i].getHeight());
-					x+= icons[i].getWidth();
-				}
-			}
-		} else if (isSuperHiresMode()) {
-			if (fileData.length < 32767) {	// leaves 1 byte of leeway
-				fileData = AppleUtil.unpackBytes(fileData);
-				if (fileData.length == 32767) {
-					byte[] data = new byte[32768];
-					System.arraycopy(fileData, 0, data, 0, fileData.length);
-					fileData = data;
-				}
-			}
-			int base = 0;
-			int palletteOffset = isSuperHires3200Mode() ? 0x7d00 : 0x7e00;
-			byte[] pallettes;
-			pallettes = new byte[fileData.length - palletteOffset];
-			System.arraycopy(fileData, palletteOffset, pallettes, 0, pallettes.length);
-			for (int y=0; y<200; y++) {
-				byte[] lineData = new byte[160];
-				System.arraycopy(fileData, base, lineData, 0, lineData.length);
-				processSuperHiresLine(lineData, image, y, 
-					fileData[0x7d00+y] /* N/A for 3200 mode */, pallettes);
-				base+= lineData.length;
-			}
-		} else {
-			for (int y=0; y<192; y++) {
-				int base = (			// odd notation - bit value shifted right * hex value
-					((y & 0x7) << 10)			// 00000111 * 0x0400
-					| (y & 0x8) << 4			// 00001000 * 0x0080
-					| (y & 0x30) << 4			// 00110000 * 0x0100
-					| ((y & 0xc0) >> 6) * 0x028	// 11000000 * 0x0028
-					) & 0x1fff;
-				byte[] lineData = new byte[40];
-				System.arraycopy(fileData, base, lineData, 0, 40);
-				if (isHiresBlackAndWhiteMode()) {
-					processHiresBlackAndWhiteLine(lineData, image, y);
-				} else if (isHiresColorMode()) {
-					processHiresColorLine(lineData, image, y);
-				} else if (isDoubleHiresMode()) {
-					byte[] lineData2 = new byte[40];
-					System.arraycopy(fileData, base + 0x2000, lineData2, 0, 40);
-					if (isDoubleHiresBlackAndWhiteMode()) {
-						processDoubleHiresBlackAndWhiteLine(lineData, lineData2, image, y);
-					} else if (isDoubleHiresColorMode()) {
-						processDoubleHiresColorLine(lineData, lineData2, image, y);
-					}
-				} else {
-					// oops...
-				}
-			}
-		}
 		try {
 			image.setFileExtension(referenceImage.getFileExtension());
 			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -175,19 +174,146 @@ public class GraphicsFileFilter implements FileFilter {
 		}
 	}
 
+	/**
+	 * Render the file as an image in the current mode.  Scanlines are
+	 * decoded directly into the pixels backing the image, when the image
+	 * handler allows it.  Returns null if the mode is not a graphics mode.
+	 */
+	public AppleImage render(FileEntry fileEntry) {
+		if (isQuickDraw2Icon()) {
+			return renderQuickDraw2Icons(fileEntry);
+		}
+		byte[] fileData = fileEntry.getFileData();
+		if (isHiresMode()) {
+			return renderHires(fileData);
+		} else if (isDoubleHiresMode()) {
+			return renderDoubleHires(fileData);
+		} else if (isSuperHiresMode()) {
+			return renderSuperHires(fileData);
+		}
+		return null;
+	}
+
+	/**
+	 * Render a hires image (280x192).
+	 */
+	protected AppleImage renderHires(byte[] fileData) {
+		AppleImage image = AppleImage.create(280, 192);
+		int[] pixels = getPixels(image);
+		for (int y=0; y<192; y++) {
+			if (isHiresBlackAndWhiteMode()) {
+				processHiresBlackAndWhiteLine(fileData, HIRES_LINE_ADDRESS[y], pixels, y*280);
+			} else if (lookupTables) {
+				decodeHiresColorLine(fileData, HIRES_LINE_ADDRESS[y], pixels, y*280);
+			} else {
+				processHiresColorLine(fileData, HIRES_LINE_ADDRESS[y], pixels, y*280);
+			}
+		}
+		image.setPixels(pixels);
+		return image;
+	}
+
+	/**
+	 * Render a double hires image.  Each line is doubled to keep the
+	 * aspect ratio (560x384).
+	 */
+	protected AppleImage renderDoubleHires(byte[] fileData) {
+		AppleImage image = AppleImage.create(560, 192*2);
+		int[] pixels = getPixels(image);
+		for (int y=0; y<192; y++) {
+			int offset = y*2*560;
+			if (isDoubleHiresBlackAndWhiteMode()) {
+				processDoubleHiresBlackAndWhiteLine(fileData, HIRES_LINE_ADDRESS[y], pixels, offset);
+			} else if (lookupTables) {
+				decodeDoubleHiresColorLine(fileData, HIRES_LINE_ADDRESS[y], pixels, offset);
+			} else {
+				processDoubleHiresColorLine(fileData, HIRES_LINE_ADDRESS[y], pixels, offset);
+			}
+			System.arraycopy(pixels, offset, pixels, offset+560, 560);
+		}
+		image.setPixels(pixels);
+		return image;
+	}
+
+	/**
+	 * Render a super hires image.  Each line is doubled to keep the
+	 * aspect ratio (640x400).
+	 */
+	protected AppleImage renderSuperHires(byte[] fileData) {
+		if (fileData.length < 32767) {	// leaves 1 byte of leeway
+			fileData = AppleUtil.unpackBytes(fileData);
+			if (fileData.length == 32767) {
+				byte[] data = new byte[32768];
+				System.arraycopy(fileData, 0, data, 0, fileData.length);
+				fileData = data;
+			}
+		}
+		AppleImage image = AppleImage.create(640, 400);
+		int[] pixels = getPixels(image);
+		int base = 0;
+		int palletteOffset = isSuperHires3200Mode() ? 0x7d00 : 0x7e00;
+		byte[] pallettes;
+		pallettes = new byte[fileData.length - palletteOffset];
+		System.arraycopy(fileData, palletteOffset, pallettes, 0, pallettes.length);
+		for (int y=0; y<200; y++) {
+			int offset = y*2*640;
+			processSuperHiresLine(fileData, base, pixels, offset, y,
+				fileData[0x7d00+y] /* N/A for 3200 mode */, pallettes);
+			System.arraycopy(pixels, offset, pixels, offset+640, 640);
+			base+= 160;
+		}
+		image.setPixels(pixels);
+		return image;
+	}
+
+	/**
+	 * Render QuickDraw II icons side by side, with each mask below its icon.
+	 */
+	protected AppleImage renderQuickDraw2Icons(FileEntry fileEntry) {
+		AppleImage[] icons = buildQuickDraw2Icons(fileEntry);
+		int width = 0;
+		for (int i=0; i<icons.length; i+=2) {
+			width+= icons[i].getWidth();
+		}
+		int height = icons[0].getHeight() + icons[1].getHeight();
+		AppleImage image = AppleImage.create(width, height);
+		int x = 0;
+		for (int i=0; i<icons.length; i++) {
+			if (i % 2 == 0) {		// the actual icon
+				copyImage(image, icons[i], x, 0);
+			} else {				// the mask - note that height and width is 
+									// assumed to be same between icon and its mask
+				copyImage(image, icons[i], x, icons[i].getHeight());
+				x+= icons[i].getWidth();
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Get the pixels backing the image or, if the image handler does not
+	 * expose them, a work array to be handed to setPixels.
+	 */
+	protected static int[] getPixels(AppleImage image) {
+		int[] pixels = image.getPixels();
+		if (pixels == null) {
+			pixels = new int[image.getWidth() * image.getHeight()];
+		}
+		return pixels;
+	}
+
 	/**
 	 * Given a specific line in the image, process it in hires black and white
-	 * mode.
+	 * mode.  The line starts at base in the file data and offset in the pixels.
 	 */
-	protected void processHiresBlackAndWhiteLine(byte[] lineData, AppleImage image, int y) {
+	protected void processHiresBlackAndWhiteLine(byte[] fileData, int base, int[] pixels, int offset) {
 		for (int x=0; x<280; x++) {
-			int offset = x / 7;	// byte across row
+			byte byt = fileData[base + x / 7];	// byte across row
 			int bit = x % 7;		// bit to test
-			byte byt = lineData[offset];
 			if (AppleUtil.isBitSet(byt, bit)) {
-				image.setPoint(x, y, 0xffffff);
+				pixels[offset + x] = 0xffffff;
 			} else {
-				image.setPoint(x, y, 0x0);
+				pixels[offset + x] = 0x0;
 			}
 		}
 	}
@@ -214,24 +340,24 @@ public class GraphicsFileFilter implements FileFilter {
 	 * </pre>
 	 * Remember: bits are listed as "highbit", "pixel0", "pixel1"!
 	 */
-	protected void processHiresColorLine(byte[] lineData, AppleImage image, int y) {
+	protected void processHiresColorLine(byte[] fileData, int base, int[] pixels, int offset) {
 		for (int x=0; x<140; x++) {
 			int x0 = x*2;
 			int x1 = x0+1;
-			int offset0 = x0 / 7;	// byte across row
+			int offset0 = base + x0 / 7;	// byte across row
 			int bit0 = x0 % 7;		// bit to test
-			boolean pixel0 = AppleUtil.isBitSet(lineData[offset0], bit0);
-			int offset1 = x1 / 7;	// byte across row
+			boolean pixel0 = AppleUtil.isBitSet(fileData[offset0], bit0);
+			int offset1 = base + x1 / 7;	// byte across row
 			int bit1 = x1 % 7;		// bit to test
-			boolean pixel1 = AppleUtil.isBitSet(lineData[offset1], bit1);
+			boolean pixel1 = AppleUtil.isBitSet(fileData[offset1], bit1);
 			int color;
 			if (pixel0 && pixel1) {
 				color = 0xffffff;	// white
 			} else if (!pixel0 && !pixel1) {
 				color = 0;			// black
 			} else {
-				boolean highbit = pixel0 ? AppleUtil.isBitSet(lineData[offset0], 7) :
-					AppleUtil.isBitSet(lineData[offset1], 7);
+				boolean highbit = pixel0 ? AppleUtil.isBitSet(fileData[offset0], 7) :
+					AppleUtil.isBitSet(fileData[offset1], 7);
 				if (pixel0 && highbit) {
 					color = 0x0000ff;	// blue
 				} else if (pixel0 && !highbit) {
@@ -242,30 +368,61 @@ public class GraphicsFileFilter implements FileFilter {
 					color = 0xff8000;	// orange
 				}
 			}
-			if (pixel0) image.setPoint(x0, y, color);
-			if (pixel1) image.setPoint(x1, y, color);
+			pixels[offset + x0] = pixel0 ? color : 0;
+			pixels[offset + x1] = pixel1 ? color : 0;
+		}
+	}
+
+	/**
+	 * Given the color of a hires pixel pair, following the table in
+	 * processHiresColorLine.
+	 */
+	protected static int getHiresColor(boolean pixel0, boolean pixel1, boolean highbit) {
+		if (pixel0 && pixel1) {
+			return 0xffffff;	// white
+		} else if (!pixel0 && !pixel1) {
+			return 0;			// black
+		} else if (pixel0) {
+			return highbit ? 0x0000ff : 0xff00ff;	// blue : violet
+		} else {
+			return highbit ? 0xff8000 : 0x00ff00;	// orange : green
+		}
+	}
+
+	/**
+	 * Decode a line in hires color mode with lookup tables; the result is
+	 * the same as processHiresColorLine.  Works across the line in pairs of
+	 * bytes, which is 7 color pairs.
+	 */
+	protected void decodeHiresColorLine(byte[] fileData, int base, int[] pixels, int offset) {
+		for (int x=0; x<280; x+=14) {
+			int even = fileData[base++] & 0xff;
+			int odd = fileData[base++] & 0xff;
+			System.arraycopy(HIRES_EVEN_PIXELS, even*6, pixels, offset+x, 6);
+			int middle = ((even >> 6) & 0x3) | ((odd & 0x1) << 2) | ((odd >> 4) & 0x8);
+			pixels[offset+x+6] = HIRES_MIDDLE_PIXELS[middle*2];
+			pixels[offset+x+7] = HIRES_MIDDLE_PIXELS[middle*2 + 1];
+			System.arraycopy(HIRES_ODD_PIXELS, odd*6, pixels, offset+x+8, 6);
 		}
 	}
 
 	/**
 	 * Given a specific line in the image, process it in double hires black and white
-	 * mode.
+	 * mode.  Auxiliary memory is the first 8K of the file data, main memory the second.
 	 */
-	protected void processDoubleHiresBlackAndWhiteLine(byte[] lineData1, byte[] lineData2, 
-		AppleImage image, int y) {
+	protected void processDoubleHiresBlackAndWhiteLine(byte[] fileData, int base, 
+		int[] pixels, int offset) {
 			
 		for (int x=0; x<560; x++) {
 				// alternate bytes - switching memory banks
-			byte[] lineData = (x % 14 < 7) ? lineData1 : lineData2;
+			int bank = (x % 14 < 7) ? base : base + 0x2000;
 			int rowOffset = x / 14;	// byte across row
 			int bit = x % 7;			// bit to test
-			byte byt = lineData[rowOffset];
+			byte byt = fileData[bank + rowOffset];
 			if (AppleUtil.isBitSet(byt, bit)) {
-				image.setPoint(x, y*2, 0xffffff);
-				image.setPoint(x, y*2+1, 0xffffff);
+				pixels[offset + x] = 0xffffff;
 			} else {
-				image.setPoint(x, y*2, 0x0);
-				image.setPoint(x, y*2+1, 0x0);
+				pixels[offset + x] = 0x0;
 			}
 		}
 	}
@@ -298,46 +455,62 @@ public class GraphicsFileFilter implements FileFilter {
      *    White          7F    7F    7F    7F    1111
      * </pre>
 	 */
-	protected void processDoubleHiresColorLine(byte[] lineData1, byte[] lineData2, 
-		AppleImage image, int y) {
+	protected void processDoubleHiresColorLine(byte[] fileData, int base, 
+		int[] pixels, int offset) {
 		
 		int[] bitValues = { 8,4,2,1 };
-		int[] colorValues = {
-				0x000000, 0xff0000, 0x800000, 0xff8000,	// black, magenta, brown, orange
-				0x008000, 0x808080, 0x00ff00, 0xffff00,	// dark green, grey1, green, yellow
-				0x000080, 0xff00ff, 0x808080, 0xff80c0,	// dark blue, violet, grey2, pink
-				0x0000a0, 0x0000ff, 0x00c080, 0xffffff	// medium blue, light blue, aqua, white
-		};
 		for (int x=0; x<560; x+=4) {
 			int colorValue = 0;
 			for (int b = 0; b < 4; b++) {
 				int xb = x+b;
 				// alternate bytes - switching memory banks
-				byte[] lineData = (xb % 14 < 7) ? lineData1 : lineData2;
+				int bank = (xb % 14 < 7) ? base : base + 0x2000;
 				int rowOffset = xb / 14;	// byte across row
 				int bit = xb % 7;			// bit to test
-				byte byt = lineData[rowOffset];
+				byte byt = fileData[bank + rowOffset];
 				if (AppleUtil.isBitSet(byt, bit)) {
 					colorValue+= bitValues[b];
 				}
 			}
 			for (int b = 0; b < 4; b++) {
-				image.setPoint(x+b, y*2, colorValues[colorValue]);
-				image.setPoint(x+b, y*2+1, colorValues[colorValue]);
+				pixels[offset + x + b] = DOUBLE_HIRES_COLORS[colorValue];
+			}
+		}
+	}
+
+	/**
+	 * Decode a line in double hires color mode with lookup tables; the
+	 * result is the same as processDoubleHiresColorLine.  Every 4 bytes
+	 * (auxiliary, main, auxiliary, main) hold 28 pixels, or 7 colors.
+	 */
+	protected void decodeDoubleHiresColorLine(byte[] fileData, int base, int[] pixels, int offset) {
+		for (int x=0; x<560; x+=28) {
+			int bits = (fileData[base] & 0x7f)
+					| (fileData[base + 0x2000] & 0x7f) << 7
+					| (fileData[base + 1] & 0x7f) << 14
+					| (fileData[base + 0x2001] & 0x7f) << 21;
+			base+= 2;
+			for (int cell=0; cell<28; cell+=4) {
+				int color = DOUBLE_HIRES_NIBBLE_COLORS[(bits >> cell) & 0xf];
+				pixels[offset+x+cell] = color;
+				pixels[offset+x+cell+1] = color;
+				pixels[offset+x+cell+2] = color;
+				pixels[offset+x+cell+3] = color;
 			}
 		}
 	}
 
 	/**
 	 * Given a specific line in the image, process it in super hires color
-	 * mode.
+	 * mode.  The 160 bytes of the line start at base in the file data and
+	 * the 640 pixels at offset.
 	 * <p>
 	 * The color map varies depending upon the SCB value(s) and the pallettes
 	 * stored with the image. The SCB does not apple to 3200 SHR mode!
      * </pre>
 	 */
-	protected void processSuperHiresLine(byte[] lineData, 
-		AppleImage image, int y, byte scb, byte[] pallettes) {
+	protected void processSuperHiresLine(byte[] fileData, int base, 
+		int[] pixels, int offset, int y, byte scb, byte[] pallettes) {
 		
 		int palletteNumber = (scb & 0x0f);
 		boolean fillMode = (scb & 0x20) != 0;
@@ -349,15 +522,13 @@ public class GraphicsFileFilter implements FileFilter {
 			mode320 = true;	// always
 		}
 		int width = mode320 ? 320 : 640;
-		int yPosition = y*2;
 		int lastColorValue = 0;
 
 		for (int x=0; x<width; x++) {
 			int colorNumber;
 			if (mode320) {
-				int offset = (x / 2);
 				int colorBits = (x % 2);
-				byte byt = lineData[offset];
+				byte byt = fileData[base + x / 2];
 				if (colorBits == 1) {
 					colorNumber = (byt & 0x0f);
 				} else {
@@ -367,9 +538,8 @@ public class GraphicsFileFilter implements FileFilter {
 					colorNumber= 0x0f - colorNumber;	// pallette entries are reversed
 				}
 			} else {
-				int offset = (x / 4);
 				int colorBits = (x % 4);
-				byte byt = lineData[offset];
+				byte byt = fileData[base + x / 4];
 				switch (colorBits) {
 					case 0:	colorNumber = (byt & 0xc0) >> 6;
 								break;
@@ -396,12 +566,11 @@ public class GraphicsFileFilter implements FileFilter {
 					| (colorWord & 0x000f) << 4;
 			}
 
-			int xPosition = mode320 ? x*2 : x;
-			image.setPoint(xPosition, yPosition, colorValue);
-			image.setPoint(xPosition, yPosition+1, colorValue);
 			if (mode320) {
-				image.setPoint(xPosition+1, yPosition, colorValue);
-				image.setPoint(xPosition+1, yPosition+1, colorValue);
+				pixels[offset + x*2] = colorValue;
+				pixels[offset + x*2 + 1] = colorValue;
+			} else {
+				pixels[offset + x] = colorValue;
 			}
 		}
 	}
@@ -529,6 +698,22 @@ public class GraphicsFileFilter implements FileFilter {
 		return referenceImage.getFileExtension();
 	}
 	
+	/**
+	 * Select decoding of hires and double hires color with lookup tables
+	 * (the default) or with the original bit-by-bit code.  Both produce
+	 * the same image.
+	 */
+	public void setLookupTables(boolean lookupTables) {
+		this.lookupTables = lookupTables;
+	}
+
+	/**
+	 * Indicates if hires and double hires color are decoded with lookup tables.
+	 */
+	public boolean isLookupTables() {
+		return lookupTables;
+	}
+
 	/**
 	 * Set the color mode.
 	 */
@@ -19,9 +19,15 @@
  */
 package com.webcodepro.applecommander.storage.filters;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
 import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FileFilter;
-import com.webcodepro.applecommander.util.AppleUtil;
+import com.webcodepro.applecommander.util.HexDumpWriter;
 
 /**
  * Filter the given file data to be the appropriate length.
@@ -42,7 +48,23 @@ public class HexDumpFileFilter implements FileFilter {
 	 * @see com.webcodepro.applecommander.storage.FileFilter#filter(FileEntry)
 	 */
 	public byte[] filter(FileEntry fileEntry) {
-		return AppleUtil.getHexDump(fileEntry.getFileData()).getBytes();
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try {
+			new HexDumpWriter(outputStream).dump(0, fileEntry.getFileData());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);	// not expected from a ByteArrayOutputStream
+		}
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Write the hex dump to the stream as the file data is read.
+	 * @see com.webcodepro.applecommander.storage.FileFilter#filter(FileEntry, OutputStream)
+	 */
+	public void filter(FileEntry fileEntry, OutputStream outputStream) throws IOException {
+		try (InputStream inputStream = fileEntry.getFileDataStream()) {
+			new HexDumpWriter(outputStream).dump(0, inputStream);
+		}
 	}
 
 	/**
@@ -45,22 +45,35 @@ public abstract class AppleImage {
 	/**
 	 * Create a specific instance of AppleImage.  This has been coded
 	 * using Reflection to ease native compilation for the most part.
+	 * The image handler is only looked up once.
 	 */
 	public static AppleImage create(int width, int height) {
+		Constructor<? extends AppleImage> constructor = ImageHandler.CONSTRUCTOR;
+		if (constructor != null) {
+			try {
+				return constructor.newInstance(width, height);
+			} catch (Exception ignored) {
+				// The handler was usable when it was looked up; treat this
+				// the same as having no handler available.
+			}
+		}
+		return null;
+	}
+	/**
+	 * Locate the first image handler that is available on the platform.
+	 */
+	protected static Constructor<? extends AppleImage> findConstructor() {
 		String[] classNames = {
 			"ImageIoImage", "SunJpegImage", "SwtImage" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-		Class<?>[] constructorArgClasses = new Class<?>[] { int.class, int.class };
-		Object[] constructorArgs = { Integer.valueOf(width), Integer.valueOf(height) };
 		for (String className : classNames) {
 			try {
-				Class<?> appleImageClass = Class.forName(
+				Class<? extends AppleImage> appleImageClass = Class.forName(
 					"com.webcodepro.applecommander.storage.filters.imagehandlers."  //$NON-NLS-1$
-					+ className);
-				Constructor<?> constructor =
-					appleImageClass.getConstructor(constructorArgClasses);
-				Object instance =  
-					constructor.newInstance(constructorArgs);
-				return AppleImage.class.cast(instance);
+					+ className).asSubclass(AppleImage.class);
+				Constructor<? extends AppleImage> constructor =
+					appleImageClass.getConstructor(int.class, int.class);
+				constructor.newInstance(1, 1);
+				return constructor;
 			} catch (Exception ignored) {
 				// There are multiple exceptions that can be thrown here.
 				// For the most part, this is expected and simply means that
@@ -69,6 +82,12 @@ public abstract class AppleImage {
 		}
 		return null;
 	}
+	/**
+	 * Holds the image handler, found on first use.
+	 */
+	private static class ImageHandler {
+		private static final Constructor<? extends AppleImage> CONSTRUCTOR = findConstructor();
+	}
 	/**
 	 * Construct AppleImage.
 	 */
@@ -116,6 +135,26 @@ public abstract class AppleImage {
 	 * Get a color point.
 	 */
 	public abstract int getPoint(int x, int y);
+	/**
+	 * Get the pixels backing this image, as rows of RGB values that are
+	 * getWidth() wide.  Returns null if the image handler cannot expose
+	 * its pixels, in which case setPixels must be used.
+	 */
+	public int[] getPixels() {
+		return null;
+	}
+	/**
+	 * Set all points from rows of RGB values that are getWidth() wide.
+	 */
+	public void setPixels(int[] pixels) {
+		int width = getWidth();
+		int height = getHeight();
+		for (int y=0; y<height; y++) {
+			for (int x=0; x<width; x++) {
+				setPoint(x, y, pixels[y*width + x]);
+			}
+		}
+	}
 	/**
 	 * Save the image.
 	 */
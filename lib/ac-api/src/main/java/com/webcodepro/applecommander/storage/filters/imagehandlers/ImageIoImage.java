@@ -20,6 +20,7 @@
 package com.webcodepro.applecommander.storage.filters.imagehandlers;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -35,6 +36,7 @@ import javax.imageio.ImageIO;
  */
 public class ImageIoImage extends AppleImage {
 	private BufferedImage image;
+	private int[] pixels;
 	/**
 	 * Create ImageIoImage.  Verifies all (known) required classes are available
 	 * as well as sets up the class.
@@ -45,6 +47,7 @@ public class ImageIoImage extends AppleImage {
 		super(new String[] { "PNG", "JPEG" });  //$NON-NLS-1$//$NON-NLS-2$
 		Class.forName("javax.imageio.ImageIO"); //$NON-NLS-1$
 		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
 	}
 	/**
 	 * Set a color point.
@@ -58,6 +61,20 @@ public class ImageIoImage extends AppleImage {
 	public int getPoint(int x, int y) {
 		return image.getRGB(x,y);
 	}
+	/**
+	 * Get the pixels backing the image.
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+	/**
+	 * Set all points of the image.
+	 */
+	public void setPixels(int[] pixels) {
+		if (pixels != this.pixels) {
+			System.arraycopy(pixels, 0, this.pixels, 0, this.pixels.length);
+		}
+	}
 	/**
 	 * Save the image.
 	 */
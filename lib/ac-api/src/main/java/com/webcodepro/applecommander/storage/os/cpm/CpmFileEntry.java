@@ -135,10 +135,10 @@ public class CpmFileEntry implements FileEntry {
 	}
 
 	/**
-	 * Read the fileEntry bytes from the disk image.
+	 * Read the fileEntry bytes from the directory shared by the disk.
 	 */
 	protected byte[] readFileEntry(int number) {
-		byte[] data = disk.readCpmFileEntries();
+		byte[] data = disk.getCpmDirectory();
 		byte[] entry = new byte[ENTRY_LENGTH];
 		int offset = ((Integer)offsets.get(number)).intValue();
 		System.arraycopy(data, offset, entry, 0, ENTRY_LENGTH);
@@ -177,6 +177,7 @@ public class CpmFileEntry implements FileEntry {
 				FILENAME_LENGTH, false);
 			writeFileEntry(i, data);
 		}
+		disk.invalidateFileIndex();
 	}
 
 	/**
@@ -379,6 +380,7 @@ public class CpmFileEntry implements FileEntry {
 		for (int i=0; i<offsets.size(); i++) {
 			setUserNumber(i, 0xe5);
 		}
+		disk.invalidateFileIndex();
 	}
 
 	/**
@@ -20,6 +20,7 @@
 package com.webcodepro.applecommander.storage.os.cpm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +32,8 @@ import com.webcodepro.applecommander.storage.DiskGeometry;
 import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.storage.StorageBundle;
+import com.webcodepro.applecommander.storage.UsageBitmap;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
 import com.webcodepro.applecommander.storage.physical.ImageOrder;
 import com.webcodepro.applecommander.util.AppleUtil;
 import com.webcodepro.applecommander.util.TextBundle;
@@ -74,29 +77,43 @@ public class CpmFormatDisk extends FormattedDisk {
 	public static final int[] sectorSkew = {
 						 0x0, 0x6, 0xc, 0x3, 0x9, 0xf, 0xe, 0x5, 
 						 0xb, 0x2, 0x8, 0x7, 0xd, 0x4, 0xa, 0x1 };
-
 	/**
-	 * Manage CP/M disk usage.
+	 * The number of CP/M blocks that an allocation byte can refer to.
 	 */
-	public class CpmDiskUsage implements DiskUsage {
-		int block = -1;
-		boolean[] usage = null;
-		public CpmDiskUsage(boolean[] usage) {
-			this.usage = usage;
-		}
-		public boolean hasNext() {
-			return block < usage.length-1;
-		}
-		public void next() {
-			block++;
-		}
-		public boolean isFree() {
-			return !isUsed();
-		}
-		public boolean isUsed() {
-			return usage[block];
+	private static final int CPM_BLOCK_COUNT = 256;
+	/**
+	 * The physical track of each CP/M block.
+	 */
+	private static final int[] BLOCK_TRACKS = new int[CPM_BLOCK_COUNT];
+	/**
+	 * The physical sectors of each CP/M block, with the sector skew applied.
+	 * Each block has PHYSICAL_SECTORS_PER_BLOCK consecutive entries.
+	 */
+	private static final int[] BLOCK_SECTORS = 
+		new int[CPM_BLOCK_COUNT * PHYSICAL_SECTORS_PER_BLOCK];
+	static {
+		for (int block=0; block<CPM_BLOCK_COUNT; block++) {
+			BLOCK_TRACKS[block] = PHYSICAL_BLOCK_TRACK_START + (block / CPM_BLOCKS_PER_TRACK);
+			int sector = (block % CPM_BLOCKS_PER_TRACK) * PHYSICAL_SECTORS_PER_BLOCK;
+			for (int i=0; i<PHYSICAL_SECTORS_PER_BLOCK; i++) {
+				BLOCK_SECTORS[block*PHYSICAL_SECTORS_PER_BLOCK + i] = sectorSkew[sector+i];
+			}
 		}
 	}
+	
+	/**
+	 * The directory (CP/M blocks 0 and 1), read once and shared by all file
+	 * entries.  It is re-read only if the disk image has been modified since.
+	 */
+	private byte[] directory;
+	/**
+	 * The disk image that the directory was read from.
+	 */
+	private ByteArrayImageLayout directoryLayout;
+	/**
+	 * The disk image modification count when the directory was read.
+	 */
+	private long directoryModificationCount;
 
 	/**
 	 * Construct a CP/M formatted disk.
@@ -186,23 +203,28 @@ public class CpmFormatDisk extends FormattedDisk {
 	 * @see com.webcodepro.applecommander.storage.FormattedDisk#getDiskUsage()
 	 */
 	public DiskUsage getDiskUsage() {
-		boolean[] usage = new boolean[getBitmapLength()];
-		// fill in reserved space at beginning of disk (including 2 directory blocks)
+		return getUsageBitmap().getDiskUsage();
+	}
+
+	/**
+	 * Get the disk usage from the allocations of each file.
+	 * @see com.webcodepro.applecommander.storage.FormattedDisk#getUsageBitmap()
+	 */
+	public UsageBitmap getUsageBitmap() {
+		UsageBitmap bitmap = new UsageBitmap(getBitmapLength());
+		// reserved space at beginning of disk (including 2 directory blocks) is used
 		int dataBlockStart = PHYSICAL_BLOCK_TRACK_START * CPM_BLOCKS_PER_TRACK;
-		for (int i=0; i<dataBlockStart+2; i++) {
-			usage[i] = true;
-		}
+		bitmap.setFree(dataBlockStart+2, bitmap.getLength());
 		// fill in space used by files
 		List<FileEntry> files = getFiles();
 		for (int i=0; i<files.size(); i++) {
 			CpmFileEntry fileEntry = (CpmFileEntry) files.get(i);
 			int[] allocation = fileEntry.getAllocations();
 			for (int a=0; a<allocation.length; a++) {
-				int block = dataBlockStart + allocation[a];
-				usage[block] = true;
+				bitmap.setUsed(dataBlockStart + allocation[a]);
 			}
 		}
-		return new CpmDiskUsage(usage);
+		return bitmap;
 	}
 
 	/**
@@ -266,9 +288,7 @@ public class CpmFormatDisk extends FormattedDisk {
 		for (int i=0; i<allocations.length; i++) {
 			int blockNumber = allocations[i];
 			if (blockNumber > 0) {
-				byte[] block = readCpmBlock(blockNumber);
-				System.arraycopy(block, 0, 
-					data, i * CPM_BLOCKSIZE, CPM_BLOCKSIZE);
+				readCpmBlock(blockNumber, data, i * CPM_BLOCKSIZE);
 			}
 		}
 		return data;
@@ -435,31 +455,56 @@ public class CpmFormatDisk extends FormattedDisk {
 	 */
 	public byte[] readCpmBlock(int block) {
 		byte[] data = new byte[CPM_BLOCKSIZE];
-		int track = computeTrack(block);
-		int sector = computeSector(block);
+		readCpmBlock(block, data, 0);
+		return data;
+	}
+	
+	/**
+	 * Read a CP/M block (1K in size) into the buffer at the given offset.
+	 */
+	public void readCpmBlock(int block, byte[] buffer, int offset) {
+		int track = BLOCK_TRACKS[block];
+		int sectors = block * PHYSICAL_SECTORS_PER_BLOCK;
 		for (int i=0; i<PHYSICAL_SECTORS_PER_BLOCK; i++) {
-			System.arraycopy(readSector(track, sectorSkew[sector+i]), 
-				0, data, i*SECTOR_SIZE, SECTOR_SIZE);
+			readSector(track, BLOCK_SECTORS[sectors+i], buffer, offset + i*SECTOR_SIZE);
 		}
-		return data;
+	}
+	
+	/**
+	 * Answer with the directory (CP/M blocks 0 and 1).  This is the copy
+	 * shared by all file entries and must not be modified; it is only read
+	 * from the disk image when it is stale.
+	 */
+	protected synchronized byte[] getCpmDirectory() {
+		ByteArrayImageLayout layout = getDiskImageManager();
+		if (directory == null || directoryLayout != layout
+				|| directoryModificationCount != layout.getModificationCount()) {
+			byte[] data = new byte[2 * CPM_BLOCKSIZE];
+			readCpmBlock(0, data, 0);
+			readCpmBlock(1, data, CPM_BLOCKSIZE);
+			directory = data;
+			directoryLayout = layout;
+			directoryModificationCount = layout.getModificationCount();
+		}
+		return directory;
 	}
 	
 	public byte[] readCpmFileEntries() {
-        byte[] data = new byte[2 * CpmFormatDisk.CPM_BLOCKSIZE];
-        System.arraycopy(readCpmBlock(0), 0, data, 
-            0, CpmFormatDisk.CPM_BLOCKSIZE);
-        System.arraycopy(readCpmBlock(1), 0, data, 
-            CpmFormatDisk.CPM_BLOCKSIZE, CpmFormatDisk.CPM_BLOCKSIZE);
-        return data;
+		return getCpmDirectory().clone();
 	}
-	public void writeCpmFileEntries(byte[] data) {
+	public synchronized void writeCpmFileEntries(byte[] data) {
         byte[] block = new byte[CPM_BLOCKSIZE];
         System.arraycopy(data, 0, block, 
             0, CpmFormatDisk.CPM_BLOCKSIZE);
         writeCpmBlock(0, block);
         System.arraycopy(data, CpmFormatDisk.CPM_BLOCKSIZE, block, 
             0, CpmFormatDisk.CPM_BLOCKSIZE);
-        writeCpmBlock(1, block);	           
+        writeCpmBlock(1, block);
+        // Keep the directory current with what was just written
+        ByteArrayImageLayout layout = getDiskImageManager();
+        directory = Arrays.copyOf(data, 2 * CPM_BLOCKSIZE);
+        directoryLayout = layout;
+        directoryModificationCount = layout.getModificationCount();
 	}
 	
 	/**
@@ -481,12 +526,12 @@ public class CpmFormatDisk extends FormattedDisk {
 	 * Write a CP/M block.
 	 */
 	public void writeCpmBlock(int block, byte[] data) {
-		int track = computeTrack(block);
-		int sector = computeSector(block);
+		int track = BLOCK_TRACKS[block];
+		int sectors = block * PHYSICAL_SECTORS_PER_BLOCK;
 		byte[] sectorData = new byte[SECTOR_SIZE];
 		for (int i=0; i<PHYSICAL_SECTORS_PER_BLOCK; i++) {
 			System.arraycopy(data, i*SECTOR_SIZE, sectorData, 0, SECTOR_SIZE);
-			writeSector(track, sectorSkew[sector+i], sectorData);
+			writeSector(track, BLOCK_SECTORS[sectors+i], sectorData);
 		}
 	}
 
@@ -19,13 +19,17 @@
  */
 package com.webcodepro.applecommander.storage.os.dos33;
 
+import java.io.InputStream;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.DiskFullException;
+import com.webcodepro.applecommander.storage.FileColumnWriter;
 import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FileEntryInputStream;
 import com.webcodepro.applecommander.storage.FileFilter;
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.storage.StorageBundle;
@@ -126,9 +130,11 @@ public class DosFileEntry implements FileEntry {
 	 * Set the name of this file.
 	 */
 	public void setFilename(String filename) {
+		String oldFilename = getFilename();
 		byte[] data = readFileEntry();
 		AppleUtil.setString(data, 3, filename.toUpperCase(), 30);
 		writeFileEntry(data);
+		disk.fileEntryRenamed(this, oldFilename);
 	}
 
 	/**
@@ -197,20 +203,23 @@ public class DosFileEntry implements FileEntry {
 	 * @see com.webcodepro.applecommander.storage.FileEntry#getSize()
 	 */
 	public int getSize() {
-		byte[] rawdata = null;
-		if (!isDeleted()) {
-			rawdata = disk.getFileData(this);
-		}
 		// default to nothing special, just compute from number of sectors
 		int size = (getSectorsUsed()-1) * Disk.SECTOR_SIZE;
 		if (size < 1) size = 0;	// we assume a T/S block is included (may not be)
-		if (rawdata != null) {
+		if (!isDeleted()) {
+			// Only the first sector is needed for the length
+			int length = -1;
 			if ("B".equals(getFiletype())) { //$NON-NLS-1$
 				// binary
-				return AppleUtil.getWordValue(rawdata, 2);
+				FileEntryInputStream rawdata = disk.getFileDataStream(this);
+				rawdata.readWord();
+				length = rawdata.readWord();
 			} else if ("A".equals(getFiletype()) || "I".equals(getFiletype())) { //$NON-NLS-1$ //$NON-NLS-2$
 				// applesoft, integer basic
-				return AppleUtil.getWordValue(rawdata, 0);
+				length = disk.getFileDataStream(this).readWord();
+			}
+			if (length >= 0) {
+				return length;
 			}
 		}
 		return size;
@@ -252,6 +261,7 @@ public class DosFileEntry implements FileEntry {
 	 * Delete this file.
 	 */
 	public void delete() {
+		disk.fileEntryDeleted(this);
 		disk.freeSectors(this);
 		byte[] fileEntry = readFileEntry();
 		fileEntry[0x20] = fileEntry[0x00];
@@ -297,6 +307,37 @@ public class DosFileEntry implements FileEntry {
 		return list;
 	}
 	
+	/**
+	 * Write the column data for the given display mode as typed values.
+	 * @see #getFileColumnData(int)
+	 */
+	public void writeFileColumnValues(int displayMode, FileColumnWriter writer) {
+		switch (displayMode) {
+			case FormattedDisk.FILE_DISPLAY_NATIVE:
+				writer.writeBoolean("locked", isLocked()); //$NON-NLS-1$
+				writer.writeString("type", getFiletype()); //$NON-NLS-1$
+				writer.writeNumber("sectors", getSectorsUsed()); //$NON-NLS-1$
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				break;
+			case FormattedDisk.FILE_DISPLAY_DETAIL:
+				writer.writeBoolean("locked", isLocked()); //$NON-NLS-1$
+				writer.writeString("type", getFiletype()); //$NON-NLS-1$
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				writer.writeNumber("size", getSize()); //$NON-NLS-1$
+				writer.writeNumber("sectors", getSectorsUsed()); //$NON-NLS-1$
+				writer.writeBoolean("deleted", isDeleted()); //$NON-NLS-1$
+				writer.writeString("trackAndSectorList", "T" + getTrack() + " S" + getSector()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				writer.writeNumber("address", getAddress()); //$NON-NLS-1$
+				break;
+			default:	// FILE_DISPLAY_STANDARD
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				writer.writeString("type", getFiletype()); //$NON-NLS-1$
+				writer.writeNumber("sizeInBytes", getSize()); //$NON-NLS-1$
+				writer.writeBoolean("locked", isLocked()); //$NON-NLS-1$
+				break;
+		}
+	}
+
 	/**
 	 * Get the track of first track/sector list sector.
 	 */
@@ -350,6 +391,23 @@ public class DosFileEntry implements FileEntry {
 		return filedata;
 	}
 	
+	/**
+	 * Get the file data as a stream, skipping the address and length
+	 * stored within binary and BASIC files.
+	 * @see #getFileData()
+	 */
+	public InputStream getFileDataStream() {
+		FileEntryInputStream rawdata = disk.getFileDataStream(this);
+		if (isBinaryFile()) {
+			rawdata.readWord();		// address
+			rawdata.limit(Math.max(0, rawdata.readWord()));
+		} else if (isApplesoftBasicFile() || isIntegerBasicFile()) {
+			int length = rawdata.readWord();
+			rawdata.limit(isDeleted() ? getSize() : Math.max(0, length));
+		}
+		return rawdata;
+	}
+
 	/**
 	 * Set the file data.  This is essentially the save operation.
 	 * Specifically, if the filetype is binary, the length and
@@ -514,4 +572,22 @@ public class DosFileEntry implements FileEntry {
 	public boolean canCompile() {
 		return isApplesoftBasicFile();
 	}
+
+	/**
+	 * Entries are the same if they are at the same catalog location on the
+	 * same disk.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null || getClass() != obj.getClass()) return false;
+		DosFileEntry other = (DosFileEntry) obj;
+		return disk == other.disk && track == other.track
+				&& sector == other.sector && offset == other.offset;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(track, sector, offset);
+	}
 }
@@ -22,6 +22,7 @@ package com.webcodepro.applecommander.storage.os.dos33;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.HashSet;
 
 import com.webcodepro.applecommander.storage.DirectoryEntry;
@@ -30,8 +31,10 @@ import com.webcodepro.applecommander.storage.DiskCorruptException;
 import com.webcodepro.applecommander.storage.DiskFullException;
 import com.webcodepro.applecommander.storage.DiskGeometry;
 import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FileEntryInputStream;
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.storage.StorageBundle;
+import com.webcodepro.applecommander.storage.UsageBitmap;
 import com.webcodepro.applecommander.storage.physical.ImageOrder;
 import com.webcodepro.applecommander.util.AppleUtil;
 import com.webcodepro.applecommander.util.TextBundle;
@@ -75,44 +78,6 @@ public class DosFormatDisk extends FormattedDisk {
 			"S", "R", "a", "b"  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 		};
 
-	/**
-	 * Use this inner interface for managing the disk usage data.
-	 * This off-loads format-specific implementation to the implementing class.
-	 */
-	private class DosDiskUsage implements DiskUsage {
-		private int[] location = null;
-		public boolean hasNext() {
-			return location == null
-				|| (location[TRACK_LOCATION_INDEX] < getTracks()
-				&& location[SECTOR_LOCATION_INDEX] < getSectors());
-		}
-		public void next() {
-			if (location == null) {
-				location = new int[2];
-			} else {
-				location[SECTOR_LOCATION_INDEX]++;
-				if (location[SECTOR_LOCATION_INDEX] >= getSectors()) {
-					location[SECTOR_LOCATION_INDEX] = 0;
-					location[TRACK_LOCATION_INDEX]++;
-				}
-			}
-		}
-		/**
-		 * Get the free setting for the bitmap at the current location.
-		 */
-		public boolean isFree() {
-			if (location == null || location.length != 2) {
-				throw new IllegalArgumentException(StorageBundle.getInstance()
-						.get("DosFormatDisk.InvalidDimensionError")); //$NON-NLS-1$
-			}
-			return isSectorFree(location[TRACK_LOCATION_INDEX], 
-				location[SECTOR_LOCATION_INDEX], readVtoc());
-		}
-		public boolean isUsed() {
-			return !isFree();
-		}
-	}
-
 	/**
 	 * Constructor for DosFormatDisk.
 	 */
@@ -183,7 +148,9 @@ public class DosFormatDisk extends FormattedDisk {
 			while (offset < 0xff) {	// iterate through all entries
 				int value = AppleUtil.getUnsignedByte(catalogSector[offset]);
 				if (value == 0 || value == 0xff) {
-					return new DosFileEntry(this, track, sector, offset);
+					DosFileEntry fileEntry = new DosFileEntry(this, track, sector, offset);
+					fileEntryAdded(this, fileEntry);
+					return fileEntry;
 				}
 				offset+= DosFileEntry.FILE_DESCRIPTIVE_ENTRY_LENGTH;
 			}
@@ -228,13 +195,14 @@ public class DosFormatDisk extends FormattedDisk {
 	 * Compute the number of free sectors available on the disk.
 	 */
 	public int getFreeSectors() {
-		byte[] vtoc = readVtoc();
-		int freeSectors = 0;
-		for (int offset=0x38; offset<0xff; offset++) {
-			byte bitmap = vtoc[offset];
-			freeSectors+= AppleUtil.getBitCount(bitmap);
-		}
-		return freeSectors;
+		return getFreeSectors(readVtoc());
+	}
+
+	/**
+	 * Compute the number of free sectors in the given VTOC.
+	 */
+	protected int getFreeSectors(byte[] vtoc) {
+		return AppleUtil.getBitCount(vtoc, 0x38, 0xff);
 	}
 
 	/**
@@ -290,7 +258,26 @@ public class DosFormatDisk extends FormattedDisk {
 	 * Get the disk usage iterator.
 	 */
 	public DiskUsage getDiskUsage() {
-		return new DosDiskUsage();
+		return getUsageBitmap().getDiskUsage();
+	}
+
+	/**
+	 * Get the disk usage from the VTOC, one track at a time.  Sectors are
+	 * ordered by track and then sector.
+	 */
+	public UsageBitmap getUsageBitmap() {
+		byte[] vtoc = readVtoc();
+		int tracks = AppleUtil.getUnsignedByte(vtoc[0x34]);
+		int sectors = AppleUtil.getUnsignedByte(vtoc[0x35]);
+		UsageBitmap bitmap = new UsageBitmap(tracks * sectors);
+		for (int track=0; track<tracks && getFreeMapByte(track, 0) < vtoc.length; track++) {
+			// bit n is sector n; the map only has 16 bits, so sectors above 15 share them
+			long bits = (AppleUtil.getUnsignedByte(vtoc[getFreeMapByte(track, 8)]) << 8)
+					| AppleUtil.getUnsignedByte(vtoc[getFreeMapByte(track, 0)]);
+			bits |= bits << 16;
+			bitmap.setBits(track * sectors, bits, Math.min(sectors, 32));
+		}
+		return bitmap;
 	}
 
 	/**
@@ -339,11 +326,15 @@ public class DosFormatDisk extends FormattedDisk {
 	 */
 	public List<DiskInformation> getDiskInformation() {
 		List<DiskInformation> list = super.getDiskInformation();
-		list.add(new DiskInformation(textBundle.get("DosFormatDisk.TotalSectors"), getTotalSectors())); //$NON-NLS-1$
-		list.add(new DiskInformation(textBundle.get("DosFormatDisk.FreeSectors"), getFreeSectors())); //$NON-NLS-1$
-		list.add(new DiskInformation(textBundle.get("DosFormatDisk.UsedSectors"), getUsedSectors())); //$NON-NLS-1$
-		list.add(new DiskInformation(textBundle.get("DosFormatDisk.TracksOnDisk"), getTracks())); //$NON-NLS-1$
-		list.add(new DiskInformation(textBundle.get("DosFormatDisk.SectorsOnDisk"), getSectors())); //$NON-NLS-1$
+		byte[] vtoc = readVtoc();
+		int tracks = AppleUtil.getUnsignedByte(vtoc[0x34]);
+		int sectors = AppleUtil.getUnsignedByte(vtoc[0x35]);
+		int freeSectors = getFreeSectors(vtoc);
+		list.add(new DiskInformation(textBundle.get("DosFormatDisk.TotalSectors"), tracks * sectors)); //$NON-NLS-1$
+		list.add(new DiskInformation(textBundle.get("DosFormatDisk.FreeSectors"), freeSectors)); //$NON-NLS-1$
+		list.add(new DiskInformation(textBundle.get("DosFormatDisk.UsedSectors"), tracks * sectors - freeSectors)); //$NON-NLS-1$
+		list.add(new DiskInformation(textBundle.get("DosFormatDisk.TracksOnDisk"), tracks)); //$NON-NLS-1$
+		list.add(new DiskInformation(textBundle.get("DosFormatDisk.SectorsOnDisk"), sectors)); //$NON-NLS-1$
 		return list;
 	}
 
@@ -461,6 +452,62 @@ public class DosFormatDisk extends FormattedDisk {
 		return fileData;
 	}
 
+	/**
+	 * Get the raw data of the file as a stream, reading each sector as the
+	 * track/sector list is walked.  Answers the same bytes as getFileData,
+	 * and reading past them fails as copying past the getFileData array does.
+	 */
+	public FileEntryInputStream getFileDataStream(FileEntry fileEntry) {
+		if ( !(fileEntry instanceof DosFileEntry)) {
+			throw new IllegalArgumentException(textBundle.get("DosFormatDisk.InvalidFileEntryError")); //$NON-NLS-1$
+		}
+		DosFileEntry dosEntry = (DosFileEntry) fileEntry;
+		int filesize = dosEntry.getSectorsUsed();
+		if (filesize <= 0) {
+			// don't need to load it - also bypass potential issues
+			return new FileEntryInputStream(() -> null, 0);
+		}
+		return new FileEntryInputStream(new TrackSectorListWalker(dosEntry), 
+				(filesize-1) * SECTOR_SIZE);
+	}
+
+	/**
+	 * Supplies each data sector of a file in turn by walking the
+	 * track/sector list(s).
+	 */
+	private class TrackSectorListWalker implements Supplier<byte[]> {
+		private int track;
+		private int sector;
+		private byte[] trackSectorList;
+		private int index;
+		
+		private TrackSectorListWalker(DosFileEntry dosEntry) {
+			this.track = dosEntry.getTrack();
+			this.sector = dosEntry.getSector();
+		}
+		
+		public byte[] get() {
+			while (true) {
+				if (trackSectorList != null && index < 0x100) {
+					int t = AppleUtil.getUnsignedByte(trackSectorList[index]);
+					if (t != 0) {
+						int s = AppleUtil.getUnsignedByte(trackSectorList[index+1]);
+						index+= 2;
+						return readSector(t, s);
+					}
+				}
+				// End of this track/sector list; move to the next one
+				if (track == 0) {
+					return null;
+				}
+				trackSectorList = readSector(track, sector);
+				track = AppleUtil.getUnsignedByte(trackSectorList[0x01]);
+				sector = AppleUtil.getUnsignedByte(trackSectorList[0x02]);
+				index = 0x0c;
+			}
+		}
+	}
+
 	/**
 	 * Writes the raw bytes into the file.  This bypasses any special formatting
 	 * of the data (such as prepending the data with a length and/or an address).
@@ -119,6 +119,7 @@ public class GutenbergFileEntry implements FileEntry {
 		byte[] data = readFileEntry();
 		AppleUtil.setString(data, 0, filename.toUpperCase(), getMaximumFilenameLength());
 		writeFileEntry(data);
+		disk.invalidateFileIndex();
 	}
 
 	/**
@@ -22,6 +22,7 @@
 package com.webcodepro.applecommander.storage.os.pascal;
 
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -31,6 +32,7 @@ import java.util.List;
 
 import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.DiskFullException;
+import com.webcodepro.applecommander.storage.FileColumnWriter;
 import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FileFilter;
 import com.webcodepro.applecommander.storage.FormattedDisk;
@@ -105,6 +107,7 @@ public class PascalFileEntry implements FileEntry {
 	 */
 	public void setFilename(String filename) {
 		AppleUtil.setPascalString(fileEntry, 6, filename.toUpperCase(), 15);
+		disk.invalidateFileIndex();
 	}
 
 	/**
@@ -238,6 +241,7 @@ public class PascalFileEntry implements FileEntry {
 			volEntry.setFileCount(count - 2); // inlcudes the volume entry
 			dir.set(0, volEntry);
 			disk.putDirectory(dir);
+			disk.invalidateFileIndex();
 			deleted = true;
 		}
 	}
@@ -298,6 +302,37 @@ public class PascalFileEntry implements FileEntry {
 		return list;
 	}
 
+	/**
+	 * Write the column data for the given display mode as typed values.
+	 * @see #getFileColumnData(int)
+	 */
+	public void writeFileColumnValues(int displayMode, FileColumnWriter writer) {
+		switch (displayMode) {
+			case FormattedDisk.FILE_DISPLAY_NATIVE:
+				writer.writeDate("modified", getModificationDate()); //$NON-NLS-1$
+				writer.writeNumber("blocks", getBlocksUsed()); //$NON-NLS-1$
+				writer.writeString("filetype", getFiletype()); //$NON-NLS-1$
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				break;
+			case FormattedDisk.FILE_DISPLAY_DETAIL:
+				writer.writeDate("modified", getModificationDate()); //$NON-NLS-1$
+				writer.writeNumber("blocks", getBlocksUsed()); //$NON-NLS-1$
+				writer.writeNumber("bytesInLastBlock", getBytesUsedInLastBlock()); //$NON-NLS-1$
+				writer.writeNumber("size", getSize()); //$NON-NLS-1$
+				writer.writeString("filetype", getFiletype()); //$NON-NLS-1$
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				writer.writeNumber("firstBlock", getFirstBlock()); //$NON-NLS-1$
+				writer.writeNumber("lastBlock", getLastBlock()-1); //$NON-NLS-1$
+				break;
+			default:	// FILE_DISPLAY_STANDARD
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				writer.writeString("type", getFiletype()); //$NON-NLS-1$
+				writer.writeNumber("sizeInBytes", getSize()); //$NON-NLS-1$
+				writer.writeBoolean("locked", isLocked()); //$NON-NLS-1$
+				break;
+		}
+	}
+
 	/**
 	 * Get file data.  This handles any operating-system specific issues.
 	 * Currently, the disk itself handles this.
@@ -306,6 +341,14 @@ public class PascalFileEntry implements FileEntry {
 		return disk.getFileData(this);
 	}
 
+	/**
+	 * Get file data as a stream.
+	 * @see #getFileData()
+	 */
+	public InputStream getFileDataStream() {
+		return disk.getFileDataStream(this);
+	}
+
 	/**
 	 * Filter text: change CR/LF to CR; compress leading SP.
 	 * author John B. Matthews
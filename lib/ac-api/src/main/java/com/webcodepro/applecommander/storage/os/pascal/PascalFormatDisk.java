@@ -22,7 +22,6 @@
 package com.webcodepro.applecommander.storage.os.pascal;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 
@@ -30,8 +29,10 @@ import com.webcodepro.applecommander.storage.DirectoryEntry;
 import com.webcodepro.applecommander.storage.DiskFullException;
 import com.webcodepro.applecommander.storage.DiskGeometry;
 import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FileEntryInputStream;
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.storage.StorageBundle;
+import com.webcodepro.applecommander.storage.UsageBitmap;
 import com.webcodepro.applecommander.storage.physical.ImageOrder;
 import com.webcodepro.applecommander.util.AppleUtil;
 import com.webcodepro.applecommander.util.TextBundle;
@@ -68,47 +69,6 @@ public class PascalFormatDisk extends FormattedDisk {
 			"FOTO", 		//$NON-NLS-1$
 			"securedir" };	//$NON-NLS-1$
 
-	/**
-	 * Use this inner interface for managing the disk usage data.
-	 * This off-loads format-specific implementation to the implementing class.
-	 * A BitSet is used to track all blocks, as Pascal disks do not have a
-	 * bitmap stored on the disk. This is safe since we know the number of blocks
-	 * that exist. (BitSet length is of last set bit - unset bits at the end are
-	 * "lost".)
-	 */
-	private class PascalDiskUsage implements DiskUsage {
-		private int location = -1;
-		private BitSet bitmap = null;
-		public boolean hasNext() {
-			return location == -1 || location < getBlocksOnDisk() - 1;
-		}
-		public void next() {
-			if (bitmap == null) {
-				bitmap = new BitSet(getBlocksOnDisk());
-				// assume all blocks are unused
-				for (int block=6; block<getBlocksOnDisk(); block++) {
-					bitmap.set(block);
-				}
-				// process through all files and mark those blocks as used
-				for (FileEntry fileEntry : getFiles()) {
-				    PascalFileEntry entry = (PascalFileEntry) fileEntry;
-					for (int block=entry.getFirstBlock(); block<entry.getLastBlock(); block++) {
-						bitmap.clear(block);
-					}
-				}
-				location = 0;
-			} else {
-				location++;
-			}
-		}
-		public boolean isFree() {
-			return bitmap.get(location);	// true = free
-		}
-		public boolean isUsed() {
-			return !bitmap.get(location);	// false = used
-		}
-	}
-	
 	/**
 	 * Constructor for PascalFormatDisk.
 	 */
@@ -229,6 +189,7 @@ public class PascalFormatDisk extends FormattedDisk {
 			dir.set(index, entry);
 			// write it back to disk
 			putDirectory(dir);
+			invalidateFileIndex();
 			return entry;
 		} else {
 			throw new DiskFullException(
@@ -419,7 +380,28 @@ public class PascalFormatDisk extends FormattedDisk {
 	 * Get the disk usage iterator.
 	 */
 	public DiskUsage getDiskUsage() {
-		return new PascalDiskUsage();
+		return getUsageBitmap().getDiskUsage();
+	}
+
+	/**
+	 * Get the disk usage.  Pascal has no bitmap; every block past the boot
+	 * blocks and directory is free unless a file occupies it.
+	 */
+	public UsageBitmap getUsageBitmap() {
+		int blocksOnDisk = getBlocksOnDisk();
+		UsageBitmap bitmap = new UsageBitmap(blocksOnDisk);
+		bitmap.setFree(Math.min(6, blocksOnDisk), blocksOnDisk);
+		List<FileEntry> files = getFiles();
+		if (files != null) {
+			for (FileEntry fileEntry : files) {
+				PascalFileEntry entry = (PascalFileEntry) fileEntry;
+				int lastBlock = Math.min(entry.getLastBlock(), blocksOnDisk);
+				if (entry.getFirstBlock() < lastBlock) {
+					bitmap.setUsed(entry.getFirstBlock(), lastBlock);
+				}
+			}
+		}
+		return bitmap;
 	}
 
 	/**
@@ -434,9 +416,11 @@ public class PascalFormatDisk extends FormattedDisk {
 	 */
 	public List<DiskInformation> getDiskInformation() {
 		List<DiskInformation> list = super.getDiskInformation();
-		list.add(new DiskInformation(textBundle.get("TotalBlocks"), getBlocksOnDisk())); //$NON-NLS-1$
-		list.add(new DiskInformation(textBundle.get("FreeBlocks"), getFreeBlocks())); //$NON-NLS-1$
-		list.add(new DiskInformation(textBundle.get("UsedBlocks"), getUsedBlocks())); //$NON-NLS-1$
+		int blocksOnDisk = getBlocksOnDisk();
+		int usedBlocks = getUsedBlocks();
+		list.add(new DiskInformation(textBundle.get("TotalBlocks"), blocksOnDisk)); //$NON-NLS-1$
+		list.add(new DiskInformation(textBundle.get("FreeBlocks"), blocksOnDisk - usedBlocks)); //$NON-NLS-1$
+		list.add(new DiskInformation(textBundle.get("UsedBlocks"), usedBlocks)); //$NON-NLS-1$
 		list.add(new DiskInformation(
 				textBundle.get("PascalFormatDisk.FilesOnDisk"), getFilesOnDisk())); //$NON-NLS-1$
 		list.add(new DiskInformation(
@@ -546,6 +530,22 @@ public class PascalFormatDisk extends FormattedDisk {
 		return fileData;
 	}
 	
+	/**
+	 * Get the data of the file as a stream, reading each of its contiguous
+	 * blocks in turn.  Answers the same bytes as getFileData.
+	 */
+	public FileEntryInputStream getFileDataStream(FileEntry fileEntry) {
+		if ( !(fileEntry instanceof PascalFileEntry)) {
+			throw new IllegalArgumentException(textBundle.get("PascalFormatDisk.IncorrectFileEntryError")); //$NON-NLS-1$
+		}
+		PascalFileEntry pascalEntry = (PascalFileEntry) fileEntry;
+		int lastBlock = pascalEntry.getLastBlock();
+		int[] block = { pascalEntry.getFirstBlock() };
+		return new FileEntryInputStream(
+				() -> (block[0] < lastBlock) ? readBlock(block[0]++) : null, 
+				pascalEntry.getSize());
+	}
+	
 	/**
 	 * Format the disk as an Apple Pascal disk.
 	 * @see com.webcodepro.applecommander.storage.FormattedDisk#format()
@@ -0,0 +1,193 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.os.prodos;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.UsageBitmap;
+import com.webcodepro.applecommander.util.AppleUtil;
+
+/**
+ * An in-memory index of the ProDOS Volume Bitmap, used to allocate blocks.
+ * The bitmap is held both as it is stored on disk and as a UsageBitmap of
+ * free blocks, along with the number of free blocks and a cursor where the
+ * search for the next free block begins.
+ * <p>
+ * ProdosFormatDisk answers the stored bytes from readVolumeBitMap; changes
+ * made through its setBlockFree and setBlockUsed methods are applied to
+ * both forms, and writeVolumeBitMap saves them.
+ *
+ * @see ProdosFormatDisk#getAllocationIndex()
+ */
+public class ProdosAllocationIndex {
+	private int bitMapPointer;
+	private int totalBlocks;
+	private byte[] data;
+	private UsageBitmap free;
+	/** Blocks tracked by the free count; this covers whole bitmap blocks. */
+	private int countedBlocks;
+	private int freeBlocks;
+	/** No block below this one is free. */
+	private int lowestFree = 1;
+	/** Where the search for a free block begins; 0 to use lowestFree. */
+	private int cursor;
+	private boolean dirty;
+
+	/**
+	 * Construct a ProdosAllocationIndex from the stored Volume Bitmap.
+	 */
+	ProdosAllocationIndex(int bitMapPointer, int totalBlocks, byte[] data) {
+		this.bitMapPointer = bitMapPointer;
+		this.totalBlocks = totalBlocks;
+		this.data = data;
+		this.free = UsageBitmap.fromBytes(data, 0, totalBlocks);
+		countedBlocks = Math.min(data.length, 
+				(totalBlocks + 4095) / 4096 * Disk.BLOCK_SIZE) * 8;
+		freeBlocks = AppleUtil.getBitCount(data, 0, countedBlocks/8);
+	}
+
+	/**
+	 * Indicates if this index describes the given Volume Bitmap location.
+	 */
+	public boolean isFor(int bitMapPointer, int totalBlocks) {
+		return this.bitMapPointer == bitMapPointer && this.totalBlocks == totalBlocks;
+	}
+
+	/**
+	 * Answer with the Volume Bitmap as it is stored on disk.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * Answer with the number of free blocks.
+	 */
+	public int getFreeBlocks() {
+		return freeBlocks;
+	}
+
+	/**
+	 * Answer with a copy of the free blocks on the volume.
+	 */
+	public UsageBitmap getUsageBitmap() {
+		return free.copy();
+	}
+
+	/**
+	 * Indicates if there are changes that have not been written to disk.
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Note that the index matches the Volume Bitmap on disk.  The next
+	 * search for a free block starts from the lowest free block.
+	 */
+	public void sync() {
+		dirty = false;
+		cursor = 0;
+	}
+
+	/**
+	 * Determine if the specified block is free.
+	 */
+	public boolean isFree(int block) {
+		return (data[block / 8] & (0x80 >> (block % 8))) != 0;
+	}
+
+	/**
+	 * Mark the specified block as free.
+	 */
+	public void setFree(int block) {
+		if (!isFree(block)) {
+			data[block / 8] |= 0x80 >> (block % 8);
+			if (block < countedBlocks) freeBlocks++;
+			if (block < totalBlocks) free.setFree(block);
+			if (block > 0 && block < lowestFree) lowestFree = block;
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Mark the specified block as used.
+	 */
+	public void setUsed(int block) {
+		if (isFree(block)) {
+			data[block / 8] &= ~(0x80 >> (block % 8));
+			if (block < countedBlocks) freeBlocks--;
+			if (block < totalBlocks) free.setUsed(block);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Locate the next free block, answering -1 when the volume is full.
+	 * Without a cursor this is the lowest free block on the volume.
+	 */
+	public int findFree() {
+		if (cursor > 0) {
+			int block = nextFree(cursor, totalBlocks);
+			if (block >= 0) {
+				cursor = block;
+				return block;
+			}
+			cursor = 0;
+		}
+		int block = nextFree(lowestFree, totalBlocks);
+		lowestFree = (block < 0) ? totalBlocks : block;
+		return block;
+	}
+
+	/**
+	 * Move the cursor to the first run of free blocks long enough to hold
+	 * the given number of blocks, so a file is written contiguously.  If 
+	 * there is no such run, blocks are allocated from the lowest free block.
+	 */
+	public void seekFreeRun(int length) {
+		cursor = 0;
+		int start = nextFree(lowestFree, totalBlocks);
+		while (start >= 0) {
+			int end = nextUsed(start, totalBlocks);
+			if (end - start >= length) {
+				cursor = start;
+				return;
+			}
+			start = nextFree(end, totalBlocks);
+		}
+	}
+
+	/**
+	 * Locate the first free block in the range from..to (exclusive).
+	 */
+	protected int nextFree(int from, int to) {
+		int block = free.nextFree(from);
+		return (block < to) ? block : -1;
+	}
+
+	/**
+	 * Locate the first used block in the range from..to (exclusive),
+	 * answering to if they are all free.
+	 */
+	protected int nextUsed(int from, int to) {
+		int block = free.nextUsed(from);
+		return (block < 0 || block > to) ? to : block;
+	}
+}
@@ -19,9 +19,12 @@
  */
 package com.webcodepro.applecommander.storage.os.prodos;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Objects;
 
 import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
 import com.webcodepro.applecommander.util.AppleUtil;
 
 /**
@@ -47,6 +50,19 @@ public class ProdosCommonEntry {
 	 * The offset into the block that the FileEntry is at.
 	 */
 	private int offset;
+	/**
+	 * The cached fileEntry bytes.  This is refreshed by writeFileEntry and
+	 * re-read only if the disk image has been modified by some other means.
+	 */
+	private byte[] entry;
+	/**
+	 * The disk image that the cached fileEntry was read from.
+	 */
+	private ByteArrayImageLayout entryLayout;
+	/**
+	 * The disk image modification count when the fileEntry was cached.
+	 */
+	private long entryModificationCount;
 	
 	/**
 	 * Constructor for ProdosCommonEntry.
@@ -73,13 +89,20 @@ public class ProdosCommonEntry {
 	}
 	
 	/**
-	 * Read the fileEntry bytes from the disk image.
+	 * Read the fileEntry bytes.  The directory block is only read from the
+	 * disk image when the cached copy is stale; a copy of the cache is
+	 * answered so callers may modify it.
 	 */
 	protected byte[] readFileEntry() {
-		byte[] data = disk.readBlock(block);
-		byte[] entry = new byte[ENTRY_LENGTH];
-		System.arraycopy(data, offset, entry, 0, ENTRY_LENGTH);
-		return entry;
+		ByteArrayImageLayout layout = disk.getDiskImageManager();
+		if (entry == null || entryLayout != layout 
+				|| entryModificationCount != layout.getModificationCount()) {
+			byte[] data = disk.readBlock(block);
+			entry = Arrays.copyOfRange(data, offset, offset + ENTRY_LENGTH);
+			entryLayout = layout;
+			entryModificationCount = layout.getModificationCount();
+		}
+		return entry.clone();
 	}
 
 	/**
@@ -100,6 +123,11 @@ public class ProdosCommonEntry {
 		byte[] data = disk.readBlock(block);
 		System.arraycopy(entry, 0, data, offset, ENTRY_LENGTH);
 		disk.writeBlock(block, data);
+		// Keep the cache current with what was just written
+		ByteArrayImageLayout layout = disk.getDiskImageManager();
+		this.entry = Arrays.copyOf(entry, ENTRY_LENGTH);
+		this.entryLayout = layout;
+		this.entryModificationCount = layout.getModificationCount();
 	}
 
 	/**
@@ -352,4 +380,21 @@ public class ProdosCommonEntry {
 	public FormattedDisk getFormattedDisk() {
 		return disk;
 	}
+
+	/**
+	 * Entries are the same if they are at the same location on the same
+	 * disk; each is just a view of the bytes stored there.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null || getClass() != obj.getClass()) return false;
+		ProdosCommonEntry other = (ProdosCommonEntry) obj;
+		return disk == other.disk && block == other.block && offset == other.offset;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(block, offset);
+	}
 }
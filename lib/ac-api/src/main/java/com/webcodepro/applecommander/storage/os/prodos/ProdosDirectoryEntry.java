@@ -71,7 +71,9 @@ public class ProdosDirectoryEntry extends ProdosFileEntry implements DirectoryEn
 	 * Create a new FileEntry.
 	 */
 	public ProdosFileEntry createFile() throws DiskFullException {
-		return getDisk().createFile(getSubdirectoryHeader());
+		ProdosFileEntry fileEntry = getDisk().createFile(getSubdirectoryHeader());
+		getDisk().fileEntryAdded(this, fileEntry);
+		return fileEntry;
 	}
 
 	/**
@@ -98,6 +100,8 @@ public class ProdosDirectoryEntry extends ProdosFileEntry implements DirectoryEn
 	 * @see com.webcodepro.applecommander.storage.DirectoryEntry#createDirectory(String)
 	 */
 	public DirectoryEntry createDirectory(String name) throws DiskFullException {
-		return getDisk().createDirectory(getSubdirectoryHeader(), name);
+		DirectoryEntry directoryEntry = getDisk().createDirectory(getSubdirectoryHeader(), name);
+		getDisk().fileEntryAdded(this, (FileEntry) directoryEntry);
+		return directoryEntry;
 	}
 }
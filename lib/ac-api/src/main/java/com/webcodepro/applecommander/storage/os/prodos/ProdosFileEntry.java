@@ -19,6 +19,7 @@
  */
 package com.webcodepro.applecommander.storage.os.prodos;
 
+import java.io.InputStream;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -26,6 +27,7 @@ import java.util.Date;
 import java.util.List;
 
 import com.webcodepro.applecommander.storage.DiskFullException;
+import com.webcodepro.applecommander.storage.FileColumnWriter;
 import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FileFilter;
 import com.webcodepro.applecommander.storage.FormattedDisk;
@@ -120,6 +122,7 @@ public class ProdosFileEntry extends ProdosCommonEntry implements FileEntry {
 	 * Set the name of this file.
 	 */
 	public void setFilename(String filename) {
+		String oldFilename = getFilename();
 		byte[] fileEntry = readFileEntry();
 		if (isDeleted()) {
 			AppleUtil.setString(fileEntry, 1, filename.toUpperCase(), 15);
@@ -141,6 +144,7 @@ public class ProdosFileEntry extends ProdosCommonEntry implements FileEntry {
 			setAuxiliaryType(fileEntry, lowByte, highByte);
 		}
 		writeFileEntry(fileEntry);
+		getDisk().fileEntryRenamed(this, oldFilename);
 	}
 
 	/**
@@ -377,6 +381,7 @@ public class ProdosFileEntry extends ProdosCommonEntry implements FileEntry {
 	 * Delete the file.
 	 */
 	public void delete() {
+		getDisk().fileEntryDeleted(this);
 		getDisk().freeBlocks(this);
 
 		//decrement file count in header block
@@ -485,6 +490,58 @@ public class ProdosFileEntry extends ProdosCommonEntry implements FileEntry {
 		return list;
 	}
 	
+	/**
+	 * Write the column data for the given display mode as typed values.
+	 * @see #getFileColumnData(int)
+	 */
+	public void writeFileColumnValues(int displayMode, FileColumnWriter writer) {
+		switch (displayMode) {
+			case FormattedDisk.FILE_DISPLAY_NATIVE:
+				writer.writeBoolean("locked", isLocked()); //$NON-NLS-1$
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				writer.writeString("type", getFiletype()); //$NON-NLS-1$
+				writer.writeNumber("blocks", getBlocksUsed()); //$NON-NLS-1$
+				writer.writeDate("modified", getLastModificationDate()); //$NON-NLS-1$
+				writer.writeDate("created", getCreationDate()); //$NON-NLS-1$
+				writer.writeNumber("size", getEofPosition()); //$NON-NLS-1$
+				writer.writeNumber("auxType", getAuxiliaryType()); //$NON-NLS-1$
+				break;
+			case FormattedDisk.FILE_DISPLAY_DETAIL:
+				writer.writeBoolean("locked", isLocked()); //$NON-NLS-1$
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				writer.writeBoolean("deleted", isDeleted()); //$NON-NLS-1$
+				String permissions = ""; //$NON-NLS-1$
+				if (canDestroy()) permissions+= textBundle.get("Destroy"); //$NON-NLS-1$
+				if (canRead()) permissions+= textBundle.get("Read"); //$NON-NLS-1$
+				if (canRename()) permissions+= textBundle.get("Rename"); //$NON-NLS-1$
+				if (canWrite()) permissions+= textBundle.get("Write"); //$NON-NLS-1$
+				writer.writeString("permissions", permissions); //$NON-NLS-1$
+				writer.writeString("type", getFiletype()); //$NON-NLS-1$
+				writer.writeBoolean("directory", isDirectory()); //$NON-NLS-1$
+				writer.writeNumber("blocks", getBlocksUsed()); //$NON-NLS-1$
+				writer.writeDate("modified", getLastModificationDate()); //$NON-NLS-1$
+				writer.writeDate("created", getCreationDate()); //$NON-NLS-1$
+				writer.writeNumber("size", getEofPosition()); //$NON-NLS-1$
+				writer.writeNumber("auxType", getAuxiliaryType()); //$NON-NLS-1$
+				writer.writeNumber("directoryHeader", getHeaderPointer()); //$NON-NLS-1$
+				writer.writeNumber("keyBlock", getKeyPointer()); //$NON-NLS-1$
+				writer.writeString("keyType", isSaplingFile() ? textBundle.get("ProdosFileEntry.Sapling") :  //$NON-NLS-1$ //$NON-NLS-2$
+					isSeedlingFile() ? textBundle.get("ProdosFileEntry.Seedling") :  //$NON-NLS-1$
+					isTreeFile() ? textBundle.get("ProdosFileEntry.Tree") :  //$NON-NLS-1$
+					textBundle.format("ProdosFileEntry.UnknownFileType", getFileTypeString())); //$NON-NLS-1$
+				writer.writeBoolean("changed", hasChanged()); //$NON-NLS-1$
+				writer.writeNumber("minimumProdosVersion", getMinimumProdosVersion()); //$NON-NLS-1$
+				writer.writeNumber("prodosVersion", getProdosVersion()); //$NON-NLS-1$
+				break;
+			default:	// FILE_DISPLAY_STANDARD
+				writer.writeString("name", getFilename()); //$NON-NLS-1$
+				writer.writeString("type", getFiletype()); //$NON-NLS-1$
+				writer.writeNumber("sizeInBytes", getSize()); //$NON-NLS-1$
+				writer.writeBoolean("locked", isLocked()); //$NON-NLS-1$
+				break;
+		}
+	}
+
 	/**
 	 * Return the ProDOS file type as a hex string.
 	 */
@@ -500,6 +557,14 @@ public class ProdosFileEntry extends ProdosCommonEntry implements FileEntry {
 		return getDisk().getFileData(this);
 	}
 
+	/**
+	 * Get the file data as a stream.
+	 * @see #getFileData()
+	 */
+	public InputStream getFileDataStream() {
+		return getDisk().getFileDataStream(this);
+	}
+
 	/**
 	 * Set the file data.  This is essentially the save operation.
 	 * Specifically, if the filetype is binary, the length and
@@ -22,11 +22,13 @@ package com.webcodepro.applecommander.storage.os.prodos;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.function.Supplier;
 
 import com.webcodepro.applecommander.storage.DirectoryEntry;
 import com.webcodepro.applecommander.storage.DiskException;
@@ -34,8 +36,10 @@ import com.webcodepro.applecommander.storage.DiskCorruptException;
 import com.webcodepro.applecommander.storage.DiskFullException;
 import com.webcodepro.applecommander.storage.DiskGeometry;
 import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FileEntryInputStream;
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.storage.StorageBundle;
+import com.webcodepro.applecommander.storage.UsageBitmap;
 import com.webcodepro.applecommander.storage.physical.ImageOrder;
 import com.webcodepro.applecommander.util.AppleUtil;
 import com.webcodepro.applecommander.util.TextBundle;
@@ -82,6 +86,13 @@ public class ProdosFormatDisk extends FormattedDisk {
 	 */
 	private ProdosVolumeDirectoryHeader volumeHeader;
 
+	/**
+	 * Hold on to the allocation index, and the disk image modification count
+	 * when it last matched the Volume Bit Map on disk.
+	 */
+	private ProdosAllocationIndex allocationIndex;
+	private long allocationIndexModificationCount;
+
 	/**
 	 * This class holds filetype mappings.
 	 */
@@ -110,37 +121,6 @@ public class ProdosFormatDisk extends FormattedDisk {
 		}
 	}
 
-	/**
-	 * Use this inner interface for managing the disk usage data.
-	 * This off-loads format-specific implementation to the implementing class.
-	 */
-	private class ProdosDiskUsage implements DiskUsage {
-		private int location = -1;
-		private transient byte[] data = null;
-		public boolean hasNext() {
-			return location == -1 || location < getVolumeHeader().getTotalBlocks() - 1;
-		}
-		public void next() {
-			location++;
-		}
-		/**
-		 * Get the free setting for the bitmap at the current location.
-		 */
-		public boolean isFree() {
-			if (location == -1) {
-				throw new IllegalArgumentException(StorageBundle.getInstance()
-						.get("ProdosFormatDisk.InvalidDimensionError")); //$NON-NLS-1$
-			}
-			if (data == null) {
-				data = readVolumeBitMap();
-			}
-			return isBlockFree(data, location);
-		}
-		public boolean isUsed() {
-			return !isFree();
-		}
-	}
-
 	/**
 	 * Constructor for ProdosFormatDisk.
 	 * @param filename
@@ -199,7 +179,9 @@ public class ProdosFormatDisk extends FormattedDisk {
 	 * Create a FileEntry in the Volume Directory.
 	 */
 	public ProdosFileEntry createFile() throws DiskFullException {
-		return createFile(volumeHeader);
+		ProdosFileEntry fileEntry = createFile(volumeHeader);
+		fileEntryAdded(this, fileEntry);
+		return fileEntry;
 	}
 	
 	/**
@@ -277,19 +259,20 @@ public class ProdosFormatDisk extends FormattedDisk {
 	protected List<FileEntry> getFiles(int blockNumber) throws DiskException {
 		List<FileEntry> files = new ArrayList<>();
 		final Set<Integer> visits = new HashSet<>();
+		// The directory block is reused for each block in the chain
+		byte[] block = new byte[BLOCK_SIZE];
 		while (blockNumber != 0) {
 			// Prevents a recursive catalog crawling.
 			if ( visits.contains(blockNumber)) throw new DiskCorruptException(this.getFilename(), DiskCorruptException.Kind.RECURSIVE_DIRECTORY_STRUCTURE, new ProdosBlockAddress(blockNumber));
 			else visits.add(blockNumber);
 
-			byte[] block = readBlock(blockNumber);
+			readBlock(blockNumber, block, 0);
 			int offset = 4;
 			while (offset+ProdosCommonEntry.ENTRY_LENGTH < BLOCK_SIZE) {
-				ProdosCommonEntry tester = 
-					new ProdosCommonEntry(this, blockNumber, offset);
-				if (tester.isVolumeHeader() || tester.isSubdirectoryHeader()) {
-					// ignore it, we've already got it
-				} else if (!tester.isEmpty()) {
+				int storageType = AppleUtil.getUnsignedByte(block[offset]) >> 4;
+				if (storageType == 0x0f || storageType == 0x0e) {
+					// ignore volume or subdirectory header, we've already got it
+				} else if (!isEmptyEntry(block, offset)) {
 					ProdosFileEntry fileEntry = 
 						new ProdosFileEntry(this, blockNumber, offset);
 					if (fileEntry.isDirectory()) {
@@ -308,6 +291,16 @@ public class ProdosFormatDisk extends FormattedDisk {
 		}
 		return files;
 	}
+
+	/**
+	 * Indicates if the directory entry at offset is empty - filled with $00.
+	 */
+	protected static boolean isEmptyEntry(byte[] block, int offset) {
+		for (int i=0; i<ProdosCommonEntry.ENTRY_LENGTH; i++) {
+			if (block[offset+i] != 0x00) return false;
+		}
+		return true;
+	}
 	
 	/**
 	 * Return the amount of free space in bytes.
@@ -321,16 +314,7 @@ public class ProdosFormatDisk extends FormattedDisk {
 	 * Return the number of free blocks on the disk.
 	 */
 	public int getFreeBlocks() {
-		int freeBlocks = 0;
-		int blocksToProcess = (volumeHeader.getTotalBlocks() + 4095) / 4096;
-		int blockNumber = volumeHeader.getBitMapPointer();
-		for (int ix=0; ix<blocksToProcess; ix++) {
-			byte[] block = readBlock(blockNumber+ix);
-			for (int byt=0; byt<block.length; byt++) {
-				freeBlocks+= AppleUtil.getBitCount(block[byt]);
-			}
-		}
-		return freeBlocks;
+		return getAllocationIndex().getFreeBlocks();
 	}
 
 	/**
@@ -401,7 +385,14 @@ public class ProdosFormatDisk extends FormattedDisk {
 	 * Get the disk usage iterator.
 	 */
 	public DiskUsage getDiskUsage() {
-		return new ProdosDiskUsage();
+		return getUsageBitmap().getDiskUsage();
+	}
+
+	/**
+	 * Get the disk usage from the Volume Bitmap.
+	 */
+	public UsageBitmap getUsageBitmap() {
+		return getAllocationIndex().getUsageBitmap();
 	}
 
 	/**
@@ -489,7 +480,7 @@ public class ProdosFormatDisk extends FormattedDisk {
 				list.add(new FileColumnHeader(textBundle.get("ProdosFormatDisk.AuxType"), 8, 
 						FileColumnHeader.ALIGN_LEFT, "auxType"));
 				list.add(new FileColumnHeader(textBundle.get("ProdosFormatDisk.DirectoryHeader"), 5, 
-						FileColumnHeader.ALIGN_RIGHT, "directory"));
+						FileColumnHeader.ALIGN_RIGHT, "directoryHeader"));
 				list.add(new FileColumnHeader(textBundle.get("ProdosFormatDisk.KeyBlock"), 5, 
 						FileColumnHeader.ALIGN_RIGHT, "keyBlock"));
 				list.add(new FileColumnHeader(textBundle.get("ProdosFormatDisk.KeyType"), 8, 
@@ -546,7 +537,8 @@ public class ProdosFormatDisk extends FormattedDisk {
 
 	/**
 	 * Get the data associated with the specified FileEntry.
-	 * Note that this could return a 16MB file!  Sparse files are not treated specially.
+	 * Note that this could return a 16MB file!  Sparse blocks (including
+	 * a sparse index block of a tree file) are answered as zeros.
 	 */
 	public byte[] getFileData(FileEntry fileEntry) {
 		if ( !(fileEntry instanceof ProdosFileEntry)) {
@@ -566,9 +558,11 @@ public class ProdosFormatDisk extends FormattedDisk {
 			for (int i=0; i<0x100; i++) {
 				int blockNumber = AppleUtil.getWordValue(masterIndexBlock[i], masterIndexBlock[i+0x100]);
 				if (blockNumber > 0) {
-					// FIXME - this may break sparse files!
 					byte[] indexBlock = readBlock(blockNumber);
 					offset= getIndexBlockData(fileData, indexBlock, offset);
+				} else {
+					// A sparse index block covers 256 blocks of zeros
+					offset= Math.min(fileData.length, offset + 0x100 * BLOCK_SIZE);
 				}
 			}
 		} else {
@@ -577,6 +571,73 @@ public class ProdosFormatDisk extends FormattedDisk {
 		return fileData;
 	}
 
+	/**
+	 * Get the data of the file as a stream, reading each block as the
+	 * seedling, sapling, or tree structure is walked.  Answers the same
+	 * bytes as getFileData.
+	 */
+	public FileEntryInputStream getFileDataStream(FileEntry fileEntry) {
+		if ( !(fileEntry instanceof ProdosFileEntry)) {
+			throw new IllegalArgumentException(textBundle.get("ProdosFormatDisk.MustHaveEntry")); //$NON-NLS-1$
+		}
+		ProdosFileEntry prodosEntry = (ProdosFileEntry) fileEntry;
+		if (!prodosEntry.isSeedlingFile() && !prodosEntry.isSaplingFile() && !prodosEntry.isTreeFile()) {
+			throw new IllegalArgumentException(textBundle.get("ProdosFormatDisk.UnknownStorageType")); //$NON-NLS-1$
+		}
+		return new FileEntryInputStream(new IndexBlockWalker(prodosEntry), 
+				prodosEntry.getEofPosition());
+	}
+
+	/**
+	 * Supplies each data block of a file in turn.  Sparse blocks (block
+	 * number 0) are answered as zeros, as are the 256 blocks of a sparse
+	 * index block.
+	 */
+	private class IndexBlockWalker implements Supplier<byte[]> {
+		private int seedlingBlock = -1;
+		private byte[] masterIndexBlock;
+		private int masterIndex;
+		private byte[] indexBlock;
+		private int index;
+
+		private IndexBlockWalker(ProdosFileEntry prodosEntry) {
+			if (prodosEntry.isSeedlingFile()) {
+				seedlingBlock = prodosEntry.getKeyPointer();
+			} else if (prodosEntry.isSaplingFile()) {
+				indexBlock = readBlock(prodosEntry.getKeyPointer());
+			} else {
+				masterIndexBlock = readBlock(prodosEntry.getKeyPointer());
+			}
+		}
+
+		public byte[] get() {
+			if (seedlingBlock >= 0) {
+				int block = seedlingBlock;
+				seedlingBlock = -1;
+				return readBlock(block);
+			}
+			while (true) {
+				if (indexBlock != null && index < 0x100) {
+					int blockNumber = AppleUtil.getWordValue(indexBlock[index], indexBlock[index+0x100]);
+					index++;
+					return (blockNumber == 0) ? new byte[BLOCK_SIZE] : readBlock(blockNumber);
+				}
+				if (masterIndexBlock == null) {
+					return null;
+				}
+				if (masterIndex >= 0x100) {
+					return null;
+				}
+				int blockNumber = AppleUtil.getWordValue(masterIndexBlock[masterIndex], 
+						masterIndexBlock[masterIndex+0x100]);
+				masterIndex++;
+				// An empty index block answers 256 sparse blocks
+				indexBlock = (blockNumber == 0) ? new byte[BLOCK_SIZE] : readBlock(blockNumber);
+				index = 0;
+			}
+		}
+	}
+
 	/**
 	 * Free blocks used by a ProdosFileEntry.
 	 */
@@ -676,6 +737,7 @@ public class ProdosFormatDisk extends FormattedDisk {
 			// free "old" data and just rewrite stuff...
 			freeBlocks(fileEntry);
 			byte[] bitmap = readVolumeBitMap();
+			preferContiguousBlocks(bitmap, numberOfBlocks);
 			int blockNumber = fileEntry.getKeyPointer();
 			if (blockNumber == 0) {
 				blockNumber = findFreeBlock(bitmap);
@@ -782,6 +844,7 @@ public class ProdosFormatDisk extends FormattedDisk {
 		// free "old" data and just rewrite stuff...
 		freeBlocks(fileEntry);
 		byte[] bitmap = readVolumeBitMap();
+		preferContiguousBlocks(bitmap, numberOfBlocks);
 		int blockNumber = fileEntry.getKeyPointer();
 		if (blockNumber == 0) {
 			blockNumber = findFreeBlock(bitmap);
@@ -950,6 +1013,7 @@ public class ProdosFormatDisk extends FormattedDisk {
 		// free "old" data and just rewrite stuff...
 		freeBlocks(fileEntry);
 		byte[] bitmap = readVolumeBitMap();
+		preferContiguousBlocks(bitmap, numberOfBlocks);
 
 		// Place the first BLOCK_SIZE bytes of data in a block pointed to by the aux address.
 		int headerBlockNumber = findFreeBlock(bitmap);
@@ -1078,28 +1142,80 @@ public class ProdosFormatDisk extends FormattedDisk {
 	 * Locate a free block in the Volume Bitmap.
 	 */
 	protected int findFreeBlock(byte[] volumeBitmap) throws DiskFullException {
-		int block = 1;
-		int blocksOnDisk = getBitmapLength();
-		while (block < blocksOnDisk) {
-			if (isBlockFree(volumeBitmap,block)) {
-				if ((block+1) * BLOCK_SIZE <= getPhysicalSize()) {
-					return block;
-				}
-				throw new ProdosDiskSizeDoesNotMatchException(
-					textBundle.get("ProdosFormatDisk.ProdosDiskSizeDoesNotMatchError") //$NON-NLS-1$
-					, this.getFilename());
+		int block = -1;
+		if (isAllocationIndex(volumeBitmap)) {
+			block = allocationIndex.findFree();
+		} else {
+			int blocksOnDisk = getBitmapLength();
+			for (int i=1; i<blocksOnDisk && block < 0; i++) {
+				if (isBlockFree(volumeBitmap,i)) block = i;
 			}
-			block++;
 		}
-		throw new DiskFullException(
-			textBundle.get("ProdosFormatDisk.NoFreeBlockAvailableError") //$NON-NLS-1$
-			, this.getFilename());
+		if (block < 0) {
+			throw new DiskFullException(
+				textBundle.get("ProdosFormatDisk.NoFreeBlockAvailableError") //$NON-NLS-1$
+				, this.getFilename());
+		}
+		if ((block+1) * BLOCK_SIZE > getPhysicalSize()) {
+			throw new ProdosDiskSizeDoesNotMatchException(
+				textBundle.get("ProdosFormatDisk.ProdosDiskSizeDoesNotMatchError") //$NON-NLS-1$
+				, this.getFilename());
+		}
+		return block;
+	}
+
+	/**
+	 * Prefer to allocate the next blocks as one contiguous run.  Used before
+	 * writing a file of a known number of blocks.
+	 */
+	protected void preferContiguousBlocks(byte[] volumeBitmap, int numberOfBlocks) {
+		if (isAllocationIndex(volumeBitmap)) {
+			allocationIndex.seekFreeRun(numberOfBlocks);
+		}
+	}
+
+	/**
+	 * Get the allocation index for the Volume Bit Map.  The index is loaded
+	 * once and kept in step as blocks are allocated and freed; it is only
+	 * reloaded if the Volume Bit Map on disk no longer matches it.
+	 */
+	public synchronized ProdosAllocationIndex getAllocationIndex() {
+		int bitMapPointer = volumeHeader.getBitMapPointer();
+		int totalBlocks = volumeHeader.getTotalBlocks();
+		long modificationCount = getDiskImageManager().getModificationCount();
+		if (allocationIndex == null || allocationIndex.isDirty()
+				|| !allocationIndex.isFor(bitMapPointer, totalBlocks)
+				|| allocationIndexModificationCount != modificationCount) {
+			byte[] data = loadVolumeBitMap();
+			if (allocationIndex == null || !allocationIndex.isFor(bitMapPointer, totalBlocks)
+					|| !Arrays.equals(data, allocationIndex.getData())) {
+				allocationIndex = new ProdosAllocationIndex(bitMapPointer, totalBlocks, data);
+			}
+			allocationIndex.sync();
+			allocationIndexModificationCount = modificationCount;
+		}
+		return allocationIndex;
+	}
+
+	/**
+	 * Indicates if the given Volume Bit Map is the one held by the allocation index.
+	 */
+	protected boolean isAllocationIndex(byte[] volumeBitmap) {
+		return allocationIndex != null && allocationIndex.getData() == volumeBitmap;
 	}
 	
 	/**
-	 * Read the Volume Bit Map.
+	 * Read the Volume Bit Map.  This is the copy held by the allocation index,
+	 * so setBlockFree and setBlockUsed keep the index in step.
 	 */
 	public byte[] readVolumeBitMap() {
+		return getAllocationIndex().getData();
+	}
+
+	/**
+	 * Read the Volume Bit Map from disk.
+	 */
+	protected byte[] loadVolumeBitMap() {
 		int volumeBitmapBlock = volumeHeader.getBitMapPointer();
 		int volumeBitmapBlocks = volumeHeader.getTotalBlocks();
 		int blocksToRead = (volumeBitmapBlocks / 4096) + 1;
@@ -1127,6 +1243,14 @@ public class ProdosFormatDisk extends FormattedDisk {
 			System.arraycopy(data, i*BLOCK_SIZE, dataBlock, 0, BLOCK_SIZE);
 			writeBlock(volumeBitmapBlock+i, dataBlock);
 		}
+		synchronized (this) {
+			if (isAllocationIndex(data)) {
+				allocationIndex.sync();
+				allocationIndexModificationCount = getDiskImageManager().getModificationCount();
+			} else {
+				allocationIndex = null;
+			}
+		}
 	}
 	
 	/**
@@ -1144,6 +1268,10 @@ public class ProdosFormatDisk extends FormattedDisk {
 	 * Set if the specified block is free.
 	 */
 	public void setBlockFree(byte[] data, int blockNumber) {
+		if (isAllocationIndex(data)) {
+			allocationIndex.setFree(blockNumber);
+			return;
+		}
 		// Locate appropriate bit and check it:
 		int byt = blockNumber / 8;
 		int bit = 7 - (blockNumber % 8);
@@ -1161,6 +1289,10 @@ public class ProdosFormatDisk extends FormattedDisk {
 	 * Set if the specified block is free.
 	 */
 	public void setBlockUsed(byte[] data, int blockNumber) {
+		if (isAllocationIndex(data)) {
+			allocationIndex.setUsed(blockNumber);
+			return;
+		}
 		// Locate appropriate bit and check it:
 		int byt = blockNumber / 8;
 		int bit = 7 - (blockNumber % 8);
@@ -1366,7 +1498,9 @@ public class ProdosFormatDisk extends FormattedDisk {
 	 * @see com.webcodepro.applecommander.storage.DirectoryEntry#createDirectory(String)
 	 */
 	public DirectoryEntry createDirectory(String name) throws DiskFullException {
-		return createDirectory(getVolumeHeader(), name);
+		DirectoryEntry directoryEntry = createDirectory(getVolumeHeader(), name);
+		fileEntryAdded(this, (FileEntry) directoryEntry);
+		return directoryEntry;
 	}
 
 	/**
@@ -19,6 +19,10 @@
  */
 package com.webcodepro.applecommander.storage.physical;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
 /**
  * Manages the layout of the physical disk.  This hides implementation details, 
  * such as if the disk is in 2IMG order.
@@ -26,6 +30,10 @@ package com.webcodepro.applecommander.storage.physical;
  * @author Rob Greene (RobGreene@users.sourceforge.net)
  */
 public class ByteArrayImageLayout {
+	/**
+	 * The granularity of changed range tracking, in bytes.
+	 */
+	public static final int CHANGE_UNIT = 512;
 	/**
 	 * This is the physical copy of the disk image which a particular
 	 * implementation of ImageOrder will interpret.
@@ -35,7 +43,30 @@ public class ByteArrayImageLayout {
 	 * Indicates if the disk image has changed.
 	 */
 	private boolean changed;
+	/**
+	 * Counts every write to the disk image.  Unlike the changed flag, this
+	 * is never reset, so it can be used to detect stale cached data.
+	 */
+	private long modificationCount;
+	/**
+	 * The CHANGE_UNIT sized pieces of the physical image that have been
+	 * written since the image was last saved.
+	 */
+	private BitSet changedUnits = new BitSet();
+	/**
+	 * Indicates that the entire image must be written, as happens with a
+	 * new or replaced image.
+	 */
+	private boolean allChanged;
 	
+	/**
+	 * Construct a ByteArrayImageLayout without a disk image.  Used by
+	 * layouts that supply the disk image on demand.
+	 */
+	protected ByteArrayImageLayout() {
+		// empty
+	}
+
 	/**
 	 * Construct a ByteArrayImageLayout.
 	 */
@@ -48,7 +79,7 @@ public class ByteArrayImageLayout {
 	 */
 	public ByteArrayImageLayout(byte[] diskImage, boolean changed) {
 		setDiskImage(diskImage);
-		this.changed = changed;
+		setChanged(changed);
 	}
 	
 	/**
@@ -56,7 +87,7 @@ public class ByteArrayImageLayout {
 	 */
 	public ByteArrayImageLayout(int size) {
 		diskImage = new byte[size];
-		changed = true;
+		setChanged(true);
 	}
 
 	/**
@@ -71,7 +102,16 @@ public class ByteArrayImageLayout {
 	 */
 	public void setDiskImage(byte[] diskImage) {
 		this.diskImage = diskImage;
-		changed = true;
+		markChanged();
+	}
+
+	/**
+	 * Replace the physical disk image with one of identical content, as
+	 * when an image that was read on demand is fully read in.  This is not
+	 * a change to the image.
+	 */
+	protected void materializeDiskImage(byte[] diskImage) {
+		this.diskImage = diskImage;
 	}
 
 	/**
@@ -86,15 +126,31 @@ public class ByteArrayImageLayout {
 	 */
 	public byte[] readBytes(int start, int length) {
 		byte[] buffer = new byte[length];
-		System.arraycopy(diskImage, start, buffer, 0, length);
+		readBytes(start, buffer, 0, length);
 		return buffer;
 	}
+
+	/**
+	 * Extract a portion of the disk image into the given buffer.
+	 * This does not allocate, so it is preferred for repetitive reads.
+	 */
+	public void readBytes(int start, byte[] buffer, int offset, int length) {
+		System.arraycopy(diskImage, start, buffer, offset, length);
+	}
+
+	/**
+	 * Extract a portion of the physical disk image, ignoring any header
+	 * that readBytes skips.  Used to save changed ranges.
+	 */
+	public void readPhysicalBytes(int position, byte[] buffer, int offset, int length) {
+		System.arraycopy(diskImage, position, buffer, offset, length);
+	}
 	
 	/**
 	 * Write data to the disk image.
 	 */
 	public void writeBytes(int start, byte[] bytes) {
-		changed = true;
+		markChanged(start, bytes.length);
 		System.arraycopy(bytes, 0, diskImage, start, bytes.length);
 	}
 
@@ -106,10 +162,89 @@ public class ByteArrayImageLayout {
 		return changed;
 	}
 	
+	/**
+	 * Flag the entire disk image as changed and count the modification.
+	 */
+	protected void markChanged() {
+		changed = true;
+		allChanged = true;
+		changedUnits.clear();
+		modificationCount++;
+	}
+
+	/**
+	 * Flag a physical range of the disk image as changed and count the 
+	 * modification.
+	 */
+	protected void markChanged(int position, int length) {
+		changed = true;
+		if (!allChanged && length > 0) {
+			changedUnits.set(position / CHANGE_UNIT, (position + length - 1) / CHANGE_UNIT + 1);
+		}
+		modificationCount++;
+	}
+
+	/**
+	 * Answer with the physical ranges of the disk image written since it
+	 * was last saved, in order and with adjacent ranges combined.  Answers
+	 * null if the entire image must be written.
+	 */
+	public List<Range> getChangedRanges() {
+		if (allChanged) {
+			return null;
+		}
+		List<Range> ranges = new ArrayList<>();
+		int size = getPhysicalSize();
+		int unit = changedUnits.nextSetBit(0);
+		while (unit >= 0) {
+			int end = changedUnits.nextClearBit(unit);
+			int position = unit * CHANGE_UNIT;
+			int length = Math.min(end * CHANGE_UNIT, size) - position;
+			if (length > 0) {
+				ranges.add(new Range(position, length));
+			}
+			unit = changedUnits.nextSetBit(end);
+		}
+		return ranges;
+	}
+	
+	/**
+	 * Answer with the number of times the disk image has been written.
+	 */
+	public long getModificationCount() {
+		return modificationCount;
+	}
+	
 	/**
 	 * Set the changed indicator.
 	 */
 	public void setChanged(boolean changed) {
 		this.changed = changed;
+		this.allChanged = changed;
+		changedUnits.clear();
+	}
+
+	/**
+	 * A range of bytes within the physical disk image.
+	 */
+	public static class Range {
+		private int position;
+		private int length;
+
+		/**
+		 * Construct a Range.
+		 */
+		public Range(int position, int length) {
+			this.position = position;
+			this.length = length;
+		}
+
+		public int getPosition() {
+			return position;
+		}
+
+		public int getLength() {
+			return length;
+		}
 	}
 }
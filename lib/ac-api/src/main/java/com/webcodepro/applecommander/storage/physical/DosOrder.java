@@ -29,6 +29,14 @@ import com.webcodepro.applecommander.util.TextBundle;
  * @author Rob Greene (RobGreene@users.sourceforge.net)
  */
 public class DosOrder extends ImageOrder {
+	/**
+	 * The DOS sectors holding the first half of each block in a track.
+	 */
+	private static final int[] sectorMapping1 = { 0, 13, 11, 9, 7, 5, 3, 1 };
+	/**
+	 * The DOS sectors holding the second half of each block in a track.
+	 */
+	private static final int[] sectorMapping2 = { 14, 12, 10, 8, 6, 4, 2, 15 };
 	private TextBundle textBundle = StorageBundle.getInstance();
 	/**
 	 * Construct a DosOrder.
@@ -58,6 +66,13 @@ public class DosOrder extends ImageOrder {
 		return readBytes(getOffset(track, sector), Disk.SECTOR_SIZE);
 	}
 	
+	/**
+	 * Retrieve the specified sector into the given buffer at offset.
+	 */
+	public void readSector(int track, int sector, byte[] buffer, int offset) throws IllegalArgumentException {
+		readBytes(getOffset(track, sector), buffer, offset, Disk.SECTOR_SIZE);
+	}
+	
 	/**
 	 * Write the specified sector.
 	 */
@@ -88,23 +103,43 @@ public class DosOrder extends ImageOrder {
 		return offset;
 	}
 
+	/**
+	 * Answer with the offset of the track and sector into the disk image.
+	 */
+	protected int getSectorOffset(int track, int sector) {
+		return getOffset(track, sector);
+	}
+	
+	/**
+	 * Answer with the offset of half of a block into the disk image.
+	 * Note: Defined in terms of the sectors that make up the block.
+	 */
+	protected int getBlockOffset(int block, int half) {
+		int[] sectorMapping = (half == 0) ? sectorMapping1 : sectorMapping2;
+		return getOffset(block / 8, sectorMapping[block % 8]);
+	}
+
 	/**
 	 * Read the block from the disk image.
 	 * Note: Defined in terms of reading sectors.
 	 */
 	public byte[] readBlock(int block) {
-		int track = block / 8;
-		int sectorIndex = block % 8;
-		int[] sectorMapping1 = { 0, 13, 11, 9, 7, 5, 3, 1 };
-		int[] sectorMapping2 = { 14, 12, 10, 8, 6, 4, 2, 15 };
-		int sector1 = sectorMapping1[sectorIndex];
-		int sector2 = sectorMapping2[sectorIndex];
 		byte[] blockData = new byte[Disk.BLOCK_SIZE];
-		System.arraycopy(readSector(track, sector1), 0, blockData, 0, Disk.SECTOR_SIZE);
-		System.arraycopy(readSector(track, sector2), 0, blockData, Disk.SECTOR_SIZE, Disk.SECTOR_SIZE);
+		readBlock(block, blockData, 0);
 		return blockData;
 	}
 	
+	/**
+	 * Read the block from the disk image into the given buffer at offset.
+	 * Note: Defined in terms of reading sectors.
+	 */
+	public void readBlock(int block, byte[] buffer, int offset) {
+		int track = block / 8;
+		int sectorIndex = block % 8;
+		readSector(track, sectorMapping1[sectorIndex], buffer, offset);
+		readSector(track, sectorMapping2[sectorIndex], buffer, offset + Disk.SECTOR_SIZE);
+	}
+	
 	/**
 	 * Write the block to the disk image.
 	 * Note: Defined in terms of reading sectors.
@@ -112,8 +147,6 @@ public class DosOrder extends ImageOrder {
 	public void writeBlock(int block, byte[] data) {
 		int track = block / 8;
 		int sectorIndex = block % 8;
-		int[] sectorMapping1 = { 0, 13, 11, 9, 7, 5, 3, 1 };
-		int[] sectorMapping2 = { 14, 12, 10, 8, 6, 4, 2, 15 };
 		int sector1 = sectorMapping1[sectorIndex];
 		int sector2 = sectorMapping2[sectorIndex];
 		byte[] sectorData = new byte[Disk.SECTOR_SIZE];
@@ -94,6 +94,13 @@ public abstract class ImageOrder {
 		return diskImageManager.readBytes(start, length);
 	}
 	
+	/**
+	 * Extract a portion of the disk image into the given buffer.
+	 */
+	public void readBytes(int start, byte[] buffer, int offset, int length) {
+		diskImageManager.readBytes(start, buffer, offset, length);
+	}
+	
 	/**
 	 * Write data to the disk image.
 	 */
@@ -118,6 +125,15 @@ public abstract class ImageOrder {
 	 */
 	public abstract byte[] readBlock(int block);
 	
+	/**
+	 * Read the block from the disk image into the given buffer at offset.
+	 * Implementations should override this to avoid allocating; the default
+	 * copies the result of readBlock(int).
+	 */
+	public void readBlock(int block, byte[] buffer, int offset) {
+		System.arraycopy(readBlock(block), 0, buffer, offset, Disk.BLOCK_SIZE);
+	}
+	
 	/**
 	 * Write the block to the disk image.
 	 */
@@ -156,6 +172,15 @@ public abstract class ImageOrder {
 	 */
 	public abstract byte[] readSector(int track, int sector) throws IllegalArgumentException;
 	
+	/**
+	 * Retrieve the specified sector into the given buffer at offset.
+	 * Implementations should override this to avoid allocating; the default
+	 * copies the result of readSector(int, int).
+	 */
+	public void readSector(int track, int sector, byte[] buffer, int offset) throws IllegalArgumentException {
+		System.arraycopy(readSector(track, sector), 0, buffer, offset, Disk.SECTOR_SIZE);
+	}
+	
 	/**
 	 * Write the specified sector.
 	 */
@@ -190,4 +215,22 @@ public abstract class ImageOrder {
 	public int getSectorsPerDisk() {
 		return getTracksPerDisk() * getSectorsPerTrack();
 	}
+
+	/**
+	 * Answer with the offset into the disk image of the given DOS track and
+	 * sector, or -1 when sectors are not stored as plain bytes (such as a
+	 * nibbilized image).  Used by ImageOrderConverter to remap whole images.
+	 */
+	protected int getSectorOffset(int track, int sector) {
+		return -1;
+	}
+	
+	/**
+	 * Answer with the offset into the disk image of one half (0 or 1) of the
+	 * given ProDOS block, or -1 when blocks are not stored as plain bytes.
+	 * Used by ImageOrderConverter to remap whole images.
+	 */
+	protected int getBlockOffset(int block, int half) {
+		return -1;
+	}
 }
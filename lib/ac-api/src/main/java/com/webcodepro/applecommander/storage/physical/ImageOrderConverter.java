@@ -0,0 +1,149 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.physical;
+
+import java.util.Arrays;
+
+import com.webcodepro.applecommander.storage.Disk;
+
+/**
+ * Converts a disk image from one ImageOrder to another.
+ * <p>
+ * When both orders store their sectors as plain bytes (DOS and ProDOS order,
+ * including 2IMG images), the offset of every sector in each order is put in
+ * a table, the source image is read once, the sectors are remapped into a
+ * new image and that image is written in a single pass.  If the two orders
+ * share the same layout, the image is copied as-is.  Only nibbilized images,
+ * which need to be encoded or decoded, are copied sector by sector (or block
+ * by block).
+ */
+public class ImageOrderConverter {
+	/**
+	 * Copy every track and sector from the source order to the target order.
+	 * The caller is expected to have verified that both have the same number
+	 * of sectors.
+	 */
+	public static void convertByTrackAndSector(ImageOrder sourceOrder, ImageOrder targetOrder) {
+		int tracks = sourceOrder.getTracksPerDisk();
+		int sectorsPerTrack = sourceOrder.getSectorsPerTrack();
+		int[] sourceOffsets = getSectorOffsets(sourceOrder, tracks, sectorsPerTrack);
+		int[] targetOffsets = getSectorOffsets(targetOrder, tracks, sectorsPerTrack);
+		if (sourceOffsets != null && targetOffsets != null) {
+			remap(sourceOrder, sourceOffsets, targetOrder, targetOffsets);
+			return;
+		}
+		byte[] data = new byte[Disk.SECTOR_SIZE];
+		for (int track = 0; track < tracks; track++) {
+			for (int sector = 0; sector < sectorsPerTrack; sector++) {
+				sourceOrder.readSector(track, sector, data, 0);
+				targetOrder.writeSector(track, sector, data);
+			}
+		}
+	}
+
+	/**
+	 * Copy every block from the source order to the target order.
+	 * The caller is expected to have verified that both have the same number
+	 * of blocks.
+	 */
+	public static void convertByBlock(ImageOrder sourceOrder, ImageOrder targetOrder) {
+		int blocks = sourceOrder.getBlocksOnDevice();
+		int[] sourceOffsets = getBlockOffsets(sourceOrder, blocks);
+		int[] targetOffsets = getBlockOffsets(targetOrder, blocks);
+		if (sourceOffsets != null && targetOffsets != null) {
+			remap(sourceOrder, sourceOffsets, targetOrder, targetOffsets);
+			return;
+		}
+		byte[] blockData = new byte[Disk.BLOCK_SIZE];
+		for (int block = 0; block < blocks; block++) {
+			sourceOrder.readBlock(block, blockData, 0);
+			targetOrder.writeBlock(block, blockData);
+		}
+	}
+
+	/**
+	 * Build the table of sector offsets, indexed by track * sectorsPerTrack + sector.
+	 * Answers null if the order does not store sectors as plain bytes.
+	 */
+	protected static int[] getSectorOffsets(ImageOrder order, int tracks, int sectorsPerTrack) {
+		int[] offsets = new int[tracks * sectorsPerTrack];
+		for (int track = 0; track < tracks; track++) {
+			for (int sector = 0; sector < sectorsPerTrack; sector++) {
+				int offset = order.getSectorOffset(track, sector);
+				if (offset < 0) {
+					return null;
+				}
+				offsets[track * sectorsPerTrack + sector] = offset;
+			}
+		}
+		return offsets;
+	}
+
+	/**
+	 * Build the table of offsets of each 256 byte half of a block, indexed by
+	 * block * 2 + half.  Answers null if the order does not store blocks as
+	 * plain bytes.
+	 */
+	protected static int[] getBlockOffsets(ImageOrder order, int blocks) {
+		int[] offsets = new int[blocks * 2];
+		for (int block = 0; block < blocks; block++) {
+			for (int half = 0; half < 2; half++) {
+				int offset = order.getBlockOffset(block, half);
+				if (offset < 0) {
+					return null;
+				}
+				offsets[block * 2 + half] = offset;
+			}
+		}
+		return offsets;
+	}
+
+	/**
+	 * Read the source image once, move each 256 byte unit from its source
+	 * offset to its target offset and write the target image once.  Any part
+	 * of the target image not covered by the table is left unchanged.
+	 */
+	protected static void remap(ImageOrder sourceOrder, int[] sourceOffsets,
+			ImageOrder targetOrder, int[] targetOffsets) {
+		byte[] source = new byte[getImageLength(sourceOffsets)];
+		sourceOrder.readBytes(0, source, 0, source.length);
+		if (Arrays.equals(sourceOffsets, targetOffsets)) {
+			targetOrder.writeBytes(0, source);
+			return;
+		}
+		byte[] target = new byte[getImageLength(targetOffsets)];
+		targetOrder.readBytes(0, target, 0, target.length);
+		for (int i = 0; i < sourceOffsets.length; i++) {
+			System.arraycopy(source, sourceOffsets[i], target, targetOffsets[i], Disk.SECTOR_SIZE);
+		}
+		targetOrder.writeBytes(0, target);
+	}
+
+	/**
+	 * Answer with the number of bytes needed to hold every unit in the table.
+	 */
+	protected static int getImageLength(int[] offsets) {
+		int length = 0;
+		for (int offset : offsets) {
+			length = Math.max(length, offset + Disk.SECTOR_SIZE);
+		}
+		return length;
+	}
+}
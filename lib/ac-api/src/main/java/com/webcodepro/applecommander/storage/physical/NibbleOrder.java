@@ -57,12 +57,67 @@ public class NibbleOrder extends DosOrder {
 		0xe, 0xc, 0xa, 0x8, 0x6, 0x4, 0x2, 0xf 
 	};
 	
+	/**
+	 * The number of bytes in a decoded sector.
+	 */
+	private static final int SECTOR_SIZE = 256;
+	/**
+	 * The number of disk bytes holding the low 2 bits of each data byte.
+	 */
+	private static final int LOW_BITS_LENGTH = 86;
+	/**
+	 * Address field length: prologue, 4 odd-even values and epilogue.
+	 */
+	private static final int ADDRESS_FIELD_LENGTH = 14;
+	/**
+	 * Number of bytes from the start of a track repeated at its end so that
+	 * fields which wrap can be read directly.  Covers an address field plus
+	 * a data field.
+	 */
+	private static final int WRAP_LENGTH = 512;
+	/**
+	 * Maps a 6-bit low bits value to the 2 data bits it holds for each of the
+	 * three groups of 86 data bytes.  The two bits are stored reversed.
+	 */
+	private static final int[][] LOW_BITS_TABLE = new int[3][64];
+	static {
+		int[] reverseValues = { 0x0, 0x2, 0x1, 0x3 };
+		for (int group=0; group<3; group++) {
+			for (int value=0; value<64; value++) {
+				LOW_BITS_TABLE[group][value] = reverseValues[(value >> (group * 2)) & 0x03];
+			}
+		}
+	}
+	/**
+	 * Decoded sector status values.
+	 */
+	private static final byte SECTOR_MISSING = 0;
+	private static final byte SECTOR_GOOD = 1;
+	private static final byte SECTOR_BAD_CHECKSUM = 2;
+	/**
+	 * All 16 physical sectors of a track, as decoded in one pass.
+	 */
+	protected static class DecodedTrack {
+		private final byte[] data = new byte[16 * SECTOR_SIZE];
+		private final byte[] status = new byte[16];
+	}
+	
 	/**
 	 * The read translation table.  Constructed from the write
 	 * translate table.  Used to decode a disk byte into a value
 	 * from 0x00 to 0x3f which is further decoded...
 	 */
 	public int[] readTranslateTable;
+	/**
+	 * Decoded tracks, indexed by track number.
+	 */
+	private DecodedTrack[] trackCache = new DecodedTrack[35];
+	private boolean trackCacheEnabled = true;
+	/**
+	 * The disk image and modification count the track cache reflects.
+	 */
+	private ByteArrayImageLayout cacheLayout;
+	private long cacheModificationCount;
 	
 	/**
 	 * Construct a NibbleOrder.
@@ -87,68 +142,219 @@ public class NibbleOrder extends DosOrder {
 	/**
 	 * Write nibbilized track data.
 	 */
-	protected void writeTrackData(int track, byte[] trackData) {
+	protected synchronized void writeTrackData(int track, byte[] trackData) {
+		boolean current = isTrackCacheCurrent();
 		int trackSize = getPhysicalSize() / getTracksPerDisk();
 		writeBytes(track * trackSize, trackData);
+		if (current) {
+			// Only this track is stale
+			cacheModificationCount = cacheLayout.getModificationCount();
+			trackCache[track] = null;
+		}
 	}
 
 	/**
 	 * Retrieve the specified sector.  The primary source of information
 	 * for this process is directly from Beneath Apple DOS, chapter 3.
+	 * Answers with null if the data field checksum does not match.
 	 */
 	public byte[] readSector(int track, int dosSector) throws IllegalArgumentException {
+		byte[] sectorData = new byte[SECTOR_SIZE];
+		return decodeSector(track, dosSector, sectorData, 0) ? sectorData : null;
+	}
+	
+	/**
+	 * Retrieve the specified sector into the given buffer at offset.
+	 * Since there is no null to answer with, a checksum failure is reported
+	 * as an IllegalArgumentException.
+	 */
+	public void readSector(int track, int dosSector, byte[] buffer, int offset) throws IllegalArgumentException {
+		if (!decodeSector(track, dosSector, buffer, offset)) {
+			throw new IllegalArgumentException(textBundle
+				.format("NibbleOrder.ChecksumError", sectorInterleave[dosSector], track)); //$NON-NLS-1$
+		}
+	}
+	
+	/**
+	 * Indicates if decoded tracks are cached.
+	 */
+	public boolean isTrackCacheEnabled() {
+		return trackCacheEnabled;
+	}
+	
+	/**
+	 * Enable or disable the decoded track cache.  When enabled, the first
+	 * read of a sector decodes all sectors on that track; later reads are
+	 * answered from the cache until the track is written.  When disabled,
+	 * each read decodes only the requested sector.
+	 */
+	public synchronized void setTrackCacheEnabled(boolean trackCacheEnabled) {
+		this.trackCacheEnabled = trackCacheEnabled;
+		Arrays.fill(trackCache, null);
+	}
+	
+	/**
+	 * Decode the specified sector into the given buffer at offset.
+	 * Answers false if the data field checksum does not match; the buffer
+	 * contents are then undefined.
+	 */
+	protected boolean decodeSector(int track, int dosSector, byte[] sectorData, int sectorOffset) {
 		int sector = sectorInterleave[dosSector];
+		if (trackCacheEnabled) {
+			DecodedTrack decodedTrack = getDecodedTrack(track);
+			if (decodedTrack.status[sector] == SECTOR_MISSING) {
+				throw new IllegalArgumentException(textBundle
+					.format("NibbleOrder.InvalidPhysicalSectorError", sector, track, 1)); //$NON-NLS-1$
+			}
+			System.arraycopy(decodedTrack.data, sector * SECTOR_SIZE, sectorData, sectorOffset, SECTOR_SIZE);
+			return decodedTrack.status[sector] == SECTOR_GOOD;
+		}
 		// 1. read track
-		byte[] trackData = readTrackData(track);
+		byte[] trackData = readWrappedTrackData(track);
+		int trackLength = trackData.length - WRAP_LENGTH;
 		// 2. locate address field for this track and sector
 		int offset = 0;
-		byte[] addressField = new byte[14];
-		boolean found = false;
-		int attempts = getSectorsPerTrack();
-		while (!found && attempts >= 0) {
-			int nextOffset = locateField(0xd5, 0xaa, 0x96, trackData, addressField, offset);
-			attempts--; 
-			offset = nextOffset;
-			int t = decodeOddEven(addressField, 5);
-			int s = decodeOddEven(addressField, 7);
-			found = (t == track && s == sector);
+		while (offset < trackLength) {
+			offset = findPrologue(0xd5, 0xaa, 0x96, trackData, offset, trackLength - offset);
+			if (offset < 0) break;
+			if (decodeOddEven(trackData, offset+5) == track 
+					&& decodeOddEven(trackData, offset+7) == sector) {
+				// 3. read and decode data field that immediately follows the address field
+				int dataOffset = findDataField(trackData, offset);
+				return dataOffset >= 0 && decodeDataField(trackData, dataOffset, sectorData, sectorOffset);
+			}
+			offset++;
 		}
-		if (!found) {
-			throw new IllegalArgumentException(textBundle
-				.format("NibbleOrder.InvalidPhysicalSectorError", sector, track, 1)); //$NON-NLS-1$
+		throw new IllegalArgumentException(textBundle
+			.format("NibbleOrder.InvalidPhysicalSectorError", sector, track, 1)); //$NON-NLS-1$
+	}
+	
+	/**
+	 * Answer with the decoded track, decoding it if it is not cached.
+	 * The cache is discarded if the disk image has been modified other
+	 * than by writeTrackData.
+	 */
+	protected synchronized DecodedTrack getDecodedTrack(int track) {
+		if (!isTrackCacheCurrent()) {
+			Arrays.fill(trackCache, null);
+			cacheLayout = getDiskImageManager();
+			cacheModificationCount = cacheLayout.getModificationCount();
 		}
-		// 3. read data field that immediately follows the address field
-		byte[] dataField = new byte[349];
-		locateField(0xd5, 0xaa, 0xad, trackData, dataField, offset);
-		// 4. translate data field
-		byte[] buffer = new byte[342];
-		int checksum = 0;
-		for (int i=0; i<buffer.length; i++) {
-			int b = AppleUtil.getUnsignedByte(dataField[i+3]);
-			checksum ^= readTranslateTable[b];		// XOR
-			if (i < 86) {
-				buffer[buffer.length - i - 1] = (byte) checksum;
-			} else {
-				buffer[i - 86] = (byte) checksum;
+		DecodedTrack decodedTrack = trackCache[track];
+		if (decodedTrack == null) {
+			decodedTrack = decodeTrack(track);
+			trackCache[track] = decodedTrack;
+		}
+		return decodedTrack;
+	}
+	
+	/**
+	 * Indicates if the cached tracks reflect the current disk image.
+	 */
+	protected boolean isTrackCacheCurrent() {
+		ByteArrayImageLayout layout = getDiskImageManager();
+		return cacheLayout == layout && cacheModificationCount == layout.getModificationCount();
+	}
+	
+	/**
+	 * Decode every sector on a track in a single pass over the track data.
+	 * If a sector appears more than once, the first occurrence is used.
+	 */
+	protected DecodedTrack decodeTrack(int track) {
+		DecodedTrack decodedTrack = new DecodedTrack();
+		byte[] trackData = readWrappedTrackData(track);
+		int trackLength = trackData.length - WRAP_LENGTH;
+		int offset = 0;
+		while (offset < trackLength) {
+			offset = findPrologue(0xd5, 0xaa, 0x96, trackData, offset, trackLength - offset);
+			if (offset < 0) break;
+			int t = decodeOddEven(trackData, offset+5);
+			int s = decodeOddEven(trackData, offset+7);
+			if (t == track && s < decodedTrack.status.length 
+					&& decodedTrack.status[s] == SECTOR_MISSING) {
+				int dataOffset = findDataField(trackData, offset);
+				if (dataOffset >= 0) {
+					boolean good = decodeDataField(trackData, dataOffset, decodedTrack.data, s * SECTOR_SIZE);
+					decodedTrack.status[s] = good ? SECTOR_GOOD : SECTOR_BAD_CHECKSUM;
+				}
+			}
+			offset++;
+		}
+		return decodedTrack;
+	}
+	
+	/**
+	 * Read nibbilized track data with the start of the track repeated at the
+	 * end.  Fields that wrap around the end of the track can then be read
+	 * without any wrap logic.
+	 */
+	protected byte[] readWrappedTrackData(int track) {
+		int trackSize = getPhysicalSize() / getTracksPerDisk();
+		byte[] trackData = new byte[trackSize + WRAP_LENGTH];
+		readBytes(track * trackSize, trackData, 0, trackSize);
+		for (int i=0; i<WRAP_LENGTH; i++) {
+			trackData[trackSize + i] = trackData[i % trackSize];
+		}
+		return trackData;
+	}
+	
+	/**
+	 * Find a 3 byte prologue, checking at most count starting positions.
+	 * The track data must be wrapped (see readWrappedTrackData).
+	 * Answers with the position of the first prologue byte or -1.
+	 */
+	protected int findPrologue(int byte1, int byte2, int byte3, byte[] trackData, int offset, int count) {
+		int end = Math.min(offset + count, trackData.length - 2);
+		for (int i=offset; i<end; i++) {
+			if ((trackData[i] & 0xff) == byte1 
+					&& (trackData[i+1] & 0xff) == byte2 
+					&& (trackData[i+2] & 0xff) == byte3) {
+				return i;
 			}
 		}
-		checksum ^= readTranslateTable[AppleUtil.getUnsignedByte(dataField[345])];
-		if (checksum != 0) return null;	// BAD DATA
-		// 5. decode data field
-		byte[] sectorData = new byte[256];
-		for (int i=0; i<sectorData.length; i++) {
-			int b1 = AppleUtil.getUnsignedByte(buffer[i]);
-			int lowerBits = buffer.length - (i % 86) - 1;
-			int b2 = AppleUtil.getUnsignedByte(buffer[lowerBits]);
-			int shiftPairs = (i / 86) * 2;
-			// shift b1 up by 2 bytes (contains bits 7-2)
-			// align 2 bits in b2 appropriately, mask off anything but
-			// bits 0 and 1 and then REVERSE THEM...
-			int[] reverseValues = { 0x0, 0x2, 0x1, 0x3 };
-			int b = (b1 << 2) | reverseValues[(b2 >> shiftPairs) & 0x03];
-			sectorData[i] = (byte) b;
+		return -1;
+	}
+	
+	/**
+	 * Find the data field following the address field at addressOffset.
+	 * The search wraps around the track, as locateField does.  Answers with
+	 * the position of the first encoded byte (after the prologue) or -1.
+	 */
+	protected int findDataField(byte[] trackData, int addressOffset) {
+		int trackLength = trackData.length - WRAP_LENGTH;
+		int start = addressOffset + ADDRESS_FIELD_LENGTH - 1;
+		if (start >= trackLength) start -= trackLength;
+		int offset = findPrologue(0xd5, 0xaa, 0xad, trackData, start, trackLength - start);
+		if (offset < 0) {
+			offset = findPrologue(0xd5, 0xaa, 0xad, trackData, 0, start);
+		}
+		return offset < 0 ? -1 : offset + 3;
+	}
+	
+	/**
+	 * Decode a 6 and 2 encoded data field with table lookups.  The first 86
+	 * disk bytes carry the low 2 bits of each data byte and the next 256
+	 * carry the high 6 bits; each value is XORed with the previous one.
+	 * Answers false if the trailing checksum does not match.
+	 */
+	protected boolean decodeDataField(byte[] trackData, int offset, byte[] sectorData, int sectorOffset) {
+		int[] lowBits = new int[LOW_BITS_LENGTH];
+		int checksum = 0;
+		for (int i=0; i<LOW_BITS_LENGTH; i++) {
+			checksum ^= readTranslateTable[trackData[offset++] & 0xff];
+			lowBits[i] = checksum;
+		}
+		for (int group=0; group<3; group++) {
+			int[] lowBitTable = LOW_BITS_TABLE[group];
+			int base = group * LOW_BITS_LENGTH;
+			int count = Math.min(LOW_BITS_LENGTH, SECTOR_SIZE - base);
+			for (int i=0; i<count; i++) {
+				checksum ^= readTranslateTable[trackData[offset++] & 0xff];
+				sectorData[sectorOffset + base + i] = (byte) ((checksum << 2) | lowBitTable[lowBits[i]]);
+			}
 		}
-		return sectorData;
+		checksum ^= readTranslateTable[trackData[offset] & 0xff];
+		return checksum == 0;
 	}
 	
 	/**
@@ -312,6 +518,20 @@ public class NibbleOrder extends DosOrder {
 		return 280;
 	}
 
+	/**
+	 * Sectors are 6+2 encoded, so they have no offset into the disk image.
+	 */
+	protected int getSectorOffset(int track, int sector) {
+		return -1;
+	}
+
+	/**
+	 * Blocks are 6+2 encoded, so they have no offset into the disk image.
+	 */
+	protected int getBlockOffset(int block, int half) {
+		return -1;
+	}
+
 	/**
 	 * Format the media.  Formatting at the ImageOrder level deals with
 	 * low-level issues.  A typical ordering just needs to have the image
@@ -0,0 +1,457 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.physical;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Manages a disk image that is read on demand from its backing store instead
+ * of being loaded into memory up front.  The image is divided into pages of
+ * PAGE_SIZE bytes and a page is only materialized when it is first read or
+ * written.
+ * <p>
+ * A plain file is read with positional channel reads.  The file is only
+ * open while a page is read (it is not memory mapped), so it is never held
+ * locked and may be replaced while the image is in use.  The size and
+ * modification time of the file are recorded when it is opened; if either
+ * changes before every page has been read, reading fails rather than mixing
+ * the old image with the new one.  Compressed images cannot be randomly
+ * accessed, so they are inflated directly into pages.
+ * <p>
+ * The physical image may be a window into the backing store (such as the
+ * payload of a DiskCopy 4.2 image) and may have a leading header that is
+ * skipped by readBytes and writeBytes (such as the 2IMG header).  Once
+ * getDiskImage is called, the entire image is materialized and this layout
+ * behaves exactly like a ByteArrayImageLayout.
+ * <p>
+ * Pages may be read from several threads at once.  A page is only published
+ * once it has been completely read, and if two threads load the same page,
+ * both use whichever copy was published first, so no write is lost.
+ * <p>
+ * Closing the layout releases the backing store; pages not yet read can no
+ * longer be read.
+ */
+public class PagedImageLayout extends ByteArrayImageLayout implements Closeable {
+	/**
+	 * The number of bytes in a single page.
+	 */
+	public static final int PAGE_SIZE = 4096;
+	/**
+	 * Where the pages of a disk image are read from.
+	 */
+	public interface PageSource extends Closeable {
+		/**
+		 * Answer with the total number of bytes available.
+		 */
+		long getSize();
+		/**
+		 * Read length bytes, starting at position, into buffer at offset.
+		 */
+		void read(long position, byte[] buffer, int offset, int length) throws IOException;
+		/**
+		 * Accept the backing store as it is now, after changes made through
+		 * this image have been written to it.
+		 */
+		default void refresh() throws IOException {
+			// Nothing to do
+		}
+		/**
+		 * Release the backing store.
+		 */
+		default void close() throws IOException {
+			// Nothing to do
+		}
+	}
+	/**
+	 * The backing store and the pages read (or written) so far.  Cleared
+	 * once the image has been fully materialized.
+	 */
+	private volatile Pages pages;
+	/**
+	 * The position within the backing store where this image starts.
+	 */
+	private long start;
+	/**
+	 * The physical size of this image (including any header).
+	 */
+	private int size;
+	/**
+	 * The number of header bytes skipped by readBytes and writeBytes.
+	 */
+	private int headerSize;
+	/**
+	 * Construct a PagedImageLayout over the entire source.
+	 */
+	public PagedImageLayout(PageSource source) {
+		this(source, 0, (int) Math.min(source.getSize(), Integer.MAX_VALUE), 0);
+	}
+
+	/**
+	 * Construct a PagedImageLayout over a portion of the source.
+	 * @param source where the image is read from
+	 * @param start the position within the source where the image begins
+	 * @param size the physical size of the image, including any header
+	 * @param headerSize the size of a header to skip, such as UniversalDiskImageLayout.OFFSET
+	 */
+	public PagedImageLayout(PageSource source, long start, int size, int headerSize) {
+		if (start < 0 || size < 0 || start + size > source.getSize()) {
+			throw new IllegalArgumentException(String.format(
+				"Image of %d bytes at %d exceeds source of %d bytes", //$NON-NLS-1$
+				size, start, source.getSize()));
+		}
+		this.start = start;
+		this.size = size;
+		this.headerSize = headerSize;
+		this.pages = new Pages(source, (size + PAGE_SIZE - 1) / PAGE_SIZE);
+		setChanged(false);
+	}
+
+	/**
+	 * Create a PageSource for a file.  Pages are read with positional reads.
+	 */
+	public static PageSource open(File file) throws IOException {
+		return new ChannelPageSource(file.toPath());
+	}
+
+	/**
+	 * Create a PageSource from a stream, such as a GZIPInputStream.  The stream
+	 * is read into pages as it is decompressed and then closed.
+	 */
+	public static PageSource inflate(InputStream input) throws IOException {
+		List<byte[]> pages = new ArrayList<>();
+		long size = 0;
+		try (InputStream in = input) {
+			while (true) {
+				byte[] page = new byte[PAGE_SIZE];
+				int length = in.readNBytes(page, 0, PAGE_SIZE);
+				if (length == 0) break;
+				pages.add(page);
+				size += length;
+				if (length < PAGE_SIZE) break;
+			}
+		}
+		return new InflatedPageSource(pages, size);
+	}
+
+	/**
+	 * Create a PageSource from a byte array that is already in memory.
+	 */
+	public static PageSource wrap(byte[] data) {
+		return new ArrayPageSource(data);
+	}
+
+	/**
+	 * Get the physical disk image.  This materializes every page and
+	 * releases the backing store.
+	 */
+	public synchronized byte[] getDiskImage() {
+		Pages current = pages;
+		if (current != null) {
+			byte[] diskImage = new byte[size];
+			int count = current.loaded.length();
+			int index = 0;
+			while (index < count) {
+				int position = index * PAGE_SIZE;
+				byte[] page = current.loaded.get(index);
+				if (page != null) {
+					System.arraycopy(page, 0, diskImage, position, Math.min(PAGE_SIZE, size - position));
+					index++;
+				} else {
+					// Read a run of unread pages at once
+					int end = index + 1;
+					while (end < count && current.loaded.get(end) == null) end++;
+					readSource(current, position, diskImage, position, Math.min(end * PAGE_SIZE, size) - position);
+					index = end;
+				}
+			}
+			materializeDiskImage(diskImage);
+			pages = null;
+			closeSource(current);
+		}
+		return super.getDiskImage();
+	}
+
+	/**
+	 * Set the physical disk image.  The backing store is discarded.
+	 */
+	public synchronized void setDiskImage(byte[] diskImage) {
+		super.setDiskImage(diskImage);
+		Pages current = pages;
+		pages = null;
+		if (current != null) {
+			closeSource(current);
+		}
+	}
+
+	/**
+	 * Accept the backing store as it is now.  Called once changes made to
+	 * this image have been written back to the backing store in place, which
+	 * leaves the pages not yet read unchanged.
+	 */
+	public synchronized void refresh() throws IOException {
+		Pages current = pages;
+		if (current != null) {
+			current.source.refresh();
+		}
+	}
+
+	/**
+	 * Release the backing store.  Pages already read remain available.
+	 */
+	public synchronized void close() throws IOException {
+		Pages current = pages;
+		if (current != null) {
+			current.source.close();
+		}
+	}
+
+	/**
+	 * Answer with the physical size of this disk volume.
+	 */
+	public int getPhysicalSize() {
+		return (pages != null) ? size : super.getPhysicalSize();
+	}
+
+	/**
+	 * Extract a portion of the disk image into the given buffer.
+	 */
+	public void readBytes(int start, byte[] buffer, int offset, int length) {
+		readPhysicalBytes(start + headerSize, buffer, offset, length);
+	}
+
+	/**
+	 * Extract a portion of the physical disk image, including any header.
+	 */
+	public void readPhysicalBytes(int position, byte[] buffer, int offset, int length) {
+		Pages current = pages;
+		if (current == null) {
+			super.readPhysicalBytes(position, buffer, offset, length);
+			return;
+		}
+		checkRange(position, length);
+		int copied = 0;
+		while (copied < length) {
+			byte[] page = getPage(current, position / PAGE_SIZE);
+			int pageOffset = position % PAGE_SIZE;
+			int count = Math.min(length - copied, PAGE_SIZE - pageOffset);
+			System.arraycopy(page, pageOffset, buffer, offset + copied, count);
+			copied += count;
+			position += count;
+		}
+	}
+
+	/**
+	 * Write data to the disk image.  Writes are serialized with getDiskImage
+	 * so a write is never made to a page that has already been copied.
+	 */
+	public synchronized void writeBytes(int start, byte[] bytes) {
+		Pages current = pages;
+		if (current == null) {
+			super.writeBytes(start + headerSize, bytes);
+			return;
+		}
+		int position = checkRange(start + headerSize, bytes.length);
+		markChanged(position, bytes.length);
+		int copied = 0;
+		while (copied < bytes.length) {
+			byte[] page = getPage(current, position / PAGE_SIZE);
+			int pageOffset = position % PAGE_SIZE;
+			int count = Math.min(bytes.length - copied, PAGE_SIZE - pageOffset);
+			System.arraycopy(bytes, copied, page, pageOffset, count);
+			copied += count;
+			position += count;
+		}
+	}
+
+	/**
+	 * Answer with the number of pages that have been materialized.
+	 */
+	public int getLoadedPageCount() {
+		Pages current = pages;
+		if (current == null) {
+			return (getPhysicalSize() + PAGE_SIZE - 1) / PAGE_SIZE;
+		}
+		int count = 0;
+		for (int index=0; index<current.loaded.length(); index++) {
+			if (current.loaded.get(index) != null) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Validate a physical range, mirroring the failure System.arraycopy gives
+	 * the ByteArrayImageLayout.
+	 */
+	protected int checkRange(int position, int length) {
+		if (position < 0 || length < 0 || position + length > size) {
+			throw new ArrayIndexOutOfBoundsException(String.format(
+				"Range %d+%d is outside of image of %d bytes", //$NON-NLS-1$
+				position, length, size));
+		}
+		return position;
+	}
+
+	/**
+	 * Get (and materialize, if needed) a page of the disk image.  A page is
+	 * read completely before it is published; if another thread published
+	 * the same page first, that copy is used instead.
+	 */
+	protected byte[] getPage(Pages current, int index) {
+		byte[] page = current.loaded.get(index);
+		if (page == null) {
+			page = new byte[PAGE_SIZE];
+			int position = index * PAGE_SIZE;
+			readSource(current, position, page, 0, Math.min(PAGE_SIZE, size - position));
+			if (!current.loaded.compareAndSet(index, null, page)) {
+				page = current.loaded.get(index);
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Read from the backing store, relative to the start of this image.
+	 */
+	protected void readSource(Pages current, int position, byte[] buffer, int bufferOffset, int length) {
+		try {
+			current.source.read(start + position, buffer, bufferOffset, length);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	protected void closeSource(Pages current) {
+		try {
+			current.source.close();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * The pages of an image that has not yet been materialized, along with
+	 * the backing store they are read from.
+	 */
+	protected static class Pages {
+		private final PageSource source;
+		private final AtomicReferenceArray<byte[]> loaded;
+		private Pages(PageSource source, int count) {
+			this.source = source;
+			this.loaded = new AtomicReferenceArray<>(count);
+		}
+	}
+
+	/**
+	 * Reads pages from a file with positional reads.  The file is opened for
+	 * each read, and is checked against the size and modification time it
+	 * had when the source was created (or last refreshed).
+	 */
+	private static class ChannelPageSource implements PageSource {
+		private Path path;
+		private volatile long size;
+		private volatile FileTime lastModified;
+		private volatile boolean closed;
+		private ChannelPageSource(Path path) throws IOException {
+			this.path = path;
+			refresh();
+		}
+		public long getSize() {
+			return size;
+		}
+		public void read(long position, byte[] data, int offset, int length) throws IOException {
+			if (closed) {
+				throw new IOException("Image is closed: " + path); //$NON-NLS-1$
+			}
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				if (channel.size() != size || !lastModified.equals(Files.getLastModifiedTime(path))) {
+					throw new IOException("Image has changed since it was opened: " + path); //$NON-NLS-1$
+				}
+				ByteBuffer view = ByteBuffer.wrap(data, offset, length);
+				while (view.hasRemaining()) {
+					if (channel.read(view, position + view.position() - offset) < 0) {
+						throw new IOException("Unexpected end of file: " + path); //$NON-NLS-1$
+					}
+				}
+			}
+		}
+		public synchronized void refresh() throws IOException {
+			size = Files.size(path);
+			lastModified = Files.getLastModifiedTime(path);
+		}
+		public void close() {
+			closed = true;
+		}
+	}
+
+	/**
+	 * Reads pages that were decompressed from a stream.
+	 */
+	private static class InflatedPageSource implements PageSource {
+		private List<byte[]> pages;
+		private long size;
+		private InflatedPageSource(List<byte[]> pages, long size) {
+			this.pages = pages;
+			this.size = size;
+		}
+		public long getSize() {
+			return size;
+		}
+		public void read(long position, byte[] data, int offset, int length) {
+			while (length > 0) {
+				byte[] page = pages.get((int) (position / PAGE_SIZE));
+				int pageOffset = (int) (position % PAGE_SIZE);
+				int count = Math.min(length, PAGE_SIZE - pageOffset);
+				System.arraycopy(page, pageOffset, data, offset, count);
+				position += count;
+				offset += count;
+				length -= count;
+			}
+		}
+	}
+
+	/**
+	 * Reads pages from a byte array.
+	 */
+	private static class ArrayPageSource implements PageSource {
+		private byte[] data;
+		private ArrayPageSource(byte[] data) {
+			this.data = data;
+		}
+		public long getSize() {
+			return data.length;
+		}
+		public void read(long position, byte[] buffer, int offset, int length) {
+			System.arraycopy(data, (int) position, buffer, offset, length);
+		}
+	}
+}
@@ -73,6 +73,13 @@ public class ProdosOrder extends ImageOrder {
 		return readBytes(block * Disk.BLOCK_SIZE, Disk.BLOCK_SIZE);
 	}
 	
+	/**
+	 * Read the block from the disk image into the given buffer at offset.
+	 */
+	public void readBlock(int block, byte[] buffer, int offset) {
+		readBytes(block * Disk.BLOCK_SIZE, buffer, offset, Disk.BLOCK_SIZE);
+	}
+	
 	/**
 	 * Write the block to the disk image.
 	 * Note: Defined in terms of reading sectors.
@@ -85,24 +92,37 @@ public class ProdosOrder extends ImageOrder {
 	 * Retrieve the specified sector.
 	 */
 	public byte[] readSector(int track, int sector) throws IllegalArgumentException {
-		int block = track * 8 + blockInterleave[sector];
-		byte[] blockData = readBlock(block);
-		int offset = blockOffsets[sector];
-		byte[] sectorData = new byte[Disk.SECTOR_SIZE];
-		System.arraycopy(blockData, offset * Disk.SECTOR_SIZE, 
-			sectorData, 0, Disk.SECTOR_SIZE); 
-		return sectorData;
+		return readBytes(getSectorOffset(track, sector), Disk.SECTOR_SIZE);
+	}
+	
+	/**
+	 * Retrieve the specified sector into the given buffer at offset.
+	 */
+	public void readSector(int track, int sector, byte[] buffer, int offset) throws IllegalArgumentException {
+		readBytes(getSectorOffset(track, sector), buffer, offset, Disk.SECTOR_SIZE);
 	}
 	
 	/**
 	 * Write the specified sector.
 	 */
 	public void writeSector(int track, int sector, byte[] bytes) throws IllegalArgumentException {
+		writeBytes(getSectorOffset(track, sector), bytes);
+	}
+
+	/**
+	 * Answer with the offset of a DOS track and sector into the disk image.
+	 * The sector is half of a block, so it can be accessed directly.
+	 */
+	protected int getSectorOffset(int track, int sector) {
 		int block = track * 8 + blockInterleave[sector];
-		byte[] blockData = readBlock(block);
-		int offset = blockOffsets[sector];
-		System.arraycopy(bytes, 0, blockData, offset * Disk.SECTOR_SIZE, bytes.length);
-		writeBlock(block, blockData);
+		return block * Disk.BLOCK_SIZE + blockOffsets[sector] * Disk.SECTOR_SIZE;
+	}
+	
+	/**
+	 * Answer with the offset of half of a block into the disk image.
+	 */
+	protected int getBlockOffset(int block, int half) {
+		return block * Disk.BLOCK_SIZE + half * Disk.SECTOR_SIZE;
 	}
 
 	/**
@@ -51,10 +51,10 @@ public class UniversalDiskImageLayout extends ByteArrayImageLayout {
 	}
 
 	/**
-	 * Extract a portion of the disk image.
+	 * Extract a portion of the disk image into the given buffer.
 	 */
-	public byte[] readBytes(int start, int length) {
-		return super.readBytes(start + OFFSET, length);
+	public void readBytes(int start, byte[] buffer, int offset, int length) {
+		super.readBytes(start + OFFSET, buffer, offset, length);
 	}
 	
 	/**
@@ -19,19 +19,31 @@
  */
 package com.webcodepro.applecommander.ui;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.DiskUnrecognizedException;
+import com.webcodepro.applecommander.storage.FileColumnWriter;
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.storage.FormattedDisk.FileColumnHeader;
 import com.webcodepro.applecommander.util.TextBundle;
@@ -58,7 +70,12 @@ public class DirectoryLister {
 	}
 	
 	public void list(String filename) throws DiskUnrecognizedException, IOException {
-		Disk disk = new Disk(filename);
+		try (Disk disk = new Disk(filename)) {
+			list(disk);
+		}
+	}
+
+	public void list(Disk disk) throws DiskUnrecognizedException, IOException {
 		strategy.first(disk);
 
 		FileStreamer.forDisk(disk)
@@ -114,12 +131,24 @@ public class DirectoryLister {
 
 	}
 	
-	public static class CsvListingStrategy extends ListingStrategy {
+	/**
+	 * Writes the listing as CSV, streaming each row to the writer.  With raw
+	 * values, numbers and flags are not formatted and dates are ISO-8601.
+	 */
+	public static class CsvListingStrategy extends ListingStrategy implements FileColumnWriter {
 		private CSVPrinter printer;
+		private boolean raw;
 		public CsvListingStrategy(int display) {
+			this(display, false);
+		}
+		public CsvListingStrategy(int display, boolean raw) {
+			this(display, newStandardOutWriter(), raw);
+		}
+		public CsvListingStrategy(int display, Writer writer, boolean raw) {
 			super(display);
+			this.raw = raw;
 			try {
-                this.printer = new CSVPrinter(System.out, CSVFormat.DEFAULT);
+                this.printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
@@ -128,13 +157,12 @@ public class DirectoryLister {
 		public void beforeDisk(FormattedDisk disk) {
 			try {
 				printer.printRecord(disk.getFilename(), disk.getDiskName());
-				printer.printRecord(disk
-							.getFileColumnHeaders(display)
-							.stream()
-							.map(FileColumnHeader::getTitle)
-							.collect(Collectors.toList()));
+				for (FileColumnHeader header : disk.getFileColumnHeaders(display)) {
+					printer.print(header.getTitle());
+				}
+				printer.println();
 			} catch (IOException e) {
-				throw new RuntimeException(e);
+				throw new UncheckedIOException(e);
 			}
 		}
         @Override
@@ -143,68 +171,292 @@ public class DirectoryLister {
 				printer.printRecord(disk.getFormat(), disk.getFreeSpace(), disk.getUsedSpace());
 				printer.println();
 			} catch (IOException e) {
-				throw new RuntimeException(e);
+				throw new UncheckedIOException(e);
 			}
 		}
         @Override
 		public void forEach(FileTuple tuple) {
 			try {
-				printer.printRecord(tuple.fileEntry.getFileColumnData(display));
+				if (raw) {
+					tuple.fileEntry.writeFileColumnValues(display, this);
+				} else {
+					for (String value : tuple.fileEntry.getFileColumnData(display)) {
+						printer.print(value);
+					}
+				}
+				printer.println();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+        @Override
+		public void last(Disk disk) {
+			try {
+				printer.flush();
 			} catch (IOException e) {
-				throw new RuntimeException(e);
+				throw new UncheckedIOException(e);
+			}
+		}
+		@Override
+		public void writeString(String key, String value) {
+			print(value);
+		}
+		@Override
+		public void writeNumber(String key, long value) {
+			print(value);
+		}
+		@Override
+		public void writeBoolean(String key, boolean value) {
+			print(value);
+		}
+		@Override
+		public void writeDate(String key, Date value) {
+			print(toIsoDate(value));
+		}
+		private void print(Object value) {
+			try {
+				printer.print(value);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
 		}
 	}
 	
-	public static class JsonListingStrategy extends ListingStrategy {
-		private JsonObject root;
-		private JsonArray disks;
-		private JsonObject currentDisk;
-		private JsonArray files;
-		private Gson gson = new Gson();
+	/**
+	 * Writes the listing as a JSON document, streaming each file to the
+	 * writer rather than building the document first.  With raw values,
+	 * numbers and flags are JSON numbers and booleans and dates are ISO-8601.
+	 */
+	public static class JsonListingStrategy extends ListingStrategy implements FileColumnWriter {
+		private Writer writer;
+		private JsonWriter json;
+		private boolean raw;
+		private String[] keys;
 		public JsonListingStrategy(int display) {
+			this(display, false);
+		}
+		public JsonListingStrategy(int display, boolean raw) {
+			this(display, newStandardOutWriter(), raw);
+		}
+		public JsonListingStrategy(int display, Writer writer, boolean raw) {
 			super(display);
+			this.raw = raw;
+			this.writer = writer;
+			this.json = new JsonWriter(writer);
+			// Match the output of Gson.toJson
+			json.setHtmlSafe(true);
+			json.setSerializeNulls(false);
 		}
         @Override
 		public void first(Disk disk) {
-			root = new JsonObject();
-			root.addProperty("filename", disk.getFilename());
-			root.addProperty("order", disk.getOrderName());
-			root.addProperty("physicalSize", disk.getPhysicalSize());
-			this.disks = new JsonArray();
-			root.add("disks", disks);
+			try {
+				json.beginObject();
+				json.name("filename").value(disk.getFilename());
+				json.name("order").value(disk.getOrderName());
+				json.name("physicalSize").value(disk.getPhysicalSize());
+				json.name("disks").beginArray();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
 		}
         @Override
 		public void beforeDisk(FormattedDisk disk) {
-			currentDisk = new JsonObject();
-			disks.add(currentDisk);
-			currentDisk.addProperty("diskName", disk.getDiskName());
-			currentDisk.addProperty("format", disk.getFormat());
-			currentDisk.addProperty("freeSpace", disk.getFreeSpace());
-			currentDisk.addProperty("usedSpace", disk.getUsedSpace());
-			currentDisk.addProperty("logicalDiskNumber", disk.getLogicalDiskNumber());
-			files = new JsonArray();
-			currentDisk.add("files", files);
-
+			try {
+				json.beginObject();
+				json.name("diskName").value(disk.getDiskName());
+				json.name("format").value(disk.getFormat());
+				json.name("freeSpace").value(disk.getFreeSpace());
+				json.name("usedSpace").value(disk.getUsedSpace());
+				json.name("logicalDiskNumber").value(disk.getLogicalDiskNumber());
+				json.name("files").beginArray();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			keys = disk.getFileColumnHeaders(display).stream()
+						.map(FileColumnHeader::getKey)
+						.toArray(String[]::new);
 		}
         @Override
 		public void afterDisk(FormattedDisk disk) {
-			currentDisk = null;
+			try {
+				json.endArray();
+				json.endObject();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+        @Override
+		public void forEach(FileTuple tuple) {
+			try {
+				json.beginObject();
+				if (raw) {
+					tuple.fileEntry.writeFileColumnValues(display, this);
+				} else {
+					List<String> columns = tuple.fileEntry.getFileColumnData(display);
+					for (int i=0; i<keys.length; i++) {
+						json.name(keys[i]).value(columns.get(i));
+					}
+				}
+				json.endObject();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+        @Override
+		public void last(Disk disk) {
+			try {
+				json.endArray();
+				json.endObject();
+				json.flush();
+				writer.write(System.lineSeparator());
+				writer.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		@Override
+		public void writeString(String key, String value) {
+			try {
+				json.name(key).value(value);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		@Override
+		public void writeNumber(String key, long value) {
+			try {
+				json.name(key).value(value);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		@Override
+		public void writeBoolean(String key, boolean value) {
+			try {
+				json.name(key).value(value);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		@Override
+		public void writeDate(String key, Date value) {
+			writeString(key, toIsoDate(value));
+		}
+	}
+
+	/**
+	 * Format a date as an ISO-8601 local date and time; null stays null.
+	 */
+	public static String toIsoDate(Date date) {
+		if (date == null) {
+			return null;
+		}
+		return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault())
+				.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+	}
+
+	/**
+	 * A buffered writer to standard out.  It is flushed, never closed, by
+	 * the listing strategies.
+	 */
+	protected static Writer newStandardOutWriter() {
+		return new BufferedWriter(new OutputStreamWriter(System.out));
+	}
+
+	/**
+	 * Renders each file as a single, self-contained CSV record that is
+	 * handed to a sink rather than printed.  Every record carries the image
+	 * filename, disk name, format, and path, so records from many disk
+	 * images may be interleaved in one index.
+	 * <p>
+	 * The columns are fixed for each display mode, whatever the filesystem,
+	 * so records line up under the single row from getHeader.  A column the
+	 * filesystem does not have is left empty.
+	 */
+	public static class CsvRecordListingStrategy extends ListingStrategy {
+		private static final List<String> DISK_KEYS = Arrays.asList(
+				"filename", "diskName", "format", "path");
+		private static final List<String> STANDARD_KEYS = Arrays.asList(
+				"name", "type", "sizeInBytes", "locked");
+		private static final List<String> NATIVE_KEYS = Arrays.asList(
+				"name", "type", "filetype", "locked", "size", "sectors", "blocks",
+				"modified", "created", "auxType", "firstBlock");
+		private static final List<String> DETAIL_KEYS = Arrays.asList(
+				"name", "type", "filetype", "locked", "deleted", "size", "sizeInBytes",
+				"sectors", "blocks", "modified", "created", "auxType", "user",
+				"permissions", "directory", "trackAndSectorList", "address", "firstBlock",
+				"lastBlock", "bytesInLastBlock", "directoryHeader", "keyBlock", "keyType",
+				"changed", "minimumProdosVersion", "prodosVersion");
+		private Consumer<String> sink;
+		private List<String> keys;
+		public CsvRecordListingStrategy(int display, Consumer<String> sink) {
+			super(display);
+			this.sink = sink;
+			this.keys = getFileKeys(display);
+		}
+		/**
+		 * The header row for records in the given display mode.
+		 */
+		public static String getHeader(int display) {
+			List<String> header = new ArrayList<>(DISK_KEYS);
+			header.addAll(getFileKeys(display));
+			return CSVFormat.DEFAULT.format(header.toArray());
+		}
+		protected static List<String> getFileKeys(int display) {
+			switch (display) {
+				case FormattedDisk.FILE_DISPLAY_NATIVE:
+					return NATIVE_KEYS;
+				case FormattedDisk.FILE_DISPLAY_DETAIL:
+					return DETAIL_KEYS;
+				default:
+					return STANDARD_KEYS;
+			}
+		}
+        @Override
+		public void forEach(FileTuple tuple) {
+			Map<String,String> columns = new HashMap<>();
+			List<FileColumnHeader> headers = tuple.formattedDisk.getFileColumnHeaders(display);
+			List<String> data = tuple.fileEntry.getFileColumnData(display);
+			for (int i=0; i<headers.size(); i++) {
+				columns.put(headers.get(i).getKey(), data.get(i));
+			}
+			List<String> values = new ArrayList<>();
+			values.add(tuple.formattedDisk.getFilename());
+			values.add(tuple.formattedDisk.getDiskName());
+			values.add(tuple.formattedDisk.getFormat());
+			values.add(tuple.fullPath());
+			for (String key : keys) {
+				values.add(columns.getOrDefault(key, ""));
+			}
+			sink.accept(CSVFormat.DEFAULT.format(values.toArray()));
+		}
+	}
+
+	/**
+	 * Renders each file as a single line JSON object that is handed to a
+	 * sink rather than printed.  See CsvRecordListingStrategy.
+	 */
+	public static class JsonRecordListingStrategy extends ListingStrategy {
+		private Consumer<String> sink;
+		private Gson gson = new Gson();
+		public JsonRecordListingStrategy(int display, Consumer<String> sink) {
+			super(display);
+			this.sink = sink;
 		}
         @Override
 		public void forEach(FileTuple tuple) {
 			JsonObject file = new JsonObject();
-			files.add(file);
+			file.addProperty("filename", tuple.formattedDisk.getFilename());
+			file.addProperty("diskName", tuple.formattedDisk.getDiskName());
+			file.addProperty("format", tuple.formattedDisk.getFormat());
+			file.addProperty("path", tuple.fullPath());
 			
 			List<FileColumnHeader> headers = tuple.formattedDisk.getFileColumnHeaders(display);
 			List<String> columns = tuple.fileEntry.getFileColumnData(display);
 			for (int i=0; i<headers.size(); i++) {
 				file.addProperty(headers.get(i).getKey(), columns.get(i));
 			}
-		}
-        @Override
-		public void last(Disk disk) {
-			System.out.println(gson.toJson(root));			
+			sink.accept(gson.toJson(file));
 		}
 	}
 }
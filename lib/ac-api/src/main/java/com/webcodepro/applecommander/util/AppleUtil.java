@@ -21,12 +21,13 @@ package com.webcodepro.applecommander.util;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 
 import com.webcodepro.applecommander.storage.physical.ImageOrder;
+import com.webcodepro.applecommander.storage.physical.ImageOrderConverter;
 
 /**
  * This class contains helper methods for dealing with Apple2 data.
@@ -36,11 +37,6 @@ import com.webcodepro.applecommander.storage.physical.ImageOrder;
  */
 public class AppleUtil {
 	private static TextBundle textBundle = TextBundle.getInstance();
-	/**
-	 * This is the number of bytes to display per line.
-	 */
-	private static final int BYTES_PER_LINE = 16;
-
 	/**
 	 * Bit masks used for the bit shifting or testing operations.
 	 */
@@ -148,9 +144,25 @@ public class AppleUtil {
 	 * Count the number of bits set in a byte.
 	 */
 	public static int getBitCount(byte byt) {
+		return Integer.bitCount(byt & 0xff);
+	}
+	
+	/**
+	 * Count the number of bits set in the bytes from start..end (exclusive).
+	 * The bytes are counted eight at a time.
+	 */
+	public static int getBitCount(byte[] data, int start, int end) {
 		int count = 0;
-		for (int ix=0; ix<8; ix++) {
-			if (isBitSet(byt, ix)) count++;
+		int offset = start;
+		for (; offset+8 <= end; offset+= 8) {
+			long word = 0;
+			for (int i=0; i<8; i++) {
+				word = (word << 8) | (data[offset+i] & 0xff);
+			}
+			count+= Long.bitCount(word);
+		}
+		for (; offset < end; offset++) {
+			count+= Integer.bitCount(data[offset] & 0xff);
 		}
 		return count;
 	}
@@ -551,6 +563,7 @@ public class AppleUtil {
 	 * MMMMMM: HH HH HH HH HH HH HH HH  HH HH HH HH HH HH HH HH  AAAAAAAA AAAAAAAA<br>
 	 * Where MMMMMM = memory address, HH = hex byte, and
 	 * A = ASCII character.
+	 * @see HexDumpWriter
 	 */
 	public static String getHexDump(byte[] bytes) {
 	    return getHexDump(0, bytes);
@@ -558,57 +571,26 @@ public class AppleUtil {
 	
 	public static String getHexDump(int address, byte[] bytes) {
 		ByteArrayOutputStream output = new ByteArrayOutputStream();
-		PrintWriter printer = new PrintWriter(output);
-		printer.println(textBundle.get("AppleUtil.HexDumpLine1")); //$NON-NLS-1$
-		printer.println(textBundle.get("AppleUtil.HexDumpLine2")); //$NON-NLS-1$
-		for (int offset=0; offset<bytes.length; offset+= BYTES_PER_LINE) {
-			printer.print("$"); //$NON-NLS-1$
-			printer.print(AppleUtil.getFormatted3ByteAddress(address+offset));
-			printer.print("  "); //$NON-NLS-1$
-			for (int b=0; b<BYTES_PER_LINE; b++) {
-				if (b == BYTES_PER_LINE / 2) printer.print(' ');
-				int index = offset+b;
-				printer.print( (index < bytes.length) ?
-					AppleUtil.getFormattedByte(bytes[index]) : ".."); //$NON-NLS-1$
-				printer.print(' ');
-			}
-			printer.print(' ');
-			for (int a=0; a<BYTES_PER_LINE; a++) {
-				if (a == BYTES_PER_LINE / 2) printer.print(' ');
-				int index = offset+a;
-				if (index < bytes.length) {
-					char ch = (char) (bytes[index] & 0x7f);
-					if (Character.isISOControl(ch)) {
-                        printer.print('.');
-                    } else {
-                        printer.print(ch);
-                    }
-				} else {
-					printer.print(' ');
-				}
-			}
-			printer.println();
+		try {
+			new HexDumpWriter(output).dump(address, bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);	// not expected from a ByteArrayOutputStream
 		}
-		printer.println(textBundle.get("AppleUtil.HexDumpEndMessage")); //$NON-NLS-1$
-		printer.flush();
-		printer.close();
 		return output.toString();
 	}
 	
 	/**
-	 * Change ImageOrder from source order to target order by copying sector by sector.
+	 * Change ImageOrder from source order to target order by track and sector.
+	 * Plain images are remapped in a single pass; nibbilized images are copied
+	 * sector by sector.
+	 * @see ImageOrderConverter#convertByTrackAndSector(ImageOrder, ImageOrder)
 	 */
 	public static void changeImageOrderByTrackAndSector(ImageOrder sourceOrder, ImageOrder targetOrder) {
 		if (!sameSectorsPerDisk(sourceOrder, targetOrder)) {
 			throw new IllegalArgumentException(textBundle.
 					get("AppleUtil.CannotChangeImageOrder")); //$NON-NLS-1$
 		}
-		for (int track = 0; track < sourceOrder.getTracksPerDisk(); track++) {
-			for (int sector = 0; sector < sourceOrder.getSectorsPerTrack(); sector++) {
-				byte[] data = sourceOrder.readSector(track, sector);
-				targetOrder.writeSector(track, sector, data);
-			}
-		}
+		ImageOrderConverter.convertByTrackAndSector(sourceOrder, targetOrder);
 	}
 	
 	/**
@@ -619,17 +601,17 @@ public class AppleUtil {
 	}
 
 	/**
-	 * Change ImageOrder from source order to target order by copying block by block.
+	 * Change ImageOrder from source order to target order by block.
+	 * Plain images are remapped in a single pass; nibbilized images are copied
+	 * block by block.
+	 * @see ImageOrderConverter#convertByBlock(ImageOrder, ImageOrder)
 	 */
 	public static void changeImageOrderByBlock(ImageOrder sourceOrder, ImageOrder targetOrder) {
 		if (!sameBlocksPerDisk(sourceOrder, targetOrder)) {
 			throw new IllegalArgumentException(textBundle.
 					get("AppleUtil.CannotChangeImageOrder")); //$NON-NLS-1$
 		}
-		for (int block = 0; block < sourceOrder.getBlocksOnDevice(); block++) {
-			byte[] blockData = sourceOrder.readBlock(block);
-			targetOrder.writeBlock(block, blockData);
-		}
+		ImageOrderConverter.convertByBlock(sourceOrder, targetOrder);
 	}
 
 	/**
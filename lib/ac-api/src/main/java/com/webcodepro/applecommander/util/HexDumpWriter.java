@@ -0,0 +1,205 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Write a hex dump directly to an OutputStream.  Each line is formatted into
+ * a reusable buffer from precomputed tables, so nothing is allocated per
+ * byte or per line, and lines are written to the stream in large chunks.
+ * The output is identical to AppleUtil.getHexDump, which uses this class.
+ * <p>
+ * The lines are in the general form of:<br>
+ * $MMMMMM  HH HH HH HH HH HH HH HH  HH HH HH HH HH HH HH HH  AAAAAAAA AAAAAAAA<br>
+ * Where MMMMMM = memory address, HH = hex byte, and A = ASCII character.
+ */
+public class HexDumpWriter {
+	private static final int BYTES_PER_LINE = 16;
+	/** Column where the hex bytes begin, after "$MMMMMM  ". */
+	private static final int HEX_COLUMN = 9;
+	/** Column where the characters begin, after the hex bytes and a space. */
+	private static final int CHARACTER_COLUMN = HEX_COLUMN + BYTES_PER_LINE * 3 + 2;
+	private static final int LINE_LENGTH = CHARACTER_COLUMN + BYTES_PER_LINE + 1;
+	private static final int BUFFER_SIZE = 8192;
+	private static final byte[] HEX_DIGITS = new byte[16];
+	/** The high and low hex digit of each byte value. */
+	private static final byte[] HIGH_DIGIT = new byte[256];
+	private static final byte[] LOW_DIGIT = new byte[256];
+	/** The character displayed for each byte value. */
+	private static final byte[] CHARACTERS = new byte[256];
+	static {
+		for (int i=0; i<16; i++) {
+			HEX_DIGITS[i] = (byte) Character.toUpperCase(Character.forDigit(i, 16));
+		}
+		for (int i=0; i<256; i++) {
+			HIGH_DIGIT[i] = HEX_DIGITS[i >> 4];
+			LOW_DIGIT[i] = HEX_DIGITS[i & 0x0f];
+			char ch = (char) (i & 0x7f);
+			CHARACTERS[i] = (byte) (Character.isISOControl(ch) ? '.' : ch);
+		}
+	}
+
+	private TextBundle textBundle = TextBundle.getInstance();
+	private OutputStream outputStream;
+	private byte[] lineSeparator = System.lineSeparator().getBytes();
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int address;
+
+	/**
+	 * Construct a HexDumpWriter for the given stream.
+	 */
+	public HexDumpWriter(OutputStream outputStream) {
+		this.outputStream = outputStream;
+	}
+
+	/**
+	 * Write a complete hex dump, with header and trailer, of the given bytes.
+	 */
+	public void dump(int address, byte[] bytes) throws IOException {
+		writeHeader(address);
+		for (int offset=0; offset<bytes.length; offset+= BYTES_PER_LINE) {
+			writeLine(bytes, offset, Math.min(BYTES_PER_LINE, bytes.length - offset));
+		}
+		writeTrailer();
+	}
+
+	/**
+	 * Write a complete hex dump, with header and trailer, of the given stream.
+	 * The stream is read a buffer at a time and is not closed.
+	 */
+	public void dump(int address, InputStream inputStream) throws IOException {
+		writeHeader(address);
+		byte[] data = new byte[BUFFER_SIZE];
+		int length = 0;
+		int count;
+		while ((count = inputStream.read(data, length, data.length - length)) != -1) {
+			length+= count;
+			int offset = 0;
+			for (; length - offset >= BYTES_PER_LINE; offset+= BYTES_PER_LINE) {
+				writeLine(data, offset, BYTES_PER_LINE);
+			}
+			System.arraycopy(data, offset, data, 0, length - offset);
+			length-= offset;
+		}
+		if (length > 0) {
+			writeLine(data, 0, length);
+		}
+		writeTrailer();
+	}
+
+	/**
+	 * Write the column headings and set the address of the first line.
+	 */
+	public void writeHeader(int address) throws IOException {
+		this.address = address;
+		writeText(textBundle.get("AppleUtil.HexDumpLine1")); //$NON-NLS-1$
+		writeText(textBundle.get("AppleUtil.HexDumpLine2")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Write one line of up to 16 bytes; a short line is padded.
+	 */
+	public void writeLine(byte[] bytes, int offset, int length) throws IOException {
+		ensureCapacity(LINE_LENGTH + lineSeparator.length);
+		byte[] line = buffer;
+		int start = position;
+		line[start] = '$';
+		int addr = address & 0xffffff;
+		for (int i=6; i>0; i--) {
+			line[start+i] = HEX_DIGITS[addr & 0x0f];
+			addr >>= 4;
+		}
+		line[start+7] = ' ';
+		line[start+8] = ' ';
+		int hex = start + HEX_COLUMN;
+		int character = start + CHARACTER_COLUMN;
+		for (int b=0; b<BYTES_PER_LINE; b++) {
+			if (b == BYTES_PER_LINE / 2) {
+				line[hex++] = ' ';
+				line[character++] = ' ';
+			}
+			if (b < length) {
+				int value = bytes[offset+b] & 0xff;
+				line[hex] = HIGH_DIGIT[value];
+				line[hex+1] = LOW_DIGIT[value];
+				line[character] = CHARACTERS[value];
+			} else {
+				line[hex] = '.';
+				line[hex+1] = '.';
+				line[character] = ' ';
+			}
+			line[hex+2] = ' ';
+			hex+= 3;
+			character++;
+		}
+		line[hex] = ' ';
+		System.arraycopy(lineSeparator, 0, line, character, lineSeparator.length);
+		position = character + lineSeparator.length;
+		address+= BYTES_PER_LINE;
+	}
+
+	/**
+	 * Write the end message and flush everything to the stream.
+	 */
+	public void writeTrailer() throws IOException {
+		writeText(textBundle.get("AppleUtil.HexDumpEndMessage")); //$NON-NLS-1$
+		flush();
+	}
+
+	/**
+	 * Write any buffered lines to the stream and flush it.
+	 */
+	public void flush() throws IOException {
+		if (position > 0) {
+			outputStream.write(buffer, 0, position);
+			position = 0;
+		}
+		outputStream.flush();
+	}
+
+	/**
+	 * Write a line of text in the platform encoding, as PrintWriter would.
+	 */
+	protected void writeText(String text) throws IOException {
+		byte[] bytes = text.getBytes();
+		ensureCapacity(bytes.length + lineSeparator.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position+= bytes.length;
+		System.arraycopy(lineSeparator, 0, buffer, position, lineSeparator.length);
+		position+= lineSeparator.length;
+	}
+
+	/**
+	 * Make room in the buffer, writing it out if needed.
+	 */
+	protected void ensureCapacity(int length) throws IOException {
+		if (position + length > buffer.length) {
+			outputStream.write(buffer, 0, position);
+			position = 0;
+			if (length > buffer.length) {
+				buffer = new byte[length];
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.util;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Builds the files that names read from a disk are written to on the host.
+ * Every name becomes a single, safe path component, so the output always 
+ * stays inside its directory, and a file that would replace one already
+ * handed out is given a "-2", "-3", ... suffix instead.  Files are compared
+ * without regard to case (as on Windows and macOS).
+ * <p>
+ * An instance is not thread safe; assign files in a fixed order so the same
+ * names are chosen every time.
+ */
+public class OutputFileNames {
+	private Set<String> used = new HashSet<>();
+
+	/**
+	 * Turn a name from a disk into a single, safe file name component.
+	 * Surrounding spaces are dropped, path separators and characters not
+	 * allowed in file names become "_", and names such as "." or ".."
+	 * (or an empty name) are replaced.
+	 */
+	public static String toPathComponent(String name) {
+		StringBuilder sb = new StringBuilder();
+		for (char ch : name.trim().toCharArray()) {
+			sb.append(ch < ' ' || ch == 0x7f || "/\\:*?\"<>|".indexOf(ch) >= 0 ? '_' : ch); //$NON-NLS-1$
+		}
+		String component = sb.toString();
+		if (component.replace(".", "").isEmpty()) { //$NON-NLS-1$ //$NON-NLS-2$
+			component = component.isEmpty() ? "_" : component.replace('.', '_'); //$NON-NLS-1$
+		}
+		return component;
+	}
+
+	/**
+	 * Answer the directory below the given one made of the (cleaned) paths.
+	 */
+	public static File toDirectory(File directory, List<String> paths) {
+		for (String path : paths) {
+			directory = new File(directory, toPathComponent(path));
+		}
+		return directory;
+	}
+
+	/**
+	 * Answer the file for a name in the directory; the name is cleaned and
+	 * made unique.
+	 */
+	public File getFile(File directory, String name) {
+		return unique(new File(directory, toPathComponent(name)));
+	}
+
+	/**
+	 * Answer the file, or when it was already handed out, the first free
+	 * file with a numeric suffix ahead of the extension.
+	 */
+	public File unique(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		String base = dot > 0 ? name.substring(0, dot) : name;
+		String extension = name.substring(base.length());
+		for (int i = 2; !used.add(file.getPath().toLowerCase(Locale.ROOT)); i++) {
+			file = new File(file.getParentFile(), base + "-" + i + extension); //$NON-NLS-1$
+		}
+		return file;
+	}
+}
@@ -22,6 +22,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.FormattedDisk;
@@ -33,6 +40,7 @@ import com.webcodepro.applecommander.storage.physical.ImageOrder;
 import com.webcodepro.applecommander.storage.physical.ProdosOrder;
 import com.webcodepro.shrinkit.HeaderBlock;
 import com.webcodepro.shrinkit.NuFileArchive;
+import com.webcodepro.shrinkit.ThreadKind;
 import com.webcodepro.shrinkit.ThreadRecord;
 import com.webcodepro.shrinkit.io.LittleEndianByteInputStream;
 
@@ -43,6 +51,12 @@ import com.webcodepro.shrinkit.io.LittleEndianByteInputStream;
  */
 public class ShrinkItUtilities
 {
+	/**
+	 * The number of threads that may be decompressed ahead of the file
+	 * being written to the volume.
+	 */
+	private static final int MAX_PENDING_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
 	/**
 	 * Interpret a NuFile/NuFX/Shrinkit archive as a full disk image.
 	 * 
@@ -60,6 +74,8 @@ public class ShrinkItUtilities
 
 	/**
 	 * Interpret a NuFile/NuFX/Shrinkit archive as a full disk image.
+	 * Threads are decompressed on a pool of threads used only for this
+	 * archive, which is shut down before answering.
 	 * 
 	 * @return byte[] buffer containing full disk of data; null if unable to
 	 *         read
@@ -69,111 +85,109 @@ public class ShrinkItUtilities
 	 *             the file has some malformed-ness about it
 	 */
 	public static byte[] unpackSHKFile(String fileName, int startBlocks) throws IOException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(MAX_PENDING_THREADS, r -> {
+			Thread thread = new Thread(r, "shrinkit-unpack"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		});
+		try
+		{
+			return unpackSHKFile(fileName, startBlocks, executor);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Interpret a NuFile/NuFX/Shrinkit archive as a full disk image.
+	 * Threads are decompressed on the given executor, a few ahead of the
+	 * file currently being written, while the files themselves are written
+	 * to the ProDOS volume in archive order.  Only a bounded number of
+	 * decompressed threads are held at any time.  A thread the executor has
+	 * not started by the time its file is written is decompressed on the
+	 * calling thread, so a busy executor only costs the overlap.
+	 * 
+	 * @return byte[] buffer containing full disk of data; null if unable to
+	 *         read
+	 * @throws IllegalArgumentException
+	 *             if the filename is not able to be read
+	 * @throws IOException
+	 *             the file has some malformed-ness about it
+	 */
+	public static byte[] unpackSHKFile(String fileName, int startBlocks, Executor executor) throws IOException
 	{
 		TextBundle textBundle = StorageBundle.getInstance();
-		byte dmgBuffer[] = null;
 		File file = new File(fileName);
 		if (file.isDirectory() || !file.canRead())
 		{
 			throw new IOException(textBundle.format("NotAFile", fileName, 1)); //$NON-NLS-1$ 
 		}
-		InputStream is = new FileInputStream(file);
-		NuFileArchive a = new NuFileArchive(is);
-		// If we need to build a disk to hold files (i.e. .shk vs. .sdk), how big would that disk need to be?
+		NuFileArchive a;
+		try (InputStream is = new FileInputStream(file))
+		{
+			a = new NuFileArchive(is);
+		}
+		// Disk images take precedence... if they have both disk images and files, just return the disk.
+		ThreadRecord diskImage = null;
+		for (HeaderBlock b : a.getHeaderBlocks())
+		{
+			for (ThreadRecord r : b.getThreadRecords())
+			{
+				if (r.getThreadKind() == ThreadKind.DISK_IMAGE)
+				{
+					diskImage = r;
+				}
+			}
+		}
+		if (diskImage != null)
+		{
+			return readThread(diskImage);
+		}
+		// We need to build a disk to hold files (i.e. .shk vs. .sdk) - how big would that disk need to be?
 		int newDiskSize = Disk.sizeToFit(a.getArchiveSize());
 		if (startBlocks > 0)
 			newDiskSize = startBlocks*512;
 		ByteArrayImageLayout layout = new ByteArrayImageLayout(newDiskSize);
 		ImageOrder imageOrder = new ProdosOrder(layout);
-		// Create a new disk in anticipation of unpacking files - we don't actually know if we'll need it yet, though.
 		FormattedDisk[] disks = ProdosFormatDisk.create(fileName, "APPLECOMMANDER", imageOrder); //$NON-NLS-1$
 		// Make some typing easier... get a handle to the disk we created, with ProdosFormatDisk extensions. 
 		ProdosFormatDisk pdDisk = (ProdosFormatDisk) disks[0];
-		ThreadRecord dataFork, resourceFork;
-		for (HeaderBlock b : a.getHeaderBlocks())
+		Deque<PendingFile> pending = new ArrayDeque<>();
+		int pendingThreads = 0;
+		try
 		{
-			ProdosFileEntry newFile = null;
-			dataFork = null;
-			resourceFork = null;
-			for (ThreadRecord r : b.getThreadRecords())
+			for (HeaderBlock b : a.getHeaderBlocks())
 			{
-				try
-				{
-					switch (r.getThreadKind())
-					{
-					case ASCII_TEXT:
-						break;
-					case ALLOCATED_SPACE:
-						break;
-					case APPLE_IIGS_ICON:
-						break;
-					case CREATE_DIRECTORY:
-						break;
-					case DATA_FORK:
-						// This is a normal-ish file - hang on to the thread record
-						dataFork = r;
-						break;
-					case DISK_IMAGE:
-						dmgBuffer = readThread(r);
-						break;
-					case RESOURCE_FORK:
-						// This is a resource fork - we're talking GSOS FST here
-						resourceFork = r;
-						break;
-					case FILENAME:
-						break;
-					default:
-						// Hmmm, this should not occur - but let us not fret about it.
-						break;
-					}
-				}
-				catch (Exception ex)
+				PendingFile pendingFile = new PendingFile(b, executor);
+				if (pendingFile.getThreadCount() == 0)
 				{
-					throw new IOException(ex.getMessage());
+					continue;
 				}
-			}
-			try
-			{
-				if ((dataFork != null) || (resourceFork != null))
+				pending.add(pendingFile);
+				pendingThreads += pendingFile.getThreadCount();
+				while (pendingThreads > MAX_PENDING_THREADS)
 				{
-					Name name = new Name(b.getFilename());
-					newFile = (ProdosFileEntry)name.createEntry(pdDisk);
-					if (newFile != null)
-					{
-						if (resourceFork != null)
-						{
-							// If we have a resource fork in addition to a data fork,
-							// then we've got a GSOS storage type $5. 
-							newFile.setFileData(readThread(dataFork), readThread(resourceFork));
-							newFile.setStorageType(0x05);
-						}
-						else
-						{
-							// We have a traditional file, no resource fork.
-							newFile.setFileData(readThread(dataFork));
-						}
-						newFile.setFilename(b.getFinalFilename());
-						newFile.setFiletype(b.getFileType());
-						newFile.setAuxiliaryType((int) b.getExtraType());
-						// TODO: dates differ by a month or so from what CiderPress reports.  
-						newFile.setCreationDate(b.getCreateWhen());
-						newFile.setLastModificationDate(b.getModWhen());
-						newFile = null;
-					}
+					PendingFile next = pending.remove();
+					pendingThreads -= next.getThreadCount();
+					next.write(pdDisk);
 				}
 			}
-			catch (Exception ex)
+			while (!pending.isEmpty())
 			{
-				throw new IOException(ex.getMessage());
+				pending.remove().write(pdDisk);
 			}
 		}
-		if (dmgBuffer != null)
+		finally
 		{
-			// Disk images take precedence... if they have both disk images and files, just return the disk.
-			return dmgBuffer;
+			for (PendingFile pendingFile : pending)
+			{
+				pendingFile.cancel();
+			}
 		}
-		else
-			return imageOrder.readBytes(0, newDiskSize);
+		return imageOrder.readBytes(0, newDiskSize);
 	}
 
 	/**
@@ -196,4 +210,115 @@ public class ShrinkItUtilities
 		}
 		return buffer;
 	}
+
+	/**
+	 * A file of the archive whose forks are being decompressed in the
+	 * background, waiting for its turn to be written to the volume.
+	 */
+	private static class PendingFile
+	{
+		private HeaderBlock header;
+		private FutureTask<byte[]> dataFork;
+		private FutureTask<byte[]> resourceFork;
+
+		public PendingFile(HeaderBlock header, Executor executor)
+		{
+			this.header = header;
+			for (ThreadRecord r : header.getThreadRecords())
+			{
+				switch (r.getThreadKind())
+				{
+				case DATA_FORK:
+					// This is a normal-ish file - hang on to the thread record
+					dataFork = submit(r, executor);
+					break;
+				case RESOURCE_FORK:
+					// This is a resource fork - we're talking GSOS FST here
+					resourceFork = submit(r, executor);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		private static FutureTask<byte[]> submit(ThreadRecord r, Executor executor)
+		{
+			FutureTask<byte[]> task = new FutureTask<>(() -> {
+				byte[] data = readThread(r);
+				// The compressed data is no longer needed
+				r.setThreadData(null);
+				return data;
+			});
+			executor.execute(task);
+			return task;
+		}
+
+		public int getThreadCount()
+		{
+			return (dataFork != null ? 1 : 0) + (resourceFork != null ? 1 : 0);
+		}
+
+		public void write(ProdosFormatDisk pdDisk) throws IOException
+		{
+			try
+			{
+				Name name = new Name(header.getFilename());
+				ProdosFileEntry newFile = (ProdosFileEntry)name.createEntry(pdDisk);
+				if (newFile != null)
+				{
+					if (resourceFork != null)
+					{
+						// If we have a resource fork in addition to a data fork,
+						// then we've got a GSOS storage type $5. 
+						newFile.setFileData(get(dataFork), get(resourceFork));
+						newFile.setStorageType(0x05);
+					}
+					else
+					{
+						// We have a traditional file, no resource fork.
+						newFile.setFileData(get(dataFork));
+					}
+					newFile.setFilename(header.getFinalFilename());
+					newFile.setFiletype(header.getFileType());
+					newFile.setAuxiliaryType((int) header.getExtraType());
+					// TODO: dates differ by a month or so from what CiderPress reports.  
+					newFile.setCreationDate(header.getCreateWhen());
+					newFile.setLastModificationDate(header.getModWhen());
+				}
+			}
+			catch (IOException ex)
+			{
+				throw ex;
+			}
+			catch (Exception ex)
+			{
+				throw new IOException(ex.getMessage());
+			}
+		}
+
+		private static byte[] get(FutureTask<byte[]> task) throws Exception
+		{
+			if (task == null)
+			{
+				return null;
+			}
+			// Decompress here if the executor has not started it yet
+			task.run();
+			try
+			{
+				return task.get();
+			}
+			catch (ExecutionException ex)
+			{
+				throw (ex.getCause() instanceof Exception) ? (Exception) ex.getCause() : ex;
+			}
+		}
+
+		public void cancel()
+		{
+			if (dataFork != null) dataFork.cancel(false);
+			if (resourceFork != null) resourceFork.cancel(false);
+		}
+	}
 }
@@ -0,0 +1,130 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.os.dos33.DosFileEntry;
+import com.webcodepro.applecommander.storage.os.dos33.DosFormatDisk;
+import com.webcodepro.applecommander.storage.os.prodos.ProdosFileEntry;
+import com.webcodepro.applecommander.storage.os.prodos.ProdosFormatDisk;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.DosOrder;
+import com.webcodepro.applecommander.storage.physical.ProdosOrder;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+import com.webcodepro.applecommander.util.AppleUtil;
+import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
+import com.webcodepro.applecommander.util.filestreamer.FileTuple;
+import com.webcodepro.applecommander.util.filestreamer.TypeOfFile;
+
+/**
+ * Verify the file data streams answer the same bytes as getFileData.
+ */
+public class FileEntryInputStreamTest {
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testDos33() throws IOException, DiskException {
+		verify("MASTER.DSK"); //$NON-NLS-1$
+		verify("UniDOS_3.3.dsk"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testProdos() throws IOException, DiskException {
+		verify("Marble Madness (1985)(Electronic Arts).2mg"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testPascal() throws IOException, DiskException {
+		verify("galatt.dsk"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testDos33LengthPastData() throws DiskException {
+		FormattedDisk disk = DosFormatDisk.create("length.dsk", //$NON-NLS-1$
+				new DosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)))[0];
+		DosFileEntry entry = (DosFileEntry) disk.createFile();
+		entry.setFilename("CORRUPT"); //$NON-NLS-1$
+		entry.setFiletype("B"); //$NON-NLS-1$
+		entry.setFileData(new byte[300]);
+		// Record a length beyond the two sectors the file has
+		byte[] trackSectorList = disk.readSector(entry.getTrack(), entry.getSector());
+		int track = AppleUtil.getUnsignedByte(trackSectorList[0x0c]);
+		int sector = AppleUtil.getUnsignedByte(trackSectorList[0x0d]);
+		byte[] data = disk.readSector(track, sector);
+		AppleUtil.setWordValue(data, 2, 0x1000);
+		disk.writeSector(track, sector, data);
+		try {
+			entry.getFileData();
+			fail("getFileData should fail"); //$NON-NLS-1$
+		} catch (ArrayIndexOutOfBoundsException ex) {
+			// expected
+		}
+		try (InputStream inputStream = entry.getFileDataStream()) {
+			inputStream.readAllBytes();
+			fail("The stream should fail as getFileData does"); //$NON-NLS-1$
+		} catch (ArrayIndexOutOfBoundsException | IOException ex) {
+			assertTrue(ex instanceof ArrayIndexOutOfBoundsException);
+		}
+	}
+
+	@Test
+	public void testProdosSparseIndexBlock() throws IOException, DiskException {
+		FormattedDisk disk = ProdosFormatDisk.create("sparse.po", "SPARSE", //$NON-NLS-1$ //$NON-NLS-2$
+				new ProdosOrder(new ByteArrayImageLayout(Disk.APPLE_800KB_DISK)))[0];
+		ProdosFileEntry entry = (ProdosFileEntry) disk.createFile();
+		entry.setFilename("TREE"); //$NON-NLS-1$
+		entry.setFiletype("BIN"); //$NON-NLS-1$
+		byte[] data = new byte[300 * Disk.BLOCK_SIZE];
+		Arrays.fill(data, (byte) 0x5a);
+		entry.setFileData(data);
+		assertTrue(entry.isTreeFile());
+		// Make the first index block sparse: its 256 blocks read as zeros
+		byte[] masterIndexBlock = disk.readBlock(entry.getKeyPointer());
+		masterIndexBlock[0] = 0;
+		masterIndexBlock[0x100] = 0;
+		disk.writeBlock(entry.getKeyPointer(), masterIndexBlock);
+		Arrays.fill(data, 0, 0x100 * Disk.BLOCK_SIZE, (byte) 0);
+		assertArrayEquals(data, entry.getFileData());
+		try (InputStream inputStream = entry.getFileDataStream()) {
+			assertArrayEquals(data, inputStream.readAllBytes());
+		}
+	}
+
+	protected void verify(String imageName) throws IOException, DiskException {
+		int count = 0;
+		for (FileTuple tuple : (Iterable<FileTuple>) FileStreamer.forDisk(config.getDiskDir() + "/" + imageName) //$NON-NLS-1$
+				.includeTypeOfFile(TypeOfFile.FILE).recursive(true).stream()::iterator) {
+			try (InputStream inputStream = tuple.fileEntry.getFileDataStream()) {
+				assertArrayEquals(tuple.fullPath(), tuple.fileEntry.getFileData(), inputStream.readAllBytes());
+			}
+			count++;
+		}
+		assertTrue(count > 0);
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.FormatProbe.Format;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+
+/**
+ * Verify the FormatProbe answers the same verdicts sequentially and in parallel.
+ */
+public class FormatProbeTest {
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testParallelMatchesSequential() throws IOException {
+		String[] images = { "MASTER.DSK", "Prodos.dsk", "UniDOS_3.3.dsk", "RDOSboot.dsk", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				"Marble Madness (1985)(Electronic Arts).2mg" }; //$NON-NLS-1$
+		for (String image : images) {
+			Disk disk = new Disk(config.getDiskDir() + "/" + image); //$NON-NLS-1$
+			Set<Format> sequential = new FormatProbe(disk.getImageOrder()).probe(false, Format.values());
+			Set<Format> parallel = new FormatProbe(disk.getImageOrder()).probe(true, Format.values());
+			assertEquals(image, sequential, parallel);
+		}
+	}
+
+	@Test
+	public void testVerdictsFollowChanges() throws IOException {
+		Disk disk = new Disk(config.getDiskDir() + "/MASTER.DSK"); //$NON-NLS-1$
+		FormatProbe probe = disk.getFormatProbe();
+		assertTrue(disk.isDosFormat());
+		assertSame(probe, disk.getFormatProbe());
+		disk.writeSector(17, 0, new byte[Disk.SECTOR_SIZE]);
+		assertFalse(disk.isDosFormat());
+	}
+
+	@Test
+	public void testOnlyNeededSectorsAreRead() throws IOException {
+		Disk disk = new Disk(config.getDiskDir() + "/MASTER.DSK"); //$NON-NLS-1$
+		List<Integer> tracks = new CopyOnWriteArrayList<>();
+		FormatProbe probe = new FormatProbe(disk.getImageOrder()) {
+			protected byte[] sector(int track, int sector) {
+				tracks.add(track);
+				// As if the CP/M directory were a damaged sector in a nibble image
+				if (track == 3) throw new IllegalArgumentException("Unable to locate sector"); //$NON-NLS-1$
+				return super.sector(track, sector);
+			}
+		};
+		assertEquals(EnumSet.of(Format.DOS), probe.probe(true, Format.DOS, Format.CPM));
+		assertFalse(tracks.contains(0));
+		assertTrue(tracks.stream().allMatch(track -> track == 17 || track == 3));
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout.Range;
+import com.webcodepro.applecommander.storage.physical.UniversalDiskImageLayout;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+
+public class ImageJournalTest {
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testChangedRanges() {
+		ByteArrayImageLayout layout = new ByteArrayImageLayout(new byte[Disk.APPLE_140KB_DISK], false);
+		assertEquals(0, layout.getChangedRanges().size());
+		layout.writeBytes(1000, new byte[10]);
+		layout.writeBytes(1024, new byte[512]);
+		layout.writeBytes(4096, new byte[1]);
+		List<Range> ranges = layout.getChangedRanges();
+		assertEquals(2, ranges.size());
+		assertRange(512, 1024, ranges.get(0));
+		assertRange(4096, 512, ranges.get(1));
+		layout.setChanged(false);
+		assertEquals(0, layout.getChangedRanges().size());
+		layout.setDiskImage(new byte[Disk.APPLE_140KB_DISK]);
+		assertNull(layout.getChangedRanges());
+
+		// Ranges are physical, so they include the 2IMG header
+		layout = new UniversalDiskImageLayout(new byte[Disk.APPLE_140KB_DISK], false);
+		layout.writeBytes(0, new byte[512]);
+		ranges = layout.getChangedRanges();
+		assertEquals(1, ranges.size());
+		assertRange(0, 1024, ranges.get(0));
+		assertNull(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK).getChangedRanges());
+	}
+
+	@Test
+	public void testSaveChangesInPlace() throws IOException {
+		File image = copy("Prodos.dsk"); //$NON-NLS-1$
+		Disk disk = new Disk(image.getPath());
+		disk.writeBlock(100, filled(Disk.BLOCK_SIZE));
+		int changed = disk.getDiskImageManager().getChangedRanges().stream()
+				.mapToInt(Range::getLength).sum();
+		assertEquals(Disk.BLOCK_SIZE, changed);
+		disk.save();
+		assertFalse(disk.hasChanged());
+		assertFalse(ImageJournal.getJournalFile(image).exists());
+
+		Disk expected = new Disk(config.getDiskDir() + "/Prodos.dsk"); //$NON-NLS-1$
+		expected.writeBlock(100, filled(Disk.BLOCK_SIZE));
+		assertArrayEquals(expected.getDiskImageManager().getDiskImage(), Files.readAllBytes(image.toPath()));
+	}
+
+	@Test
+	public void testRecoverInterruptedSave() throws IOException {
+		File image = copy("Prodos.dsk"); //$NON-NLS-1$
+		byte[] original = Files.readAllBytes(image.toPath());
+		Disk disk = new Disk(image.getPath());
+		disk.writeBlock(2, filled(Disk.BLOCK_SIZE));
+		List<Range> ranges = disk.getDiskImageManager().getChangedRanges();
+		// Interrupted after the image was written, but before the journal was removed
+		File journal = ImageJournal.getJournalFile(image);
+		ImageJournal.writeJournal(image, journal, ranges);
+		try (RandomAccessFile file = new RandomAccessFile(image, "rw")) { //$NON-NLS-1$
+			for (Range range : ranges) {
+				file.seek(range.getPosition());
+				file.write(filled(range.getLength()));
+			}
+		}
+		assertTrue(journal.exists());
+		new Disk(image.getPath());
+		assertFalse(journal.exists());
+		assertArrayEquals(original, Files.readAllBytes(image.toPath()));
+	}
+
+	@Test
+	public void testIncompleteJournalIsDiscarded() throws IOException {
+		File image = copy("Prodos.dsk"); //$NON-NLS-1$
+		byte[] original = Files.readAllBytes(image.toPath());
+		File journal = ImageJournal.getJournalFile(image);
+		ImageJournal.writeJournal(image, journal, Arrays.asList(new Range(0, 4096)));
+		try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) { //$NON-NLS-1$
+			file.setLength(file.length() - 10);
+		}
+		assertFalse(ImageJournal.recover(image));
+		assertFalse(journal.exists());
+		assertArrayEquals(original, Files.readAllBytes(image.toPath()));
+	}
+
+	@Test
+	public void testJournalThatRemainsIsAnError() throws IOException {
+		File image = copy("Prodos.dsk"); //$NON-NLS-1$
+		File journal = ImageJournal.getJournalFile(image);
+		// A directory that is not empty cannot be deleted
+		File blocker = new File(journal, "blocker"); //$NON-NLS-1$
+		assertTrue(blocker.mkdirs());
+		try {
+			ImageJournal.deleteJournal(journal);
+			fail("A journal that cannot be removed must be reported"); //$NON-NLS-1$
+		} catch (IOException ex) {
+			assertTrue(journal.exists());
+		} finally {
+			blocker.delete();
+			journal.delete();
+		}
+	}
+
+	@Test
+	public void testFullSaveOfNewFileUsesDefaultPermissions() throws IOException {
+		File directory = Files.createTempDirectory("deleteme-").toFile(); //$NON-NLS-1$
+		try {
+			File reference = new File(directory, "reference"); //$NON-NLS-1$
+			new FileOutputStream(reference).close();
+			Disk disk = new Disk(copy("Prodos.dsk").getPath()); //$NON-NLS-1$
+			File target = new File(directory, "new.po"); //$NON-NLS-1$
+			disk.saveAs(target.getPath());
+			assertEquals(Files.getPosixFilePermissions(reference.toPath()), 
+					Files.getPosixFilePermissions(target.toPath()));
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testFullSaveKeepsLinks() throws IOException {
+		File image = copy("Prodos.dsk"); //$NON-NLS-1$
+		Path symbolicLink = new File(image.getPath() + ".symlink").toPath(); //$NON-NLS-1$
+		Path hardLink = new File(image.getPath() + ".link").toPath(); //$NON-NLS-1$
+		try {
+			Files.createSymbolicLink(symbolicLink, image.toPath());
+			Files.createLink(hardLink, image.toPath());
+			byte[] expected = filled(Disk.APPLE_140KB_DISK);
+			Disk disk = new Disk(symbolicLink.toString());
+			// Replacing the whole image means the whole file is written
+			disk.getDiskImageManager().setDiskImage(expected);
+			disk.save();
+			assertTrue(Files.isSymbolicLink(symbolicLink));
+			assertArrayEquals(expected, Files.readAllBytes(image.toPath()));
+			assertArrayEquals(expected, Files.readAllBytes(hardLink));
+		} finally {
+			Files.deleteIfExists(symbolicLink);
+			Files.deleteIfExists(hardLink);
+		}
+	}
+
+	protected void assertRange(int position, int length, Range range) {
+		assertEquals(position, range.getPosition());
+		assertEquals(length, range.getLength());
+	}
+
+	protected byte[] filled(int size) {
+		byte[] data = new byte[size];
+		Arrays.fill(data, (byte) 0xa5);
+		return data;
+	}
+
+	protected File copy(String imageName) throws IOException {
+		File file = File.createTempFile("deleteme-", "-" + imageName); //$NON-NLS-1$ //$NON-NLS-2$
+		file.deleteOnExit();
+		ImageJournal.getJournalFile(file).deleteOnExit();
+		Files.copy(new File(config.getDiskDir(), imageName).toPath(), file.toPath(), 
+				StandardCopyOption.REPLACE_EXISTING);
+		return file;
+	}
+}
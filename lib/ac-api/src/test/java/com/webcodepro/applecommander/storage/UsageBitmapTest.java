@@ -0,0 +1,118 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.FormattedDisk.DiskUsage;
+import com.webcodepro.applecommander.storage.os.dos33.DosFormatDisk;
+import com.webcodepro.applecommander.storage.os.prodos.ProdosFormatDisk;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+
+/**
+ * Test UsageBitmap and the bitmaps built by the disk formats.
+ */
+public class UsageBitmapTest {
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testRanges() {
+		UsageBitmap bitmap = new UsageBitmap(200);
+		assertEquals(0, bitmap.getFreeCount());
+		bitmap.setFree(3, 150);
+		assertEquals(147, bitmap.getFreeCount());
+		assertFalse(bitmap.isFree(2));
+		assertTrue(bitmap.isFree(3));
+		assertTrue(bitmap.isFree(149));
+		assertFalse(bitmap.isFree(150));
+		bitmap.setUsed(64, 128);
+		assertEquals(83, bitmap.getFreeCount());
+		assertEquals(117, bitmap.getUsedCount());
+		assertEquals(3, bitmap.nextFree(0));
+		assertEquals(64, bitmap.nextUsed(3));
+		assertEquals(128, bitmap.nextFree(64));
+		assertEquals(-1, bitmap.nextFree(150));
+		bitmap.setFree(199);
+		assertEquals(199, bitmap.nextFree(150));
+		assertEquals(-1, bitmap.nextUsed(199));
+	}
+
+	@Test
+	public void testSetBits() {
+		UsageBitmap bitmap = new UsageBitmap(100);
+		bitmap.setBits(48, 0xf00fL, 32);
+		for (int unit=0; unit<100; unit++) {
+			boolean expected = (unit >= 48 && unit < 52) || (unit >= 60 && unit < 64);
+			assertEquals("Unit " + unit, expected, bitmap.isFree(unit));
+		}
+	}
+
+	@Test
+	public void testExtents() {
+		UsageBitmap bitmap = UsageBitmap.fromBytes(new byte[] { (byte)0x0f, (byte)0xff, 0x00 }, 0, 20);
+		List<String> extents = new ArrayList<>();
+		bitmap.forEachExtent((start, length, free) -> 
+			extents.add(String.format("%d+%d%s", start, length, free ? "F" : "U")));
+		assertEquals("[0+4U, 4+12F, 16+4U]", extents.toString());
+	}
+
+	@Test
+	public void testDosFormatDisk() throws IOException, DiskException {
+		Disk disk = new Disk(config.getDiskDir() + "/MASTER.DSK");
+		DosFormatDisk dosDisk = (DosFormatDisk) disk.getFormattedDisks()[0];
+		UsageBitmap bitmap = dosDisk.getUsageBitmap();
+		byte[] vtoc = dosDisk.readSector(DosFormatDisk.CATALOG_TRACK, DosFormatDisk.VTOC_SECTOR);
+		assertEquals(dosDisk.getTotalSectors(), bitmap.getLength());
+		assertEquals(dosDisk.getFreeSectors(), bitmap.getFreeCount());
+		DiskUsage usage = dosDisk.getDiskUsage();
+		for (int track=0; track<dosDisk.getTracks(); track++) {
+			for (int sector=0; sector<dosDisk.getSectors(); sector++) {
+				boolean free = dosDisk.isSectorFree(track, sector, vtoc);
+				assertEquals(String.format("T%d S%d", track, sector), free,
+						bitmap.isFree(track * dosDisk.getSectors() + sector));
+				assertTrue(usage.hasNext());
+				usage.next();
+				assertEquals(free, usage.isFree());
+			}
+		}
+		assertFalse(usage.hasNext());
+	}
+
+	@Test
+	public void testProdosFormatDisk() throws IOException, DiskException {
+		Disk disk = new Disk(config.getDiskDir() + "/Prodos.dsk");
+		ProdosFormatDisk prodosDisk = (ProdosFormatDisk) disk.getFormattedDisks()[0];
+		UsageBitmap bitmap = prodosDisk.getUsageBitmap();
+		byte[] data = prodosDisk.readVolumeBitMap();
+		assertEquals(prodosDisk.getBitmapLength(), bitmap.getLength());
+		assertEquals(prodosDisk.getFreeBlocks(), bitmap.getFreeCount());
+		for (int block=0; block<bitmap.getLength(); block++) {
+			assertEquals("Block " + block, prodosDisk.isBlockFree(data, block), bitmap.isFree(block));
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.compare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
+import com.webcodepro.applecommander.util.filestreamer.FileTuple;
+import com.webcodepro.applecommander.util.filestreamer.TypeOfFile;
+
+public class ContentHasherTest {
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testDuplicatesMatchFullHashing() throws IOException, DiskException {
+		List<FileTuple> files = files("UniDOS_3.3.dsk"); //$NON-NLS-1$
+		ContentHasher contentHasher = new ContentHasher();
+		Map<String,List<FileTuple>> expected = contentHasher.parallel(false).groupByContent(files);
+		expected.values().removeIf(list -> list.size() < 2);
+		Map<String,List<FileTuple>> actual = contentHasher.parallel(true).findDuplicates(files);
+		assertTrue(actual.size() > 0);
+		assertEquals(expected.keySet(), actual.keySet());
+	}
+
+	@Test
+	public void testCacheIsReused() throws IOException, DiskException {
+		File file = File.createTempFile("hashes", ".properties"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.delete();
+		try {
+			List<FileTuple> files = files("MASTER.DSK"); //$NON-NLS-1$
+			ContentHashCache cache = ContentHashCache.load(file);
+			Map<String,List<FileTuple>> content = new ContentHasher().cache(cache).groupByContent(files);
+			assertEquals(files.size(), cache.size());
+			cache.save();
+
+			ContentHashCache reloaded = ContentHashCache.load(file);
+			assertEquals(files.size(), reloaded.size());
+			for (FileTuple tuple : files) {
+				assertTrue(content.get(reloaded.get(tuple)).contains(tuple));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testSharedCacheFile() throws IOException, DiskException {
+		File file = File.createTempFile("hashes", ".properties"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.delete();
+		File imageA = copy("MASTER.DSK"); //$NON-NLS-1$
+		File imageB = copy("MASTER.DSK"); //$NON-NLS-1$
+		File imageC = copy("MASTER.DSK"); //$NON-NLS-1$
+		try {
+			List<FileTuple> filesA = files(imageA);
+			List<FileTuple> filesB = files(imageB);
+			// Two runs that load the cache before either one saves it
+			ContentHashCache cacheA = ContentHashCache.load(file);
+			ContentHashCache cacheB = ContentHashCache.load(file);
+			new ContentHasher().cache(cacheA).groupByContent(filesA);
+			new ContentHasher().cache(cacheB).groupByContent(filesB);
+			cacheA.save();
+			cacheB.save();
+			assertEquals(filesA.size() + filesB.size(), ContentHashCache.load(file).size());
+
+			// Hashes for an image that is gone are dropped on the next save
+			imageA.delete();
+			List<FileTuple> filesC = files(imageC);
+			ContentHashCache cacheC = ContentHashCache.load(file);
+			new ContentHasher().cache(cacheC).groupByContent(filesC);
+			cacheC.save();
+			assertEquals(filesB.size() + filesC.size(), ContentHashCache.load(file).size());
+		} finally {
+			file.delete();
+			imageA.delete();
+			imageB.delete();
+			imageC.delete();
+		}
+	}
+
+	protected File copy(String imageName) throws IOException {
+		File copy = File.createTempFile("image", ".dsk"); //$NON-NLS-1$ //$NON-NLS-2$
+		Files.copy(new File(config.getDiskDir(), imageName).toPath(), copy.toPath(), 
+				StandardCopyOption.REPLACE_EXISTING);
+		return copy;
+	}
+
+	protected List<FileTuple> files(String imageName) throws IOException, DiskException {
+		return files(new File(config.getDiskDir(), imageName));
+	}
+
+	protected List<FileTuple> files(File image) throws IOException, DiskException {
+		return FileStreamer.forDisk(image.getPath())
+				.includeTypeOfFile(TypeOfFile.FILE)
+				.recursive(true)
+				.stream()
+				.collect(Collectors.toList());
+	}
+}
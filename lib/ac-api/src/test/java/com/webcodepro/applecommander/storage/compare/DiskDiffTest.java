@@ -0,0 +1,130 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.compare;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskUnrecognizedException;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.NibbleOrder;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+
+public class DiskDiffTest {
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testTrackSectorDifferences() throws IOException {
+		Disk diskA = load("MASTER.DSK"); //$NON-NLS-1$
+		Disk diskB = load("MASTER.DSK"); //$NON-NLS-1$
+		diskB.writeSector(0x11, 0x0f, filled(Disk.SECTOR_SIZE));
+		diskB.writeSector(0x11, 0x0e, filled(Disk.SECTOR_SIZE));
+		diskB.writeSector(0x22, 0x00, filled(Disk.SECTOR_SIZE));
+		List<String> expected = Arrays.asList(
+				"Track 17 does not match on sectors 14-15", //$NON-NLS-1$
+				"Track 34 does not match on sectors 0"); //$NON-NLS-1$
+		for (boolean parallel : new boolean[] { false, true }) {
+			ComparisonResult result = DiskDiff.create(diskA, diskB)
+					.selectCompareByTrackSectorGeometry()
+					.parallel(parallel)
+					.compare();
+			assertEquals(expected, result.getErrors());
+		}
+	}
+
+	@Test
+	public void testBlockDifferences() throws IOException {
+		Disk diskA = load("Prodos.dsk"); //$NON-NLS-1$
+		Disk diskB = load("Prodos.dsk"); //$NON-NLS-1$
+		diskB.writeBlock(100, filled(Disk.BLOCK_SIZE));
+		diskB.writeBlock(279, filled(Disk.BLOCK_SIZE));
+		List<String> expected = Arrays.asList(
+				"Block #100 does not match.", //$NON-NLS-1$
+				"Block #279 does not match."); //$NON-NLS-1$
+		for (boolean parallel : new boolean[] { false, true }) {
+			ComparisonResult result = DiskDiff.create(diskA, diskB)
+					.selectCompareByBlockGeometry()
+					.parallel(parallel)
+					.compare();
+			assertEquals(expected, result.getErrors());
+		}
+	}
+
+	@Test
+	public void testIdenticalDisks() throws IOException {
+		for (String name : new String[] { "MASTER.DSK", "DOS 3.3.po", "Prodos.dsk" }) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			ComparisonResult result = DiskDiff.create(load(name), load(name))
+					.parallel(true)
+					.compare();
+			assertEquals(0, result.getDifferenceCount());
+		}
+	}
+
+	@Test
+	public void testUnreadableNibbleSector() throws IOException, DiskUnrecognizedException {
+		FormattedDisk diskA = loadAsNibble("MASTER.DSK"); //$NON-NLS-1$
+		FormattedDisk diskB = loadAsNibble("MASTER.DSK"); //$NON-NLS-1$
+		// Change one nibble in the first data field of track $11 so its checksum fails
+		NibbleOrder order = (NibbleOrder) diskB.getImageOrder();
+		int trackSize = Disk.APPLE_140KB_NIBBLE_DISK / order.getTracksPerDisk();
+		byte[] track = order.readBytes(0x11 * trackSize, trackSize);
+		int offset = 0;
+		while ((track[offset] & 0xff) != 0xd5 || (track[offset+1] & 0xff) != 0xaa 
+				|| (track[offset+2] & 0xff) != 0xad) {
+			offset++;
+		}
+		track[offset + 10] ^= 0x01;
+		order.writeBytes(0x11 * trackSize, track);
+		for (boolean parallel : new boolean[] { false, true }) {
+			ComparisonResult result = DiskDiff.create(diskA, diskB)
+					.selectCompareByTrackSectorGeometry()
+					.parallel(parallel)
+					.compare();
+			assertEquals(1, result.getErrors().size());
+			assertTrue(result.getErrors().get(0).matches("Track 17 does not match on sectors [0-9]+")); //$NON-NLS-1$
+		}
+	}
+
+	protected FormattedDisk loadAsNibble(String imageName) throws IOException, DiskUnrecognizedException {
+		FormattedDisk disk = load(imageName).getFormattedDisks()[0];
+		NibbleOrder order = new NibbleOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_NIBBLE_DISK));
+		order.format();
+		disk.changeImageOrder(order);
+		return disk;
+	}
+
+	protected byte[] filled(int size) {
+		byte[] data = new byte[size];
+		Arrays.fill(data, (byte) 0xa5);
+		return data;
+	}
+
+	protected Disk load(String imageName) throws IOException {
+		return new Disk(config.getDiskDir() + "/" + imageName); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.filters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.storage.filters.imagehandlers.AppleImage;
+import com.webcodepro.applecommander.storage.os.dos33.DosFormatDisk;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.DosOrder;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+import com.webcodepro.applecommander.util.filestreamer.FileTuple;
+
+public class GraphicsExporterTest {
+	private static final String IMAGE_NAME = "Marble Madness (1985)(Electronic Arts).2mg"; //$NON-NLS-1$
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testExportMatchesFilter() throws IOException, DiskException {
+		FormattedDisk[] disks = new Disk(config.getDiskDir() + "/" + IMAGE_NAME).getFormattedDisks(); //$NON-NLS-1$
+		List<FileTuple> tuples = new GraphicsExporter().findGraphicsFiles(disks);
+		assertEquals(6, tuples.size());
+		File serialDir = Files.createTempDirectory("graphics-serial").toFile(); //$NON-NLS-1$
+		File parallelDir = Files.createTempDirectory("graphics-parallel").toFile(); //$NON-NLS-1$
+		try {
+			List<File> serial = new GraphicsExporter().parallel(false).export(serialDir, disks);
+			List<File> parallel = new GraphicsExporter().parallel(true).export(parallelDir, disks);
+			assertEquals(tuples.size(), serial.size());
+			assertEquals(tuples.size(), parallel.size());
+			for (int i=0; i<tuples.size(); i++) {
+				FileTuple tuple = tuples.get(i);
+				GraphicsFileFilter filter = GraphicsExporter.getGraphicsFilter(tuple.fileEntry);
+				filter.setExtension("PNG"); //$NON-NLS-1$
+				byte[] expected = filter.filter(tuple.fileEntry);
+				assertEquals(new File(new File(serialDir, IMAGE_NAME), tuple.fileEntry.getFilename() + ".png"), //$NON-NLS-1$
+						serial.get(i));
+				assertArrayEquals(expected, Files.readAllBytes(serial.get(i).toPath()));
+				assertArrayEquals(expected, Files.readAllBytes(parallel.get(i).toPath()));
+			}
+		} finally {
+			delete(serialDir);
+			delete(parallelDir);
+		}
+	}
+
+	@Test
+	public void testHiresBlackAndWhite() throws IOException, DiskException {
+		FormattedDisk[] disks = new Disk(config.getDiskDir() + "/" + IMAGE_NAME).getFormattedDisks(); //$NON-NLS-1$
+		FileTuple tuple = new GraphicsExporter().findGraphicsFiles(disks).get(0);
+		GraphicsFileFilter filter = new GraphicsFileFilter();
+		filter.setMode(GraphicsFileFilter.MODE_HGR_BLACK_AND_WHITE);
+		AppleImage image = filter.render(tuple.fileEntry);
+		assertNotNull(image);
+		assertEquals(280, image.getWidth());
+		assertEquals(192, image.getHeight());
+	}
+
+	@Test
+	public void testExportKeepsUnsafeNamesInDirectory() throws IOException, DiskException {
+		FormattedDisk[] disks = DosFormatDisk.create("names.dsk", //$NON-NLS-1$
+				new DosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)));
+		for (String name : Arrays.asList("../../ESCAPE", "..", "PIC", "PIC ", "pic")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			FileEntry entry = disks[0].createFile();
+			entry.setFilename(name);
+			entry.setFiletype("B"); //$NON-NLS-1$
+			entry.setFileData(new byte[8192]);
+		}
+		File directory = Files.createTempDirectory("graphics-names").toFile(); //$NON-NLS-1$
+		try {
+			List<File> files = new GraphicsExporter().export(directory, disks);
+			File folder = new File(directory, "names.dsk"); //$NON-NLS-1$
+			assertEquals(Arrays.asList(
+					new File(folder, ".._.._ESCAPE.png"), //$NON-NLS-1$
+					new File(folder, "__.png"), //$NON-NLS-1$
+					new File(folder, "PIC.png"), //$NON-NLS-1$
+					new File(folder, "PIC-2.png"), //$NON-NLS-1$
+					new File(folder, "PIC-3.png")), //$NON-NLS-1$
+					files);
+			for (File file : files) {
+				assertTrue(file.isFile());
+			}
+			try (Stream<Path> paths = Files.list(folder.toPath())) {
+				assertEquals(files.size(), paths.count());
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	protected void delete(File directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory.toPath())) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.filters;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GraphicsFileFilterTest {
+	private GraphicsFileFilter filter = new GraphicsFileFilter();
+
+	@Test
+	public void testHiresLookupTablesMatchEveryBytePair() {
+		byte[] fileData = new byte[40];
+		int[] expected = new int[280];
+		int[] actual = new int[280];
+		for (int pair=0; pair<0x10000; pair++) {
+			// Place the pair at both an even and odd position in the line
+			fileData[0] = (byte) (pair >> 8);
+			fileData[1] = (byte) pair;
+			fileData[3] = (byte) (pair >> 8);
+			fileData[4] = (byte) pair;
+			filter.processHiresColorLine(fileData, 0, expected, 0);
+			filter.decodeHiresColorLine(fileData, 0, actual, 0);
+			assertArrayEquals(Integer.toHexString(pair), expected, actual);
+		}
+	}
+
+	@Test
+	public void testDoubleHiresLookupTablesMatch() {
+		Random random = new Random(1);
+		byte[] fileData = new byte[0x4000];
+		int[] expected = new int[560];
+		int[] actual = new int[560];
+		for (int i=0; i<100; i++) {
+			random.nextBytes(fileData);
+			for (int base=0; base<0x2000-40; base+=0x80) {
+				filter.processDoubleHiresColorLine(fileData, base, expected, 0);
+				filter.decodeDoubleHiresColorLine(fileData, base, actual, 0);
+				assertArrayEquals(expected, actual);
+			}
+		}
+	}
+}
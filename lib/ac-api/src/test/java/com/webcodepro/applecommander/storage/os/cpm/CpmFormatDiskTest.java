@@ -0,0 +1,109 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.os.cpm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.DosOrder;
+import com.webcodepro.applecommander.util.AppleUtil;
+
+public class CpmFormatDiskTest {
+    private CpmFormatDisk disk;
+
+    @Before
+    public void setUp() {
+        ByteArrayImageLayout layout = new ByteArrayImageLayout(Disk.APPLE_140KB_DISK);
+        disk = CpmFormatDisk.create("deleteme.dsk", new DosOrder(layout))[0];
+    }
+
+    @Test
+    public void testReadCpmBlockAppliesSkew() {
+        for (int block=0; block<4; block++) {
+            byte[] data = new byte[CpmFormatDisk.CPM_BLOCKSIZE];
+            Arrays.fill(data, (byte)block);
+            for (int i=0; i<data.length; i+=Disk.SECTOR_SIZE) {
+                data[i] = (byte)(i / Disk.SECTOR_SIZE);
+            }
+            disk.writeCpmBlock(block+2, data);
+            assertArrayEquals(data, disk.readCpmBlock(block+2));
+        }
+        // block 2 is the 3rd block of track 3, which is sectors 8-11 before skewing
+        for (int i=0; i<CpmFormatDisk.PHYSICAL_SECTORS_PER_BLOCK; i++) {
+            byte[] sector = disk.readSector(3, CpmFormatDisk.sectorSkew[8+i]);
+            assertEquals(i, sector[0]);
+            assertEquals(0, sector[1]);
+        }
+    }
+
+    @Test
+    public void testDirectory() throws Exception {
+        assertTrue(disk.getFiles().isEmpty());
+
+        byte[] data = new byte[CpmFormatDisk.CPM_BLOCKSIZE];
+        Arrays.fill(data, (byte)0x42);
+        disk.writeCpmBlock(2, data);
+        writeEntry(0, "HELLO", "TXT", 2);
+
+        List<FileEntry> files = disk.getFiles();
+        assertEquals(1, files.size());
+        CpmFileEntry entry = (CpmFileEntry) files.get(0);
+        assertEquals("HELLO", entry.getFilename());
+        assertEquals("TXT", entry.getFiletype());
+        assertEquals(CpmFormatDisk.CPM_BLOCKSIZE, entry.getSize());
+        assertArrayEquals(new int[] { 2 }, entry.getAllocations());
+        assertArrayEquals(data, entry.getFileData());
+
+        // Changes made through the entry and directly to the disk are both seen
+        entry.setFilename("GOODBYE");
+        assertEquals("GOODBYE", ((CpmFileEntry) disk.getFiles().get(0)).getFilename());
+        writeEntry(0, "OTHER", "TXT", 2);
+        assertEquals("OTHER", entry.getFilename());
+    }
+
+    private void writeEntry(int number, String filename, String filetype, int block) {
+        byte[] directory = disk.readCpmFileEntries();
+        int offset = number * CpmFileEntry.ENTRY_LENGTH;
+        Arrays.fill(directory, offset, offset + CpmFileEntry.ENTRY_LENGTH, (byte)0);
+        AppleUtil.setString(directory, offset + CpmFileEntry.FILENAME_OFFSET, filename, 
+                CpmFileEntry.FILENAME_LENGTH, false);
+        AppleUtil.setString(directory, offset + CpmFileEntry.FILETYPE_OFFSET, filetype, 
+                CpmFileEntry.FILETYPE_LENGTH, false);
+        directory[offset + CpmFileEntry.RECORD_COUNT_OFFSET] = 
+                (byte) CpmFormatDisk.CPM_SECTORS_PER_CPM_BLOCK;
+        directory[offset + CpmFileEntry.ALLOCATION_OFFSET] = (byte) block;
+        // Write through the sectors so the shared directory must notice the change
+        byte[] block0 = Arrays.copyOf(directory, CpmFormatDisk.CPM_BLOCKSIZE);
+        for (int i=0; i<CpmFormatDisk.PHYSICAL_SECTORS_PER_BLOCK; i++) {
+            disk.writeSector(3, CpmFormatDisk.sectorSkew[i], 
+                    Arrays.copyOfRange(block0, i*Disk.SECTOR_SIZE, (i+1)*Disk.SECTOR_SIZE));
+        }
+    }
+}
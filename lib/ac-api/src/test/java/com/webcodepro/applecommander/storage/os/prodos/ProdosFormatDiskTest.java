@@ -23,8 +23,11 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import com.webcodepro.applecommander.storage.DirectoryEntry;
 import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
 import com.webcodepro.applecommander.storage.DiskFullException;
+import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
 import com.webcodepro.applecommander.storage.physical.ImageOrder;
 import com.webcodepro.applecommander.storage.physical.ProdosOrder;
@@ -43,4 +46,109 @@ public class ProdosFormatDiskTest {
         assertEquals("THE.FILE.NAME", disk.getSuggestedFilename("The File Name"));
         assertEquals("A..HIDDEN.TAB", disk.getSuggestedFilename("\t hidden tab"));
     }
+
+    @Test
+    public void testCachedFileEntry() throws DiskFullException {
+        ByteArrayImageLayout layout = new ByteArrayImageLayout(Disk.APPLE_140KB_DISK);
+        ImageOrder order = new ProdosOrder(layout);
+        ProdosFormatDisk disk = ProdosFormatDisk.create("deleteme.po", "nothere", order)[0];
+        ProdosFileEntry entry = disk.createFile();
+        entry.setFilename("FIRST");
+        assertEquals("FIRST", entry.getFilename());
+
+        // A second view of the same entry must see writes made through the first
+        ProdosFileEntry other = new ProdosFileEntry(disk, entry.getFileEntryBlock(), 4 + ProdosCommonEntry.ENTRY_LENGTH);
+        assertEquals("FIRST", other.getFilename());
+        entry.setFilename("SECOND");
+        assertEquals("SECOND", other.getFilename());
+        other.setLocked(true);
+        assertTrue(entry.isLocked());
+    }
+
+    @Test
+    public void testAllocationIndexFreeCount() throws DiskFullException {
+        ProdosFormatDisk disk = createDisk(Disk.APPLE_800KB_DISK);
+        int freeBlocks = disk.getFreeBlocks();
+        createFile(disk, "FIRST", 100);
+        createFile(disk, "SECOND", 300);
+        assertEquals(freeBlocks - 101 - 303, disk.getFreeBlocks());
+
+        // The index must agree with the bitmap as written to disk
+        ProdosAllocationIndex index = new ProdosAllocationIndex(
+                disk.getVolumeHeader().getBitMapPointer(), disk.getVolumeHeader().getTotalBlocks(), 
+                disk.loadVolumeBitMap());
+        assertEquals(index.getFreeBlocks(), disk.getFreeBlocks());
+    }
+
+    @Test
+    public void testAllocationIndexFollowsDiskWrites() throws DiskFullException {
+        ProdosFormatDisk disk = createDisk(Disk.APPLE_140KB_DISK);
+        assertTrue(disk.getFreeBlocks() > 0);
+        // Mark every block used by writing the bitmap directly
+        disk.writeBlock(disk.getVolumeHeader().getBitMapPointer(), new byte[Disk.BLOCK_SIZE]);
+        assertEquals(0, disk.getFreeBlocks());
+    }
+
+    @Test
+    public void testContiguousAllocation() throws DiskFullException {
+        ProdosFormatDisk disk = createDisk(Disk.APPLE_800KB_DISK);
+        createFile(disk, "FIRST", 10);
+        ProdosFileEntry hole = createFile(disk, "HOLE", 1);
+        createFile(disk, "THIRD", 10);
+        hole.delete();
+
+        ProdosFileEntry fileEntry = createFile(disk, "CONTIGUOUS", 40);
+        byte[] indexBlock = disk.readBlock(fileEntry.getKeyPointer());
+        int first = fileEntry.getKeyPointer();
+        int last = fileEntry.getKeyPointer();
+        for (int i=0; i<40; i++) {
+            int block = (indexBlock[i] & 0xff) + (indexBlock[i + 0x100] & 0xff) * 256;
+            first = Math.min(first, block);
+            last = Math.max(last, block);
+        }
+        assertEquals(fileEntry.getBlocksUsed(), last - first + 1);
+    }
+
+    @Test
+    public void testFileIndexLookups() throws DiskException {
+        ProdosFormatDisk disk = createDisk(Disk.APPLE_800KB_DISK);
+        createFile(disk, "ROOT.FILE", 1);
+        DirectoryEntry dir = disk.createDirectory("DIR");
+        DirectoryEntry subdir = dir.createDirectory("SUBDIR");
+        FileEntry nested = subdir.createFile();
+        nested.setFilename("NESTED");
+        // Build the index, then change the disk underneath it
+        assertNotNull(disk.getFileByPath("ROOT.FILE"));
+        FileEntry late = dir.createFile();
+        late.setFilename("LATE");
+
+        assertEquals("NESTED", disk.getFileByPath("DIR/SUBDIR/NESTED").getFilename());
+        assertEquals("NESTED", disk.getFileByPath("/dir/subdir/nested").getFilename());
+        assertEquals("NESTED", disk.getFile("nested").getFilename());
+        assertSame(late, disk.getFile(dir, "Late"));
+        assertTrue(disk.getFile(dir, "SUBDIR").isDirectory());
+        assertNull(disk.getFile(disk, "LATE"));
+
+        late.setFilename("RENAMED");
+        assertNull(disk.getFileByPath("DIR/LATE"));
+        assertSame(late, disk.getFileByPath("DIR/RENAMED"));
+
+        disk.getFileByPath("DIR/SUBDIR/NESTED").delete();
+        assertNull(disk.getFileByPath("DIR/SUBDIR/NESTED"));
+        assertNull(disk.getFile("NESTED"));
+    }
+
+    protected ProdosFormatDisk createDisk(int size) {
+        ByteArrayImageLayout layout = new ByteArrayImageLayout(size);
+        ImageOrder order = new ProdosOrder(layout);
+        return ProdosFormatDisk.create("deleteme.po", "nothere", order)[0];
+    }
+
+    protected ProdosFileEntry createFile(ProdosFormatDisk disk, String filename, int blocks) throws DiskFullException {
+        ProdosFileEntry fileEntry = disk.createFile();
+        fileEntry.setFilename(filename);
+        fileEntry.setFiletype("BIN");
+        fileEntry.setFileData(new byte[blocks * Disk.BLOCK_SIZE]);
+        return fileEntry;
+    }
 }
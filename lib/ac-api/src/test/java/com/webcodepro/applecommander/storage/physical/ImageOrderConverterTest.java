@@ -0,0 +1,102 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.physical;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+
+/**
+ * Verify the single pass conversions answer the same image as copying
+ * sector by sector or block by block.
+ */
+public class ImageOrderConverterTest {
+	@Test
+	public void testDosToProdosByTrackAndSector() {
+		ImageOrder source = createRandomOrder(new DosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)));
+		ImageOrder target = new ProdosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK));
+		ImageOrderConverter.convertByTrackAndSector(source, target);
+		verifySectors(source, target);
+	}
+
+	@Test
+	public void testProdosToDosByBlock() {
+		ImageOrder source = createRandomOrder(new ProdosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)));
+		ImageOrder target = new DosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK));
+		ImageOrderConverter.convertByBlock(source, target);
+		verifyBlocks(source, target);
+	}
+
+	@Test
+	public void testUniversalDiskImageLayout() {
+		ImageOrder source = createRandomOrder(new DosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)));
+		ImageOrder target = new ProdosOrder(new UniversalDiskImageLayout(Disk.APPLE_140KB_DISK));
+		ImageOrderConverter.convertByBlock(source, target);
+		verifyBlocks(source, target);
+		verifySectors(source, target);
+	}
+
+	@Test
+	public void testSameOrder() {
+		ImageOrder source = createRandomOrder(new ProdosOrder(new ByteArrayImageLayout(Disk.APPLE_800KB_DISK)));
+		ImageOrder target = new ProdosOrder(new ByteArrayImageLayout(Disk.APPLE_800KB_DISK));
+		ImageOrderConverter.convertByBlock(source, target);
+		assertArrayEquals(source.getDiskImageManager().getDiskImage(),
+				target.getDiskImageManager().getDiskImage());
+	}
+
+	@Test
+	public void testNibbleOrder() {
+		ImageOrder source = createRandomOrder(new DosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)));
+		NibbleOrder nibble = new NibbleOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_NIBBLE_DISK));
+		nibble.format();
+		ImageOrderConverter.convertByTrackAndSector(source, nibble);
+		verifySectors(source, nibble);
+		ImageOrder target = new ProdosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK));
+		ImageOrderConverter.convertByBlock(nibble, target);
+		verifyBlocks(source, target);
+	}
+
+	protected ImageOrder createRandomOrder(ImageOrder order) {
+		byte[] data = new byte[order.getPhysicalSize()];
+		new Random(6502).nextBytes(data);
+		order.writeBytes(0, data);
+		return order;
+	}
+
+	protected void verifySectors(ImageOrder expected, ImageOrder actual) {
+		for (int track = 0; track < expected.getTracksPerDisk(); track++) {
+			for (int sector = 0; sector < expected.getSectorsPerTrack(); sector++) {
+				assertArrayEquals(String.format("T%d S%d", track, sector), 
+						expected.readSector(track, sector), actual.readSector(track, sector));
+			}
+		}
+	}
+
+	protected void verifyBlocks(ImageOrder expected, ImageOrder actual) {
+		for (int block = 0; block < expected.getBlocksOnDevice(); block++) {
+			assertArrayEquals("Block " + block, expected.readBlock(block), actual.readBlock(block));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.physical;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+
+/**
+ * Verify the buffer-based reads answer the same data as the allocating reads.
+ */
+public class ImageOrderTest {
+	@Test
+	public void testDosOrder() {
+		verify(new DosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)));
+	}
+
+	@Test
+	public void testProdosOrder() {
+		verify(new ProdosOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_DISK)));
+	}
+
+	@Test
+	public void testUniversalDiskImageLayout() {
+		verify(new ProdosOrder(new UniversalDiskImageLayout(Disk.APPLE_140KB_DISK)));
+	}
+
+	@Test
+	public void testNibbleOrder() {
+		NibbleOrder order = new NibbleOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_NIBBLE_DISK));
+		order.format();
+		verify(order);
+	}
+
+	@Test
+	public void testNibbleTrackCache() {
+		NibbleOrder order = new NibbleOrder(new ByteArrayImageLayout(Disk.APPLE_140KB_NIBBLE_DISK));
+		order.format();
+		verify(order);
+		byte[] cached = order.readSector(3, 5);
+		order.setTrackCacheEnabled(false);
+		assertArrayEquals(cached, order.readSector(3, 5));
+		order.setTrackCacheEnabled(true);
+		// Writing a sector only invalidates what changed
+		byte[] data = new byte[Disk.SECTOR_SIZE];
+		Arrays.fill(data, (byte) 0xa5);
+		order.writeSector(3, 5, data);
+		assertArrayEquals(data, order.readSector(3, 5));
+		// Writes that bypass the NibbleOrder are also noticed
+		int trackSize = Disk.APPLE_140KB_NIBBLE_DISK / order.getTracksPerDisk();
+		order.getDiskImageManager().writeBytes(3 * trackSize, new byte[trackSize]);
+		try {
+			order.readSector(3, 5);
+			fail("Expected the erased track to be unreadable");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	protected void verify(ImageOrder order) {
+		Random random = new Random(order.getName().hashCode());
+		byte[] sector = new byte[Disk.SECTOR_SIZE];
+		for (int track=0; track<order.getTracksPerDisk(); track++) {
+			for (int s=0; s<order.getSectorsPerTrack(); s++) {
+				random.nextBytes(sector);
+				order.writeSector(track, s, sector);
+			}
+		}
+		byte[] buffer = new byte[Disk.BLOCK_SIZE + 3];
+		for (int track=0; track<order.getTracksPerDisk(); track++) {
+			for (int s=0; s<order.getSectorsPerTrack(); s++) {
+				order.readSector(track, s, buffer, 3);
+				assertArrayEquals(order.readSector(track, s), Arrays.copyOfRange(buffer, 3, 3 + Disk.SECTOR_SIZE));
+			}
+		}
+		for (int block=0; block<order.getBlocksOnDevice(); block++) {
+			order.readBlock(block, buffer, 3);
+			assertArrayEquals(order.readBlock(block), Arrays.copyOfRange(buffer, 3, 3 + Disk.BLOCK_SIZE));
+		}
+	}
+}
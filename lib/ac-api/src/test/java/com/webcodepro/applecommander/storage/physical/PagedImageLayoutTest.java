@@ -0,0 +1,173 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.storage.physical;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+
+public class PagedImageLayoutTest {
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testOnlyTouchedPagesAreLoaded() throws IOException, DiskException {
+		Disk disk = new Disk(config.getDiskDir() + "/Marble Madness (1985)(Electronic Arts).2mg");
+		PagedImageLayout layout = (PagedImageLayout) disk.getDiskImageManager();
+		disk.getFormattedDisks()[0].getFiles();
+		assertTrue(layout.getLoadedPageCount() > 0);
+		assertTrue(layout.getLoadedPageCount() < layout.getPhysicalSize() / PagedImageLayout.PAGE_SIZE);
+	}
+
+	@Test
+	public void testMatchesByteArrayLayout() throws IOException {
+		File file = new File(config.getDiskDir() + "/Marble Madness (1985)(Electronic Arts).2mg");
+		byte[] data = Files.readAllBytes(file.toPath());
+		PagedImageLayout paged = new PagedImageLayout(PagedImageLayout.open(file), 0, data.length,
+				UniversalDiskImageLayout.OFFSET);
+		UniversalDiskImageLayout array = new UniversalDiskImageLayout(data, false);
+		assertEquals(array.getPhysicalSize(), paged.getPhysicalSize());
+		// Spans a page boundary
+		assertArrayEquals(array.readBytes(4000, 600), paged.readBytes(4000, 600));
+		assertFalse(paged.hasChanged());
+		assertArrayEquals(data, paged.getDiskImage());
+	}
+
+	@Test
+	public void testWriteBeforeMaterialize() throws IOException {
+		byte[] data = new byte[Disk.APPLE_140KB_DISK];
+		Arrays.fill(data, (byte) 0x5a);
+		PagedImageLayout paged = new PagedImageLayout(
+				PagedImageLayout.inflate(new ByteArrayInputStream(data)));
+		byte[] block = new byte[Disk.BLOCK_SIZE];
+		paged.writeBytes(PagedImageLayout.PAGE_SIZE - 100, block);
+		assertTrue(paged.hasChanged());
+		assertEquals(2, paged.getLoadedPageCount());
+		byte[] image = paged.getDiskImage();
+		assertEquals(0x5a, image[PagedImageLayout.PAGE_SIZE - 101]);
+		assertEquals(0, image[PagedImageLayout.PAGE_SIZE - 100]);
+		assertEquals(0, image[PagedImageLayout.PAGE_SIZE + 411]);
+		assertEquals(0x5a, image[PagedImageLayout.PAGE_SIZE + 412]);
+		assertTrue(paged.hasChanged());
+	}
+
+	@Test
+	public void testWriteDuringLoadIsKept() throws Exception {
+		byte[] data = new byte[Disk.APPLE_140KB_DISK];
+		Arrays.fill(data, (byte) 0x5a);
+		CountDownLatch reading = new CountDownLatch(1);
+		CountDownLatch written = new CountDownLatch(1);
+		PagedImageLayout.PageSource wrapped = PagedImageLayout.wrap(data);
+		// The first read of the source stalls until the write below is done
+		PagedImageLayout.PageSource source = new PagedImageLayout.PageSource() {
+			public long getSize() {
+				return wrapped.getSize();
+			}
+			public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+				if (reading.getCount() > 0) {
+					reading.countDown();
+					try {
+						written.await();
+					} catch (InterruptedException ex) {
+						throw new IOException(ex);
+					}
+				}
+				wrapped.read(position, buffer, offset, length);
+			}
+		};
+		PagedImageLayout paged = new PagedImageLayout(source);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<byte[]> reader = executor.submit(() -> paged.readBytes(0, 16));
+			assertTrue(reading.await(10, TimeUnit.SECONDS));
+			paged.writeBytes(0, new byte[16]);
+			written.countDown();
+			// The reader sees the page as it was either before or after the write
+			byte[] read = reader.get(10, TimeUnit.SECONDS);
+			assertTrue(read[0] == 0 || read[0] == 0x5a);
+		} finally {
+			executor.shutdown();
+		}
+		assertArrayEquals(new byte[16], paged.readBytes(0, 16));
+		assertEquals(0x5a, paged.readBytes(16, 1)[0]);
+		assertEquals(1, paged.getLoadedPageCount());
+	}
+
+	@Test
+	public void testChangedFileIsNotMixedIn() throws IOException {
+		File file = File.createTempFile("deleteme-", ".po"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.deleteOnExit();
+		Files.copy(new File(config.getDiskDir(), "Prodos.dsk").toPath(), file.toPath(), //$NON-NLS-1$
+				StandardCopyOption.REPLACE_EXISTING);
+		byte[] data = Files.readAllBytes(file.toPath());
+		Disk disk = new Disk(file.getPath());
+		PagedImageLayout layout = (PagedImageLayout) disk.getDiskImageManager();
+		// Our own save in place leaves the unread pages as they were
+		disk.writeBlock(2, new byte[Disk.BLOCK_SIZE]);
+		disk.save();
+		assertArrayEquals(Arrays.copyOfRange(data, 100000, 100010), layout.readBytes(100000, 10));
+		// Another change to the file is refused instead of mixed into the image
+		Files.write(file.toPath(), new byte[data.length / 2]);
+		try {
+			layout.readBytes(120000, 10);
+			fail("A truncated image must not be read"); //$NON-NLS-1$
+		} catch (UncheckedIOException ex) {
+			// expected
+		}
+		disk.close();
+	}
+
+	@Test
+	public void testClose() throws IOException {
+		File file = new File(config.getDiskDir(), "Prodos.dsk"); //$NON-NLS-1$
+		byte[] data = Files.readAllBytes(file.toPath());
+		PagedImageLayout layout = new PagedImageLayout(PagedImageLayout.open(file));
+		assertArrayEquals(Arrays.copyOfRange(data, 0, 10), layout.readBytes(0, 10));
+		layout.close();
+		// Pages already read remain available
+		assertArrayEquals(Arrays.copyOfRange(data, 0, 10), layout.readBytes(0, 10));
+		try {
+			layout.readBytes(100000, 10);
+			fail("A closed image must not be read"); //$NON-NLS-1$
+		} catch (UncheckedIOException ex) {
+			// expected
+		}
+	}
+}
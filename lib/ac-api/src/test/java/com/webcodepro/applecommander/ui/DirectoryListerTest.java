@@ -0,0 +1,121 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FormattedDisk;
+import com.webcodepro.applecommander.ui.DirectoryLister.CsvListingStrategy;
+import com.webcodepro.applecommander.ui.DirectoryLister.CsvRecordListingStrategy;
+import com.webcodepro.applecommander.ui.DirectoryLister.JsonListingStrategy;
+import com.webcodepro.applecommander.ui.DirectoryLister.ListingStrategy;
+import com.webcodepro.applecommander.testconfig.TestConfig;
+import com.webcodepro.applecommander.util.filestreamer.FileStreamer;
+
+public class DirectoryListerTest {
+	private TestConfig config = TestConfig.getInstance();
+
+	@Test
+	public void testJsonRawValues() throws IOException, DiskException {
+		StringWriter writer = new StringWriter();
+		list("Prodos.dsk", new JsonListingStrategy(FormattedDisk.FILE_DISPLAY_NATIVE, writer, true)); //$NON-NLS-1$
+		JsonObject root = JsonParser.parseString(writer.toString()).getAsJsonObject();
+		JsonArray files = root.getAsJsonArray("disks").get(0).getAsJsonObject().getAsJsonArray("files"); //$NON-NLS-1$ //$NON-NLS-2$
+		JsonObject file = files.get(0).getAsJsonObject();
+		assertEquals("BASIC.SYSTEM", file.get("name").getAsString()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(false, file.get("locked").getAsBoolean()); //$NON-NLS-1$
+		assertEquals(21, file.get("blocks").getAsInt()); //$NON-NLS-1$
+		assertEquals(10240, file.get("size").getAsInt()); //$NON-NLS-1$
+		assertEquals(0x2000, file.get("auxType").getAsInt()); //$NON-NLS-1$
+		assertEquals("1991-12-06T16:48:00", file.get("modified").getAsString()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Test
+	public void testJsonFormattedValues() throws IOException, DiskException {
+		StringWriter writer = new StringWriter();
+		list("Prodos.dsk", new JsonListingStrategy(FormattedDisk.FILE_DISPLAY_NATIVE, writer, false)); //$NON-NLS-1$
+		JsonObject root = JsonParser.parseString(writer.toString()).getAsJsonObject();
+		JsonObject file = root.getAsJsonArray("disks").get(0).getAsJsonObject() //$NON-NLS-1$
+				.getAsJsonArray("files").get(0).getAsJsonObject(); //$NON-NLS-1$
+		assertEquals("021", file.get("blocks").getAsString()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("A=$2000", file.get("auxType").getAsString()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Test
+	public void testCsvRawValues() throws IOException, DiskException {
+		StringWriter writer = new StringWriter();
+		list("D3110.dsk", new CsvListingStrategy(FormattedDisk.FILE_DISPLAY_DETAIL, writer, true)); //$NON-NLS-1$
+		String[] lines = writer.toString().split("\r\n"); //$NON-NLS-1$
+		assertTrue(lines[2], lines[2].matches("false,A,HIGH SCHOOL CONFIDENTIAL,\\d+,60,false,T\\d+ S\\d+,\\d+")); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testCsvRecordsShareColumns() throws IOException, DiskException {
+		List<String> records = new ArrayList<>();
+		list("D3110.dsk", new CsvRecordListingStrategy(FormattedDisk.FILE_DISPLAY_NATIVE, records::add)); //$NON-NLS-1$
+		list("Prodos.dsk", new CsvRecordListingStrategy(FormattedDisk.FILE_DISPLAY_NATIVE, records::add)); //$NON-NLS-1$
+		List<String> header = parse(CsvRecordListingStrategy.getHeader(FormattedDisk.FILE_DISPLAY_NATIVE));
+		assertEquals("filename", header.get(0)); //$NON-NLS-1$
+		int auxType = header.indexOf("auxType"); //$NON-NLS-1$
+		int sectors = header.indexOf("sectors"); //$NON-NLS-1$
+		List<String> dos = parse(records.get(0));
+		List<String> prodos = parse(records.get(records.size() - 1));
+		assertEquals(header.size(), dos.size());
+		assertEquals(header.size(), prodos.size());
+		assertEquals("", dos.get(auxType)); //$NON-NLS-1$
+		assertTrue(dos.get(sectors).matches("\\d+")); //$NON-NLS-1$
+		assertTrue(prodos.get(auxType).startsWith("A=$")); //$NON-NLS-1$
+		assertEquals("", prodos.get(sectors)); //$NON-NLS-1$
+	}
+
+	protected List<String> parse(String record) throws IOException {
+		CSVRecord csv = CSVParser.parse(record, CSVFormat.DEFAULT).getRecords().get(0);
+		List<String> values = new ArrayList<>();
+		csv.forEach(values::add);
+		return values;
+	}
+
+	protected void list(String imageName, ListingStrategy strategy) throws IOException, DiskException {
+		Disk disk = new Disk(config.getDiskDir() + "/" + imageName); //$NON-NLS-1$
+		strategy.first(disk);
+		FileStreamer.forDisk(disk)
+			.beforeDisk(strategy::beforeDisk)
+			.afterDisk(strategy::afterDisk)
+			.stream()
+			.forEach(strategy::forEach);
+		strategy.last(disk);
+	}
+}
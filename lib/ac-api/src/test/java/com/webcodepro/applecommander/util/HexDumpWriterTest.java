@@ -0,0 +1,88 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Test HexDumpWriter.
+ */
+public class HexDumpWriterTest {
+	private static final String NL = System.lineSeparator();
+	private static final String HEADER = 
+			"Offset   Hex Data                                          Characters" + NL //$NON-NLS-1$
+			+ "=======  ================================================  =================" + NL; //$NON-NLS-1$
+	private static final String TRAILER = "** END **" + NL; //$NON-NLS-1$
+
+	@Test
+	public void testPartialLine() throws IOException {
+		byte[] data = {
+				(byte)0xc8, (byte)0xc5, (byte)0xcc, (byte)0xcc, (byte)0xcf, (byte)0xac, (byte)0xa0, (byte)0xd7,
+				(byte)0xcf, (byte)0xd2, (byte)0xcc, (byte)0xc4, (byte)0xa1, (byte)0x8d, 0x00
+			};
+		String expected = HEADER
+				+ "$000800  C8 C5 CC CC CF AC A0 D7  CF D2 CC C4 A1 8D 00 ..  HELLO, W ORLD!.. " + NL //$NON-NLS-1$
+				+ TRAILER;
+		assertEquals(expected, dump(0x800, data));
+	}
+
+	@Test
+	public void testAddressAndLineCount() throws IOException {
+		byte[] data = new byte[40];
+		data[16] = (byte)0xc1;
+		String expected = HEADER
+				+ "$01FFF8  00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  ........ ........" + NL //$NON-NLS-1$
+				+ "$020008  C1 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  A....... ........" + NL //$NON-NLS-1$
+				+ "$020018  00 00 00 00 00 00 00 00  .. .. .. .. .. .. .. ..  ........         " + NL //$NON-NLS-1$
+				+ TRAILER;
+		assertEquals(expected, dump(0x1fff8, data));
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		assertEquals(HEADER + TRAILER, dump(0, new byte[0]));
+	}
+
+	@Test
+	public void testStreamMatchesArray() throws IOException {
+		// Larger than the internal buffer so the stream is read in several chunks
+		byte[] data = new byte[20000 + 5];
+		for (int i=0; i<data.length; i++) {
+			data[i] = (byte)(i * 31);
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new HexDumpWriter(output).dump(0x2000, new ByteArrayInputStream(data));
+		assertArrayEquals(dump(0x2000, data).getBytes(), output.toByteArray());
+		assertEquals(dump(0x2000, data), AppleUtil.getHexDump(0x2000, data));
+	}
+
+	protected String dump(int address, byte[] data) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new HexDumpWriter(output).dump(address, data);
+		return output.toString();
+	}
+}
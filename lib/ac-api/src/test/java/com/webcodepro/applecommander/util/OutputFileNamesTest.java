@@ -0,0 +1,56 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class OutputFileNamesTest {
+	@Test
+	public void testToPathComponent() {
+		assertEquals("PICTURE", OutputFileNames.toPathComponent("PICTURE  ")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("A_B_C", OutputFileNames.toPathComponent("A/B\\C")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("__", OutputFileNames.toPathComponent("..")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("_", OutputFileNames.toPathComponent("   ")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("PIC.1", OutputFileNames.toPathComponent("PIC.1")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Test
+	public void testToDirectory() {
+		File root = new File("out"); //$NON-NLS-1$
+		assertEquals(new File(new File(root, "__"), "_.._X"), //$NON-NLS-1$ //$NON-NLS-2$
+				OutputFileNames.toDirectory(root, Arrays.asList("..", "/../X"))); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Test
+	public void testCollisionsAreRenamed() {
+		File root = new File("out"); //$NON-NLS-1$
+		OutputFileNames names = new OutputFileNames();
+		assertEquals(new File(root, "PIC.txt"), names.getFile(root, "PIC.txt")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(new File(root, "pic-2.txt"), names.getFile(root, "pic.txt ")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(new File(root, "PIC-3.txt"), names.getFile(root, "PIC.txt")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(new File(root, "DATA"), names.getFile(root, "DATA")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(new File(root, "DATA-2"), names.getFile(root, "DATA")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * AppleCommander - An Apple ][ image utility.
+ * Copyright (C) 2002-2022 by Robert Greene and others
+ * robgreene at users.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package com.webcodepro.applecommander.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.webcodepro.applecommander.storage.Disk;
+import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FileEntry;
+import com.webcodepro.applecommander.storage.os.prodos.ProdosFormatDisk;
+import com.webcodepro.applecommander.storage.physical.ByteArrayImageLayout;
+import com.webcodepro.applecommander.storage.physical.ProdosOrder;
+
+public class ShrinkItUtilitiesTest {
+	private static final int FILE_COUNT = 24;
+
+	@Test
+	public void testUnpackFilesInArchiveOrder() throws IOException, DiskException {
+		File archive = createArchive(false);
+		try {
+			byte[] parallel = ShrinkItUtilities.unpackSHKFile(archive.getPath(), 0);
+			byte[] serial = ShrinkItUtilities.unpackSHKFile(archive.getPath(), 0, Runnable::run);
+			assertArrayEquals(serial, parallel);
+
+			ProdosFormatDisk disk = new ProdosFormatDisk(archive.getPath(),
+					new ProdosOrder(new ByteArrayImageLayout(parallel)));
+			List<FileEntry> files = disk.getFiles();
+			assertEquals(FILE_COUNT, files.size());
+			for (int i = 0; i < FILE_COUNT; i++) {
+				FileEntry file = files.get(i);
+				assertEquals(fileName(i), file.getFilename());
+				assertArrayEquals(fileName(i), fileData(i), file.getFileData());
+			}
+		} finally {
+			archive.delete();
+		}
+	}
+
+	@Test
+	public void testUnpackWhenExecutorNeverRuns() throws IOException {
+		File archive = createArchive(false);
+		try {
+			byte[] serial = ShrinkItUtilities.unpackSHKFile(archive.getPath(), 0, Runnable::run);
+			byte[] starved = ShrinkItUtilities.unpackSHKFile(archive.getPath(), 0, task -> {});
+			assertArrayEquals(serial, starved);
+		} finally {
+			archive.delete();
+		}
+	}
+
+	@Test
+	public void testDiskImageTakesPrecedence() throws IOException {
+		File archive = createArchive(true);
+		try {
+			byte[] image = ShrinkItUtilities.unpackSHKFile(archive.getPath(), 0);
+			assertArrayEquals(diskImage(), image);
+		} finally {
+			archive.delete();
+		}
+	}
+
+	protected static String fileName(int i) {
+		return String.format("FILE.%02d", i); //$NON-NLS-1$
+	}
+
+	protected static byte[] fileData(int i) {
+		byte[] data = new byte[100 + i * 311];
+		Arrays.fill(data, (byte) i);
+		return data;
+	}
+
+	protected static byte[] diskImage() {
+		byte[] image = new byte[Disk.APPLE_140KB_DISK];
+		Arrays.fill(image, (byte) 0xa5);
+		return image;
+	}
+
+	/**
+	 * Build a NuFX archive holding uncompressed ProDOS files and, optionally,
+	 * a trailing disk image.
+	 */
+	protected static File createArchive(boolean withDiskImage) throws IOException {
+		int records = FILE_COUNT + (withDiskImage ? 1 : 0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// Master header block
+		out.write(new byte[] { 0x4e, (byte) 0xf5, 0x46, (byte) 0xe9, 0x6c, (byte) 0xe5 });
+		writeWord(out, 0);			// CRC
+		writeLong(out, records);
+		out.write(new byte[16]);	// archive create and modification dates
+		writeWord(out, 0);			// version
+		out.write(new byte[18]);	// pad to 48 bytes
+		for (int i = 0; i < FILE_COUNT; i++) {
+			writeRecord(out, fileName(i), 0x06, 0x2000, 0x01, 0x0000, fileData(i));
+		}
+		if (withDiskImage) {
+			writeRecord(out, "DISK", 0x00, 280, 512, 0x0001, diskImage()); //$NON-NLS-1$
+		}
+		File archive = File.createTempFile("shrinkit-", ".shk"); //$NON-NLS-1$ //$NON-NLS-2$
+		Files.write(archive.toPath(), out.toByteArray());
+		return archive;
+	}
+
+	private static void writeRecord(ByteArrayOutputStream out, String name, int fileType, int extraType,
+			int storageType, int threadKind, byte[] data) throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+		out.write(new byte[] { 0x4e, (byte) 0xf5, 0x46, (byte) 0xd8 });
+		writeWord(out, 0);			// CRC
+		writeWord(out, 58);			// attribute count
+		writeWord(out, 0);			// version
+		writeLong(out, 1);			// threads
+		writeWord(out, 1);			// ProDOS
+		writeWord(out, '/');		// separator
+		writeLong(out, 0xe3);		// access
+		writeLong(out, fileType);
+		writeLong(out, extraType);
+		writeWord(out, storageType);
+		out.write(new byte[24]);	// create, modification and archive dates
+		writeWord(out, nameBytes.length);
+		out.write(nameBytes);
+		// Thread record: data class, uncompressed
+		writeWord(out, 0x0002);
+		writeWord(out, 0x0000);
+		writeWord(out, threadKind);
+		writeWord(out, 0);			// CRC
+		writeLong(out, data.length);
+		writeLong(out, data.length);
+		out.write(data);
+	}
+
+	private static void writeWord(ByteArrayOutputStream out, int value) {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+	}
+
+	private static void writeLong(ByteArrayOutputStream out, long value) {
+		writeWord(out, (int) (value & 0xffff));
+		writeWord(out, (int) ((value >> 16) & 0xffff));
+	}
+}
@@ -28,9 +28,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -167,6 +168,23 @@ public class DiskExplorerTab {
 	private int currentFormat = FormattedDisk.FILE_DISPLAY_STANDARD;
 	private boolean formatChanged;
 	private List<FileEntry> currentFileList;
+	/**
+	 * The files shown in the (virtual) fileTable, in display order.
+	 */
+	private List<FileEntry> visibleFiles = new ArrayList<>();
+	/**
+	 * Column data for the current format, computed as rows are shown.
+	 */
+	private Map<FileEntry,List<String>> fileColumnData = new HashMap<>();
+	/**
+	 * Catalogs read so far, by directory.  These back the (virtual)
+	 * directoryTree and may be handed in already loaded.
+	 */
+	private Map<DirectoryEntry,List<FileEntry>> catalogs;
+	/**
+	 * The subdirectories of each directory shown in the directoryTree.
+	 */
+	private Map<DirectoryEntry,List<FileEntry>> subdirectories = new HashMap<>();
 	private Map<Integer,int[]> columnWidths = new HashMap<>();
 	private boolean showDeletedFiles;
 
@@ -174,7 +192,15 @@ public class DiskExplorerTab {
 	 * Create the DISK INFO tab.
 	 */
 	public DiskExplorerTab(CTabFolder tabFolder, FormattedDisk[] disks, ImageManager imageManager, DiskWindow diskWindow) {
+		this(tabFolder, disks, new HashMap<>(), imageManager, diskWindow);
+	}
+	/**
+	 * Create the DISK INFO tab, using catalogs that have already been read.
+	 */
+	public DiskExplorerTab(CTabFolder tabFolder, FormattedDisk[] disks, Map<DirectoryEntry,List<FileEntry>> catalogs,
+			ImageManager imageManager, DiskWindow diskWindow) {
 		this.disks = disks;
+		this.catalogs = new HashMap<>(catalogs);
 		this.shell = tabFolder.getShell();
 		this.imageManager = imageManager;
 		this.diskWindow = diskWindow;
@@ -203,6 +229,10 @@ public class DiskExplorerTab {
 		directoryTree = null;
 		fileTable = null;
 		currentFileList = null;
+		visibleFiles = null;
+		fileColumnData = null;
+		catalogs = null;
+		subdirectories = null;
 	}
 	/**
 	 * Create the FILES tab.
@@ -225,7 +255,8 @@ public class DiskExplorerTab {
 		gridData.horizontalSpan = 2;
 		sashForm.setLayoutData(gridData);
 
-		directoryTree = new Tree(sashForm, SWT.SINGLE | SWT.BORDER);
+		directoryTree = new Tree(sashForm, SWT.SINGLE | SWT.BORDER | SWT.VIRTUAL);
+		directoryTree.addListener(SWT.SetData, this::fillDirectoryItem);
 		directoryTree.setMenu(createDirectoryPopupMenu());
 		directoryTree.addSelectionListener(new SelectionListener() {
 			/**
@@ -255,29 +286,7 @@ public class DiskExplorerTab {
 
 		sashForm.setWeights(new int[] {1,2});
 
-		for (int i=0; i<disks.length; i++) {
-			TreeItem diskItem = new TreeItem(directoryTree, SWT.BORDER);
-			diskItem.setText(disks[i].getDiskName());
-			diskItem.setData(disks[i]);
-			directoryTree.setSelection(new TreeItem[] { diskItem });
-
-			if (disks[i].canHaveDirectories()) {
-				try {
-					Iterator<FileEntry> files = disks[i].getFiles().iterator();
-					while (files.hasNext()) {
-						FileEntry entry = (FileEntry) files.next();
-						if (entry.isDirectory()) {
-							TreeItem item = new TreeItem(diskItem, SWT.BORDER);
-							item.setText(entry.getFilename());
-							item.setData(entry);
-							addDirectoriesToTree(item, (DirectoryEntry)entry);
-						}
-					}
-	            } catch (DiskException e) {
-	                this.diskWindow.handle(e);
-	            }
-			}
-		}
+		directoryTree.setItemCount(disks.length);
 
 		computeColumnWidths(FormattedDisk.FILE_DISPLAY_STANDARD);
 		computeColumnWidths(FormattedDisk.FILE_DISPLAY_NATIVE);
@@ -285,11 +294,11 @@ public class DiskExplorerTab {
 
 		formatChanged = true;
 		try {
-			fillFileTable(disks[0].getFiles());
+			fillFileTable(getCatalog(disks[0]));
         } catch (DiskException e) {
             this.diskWindow.handle(e);
         }
-		directoryTree.setSelection(new TreeItem[] { directoryTree.getItems()[0] });
+		directoryTree.setSelection(new TreeItem[] { directoryTree.getItem(0) });
 	}
 	/**
 	 * Construct the popup menu for the directory table on the File tab.
@@ -842,9 +851,72 @@ public class DiskExplorerTab {
 		treeItem.setExpanded(expand);
 		TreeItem[] treeItems = treeItem.getItems();
 		for (int i=0; i<treeItems.length; i++) {
+			getDirectory(treeItems[i]);		// fill in the item so its children are known
 			setDirectoryExpandedStates(treeItems[i], expand);
 		}
 	}
+	/**
+	 * Fill in a directoryTree item as it is shown (SWT.SetData).
+	 * Only the subdirectories of the item are read, so the catalog of
+	 * a large disk is read one level at a time.
+	 */
+	protected void fillDirectoryItem(Event event) {
+		TreeItem item = (TreeItem) event.item;
+		TreeItem parentItem = item.getParentItem();
+		DirectoryEntry directory;
+		if (parentItem == null) {
+			FormattedDisk disk = disks[event.index];
+			item.setText(disk.getDiskName());
+			directory = disk;
+		} else {
+			FileEntry entry = getSubdirectories((DirectoryEntry) parentItem.getData()).get(event.index);
+			item.setText(entry.getFilename());
+			directory = (DirectoryEntry) entry;
+		}
+		item.setData(directory);
+		item.setItemCount(getSubdirectories(directory).size());
+	}
+	/**
+	 * Answer with the directory of a directoryTree item.  Asking a virtual
+	 * item for its text ensures that it has been filled in.
+	 */
+	protected DirectoryEntry getDirectory(TreeItem item) {
+		item.getText();
+		return (DirectoryEntry) item.getData();
+	}
+	/**
+	 * Answer with the files in a directory, reading the catalog only once.
+	 */
+	protected List<FileEntry> getCatalog(DirectoryEntry directory) throws DiskException {
+		List<FileEntry> files = catalogs.get(directory);
+		if (files == null) {
+			files = directory.getFiles();
+			catalogs.put(directory, files);
+		}
+		return files;
+	}
+	/**
+	 * Answer with the subdirectories of a directory shown in the directoryTree.
+	 */
+	protected List<FileEntry> getSubdirectories(DirectoryEntry directory) {
+		List<FileEntry> directories = subdirectories.get(directory);
+		if (directories == null) {
+			directories = new ArrayList<>();
+			if (directory.getFormattedDisk().canHaveDirectories()) {
+				try {
+					for (FileEntry entry : getCatalog(directory)) {
+						if (entry.isDirectory()) {
+							directories.add(entry);
+						}
+					}
+				} catch (DiskException e) {
+					this.diskWindow.handle(e);
+				}
+			}
+			subdirectories.put(directory, directories);
+		}
+		return directories;
+	}
 	/**
 	 * Pre-compute column widths for the file tab.
 	 * These can and are over-ridden by user sizing.
@@ -883,11 +955,23 @@ public class DiskExplorerTab {
 	 * Display files in the fileTable.
 	 */
 	protected void fillFileTable(List<FileEntry> fileList) {
+		fillFileTable(fileList, true);
+	}
+	/**
+	 * Display files in the fileTable.  The table is virtual, so rows are only
+	 * filled in as they are shown; column data computed for an earlier display
+	 * is kept unless it may have changed.
+	 */
+	protected void fillFileTable(List<FileEntry> fileList, boolean columnDataChanged) {
 		int[] weights = sashForm.getWeights();
+		if (formatChanged || columnDataChanged) {
+			fileColumnData.clear();
+		}
 
 		if (formatChanged) {
 			fileTable.dispose();
-			fileTable = new Table(sashForm, SWT.MULTI | SWT.FULL_SELECTION | SWT.BORDER);
+			fileTable = new Table(sashForm, SWT.MULTI | SWT.FULL_SELECTION | SWT.BORDER | SWT.VIRTUAL);
+			fileTable.addListener(SWT.SetData, this::fillFileItem);
 			fileTable.addListener(SWT.KeyUp, createFileKeyboardHandler());
 			fileTable.addListener(SWT.KeyUp, createToolbarCommandHandler());
 			fileTable.setHeaderVisible(true);
@@ -943,16 +1027,13 @@ public class DiskExplorerTab {
 			fileTable.removeAll();
 		}
 
+		visibleFiles = new ArrayList<>();
 		for (FileEntry entry : fileList) {
 			if (showDeletedFiles || !entry.isDeleted()) {
-				TableItem item = new TableItem(fileTable, 0);
-				List<String> data = entry.getFileColumnData(currentFormat);
-				for (int i=0; i<data.size(); i++) {
-					item.setText(i, (String)data.get(i));
-				}
-				item.setData(entry);
+				visibleFiles.add(entry);
 			}
 		}
+		fileTable.setItemCount(visibleFiles.size());
 		
 		sashForm.setWeights(weights);
 		formatChanged = false;
@@ -964,6 +1045,43 @@ public class DiskExplorerTab {
 		compileToolItem.setEnabled(false);
 		viewFileItem.setEnabled(false);
 	}
+	/**
+	 * Fill in a fileTable row as it is shown (SWT.SetData).
+	 */
+	protected void fillFileItem(Event event) {
+		TableItem item = (TableItem) event.item;
+		FileEntry entry = visibleFiles.get(event.index);
+		List<String> data = getFileColumnData(entry);
+		for (int i=0; i<data.size(); i++) {
+			item.setText(i, data.get(i));
+		}
+		item.setData(entry);
+	}
+	/**
+	 * Answer with the column data of a file in the current format.  This is
+	 * computed once per file and reused for display and sorting.
+	 */
+	protected List<String> getFileColumnData(FileEntry entry) {
+		List<String> data = fileColumnData.get(entry);
+		if (data == null) {
+			data = entry.getFileColumnData(currentFormat);
+			fileColumnData.put(entry, data);
+		}
+		return data;
+	}
+	/**
+	 * Answer with the selected files, in display order.  Rows of the virtual
+	 * fileTable may not have been filled in, so they are located by index.
+	 */
+	protected List<FileEntry> getSelectedFileEntries() {
+		int[] indices = fileTable.getSelectionIndices();
+		Arrays.sort(indices);
+		List<FileEntry> entries = new ArrayList<>();
+		for (int index : indices) {
+			entries.add(visibleFiles.get(index));
+		}
+		return entries;
+	}
 	/**
 	 * Open up the Export Wizard dialog box.
 	 */
@@ -990,10 +1108,7 @@ public class DiskExplorerTab {
 	 */
 	protected void exportFile(String directory) {
 		boolean promptForIndividualFiles = (directory == null);
-		TableItem[] selection = fileTable.getSelection();
-		for (int i=0; i<selection.length; i++) {
-			TableItem tableItem = selection[i];
-			FileEntry fileEntry = (FileEntry) tableItem.getData();
+		for (FileEntry fileEntry : getSelectedFileEntries()) {
 			String filename = null;
 			if (promptForIndividualFiles) {
 				FileDialog fileDialog = new FileDialog(shell, SWT.SAVE);
@@ -1068,10 +1183,7 @@ public class DiskExplorerTab {
 	 */
 	private void compileFile(String directory) {
 		boolean promptForIndividualFiles = (directory == null);
-		TableItem[] selection = fileTable.getSelection();
-		for (int i=0; i<selection.length; i++) {
-			TableItem tableItem = selection[i];
-			FileEntry fileEntry = (FileEntry) tableItem.getData();
+		for (FileEntry fileEntry : getSelectedFileEntries()) {
 			String filename = null;
 			if (promptForIndividualFiles) {
 				FileDialog fileDialog = new FileDialog(shell, SWT.SAVE);
@@ -1118,9 +1230,9 @@ public class DiskExplorerTab {
 	 * Delete the currently selected files.
 	 */
 	protected void deleteFile() {
-		TableItem[] selection = fileTable.getSelection();
+		List<FileEntry> selection = getSelectedFileEntries();
 
-		String message = (selection.length > 1) ?
+		String message = (selection.size() > 1) ?
 				textBundle.get("DeletePromptMultipleFiles") : //$NON-NLS-1$
 				textBundle.get("DeletePromptSingleFile") //$NON-NLS-1$
 				+ textBundle.get("DeletePromptTrailer"); //$NON-NLS-1$
@@ -1128,9 +1240,7 @@ public class DiskExplorerTab {
 				textBundle.get("DeletePromptTitle"), //$NON-NLS-1$
 				message);
 		if (answer == SWT.YES) {
-			for (int i=0; i<selection.length; i++) {
-				TableItem tableItem = selection[i];
-				FileEntry fileEntry = (FileEntry) tableItem.getData();
+			for (FileEntry fileEntry : selection) {
 				fileEntry.delete();
 			}
 			fillFileTable(currentFileList);
@@ -1144,7 +1254,7 @@ public class DiskExplorerTab {
 	protected void importFiles() throws DiskException {
 		//FIXME: This code has become really ugly!
 		TreeItem treeItem = directoryTree.getSelection()[0];
-		DirectoryEntry directory = (DirectoryEntry) treeItem.getData();
+		DirectoryEntry directory = getDirectory(treeItem);
 		ImportWizard wizard = new ImportWizard(shell,
 			imageManager, directory.getFormattedDisk());
 		wizard.open();
@@ -1240,22 +1350,8 @@ public class DiskExplorerTab {
 	 * Sort the file table by the specified columnIndex.
 	 */
 	protected void sortFileTable(int columnIndex) {
-		Collections.sort(currentFileList, new FileEntryComparator(columnIndex, currentFormat));
-		fillFileTable(currentFileList);
-	}
-	/**
-	 * Helper function for building fileTree.
-	 * @throws DiskException
-	 */
-	protected void addDirectoriesToTree(TreeItem directoryItem, DirectoryEntry directoryEntry) throws DiskException {
-	    for (final FileEntry entry : directoryEntry.getFiles()) {
-			if (entry.isDirectory()) {
-				TreeItem item = new TreeItem(directoryItem, SWT.BORDER);
-				item.setText(entry.getFilename());
-				item.setData(entry);
-				addDirectoriesToTree(item, (DirectoryEntry)entry);
-			}
-		}
+		Collections.sort(currentFileList, new FileEntryComparator(columnIndex, this::getFileColumnData));
+		fillFileTable(currentFileList, false);
 	}
 	/**
 	 * Creates the FILE tab toolbar.
@@ -1469,8 +1565,7 @@ public class DiskExplorerTab {
 	 */
 	protected void changeCurrentFormat(int newFormat) throws DiskException {
 		TreeItem selection = directoryTree.getSelection()[0];
-		Object data = selection.getData();
-		DirectoryEntry directory = (DirectoryEntry) data;
+		DirectoryEntry directory = getDirectory(selection);
 		List<FileEntry> fileList = directory.getFiles();
 		
 		formatChanged = (currentFormat != newFormat);
@@ -1758,7 +1853,7 @@ public class DiskExplorerTab {
 	protected FileEntry getSelectedFileEntry() {
 		FileEntry fileEntry = null;
 		if (fileTable.getSelectionIndex() >= 0) {
-			fileEntry = (FileEntry) fileTable.getItem(fileTable.getSelectionIndex()).getData();
+			fileEntry = visibleFiles.get(fileTable.getSelectionIndex());
 		}
 		return fileEntry;
 	}
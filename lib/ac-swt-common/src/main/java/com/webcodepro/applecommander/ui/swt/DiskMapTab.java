@@ -36,7 +36,7 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Label;
 
 import com.webcodepro.applecommander.storage.FormattedDisk;
-import com.webcodepro.applecommander.storage.FormattedDisk.DiskUsage;
+import com.webcodepro.applecommander.storage.UsageBitmap;
 import com.webcodepro.applecommander.ui.UiBundle;
 import com.webcodepro.applecommander.util.TextBundle;
 
@@ -199,12 +199,13 @@ public class DiskMapTab {
 	 * Handle paint requests for disk map.
 	 */
 	protected void paintMap(PaintEvent event) {
-		if (disk.getDiskUsage() == null) {
+		UsageBitmap bitmap = disk.getUsageBitmap();
+		if (bitmap == null) {
 			paintNoMap(event);
 		} else if (disk.getBitmapDimensions() == null) {
-			paintBlockMap(event);
+			paintBlockMap(bitmap, event);
 		} else {
-			paintSectorMap(event);
+			paintSectorMap(bitmap, event);
 		}
 	}
 	/**
@@ -249,21 +250,21 @@ public class DiskMapTab {
 	/**
 	 * Paint a track/sector map.
 	 */	
-	private void paintSectorMap(PaintEvent event) {
+	private void paintSectorMap(UsageBitmap bitmap, PaintEvent event) {
 		int[] dimensions = disk.getBitmapDimensions();
 		int ydim = dimensions[1];
 		int xdim = dimensions[0];
 		
-		paintDiskMap(xdim, ydim, event);
+		paintDiskMap(bitmap, xdim, ydim, event);
 	}
 	/**
 	 * Paint a block map.
 	 */	
-	private void paintBlockMap(PaintEvent event) {
+	private void paintBlockMap(UsageBitmap bitmap, PaintEvent event) {
 		Canvas canvas = (Canvas) event.widget;
 		Rectangle area = canvas.getClientArea();
 
-		double blocks = disk.getBitmapLength();
+		double blocks = bitmap.getLength();
 		double width = area.width;
 		double height = area.height;
 		double factor = Math.sqrt(blocks / (width * height));
@@ -276,12 +277,13 @@ public class DiskMapTab {
 			ydim++;
 		}
 		
-		paintDiskMap(xdim, ydim, event);
+		paintDiskMap(bitmap, xdim, ydim, event);
 	}
 	/**
-	 * Paint a map with the given dimensions.
+	 * Paint a map with the given dimensions.  Units are laid out down each
+	 * column, so the map can be painted a run of free or used units at a time.
 	 */
-	private void paintDiskMap(int xdim, int ydim, PaintEvent event) {
+	private void paintDiskMap(UsageBitmap bitmap, int xdim, int ydim, PaintEvent event) {
 		Canvas canvas = (Canvas) event.widget;
 		Rectangle area = canvas.getClientArea();
 		area.width-= 2;
@@ -300,18 +302,17 @@ public class DiskMapTab {
 		
 		Image image = new Image(canvas.getDisplay(), area);
 		GC gc = new GC(image);
-		int x = 0;
-		int y = 0;
-		DiskUsage usage = disk.getDiskUsage();
-		for (x=0; x<xdim && usage.hasNext(); x++) {
-			for (y=0; y<ydim && usage.hasNext(); y++) {
-				usage.next();
-				boolean free = usage.isFree();
+		int units = Math.min(bitmap.getLength(), xdim * ydim);
+		bitmap.forEachExtent((start, length, free) -> {
+			Color fill = free ? freeFill : usedFill;
+			for (int unit=start; unit<start+length && unit<units; unit++) {
+				int x = unit / ydim;
+				int y = unit % ydim;
 				Rectangle box = new Rectangle(xpos[x], ypos[y], 
 						xpos[x+1]-xpos[x], ypos[y+1]-ypos[y]);
-				drawBox(box, gc, free ? freeFill : usedFill, black, gray);
+				drawBox(box, gc, fill, black, gray);
 			}
-		}
+		});
 		event.gc.drawImage(image, 0, 0);
 		gc.dispose();
 		image.dispose();
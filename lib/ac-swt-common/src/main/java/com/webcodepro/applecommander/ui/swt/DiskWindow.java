@@ -19,6 +19,10 @@
  */
 package com.webcodepro.applecommander.ui.swt;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.events.DisposeEvent;
@@ -27,8 +31,10 @@ import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 
+import com.webcodepro.applecommander.storage.DirectoryEntry;
 import com.webcodepro.applecommander.storage.DiskCorruptException;
 import com.webcodepro.applecommander.storage.DiskException;
+import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.ui.UiBundle;
 import com.webcodepro.applecommander.ui.swt.util.ImageManager;
@@ -46,6 +52,7 @@ public class DiskWindow {
 	
 	private Shell shell;
 	private FormattedDisk[] disks;
+	private Map<DirectoryEntry,List<FileEntry>> catalogs;
 	
 	private DiskInfoTab diskInfoTab;
 	private DiskMapTab[] diskMapTabs;
@@ -56,8 +63,17 @@ public class DiskWindow {
 	 * Construct the disk window.
 	 */
 	public DiskWindow(Shell parentShell, FormattedDisk[] disks, ImageManager imageManager) {
+		this(parentShell, disks, Collections.emptyMap(), imageManager);
+	}
+	
+	/**
+	 * Construct the disk window with catalogs that have already been read.
+	 */
+	public DiskWindow(Shell parentShell, FormattedDisk[] disks, Map<DirectoryEntry,List<FileEntry>> catalogs, 
+			ImageManager imageManager) {
 		this.parentShell = shell;
 		this.disks = disks;
+		this.catalogs = catalogs;
 		this.imageManager = imageManager;
 	}
 	
@@ -76,7 +92,7 @@ public class DiskWindow {
 			});
 			
 		CTabFolder tabFolder = new CTabFolder(shell, SWT.BOTTOM);
-		new DiskExplorerTab(tabFolder, disks, imageManager, this);
+		new DiskExplorerTab(tabFolder, disks, catalogs, imageManager, this);
 		diskMapTabs = new DiskMapTab[disks.length];
 		for (int i=0; i<disks.length; i++) {
 			if (disks[i].supportsDiskMap()) {
@@ -160,6 +176,7 @@ public class DiskWindow {
 		diskInfoTab.dispose();
 
 		disks = null;
+		catalogs = null;
 		diskMapTabs = null;
 		diskInfoTab = null;
 		System.gc();
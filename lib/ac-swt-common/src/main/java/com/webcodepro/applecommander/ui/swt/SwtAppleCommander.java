@@ -19,6 +19,12 @@
  */
 package com.webcodepro.applecommander.ui.swt;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
@@ -32,13 +38,16 @@ import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.MessageBox;
+import org.eclipse.swt.widgets.ProgressBar;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.ToolBar;
 import org.eclipse.swt.widgets.ToolItem;
 
+import com.webcodepro.applecommander.storage.DirectoryEntry;
 import com.webcodepro.applecommander.storage.Disk;
 import com.webcodepro.applecommander.storage.Disk.FilenameFilter;
 import com.webcodepro.applecommander.storage.DiskUnrecognizedException;
+import com.webcodepro.applecommander.storage.FileEntry;
 import com.webcodepro.applecommander.storage.FormattedDisk;
 import com.webcodepro.applecommander.ui.AppleCommander;
 import com.webcodepro.applecommander.ui.UiBundle;
@@ -63,6 +72,16 @@ public class SwtAppleCommander implements Listener {
 	private TextBundle textBundle = UiBundle.getInstance();
 	private ImageCanvas imageCanvas;
 	private static ImageManager imageManager;
+	private ProgressBar progressBar;
+	private int loadingCount;
+	/**
+	 * Reads disk images and their catalogs off the user interface thread.
+	 */
+	private static final ExecutorService diskLoader = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "AppleCommander disk loader"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	/**
 	 * Launch SwtAppleCommander.
@@ -90,18 +109,62 @@ public class SwtAppleCommander implements Listener {
 	 * Open a specific file.
 	 */
 	public void open(String fullpath) {
+		Display display = Display.getCurrent();
+		showLoading(true);
+		diskLoader.execute(() -> {
+			try {
+				Disk disk = new Disk(fullpath);
+				FormattedDisk[] formattedDisks = disk.getFormattedDisks();
+				Map<DirectoryEntry,List<FileEntry>> catalogs = new HashMap<>();
+				for (FormattedDisk formattedDisk : formattedDisks) {
+					catalogs.put(formattedDisk, formattedDisk.getFiles());
+				}
+				display.asyncExec(() -> open(fullpath, formattedDisks, catalogs));
+			} catch (DiskUnrecognizedException e) {
+				display.asyncExec(() -> {
+					showLoading(false);
+					showUnrecognizedDiskFormatMessage(fullpath);
+				});
+			} catch (Exception ignored) {
+				ignored.printStackTrace();
+				display.asyncExec(() -> {
+					showLoading(false);
+					showUnexpectedErrorMessage(fullpath);
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Open the window for a disk that has been loaded in the background.
+	 */
+	protected void open(String fullpath, FormattedDisk[] formattedDisks, Map<DirectoryEntry,List<FileEntry>> catalogs) {
+		showLoading(false);
 		try {
-			Disk disk = new Disk(fullpath);
-			FormattedDisk[] formattedDisks = disk.getFormattedDisks();
-			DiskWindow window = new DiskWindow(shell, formattedDisks, imageManager);
+			DiskWindow window = new DiskWindow(shell, formattedDisks, catalogs, imageManager);
 			window.open();
-		} catch (DiskUnrecognizedException e) {
-			showUnrecognizedDiskFormatMessage(fullpath);
 		} catch (Exception ignored) {
 			ignored.printStackTrace();
 			showUnexpectedErrorMessage(fullpath);
-		}			
-
+		}
+	}
+	
+	/**
+	 * Show or hide the progress indicator while disks are being loaded.
+	 * Several disks may be loading at once.
+	 */
+	protected void showLoading(boolean loading) {
+		loadingCount += loading ? 1 : -1;
+		if (progressBar == null || progressBar.isDisposed()) {
+			return;
+		}
+		boolean visible = loadingCount > 0;
+		if (progressBar.getVisible() != visible) {
+			((GridData) progressBar.getLayoutData()).exclude = !visible;
+			progressBar.setVisible(visible);
+			shell.setCursor(visible ? shell.getDisplay().getSystemCursor(SWT.CURSOR_APPSTARTING) : null);
+			shell.pack();
+		}
 	}
 	
 	/**
@@ -159,6 +222,12 @@ public class SwtAppleCommander implements Listener {
 		imageCanvas.addListener(SWT.KeyUp, this);
 		imageCanvas.setFocus();
 		
+		gridData = new GridData(GridData.FILL_HORIZONTAL);
+		gridData.exclude = true;
+		progressBar = new ProgressBar(shell, SWT.HORIZONTAL | SWT.INDETERMINATE);
+		progressBar.setLayoutData(gridData);
+		progressBar.setVisible(false);
+		
 		shell.pack();
 		shell.open();
 		return shell;
@@ -169,6 +238,7 @@ public class SwtAppleCommander implements Listener {
 	 */
 	protected void dispose(DisposeEvent event) {
 		imageCanvas.dispose();
+		progressBar.dispose();
 		toolBar.dispose();
 		imageManager.dispose();
         if (System.getProperty("os.name").startsWith("Mac OS X")) {